@@ -12,6 +12,7 @@ import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.Arrays;
@@ -111,6 +112,36 @@ class F1R3DriveTest extends F1R3DriveTestFixture {
         assertWrittenData(file, inputDataAsBinary, false, "Read data should be equal to written data after remount");
     }
 
+    @Test
+    @DisplayName("Should write and read back a sparse 10 GB file")
+    void shouldWriteAndReadSparseFileLargerThan4Gb() throws IOException {
+        assertUnlockWalletDirectory(REV_WALLET_1, PRIVATE_KEY_1);
+
+        File file = new File(UNLOCKED_WALLET_DIR_1, "sparse.img");
+        assertCreateNewFile(file);
+
+        // across the range of int and of unsigned int offsets, and at the very end
+        long size = 10L * 1024 * 1024 * 1024; // 10 GB
+        long[] offsets = {(1L << 31) - 2, (1L << 32) - 2, size - 4};
+        byte[] marker = {1, 2, 3, 4};
+        try (RandomAccessFile content = new RandomAccessFile(file, "rw")) {
+            content.setLength(size);
+            for (long offset : offsets) {
+                content.seek(offset);
+                content.write(marker);
+            }
+        }
+
+        assertSparseContent(file, size, offsets, marker);
+
+        remount(); // umount and mount back: read from the shard
+        assertUnlockWalletDirectory(REV_WALLET_1, PRIVATE_KEY_1);
+
+        assertSparseContent(file, size, offsets, marker);
+
+        assertDeleteFile(file);
+    }
+
     @Test
     @DisplayName("Should perform CRUD operations on files: create, rename, read, and delete")
     void shouldCreateRenameGetDeleteFiles() throws IOException {
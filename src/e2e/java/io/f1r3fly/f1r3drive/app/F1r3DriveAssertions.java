@@ -4,6 +4,7 @@ import io.f1r3fly.f1r3drive.filesystem.local.TokenDirectory;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
@@ -175,6 +176,25 @@ public class F1r3DriveAssertions extends F1R3DriveTestFixture {
         assertWrittenData(file, data, true, "Read data should be equal to written data");
     }
 
+    /**
+     * Reads the markers back from a sparse file, and zeros right before each of them
+     */
+    public static void assertSparseContent(File file, long size, long[] offsets, byte[] marker) throws IOException {
+        assertEquals(size, file.length(), "Size of the sparse file should be kept");
+        try (RandomAccessFile content = new RandomAccessFile(file, "r")) {
+            for (long offset : offsets) {
+                byte[] read = new byte[2 * marker.length];
+                content.seek(offset - marker.length);
+                content.readFully(read);
+
+                assertArrayEquals(new byte[marker.length], Arrays.copyOf(read, marker.length),
+                    "Hole before offset " + offset + " should read as zeros");
+                assertArrayEquals(marker, Arrays.copyOfRange(read, marker.length, read.length),
+                    "Marker at offset " + offset + " should be read back");
+            }
+        }
+    }
+
     /**
      * Writes string data to file and validates it's written correctly
      */
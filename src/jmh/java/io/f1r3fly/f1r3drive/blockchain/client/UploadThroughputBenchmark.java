@@ -0,0 +1,116 @@
+package io.f1r3fly.f1r3drive.blockchain.client;
+
+import casper.CasperMessage;
+import casper.DeployServiceCommon;
+import casper.ProposeServiceCommon;
+import casper.v1.DeployServiceGrpc;
+import casper.v1.DeployServiceV1;
+import casper.v1.ProposeServiceGrpc;
+import casper.v1.ProposeServiceV1;
+import fr.acinq.secp256k1.Hex;
+import io.f1r3fly.f1r3drive.blockchain.rholang.RholangExpressionConstructor;
+import io.grpc.Server;
+import io.grpc.netty.NettyServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upload throughput of {@link F1r3flyBlockchainClient#deploy} against a local stand-in node that
+ * acknowledges every deploy, propose, find and finalization request immediately. The payload
+ * is a file chunk encoded the same way {@code BlockchainFile} deploys it.
+ *
+ * <pre>
+ * ./gradlew jmh -PjmhInclude=UploadThroughputBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@Threads(4)
+public class UploadThroughputBenchmark {
+
+    // a key from data/genesis/wallets.txt; the stand-in node doesn't verify signatures
+    private static final byte[] SIGNING_KEY = Hex.decode("a8cf01d889cc6ef3119ecbd57301036a52c41ae6e44964e098cb2aefa4598954");
+
+    @Param({"1", "4"})
+    public int channelsPerEndpoint;
+
+    @Param({"1048576", "16777216"}) // 1 mb, 16 mb
+    public int chunkSize;
+
+    private Server server;
+    private F1r3flyBlockchainClient client;
+    private String rholang;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = NettyServerBuilder.forPort(0)
+            .maxInboundMessageSize(Integer.MAX_VALUE)
+            .flowControlWindow(GrpcTransportConfig.defaultConfig().getFlowControlWindowBytes())
+            .addService(new StandInDeployService())
+            .addService(new StandInProposeService())
+            .build()
+            .start();
+
+        client = new F1r3flyBlockchainClient(
+            "localhost", server.getPort(),
+            "localhost", server.getPort(),
+            GrpcTransportConfig.builder()
+                .channelsPerEndpoint(channelsPerEndpoint)
+                .build());
+
+        byte[] chunk = new byte[chunkSize];
+        new Random(42).nextBytes(chunk);
+        rholang = RholangExpressionConstructor.sendFileContentChunk("/benchmark/1", chunk);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        client.shutdown();
+        server.shutdown().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public String deployChunk() {
+        return client.deploy(rholang, true, F1r3flyBlockchainClient.RHOLANG, SIGNING_KEY, System.nanoTime());
+    }
+
+    private static class StandInDeployService extends DeployServiceGrpc.DeployServiceImplBase {
+        @Override
+        public void doDeploy(CasperMessage.DeployDataProto request, StreamObserver<DeployServiceV1.DeployResponse> responseObserver) {
+            responseObserver.onNext(DeployServiceV1.DeployResponse.newBuilder()
+                .setResult("Success!\nDeployId is: " + Hex.encode(request.getSig().toByteArray()))
+                .build());
+            responseObserver.onCompleted();
+        }
+
+        @Override
+        public void findDeploy(DeployServiceCommon.FindDeployQuery request, StreamObserver<DeployServiceV1.FindDeployResponse> responseObserver) {
+            responseObserver.onNext(DeployServiceV1.FindDeployResponse.newBuilder()
+                .setBlockInfo(DeployServiceCommon.LightBlockInfo.newBuilder().setBlockHash("00").build())
+                .build());
+            responseObserver.onCompleted();
+        }
+
+        @Override
+        public void isFinalized(DeployServiceCommon.IsFinalizedQuery request, StreamObserver<DeployServiceV1.IsFinalizedResponse> responseObserver) {
+            responseObserver.onNext(DeployServiceV1.IsFinalizedResponse.newBuilder().setIsFinalized(true).build());
+            responseObserver.onCompleted();
+        }
+    }
+
+    private static class StandInProposeService extends ProposeServiceGrpc.ProposeServiceImplBase {
+        @Override
+        public void propose(ProposeServiceCommon.ProposeQuery request, StreamObserver<ProposeServiceV1.ProposeResponse> responseObserver) {
+            responseObserver.onNext(ProposeServiceV1.ProposeResponse.newBuilder().setResult("Success!").build());
+            responseObserver.onCompleted();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package io.f1r3fly.f1r3drive.blockchain.rholang;
+
+import org.openjdk.jmh.annotations.*;
+import rhoapi.RhoTypes;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of directory channel data as returned by the node.
+ *
+ * <pre>
+ * ./gradlew jmh -PjmhInclude=ChannelDataDecoderBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChannelDataDecoderBenchmark {
+
+    @Param({"10", "10000", "100000"})
+    public int children;
+
+    private RhoTypes.Expr directory;
+
+    @Setup
+    public void setUp() {
+        RhoTypes.EList.Builder names = RhoTypes.EList.newBuilder();
+        for (int i = 0; i < children; i++) {
+            names.addPs(string("child-" + i + ".txt"));
+        }
+
+        directory = RhoTypes.Expr.newBuilder()
+            .setEMapBody(RhoTypes.EMap.newBuilder()
+                .addKvs(keyValue("type", string("d")))
+                .addKvs(keyValue("children", RhoTypes.Par.newBuilder()
+                    .addExprs(RhoTypes.Expr.newBuilder().setEListBody(names))
+                    .build()))
+                .addKvs(keyValue("lastUpdated", RhoTypes.Par.newBuilder()
+                    .addExprs(RhoTypes.Expr.newBuilder().setGInt(1_700_000_000L))
+                    .build())))
+            .build();
+    }
+
+    @Benchmark
+    public RholangExpressionConstructor.ChannelData decodeDirectory() {
+        return RholangExpressionConstructor.parseExploratoryDeployResult(directory);
+    }
+
+    private static RhoTypes.KeyValuePair keyValue(String key, RhoTypes.Par value) {
+        return RhoTypes.KeyValuePair.newBuilder()
+            .setKey(string(key))
+            .setValue(value)
+            .build();
+    }
+
+    private static RhoTypes.Par string(String value) {
+        return RhoTypes.Par.newBuilder()
+            .addExprs(RhoTypes.Expr.newBuilder().setGString(value))
+            .build();
+    }
+}
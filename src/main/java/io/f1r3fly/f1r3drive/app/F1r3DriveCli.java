@@ -2,12 +2,19 @@ package io.f1r3fly.f1r3drive.app;
 
 import io.f1r3fly.f1r3drive.encryption.AESCipher;
 import io.f1r3fly.f1r3drive.blockchain.client.F1r3flyBlockchainClient;
+import io.f1r3fly.f1r3drive.blockchain.client.GrpcTransportConfig;
+import io.f1r3fly.f1r3drive.filesystem.cache.CacheConfig;
+import io.f1r3fly.f1r3drive.filesystem.deployable.SealConfig;
+import io.f1r3fly.f1r3drive.filesystem.fetch.FetchConfig;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.Callable;
 
 @Command(name = "f1r3FUSE", mixinStandardHelpOptions = true, version = "f1r3FUSE 1.0",
@@ -38,6 +45,69 @@ class F1r3DriveCli implements Callable<Integer> {
     @Option(names = {"-pk", "--private-key"}, description = "The private key of the wallet to unlock.")
     private String privateKey;
 
+    @Option(names = {"-w", "--wallet"}, description = "A wallet to unlock as REV_ADDRESS=PRIVATE_KEY. May be repeated; the wallets are unlocked concurrently.")
+    private Map<String, String> wallets = new LinkedHashMap<>();
+
+    @Option(names = {"--grpc-channels"}, description = "Number of gRPC connections opened to each node. Defaults to 4.")
+    private int grpcChannels = GrpcTransportConfig.defaultConfig().getChannelsPerEndpoint();
+
+    @Option(names = {"--grpc-executor-threads"}, description = "Size of the executor shared by all gRPC channels. Defaults to 2x CPU cores.")
+    private int grpcExecutorThreads = GrpcTransportConfig.defaultConfig().getExecutorThreads();
+
+    @Option(names = {"--grpc-flow-control-window"}, description = "Initial HTTP/2 flow-control window in bytes. Defaults to 16 MB.")
+    private int grpcFlowControlWindow = GrpcTransportConfig.defaultConfig().getFlowControlWindowBytes();
+
+    @Option(names = {"--grpc-keepalive-ms"}, description = "Interval of HTTP/2 keepalive pings in milliseconds. Defaults to 300000. Nodes close connections that ping more often than their permitted keepalive time, 5 minutes unless configured otherwise.")
+    private long grpcKeepAliveMs = GrpcTransportConfig.defaultConfig().getKeepAliveTimeMs();
+
+    @Option(names = {"--fetch-concurrency"}, description = "Maximum number of channel reads in flight while unlocking wallets. Defaults to 16.")
+    private int fetchConcurrency = FetchConfig.defaultConfig().getConcurrency();
+
+    @Option(names = {"--fetch-deadline-ms"}, description = "Deadline of a single channel read in milliseconds. Defaults to 120000.")
+    private long fetchDeadlineMs = FetchConfig.defaultConfig().getRequestDeadline().toMillis();
+
+    @Option(names = {"--unlock-concurrency"}, description = "Maximum number of wallet keys validated at once while unlocking several wallets. Defaults to 4.")
+    private int unlockConcurrency = FetchConfig.defaultConfig().getUnlockConcurrency();
+
+    @Option(names = {"--sync-interval-ms"}, description = "How often to check for changes made to unlocked wallets by other instances, in milliseconds. 0 disables it. Defaults to 30000.")
+    private long syncIntervalMs = FetchConfig.defaultConfig().getSyncInterval().toMillis();
+
+    @Option(names = {"--read-ahead-chunks"}, description = "Maximum number of file chunks downloaded ahead of a sequential reader. 0 disables read-ahead. Defaults to 2.")
+    private int readAheadChunks = FetchConfig.defaultConfig().getReadAheadChunks();
+
+    @Option(names = {"--chunk-download-concurrency"}, description = "Maximum number of file chunks downloaded at once when a read or write needs several. Defaults to 4.")
+    private int chunkDownloadConcurrency = FetchConfig.defaultConfig().getChunkDownloadConcurrency();
+
+    @Option(names = {"--cache-dir"}, description = "Directory where downloaded file content is kept between mounts. Defaults to ~/.f1r3drive/cache.")
+    private Path cacheDir = CacheConfig.defaultConfig().getDirectory();
+
+    @Option(names = {"--cache-quota-mb"}, description = "How much downloaded file content the cache may hold, in megabytes. Defaults to 10240.")
+    private long cacheQuotaMb = CacheConfig.defaultConfig().getQuotaBytes() / (1024 * 1024);
+
+    @Option(names = {"--cache-memory-mb"}, description = "Memory for blocks of hot files, in megabytes. 0 reads every block from disk. Defaults to 64.")
+    private long cacheMemoryMb = CacheConfig.defaultConfig().getMemoryBytes() / (1024 * 1024);
+
+    @Option(names = {"--cache-block-kb"}, description = "Size of a block kept in memory, in kilobytes: a power of two from 4 to 1024. Defaults to 64.")
+    private int cacheBlockKb = CacheConfig.defaultConfig().getBlockSize() / 1024;
+
+    @Option(names = {"--cache-small-file-kb"}, description = "Files up to this size, in kilobytes, are packed together into shared segments while closed, up to 1024. 0 gives every file its own. Defaults to 64.")
+    private int cacheSmallFileKb = CacheConfig.defaultConfig().getSmallFileBytes() / 1024;
+
+    @Option(names = {"--seal-threads"}, description = "Number of written file chunks encrypted and encoded for deployment at once. Defaults to 2.")
+    private int sealThreads = SealConfig.defaultConfig().getThreads();
+
+    @Option(names = {"--seal-max-pending-chunks"}, description = "Maximum number of written file chunks waiting for deployment before writers wait. Defaults to 4.")
+    private int sealMaxPendingChunks = SealConfig.defaultConfig().getMaxPendingChunks();
+
+    @Option(names = {"--inline-file-bytes"}, description = "Files created up to this size, in bytes, keep their content in the channel of their directory, up to 65536. Clients without inline files do not see their content. Defaults to 0, every file in its own channel.")
+    private int inlineFileBytes = SealConfig.defaultConfig().getInlineFileBytes();
+
+    @Option(names = {"--dedup-block-bytes"}, description = "Average size, in bytes, of the blocks file chunks are cut into by their content and deployed once to channels named by their hash, a power of two from 65536 to 16777216. Clients without content-addressed chunks do not see the content of such chunks. Defaults to 0, every chunk in the channels of its file.")
+    private int dedupBlockBytes = SealConfig.defaultConfig().getDedupBlockBytes();
+
+    @Option(names = {"--compress"}, description = "Compress the chunks of files whose content compresses well, chosen by sampling each file, before they are encrypted and deployed. Clients without compressed chunks do not read the content of such files. Off by default.")
+    private boolean compress = SealConfig.defaultConfig().isCompress();
+
     private F1r3DriveFuse f1r3DriveFuse;
 
 
@@ -49,21 +119,55 @@ class F1r3DriveCli implements Callable<Integer> {
             validatorHost,
             validatorPort,
             observerHost,
-            observerPort
+            observerPort,
+            GrpcTransportConfig.builder()
+                .channelsPerEndpoint(grpcChannels)
+                .executorThreads(grpcExecutorThreads)
+                .flowControlWindowBytes(grpcFlowControlWindow)
+                .keepAliveTimeMs(grpcKeepAliveMs)
+                .build()
         );
 
         f1r3DriveFuse = new F1r3DriveFuse(
-            f1R3FlyBlockchainClient
+            f1R3FlyBlockchainClient,
+            FetchConfig.builder()
+                .concurrency(fetchConcurrency)
+                .requestDeadline(Duration.ofMillis(fetchDeadlineMs))
+                .unlockConcurrency(unlockConcurrency)
+                .syncInterval(Duration.ofMillis(syncIntervalMs))
+                .readAheadChunks(readAheadChunks)
+                .chunkDownloadConcurrency(chunkDownloadConcurrency)
+                .build(),
+            CacheConfig.builder()
+                .directory(cacheDir)
+                .quotaBytes(cacheQuotaMb * 1024 * 1024)
+                .memoryBytes(cacheMemoryMb * 1024 * 1024)
+                .blockSize(cacheBlockKb * 1024)
+                .smallFileBytes(cacheSmallFileKb * 1024)
+                .build(),
+            SealConfig.builder()
+                .threads(sealThreads)
+                .maxPendingChunks(sealMaxPendingChunks)
+                .inlineFileBytes(inlineFileBytes)
+                .dedupBlockBytes(dedupBlockBytes)
+                .compress(compress)
+                .build()
         );
 
+        Map<String, String> walletsToUnlock = new LinkedHashMap<>(wallets);
+        if (revAddress != null && privateKey != null) {
+            walletsToUnlock.put(revAddress, privateKey);
+        }
+
         try {
-            if (revAddress != null && privateKey != null) { 
-                f1r3DriveFuse.mountAndUnlockRootDirectory(mountPoint, true, revAddress, privateKey);
+            if (!walletsToUnlock.isEmpty()) {
+                f1r3DriveFuse.mountAndUnlockRootDirectories(mountPoint, true, walletsToUnlock);
             } else {
                 f1r3DriveFuse.mount(mountPoint, true);
             }
         } finally {
             f1r3DriveFuse.umount();
+            f1R3FlyBlockchainClient.shutdown();
         }
         return 0;
     }
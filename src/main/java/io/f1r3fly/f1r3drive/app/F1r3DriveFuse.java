@@ -10,6 +10,9 @@ import io.f1r3fly.f1r3drive.finderextensions.FinderSyncExtensionServiceServer;
 import io.f1r3fly.f1r3drive.filesystem.FileSystem;
 import io.f1r3fly.f1r3drive.blockchain.client.F1r3flyBlockchainClient;
 import io.f1r3fly.f1r3drive.filesystem.InMemoryFileSystem;
+import io.f1r3fly.f1r3drive.filesystem.cache.CacheConfig;
+import io.f1r3fly.f1r3drive.filesystem.deployable.SealConfig;
+import io.f1r3fly.f1r3drive.filesystem.fetch.FetchConfig;
 import io.f1r3fly.f1r3drive.filesystem.OperationContext;
 import io.f1r3fly.f1r3drive.fuse.struct.FileStat;
 import io.f1r3fly.f1r3drive.fuse.struct.FuseFileInfo;
@@ -28,6 +31,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.UUID;
 import java.io.File;
 import jnr.posix.util.Platform;
@@ -48,11 +53,30 @@ public class F1r3DriveFuse extends FuseStubFS {
     };
     private FileSystem fileSystem;
     private F1r3flyBlockchainClient f1R3FlyBlockchainClient;
+    private final FetchConfig fetchConfig;
+    private final CacheConfig cacheConfig;
+    private final SealConfig sealConfig;
     private FinderSyncExtensionServiceServer finderSyncExtensionServiceServer;
 
     public F1r3DriveFuse(F1r3flyBlockchainClient f1R3FlyBlockchainClient) {
+        this(f1R3FlyBlockchainClient, FetchConfig.defaultConfig());
+    }
+
+    public F1r3DriveFuse(F1r3flyBlockchainClient f1R3FlyBlockchainClient, FetchConfig fetchConfig) {
+        this(f1R3FlyBlockchainClient, fetchConfig, CacheConfig.defaultConfig());
+    }
+
+    public F1r3DriveFuse(F1r3flyBlockchainClient f1R3FlyBlockchainClient, FetchConfig fetchConfig, CacheConfig cacheConfig) {
+        this(f1R3FlyBlockchainClient, fetchConfig, cacheConfig, SealConfig.defaultConfig());
+    }
+
+    public F1r3DriveFuse(F1r3flyBlockchainClient f1R3FlyBlockchainClient, FetchConfig fetchConfig, CacheConfig cacheConfig,
+                         SealConfig sealConfig) {
         super(); // no need to call Fuse constructor?
         this.f1R3FlyBlockchainClient = f1R3FlyBlockchainClient; // doesnt have a state, so can be reused between mounts
+        this.fetchConfig = fetchConfig;
+        this.cacheConfig = cacheConfig;
+        this.sealConfig = sealConfig;
     }
 
     /**
@@ -254,7 +278,7 @@ public class F1r3DriveFuse extends FuseStubFS {
     }
 
     @Override
-    public int truncate(String path, long offset) {
+    public int truncate(String path, @off_t long offset) {
         return executeWithErrorHandling(path, FileSystemAction.FUSE_TRUNCATE, () -> {
             fileSystem.truncateFile(path, offset);
             return SuccessCodes.OK;
@@ -299,6 +323,10 @@ public class F1r3DriveFuse extends FuseStubFS {
     }
 
     public void mountAndUnlockRootDirectory(Path mountPoint, boolean blocking, String revAddress, String privateKey) {
+        mountAndUnlockRootDirectories(mountPoint, blocking, Map.of(revAddress, privateKey));
+    }
+
+    public void mountAndUnlockRootDirectories(Path mountPoint, boolean blocking, Map<String, String> privateKeysByRevAddress) {
         // Run unlock in background after waiting for mount to complete
         Thread unlockThread = new Thread(() -> {
             try {
@@ -307,24 +335,24 @@ public class F1r3DriveFuse extends FuseStubFS {
                 while (notMounted()) {
                     Thread.sleep(100); // Check every 100ms
                 }
-                LOGGER.debug("Filesystem is now mounted, proceeding with unlock operation");
-                
-                // Now unlock the directory
-                fileSystem.unlockRootDirectory(revAddress, privateKey);
+                LOGGER.debug("Filesystem is now mounted, proceeding with unlock of {} wallets", privateKeysByRevAddress.size());
+
+                // Now unlock the directories
+                fileSystem.unlockRootDirectories(privateKeysByRevAddress);
             } catch (InterruptedException e) {
                 LOGGER.warn("Unlock background thread was interrupted", e);
                 Thread.currentThread().interrupt();
             } catch (Exception e) {
-                LOGGER.error("Error in background unlock thread for revAddress: {}", revAddress, e);
+                LOGGER.error("Error in background unlock thread for revAddresses: {}", privateKeysByRevAddress.keySet(), e);
             }
 
         });
-        
-        unlockThread.setName("UnlockDirectory-" + revAddress);
+
+        unlockThread.setName("UnlockDirectories");
         unlockThread.setDaemon(true); // Don't prevent JVM shutdown
         unlockThread.start();
-        
-        LOGGER.debug("Started background unlock thread for revAddress: {}", revAddress);
+
+        LOGGER.debug("Started background unlock thread for revAddresses: {}", privateKeysByRevAddress.keySet());
         mount(mountPoint, blocking);
     }
 
@@ -375,12 +403,12 @@ public class F1r3DriveFuse extends FuseStubFS {
             }
 
             LOGGER.debug("Creating InMemoryFileSystem...");
-            this.fileSystem = new InMemoryFileSystem(f1R3FlyBlockchainClient);
+            this.fileSystem = new InMemoryFileSystem(f1R3FlyBlockchainClient, fetchConfig, cacheConfig, sealConfig);
             LOGGER.debug("Created InMemoryFileSystem successfully");
 
             LOGGER.debug("Creating FinderSyncExtensionServiceServer...");
             this.finderSyncExtensionServiceServer = new FinderSyncExtensionServiceServer(
-                this::handleChange, this::handleUnlockRevDirectory, 54000);
+                this::handleChange, this::handleUnlockRevDirectory, this::handleUnlockRevDirectories, 54000);
             LOGGER.debug("Created FinderSyncExtensionServiceServer successfully");
 
             this.mountName = "F1r3DriveFuse-" + UUID.randomUUID();
@@ -528,4 +556,25 @@ public class F1r3DriveFuse extends FuseStubFS {
         }
     }
 
+    private Map<String, FinderSyncExtensionServiceServer.Result> handleUnlockRevDirectories(Map<String, String> privateKeysByRevAddress) {
+        LOGGER.debug("Called handleUnlockRevDirectories for revAddresses: {}", privateKeysByRevAddress.keySet());
+
+        Map<String, FinderSyncExtensionServiceServer.Result> results = new LinkedHashMap<>();
+        if (notMounted()) {
+            LOGGER.warn("handleUnlockRevDirectories - FileSystem not mounted for revAddresses: {}", privateKeysByRevAddress.keySet());
+            privateKeysByRevAddress.keySet().forEach(revAddress ->
+                results.put(revAddress, FinderSyncExtensionServiceServer.Result.error("FileSystem not mounted")));
+            return results;
+        }
+
+        Map<String, Throwable> failures = fileSystem.unlockRootDirectories(privateKeysByRevAddress);
+        for (String revAddress : privateKeysByRevAddress.keySet()) {
+            Throwable failure = failures.get(revAddress);
+            results.put(revAddress, failure == null
+                ? FinderSyncExtensionServiceServer.Result.success()
+                : FinderSyncExtensionServiceServer.Result.error(failure.getMessage()));
+        }
+        return results;
+    }
+
 }
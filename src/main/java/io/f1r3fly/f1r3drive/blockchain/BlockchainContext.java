@@ -3,14 +3,31 @@ package io.f1r3fly.f1r3drive.blockchain;
 import io.f1r3fly.f1r3drive.blockchain.client.DeployDispatcher;
 import io.f1r3fly.f1r3drive.blockchain.client.F1r3flyBlockchainClient;
 import io.f1r3fly.f1r3drive.blockchain.wallet.RevWalletInfo;
+import io.f1r3fly.f1r3drive.filesystem.cache.ContentCache;
+import io.f1r3fly.f1r3drive.filesystem.deployable.ChunkDownloader;
+import io.f1r3fly.f1r3drive.filesystem.deployable.ChunkPrefetcher;
+import io.f1r3fly.f1r3drive.filesystem.deployable.ChunkSealer;
+
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class BlockchainContext {
     private final RevWalletInfo walletInfo;
     private final DeployDispatcher deployDispatcher;
+    private final ContentCache contentCache;
+    private final ChunkSealer chunkSealer;
+    private final ChunkPrefetcher chunkPrefetcher;
+    private final ChunkDownloader chunkDownloader;
+    // path mutations update the wallet manifest only once its channel exists
+    private final AtomicBoolean manifestAvailable = new AtomicBoolean(false);
 
-    public BlockchainContext(RevWalletInfo walletInfo, DeployDispatcher deployDispatcher) {
+    public BlockchainContext(RevWalletInfo walletInfo, DeployDispatcher deployDispatcher, ContentCache contentCache,
+                             ChunkSealer chunkSealer, ChunkPrefetcher chunkPrefetcher, ChunkDownloader chunkDownloader) {
         this.walletInfo = walletInfo;
         this.deployDispatcher = deployDispatcher;
+        this.contentCache = contentCache;
+        this.chunkSealer = chunkSealer;
+        this.chunkPrefetcher = chunkPrefetcher;
+        this.chunkDownloader = chunkDownloader;
     }
     
     public RevWalletInfo getWalletInfo() {
@@ -24,5 +41,29 @@ public class BlockchainContext {
     public F1r3flyBlockchainClient getBlockchainClient() {
         return deployDispatcher.getBlockchainClient();
     }
+
+    public ContentCache getContentCache() {
+        return contentCache;
+    }
+
+    public ChunkSealer getChunkSealer() {
+        return chunkSealer;
+    }
+
+    public ChunkPrefetcher getChunkPrefetcher() {
+        return chunkPrefetcher;
+    }
+
+    public ChunkDownloader getChunkDownloader() {
+        return chunkDownloader;
+    }
+
+    public boolean isManifestAvailable() {
+        return manifestAvailable.get();
+    }
+
+    public void setManifestAvailable() {
+        manifestAvailable.set(true);
+    }
     
 }
@@ -2,6 +2,7 @@ package io.f1r3fly.f1r3drive.blockchain.client;
 
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
@@ -31,6 +32,10 @@ public class DeployDispatcher {
 
     private final ConcurrentLinkedQueue<Deployment> queue;
 
+    // deployments are numbered in queue order; those up to processedCount are done with
+    private long enqueuedCount = 0;
+    private final AtomicLong processedCount = new AtomicLong();
+
     public record Deployment(String rhoOrMettaExpression, boolean useBiggerPhloLimit, String language,
             String revAddress, byte[] signingKey, long timestamp) {
     }
@@ -61,6 +66,7 @@ public class DeployDispatcher {
                         deployment.language, deployment.signingKey, deployment.timestamp);
                 stateChangeEventsManager.addEvent(new StateChangeEvents.WalletBalanceChanged(deployment.revAddress));
                 retryCount = 0;
+                processedCount.incrementAndGet();
                 isDeploying = false;
             } catch (Throwable e) {
                 if (retryCount < MAX_RETRIES && !interrupted()) {
@@ -74,9 +80,10 @@ public class DeployDispatcher {
                     doDeploy(deployment);
                 } else {
                     logger.error("Error during deployment. Max retries reached. Stopping deployment.");
+                    lastDeployError.set(e);
+                    processedCount.incrementAndGet();
                     isDeploying = false;
                     retryCount = 0;
-                    lastDeployError.set(e);
                 }
             }
         }
@@ -91,7 +98,10 @@ public class DeployDispatcher {
         this.executorService = java.util.concurrent.Executors.newSingleThreadExecutor();
     }
 
-    public void enqueueDeploy(Deployment deployment) {
+    /**
+     * @return the number of the deployment, see {@link #isDeployed(long)}
+     */
+    public synchronized long enqueueDeploy(Deployment deployment) {
         // dont trim if log level is not enabled
         if (logger.isDebugEnabled()) {
             String smaller = deployment.rhoOrMettaExpression.length() > MAX_EXPRESSION_LENGTH_IN_LOG
@@ -102,6 +112,15 @@ public class DeployDispatcher {
         }
 
         queue.add(deployment);
+        return ++enqueuedCount;
+    }
+
+    /**
+     * @return true if the deployment with the given number and all before it are finalized;
+     * false once a deployment failed for good
+     */
+    public boolean isDeployed(long deploymentNumber) {
+        return processedCount.get() >= deploymentNumber && lastDeployError.get() == null;
     }
 
     // dequeue in a separate thread: poll, deploy or wait if empty, repeat
@@ -131,6 +150,14 @@ public class DeployDispatcher {
         }
     }
 
+    /**
+     * @return true if nothing is queued or being deployed, so the shard has every change made so far
+     */
+    public synchronized boolean isIdle() {
+        // counted rather than read off the queue: a deployment just polled is neither queued nor flagged yet
+        return processedCount.get() >= enqueuedCount;
+    }
+
     // hard stop
     public void destroy() {
         logger.info("Destroying DeployDispatcher");
@@ -10,14 +10,14 @@ import com.google.protobuf.ByteString;
 import com.google.protobuf.ProtocolStringList;
 import com.rfksystems.blake2b.Blake2b;
 import com.rfksystems.blake2b.security.Blake2bProvider;
+import io.f1r3fly.f1r3drive.blockchain.rholang.RholangExpressionConstructor;
 import io.f1r3fly.f1r3drive.fuse.FuseException;
 import fr.acinq.secp256k1.Hex;
 import fr.acinq.secp256k1.Secp256k1;
 import io.f1r3fly.f1r3drive.errors.F1r3flyDeployError;
 import io.f1r3fly.f1r3drive.errors.F1r3DriveError;
 import io.f1r3fly.f1r3drive.errors.NoDataByPath;
-import io.grpc.ManagedChannel;
-import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
 import io.smallrye.mutiny.Uni;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,6 +30,7 @@ import java.security.Security;
 import java.time.Duration;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 public class F1r3flyBlockchainClient {
@@ -43,36 +44,58 @@ public class F1r3flyBlockchainClient {
     private static final int RETRIES = 10;
     private static final int MAX_MESSAGE_SIZE = Integer.MAX_VALUE; // ~2 GB
 
-    private final DeployServiceGrpc.DeployServiceFutureStub validatorDeployService;
-    private final ProposeServiceGrpc.ProposeServiceFutureStub validatorProposeService;
-    private final DeployServiceGrpc.DeployServiceFutureStub observerDeployService;
+    private final GrpcTransport transport;
+    private final ManagedChannelPool validatorChannels;
+    private final ManagedChannelPool observerChannels;
 
 
     public F1r3flyBlockchainClient(String validatorHost,
                                    int validatorPort,
                                    String observerHost,
                                    int observerPort
+    ) {
+        this(validatorHost, validatorPort, observerHost, observerPort, GrpcTransportConfig.defaultConfig());
+    }
+
+    public F1r3flyBlockchainClient(String validatorHost,
+                                   int validatorPort,
+                                   String observerHost,
+                                   int observerPort,
+                                   GrpcTransportConfig transportConfig
     ) {
         super();
 
         Security.addProvider(new Blake2bProvider());
 
-        ManagedChannel validatorChannel = ManagedChannelBuilder.forAddress(validatorHost, validatorPort).usePlaintext().build();
+        this.transport = new GrpcTransport(transportConfig);
+        this.validatorChannels = transport.channelPool(validatorHost, validatorPort);
+        this.observerChannels = transport.channelPool(observerHost, observerPort);
+    }
 
-        this.validatorDeployService = DeployServiceGrpc.newFutureStub(validatorChannel)
+    // Stubs are cheap; a new one per call picks the next connection of the pool
+    private DeployServiceGrpc.DeployServiceFutureStub validatorDeployService() {
+        return DeployServiceGrpc.newFutureStub(validatorChannels.next())
             .withMaxInboundMessageSize(MAX_MESSAGE_SIZE)
             .withMaxOutboundMessageSize(MAX_MESSAGE_SIZE);
-        this.validatorProposeService = ProposeServiceGrpc.newFutureStub(validatorChannel)
+    }
+
+    private ProposeServiceGrpc.ProposeServiceFutureStub validatorProposeService() {
+        return ProposeServiceGrpc.newFutureStub(validatorChannels.next())
             .withMaxInboundMessageSize(MAX_MESSAGE_SIZE)
             .withMaxOutboundMessageSize(MAX_MESSAGE_SIZE);
+    }
 
-        ManagedChannel observerChannel = ManagedChannelBuilder.forAddress(observerHost, observerPort).usePlaintext().build();
-
-        this.observerDeployService = DeployServiceGrpc.newFutureStub(observerChannel)
+    private DeployServiceGrpc.DeployServiceFutureStub observerDeployService() {
+        return DeployServiceGrpc.newFutureStub(observerChannels.next())
             .withMaxInboundMessageSize(MAX_MESSAGE_SIZE)
             .withMaxOutboundMessageSize(MAX_MESSAGE_SIZE);
     }
 
+    public void shutdown() {
+        LOGGER.info("Shutting down blockchain client");
+        transport.shutdown();
+    }
+
     // Cut down on verbosity of surfacing successes
     private <T> Uni<T> succeed(T t) {
         return Uni.createFrom().item(t);
@@ -91,7 +114,7 @@ public class F1r3flyBlockchainClient {
     public DeployServiceCommon.BlockInfo getGenesisBlock() throws F1r3DriveError {
         DeployServiceV1.LastFinalizedBlockResponse response = null;
             try {
-                response = observerDeployService.lastFinalizedBlock(DeployServiceCommon.LastFinalizedBlockQuery.newBuilder().build()).get();
+                response = observerDeployService().lastFinalizedBlock(DeployServiceCommon.LastFinalizedBlockQuery.newBuilder().build()).get();
             } catch (InterruptedException | ExecutionException e) {
                 LOGGER.error("Error retrieving last finalized block", e);
                 throw new F1r3DriveError("Error retrieving last finalized block", e);
@@ -101,7 +124,7 @@ public class F1r3flyBlockchainClient {
 
         while (block.getBlockInfo().getBlockNumber() > 0) {
             try {
-                block = observerDeployService.getBlock(
+                block = observerDeployService().getBlock(
                     DeployServiceCommon.BlockQuery.newBuilder()
                         .setHash(block.getBlockInfo().getParentsHashList(0))
                         .build()
@@ -115,6 +138,22 @@ public class F1r3flyBlockchainClient {
         return block;
     }
 
+    public String getLastFinalizedBlockHash() throws F1r3DriveError {
+        DeployServiceV1.LastFinalizedBlockResponse response;
+        try {
+            response = observerDeployService().lastFinalizedBlock(DeployServiceCommon.LastFinalizedBlockQuery.newBuilder().build()).get();
+        } catch (InterruptedException | ExecutionException e) {
+            LOGGER.error("Error retrieving last finalized block", e);
+            throw new F1r3DriveError("Error retrieving last finalized block", e);
+        }
+
+        if (response.hasError()) {
+            throw new F1r3DriveError("Error retrieving last finalized block: " + gatherErrors(response.getError()));
+        }
+
+        return response.getBlockInfo().getBlockInfo().getBlockHash();
+    }
+
     public RhoTypes.Expr exploratoryDeploy(String rhoCode) throws F1r3DriveError {
         try {
             LOGGER.debug("Exploratory deploy code {}", rhoCode);
@@ -127,7 +166,7 @@ public class F1r3flyBlockchainClient {
 
             // Deploy
             DeployServiceV1.ExploratoryDeployResponse deployResponse =
-                observerDeployService.exploratoryDeploy(exploratoryDeploy).get();
+                observerDeployService().exploratoryDeploy(exploratoryDeploy).get();
 
             if (deployResponse.hasError()) {
                 LOGGER.debug("Exploratory deploy code {}. Error response {}", rhoCode, deployResponse.getError());
@@ -166,7 +205,7 @@ public class F1r3flyBlockchainClient {
 
             // Deploy
             Uni<String> deployVolumeContract =
-                Uni.createFrom().future(validatorDeployService.doDeploy(signed))
+                Uni.createFrom().future(validatorDeployService().doDeploy(signed))
                     .flatMap(deployResponse -> {
 //                        LOGGER.trace("Deploy Response {}", deployResponse);
                         if (deployResponse.hasError()) {
@@ -177,7 +216,7 @@ public class F1r3flyBlockchainClient {
                     })
                     .flatMap(deployResult -> {
                         String deployId = deployResult.substring(deployResult.indexOf("DeployId is: ") + 13, deployResult.length());
-                        return Uni.createFrom().future(validatorProposeService.propose(ProposeServiceCommon.ProposeQuery.newBuilder().setIsAsync(false).build()))
+                        return Uni.createFrom().future(validatorProposeService().propose(ProposeServiceCommon.ProposeQuery.newBuilder().setIsAsync(false).build()))
                             .flatMap(proposeResponse -> {
 //                                LOGGER.debug("Propose Response {}", proposeResponse);
                                 if (proposeResponse.hasError()) {
@@ -189,7 +228,7 @@ public class F1r3flyBlockchainClient {
                     })
                     .flatMap(deployId -> {
                         ByteString b64 = ByteString.copyFrom(Hex.decode(deployId));
-                        return Uni.createFrom().future(validatorDeployService.findDeploy(DeployServiceCommon.FindDeployQuery.newBuilder().setDeployId(b64).build()))
+                        return Uni.createFrom().future(validatorDeployService().findDeploy(DeployServiceCommon.FindDeployQuery.newBuilder().setDeployId(b64).build()))
                             .flatMap(findResponse -> {
 //                                LOGGER.debug("Find Response {}", findResponse);
                                 if (findResponse.hasError()) {
@@ -201,7 +240,7 @@ public class F1r3flyBlockchainClient {
                     })
                     .flatMap(blockHash -> {
                         LOGGER.debug("Block Hash {}", blockHash);
-                        return Uni.createFrom().future(validatorDeployService.isFinalized(DeployServiceCommon.IsFinalizedQuery.newBuilder().setHash(blockHash).build()))
+                        return Uni.createFrom().future(validatorDeployService().isFinalized(DeployServiceCommon.IsFinalizedQuery.newBuilder().setHash(blockHash).build()))
                             .flatMap(isFinalizedResponse -> {
                                 LOGGER.debug("isFinalizedResponse {}", isFinalizedResponse);
                                 if (isFinalizedResponse.hasError() || !isFinalizedResponse.getIsFinalized()) {
@@ -228,6 +267,14 @@ public class F1r3flyBlockchainClient {
     }
 
     public List<RhoTypes.Par> findDataByName(String expr) throws NoDataByPath {
+        return findDataByName(expr, null);
+    }
+
+    /**
+     * @param deadline how long the node may take to answer; null for no deadline.
+     *                 An exceeded deadline is reported as {@link F1r3DriveError}, not as missing data
+     */
+    public List<RhoTypes.Par> findDataByName(String expr, Duration deadline) throws NoDataByPath {
         LOGGER.info("Find data by name {}", expr);
 
         RhoTypes.Par par = RhoTypes.Par.newBuilder().addExprs(
@@ -243,11 +290,23 @@ public class F1r3flyBlockchainClient {
             .setDepth(MAX_DEPTH)
             .build();
 
+        DeployServiceGrpc.DeployServiceFutureStub stub = validatorDeployService();
+        if (deadline != null) {
+            stub = stub.withDeadlineAfter(deadline.toMillis(), TimeUnit.MILLISECONDS);
+        }
+
         DeployServiceV1.ListeningNameDataResponse response = null;
         try {
-            response = validatorDeployService.listenForDataAtName(request).get();
+            response = stub.listenForDataAtName(request).get();
             LOGGER.debug("Find data by name {}. Is error response = {}", expr, response.hasError());
-        } catch (InterruptedException | ExecutionException e) {
+        } catch (ExecutionException e) {
+            if (Status.fromThrowable(e.getCause()).getCode() == Status.Code.DEADLINE_EXCEEDED) {
+                LOGGER.warn("Find data by name {} exceeded the deadline of {}", expr, deadline);
+                throw new F1r3DriveError("Deadline exceeded while finding data by name " + expr, e);
+            }
+            LOGGER.warn("Failed to find data by name {}", expr, e);
+            throw new NoDataByPath(expr, "", e);
+        } catch (InterruptedException e) {
             LOGGER.warn("Failed to find data by name {}", expr, e);
             throw new NoDataByPath(expr, "", e);
         }
@@ -269,6 +328,55 @@ public class F1r3flyBlockchainClient {
         }
     }
 
+    /**
+     * Reads the value of a file or directory channel without the content of the first chunk,
+     * so the answer stays small no matter how large the file is.
+     *
+     * @param deadline how long the node may take to answer; null for no deadline.
+     *                 An exceeded deadline is reported as {@link F1r3DriveError}, not as missing data
+     */
+    public RhoTypes.Expr findMetadataByName(String channelName, Duration deadline) throws NoDataByPath {
+        LOGGER.info("Find metadata by name {}", channelName);
+
+        DeployServiceCommon.ExploratoryDeployQuery query = DeployServiceCommon.ExploratoryDeployQuery.newBuilder()
+            .setTerm(RholangExpressionConstructor.readMetadataFromChannel(channelName))
+            .build();
+
+        DeployServiceGrpc.DeployServiceFutureStub stub = observerDeployService();
+        if (deadline != null) {
+            stub = stub.withDeadlineAfter(deadline.toMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        DeployServiceV1.ExploratoryDeployResponse response;
+        try {
+            response = stub.exploratoryDeploy(query).get();
+        } catch (ExecutionException e) {
+            if (Status.fromThrowable(e.getCause()).getCode() == Status.Code.DEADLINE_EXCEEDED) {
+                LOGGER.warn("Find metadata by name {} exceeded the deadline of {}", channelName, deadline);
+                throw new F1r3DriveError("Deadline exceeded while finding metadata by name " + channelName, e);
+            }
+            LOGGER.warn("Failed to find metadata by name {}", channelName, e);
+            throw new NoDataByPath(channelName, e);
+        } catch (InterruptedException e) {
+            LOGGER.warn("Failed to find metadata by name {}", channelName, e);
+            throw new NoDataByPath(channelName, e);
+        }
+
+        if (response.hasError()) {
+            LOGGER.debug("Find metadata by name {}. Error response {}", channelName, response.getError());
+            throw new NoDataByPath(channelName, new FuseException(gatherErrors(response.getError())));
+        }
+
+        // nothing is returned when the channel is empty
+        List<RhoTypes.Par> data = response.getResult().getPostBlockDataList();
+        if (data.isEmpty() || data.get(0).getExprsCount() == 0) {
+            LOGGER.debug("Find metadata by name {}. No data found", channelName);
+            throw new NoDataByPath(channelName);
+        }
+
+        return data.get(0).getExprs(0);
+    }
+
     public List<RhoTypes.Par> getDataAtBlockByName(String blockHash, String expr) throws NoDataByPath {
         LOGGER.info("Get data at block {} by name {}", blockHash, expr);
 
@@ -285,7 +393,7 @@ public class F1r3flyBlockchainClient {
 
         casper.v1.DeployServiceV1.RhoDataResponse response = null;
         try {
-            response = validatorDeployService.getDataAtName(request).get();
+            response = validatorDeployService().getDataAtName(request).get();
             LOGGER.debug("Get data at block {} by name {}. Is error response = {}", blockHash, expr, response.hasError());
         } catch (InterruptedException | ExecutionException e) {
             LOGGER.warn("Failed to get data at block {} by name {}", blockHash, expr, e);
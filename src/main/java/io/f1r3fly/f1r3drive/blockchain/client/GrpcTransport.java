@@ -0,0 +1,111 @@
+package io.f1r3fly.f1r3drive.blockchain.client;
+
+import io.grpc.ManagedChannel;
+import io.grpc.netty.NettyChannelBuilder;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Owns the Netty event loop and the callback executor shared by every channel pool,
+ * so the number of transport threads doesn't grow with the number of nodes or channels.
+ */
+public class GrpcTransport {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GrpcTransport.class);
+
+    private static final long SHUTDOWN_TIMEOUT_MS = 5000;
+
+    private final GrpcTransportConfig config;
+    private final EventLoopGroup eventLoopGroup;
+    private final Class<? extends SocketChannel> channelType;
+    private final ExecutorService executor;
+    private final List<ManagedChannelPool> pools = new ArrayList<>();
+
+    public GrpcTransport(GrpcTransportConfig config) {
+        this.config = config;
+
+        boolean useEpoll = config.isPreferNativeTransport() && Epoll.isAvailable();
+        if (useEpoll) {
+            this.eventLoopGroup = new EpollEventLoopGroup(config.getEventLoopThreads(), daemonThreadFactory("grpc-epoll"));
+            this.channelType = EpollSocketChannel.class;
+        } else {
+            this.eventLoopGroup = new NioEventLoopGroup(config.getEventLoopThreads(), daemonThreadFactory("grpc-nio"));
+            this.channelType = NioSocketChannel.class;
+        }
+        LOGGER.info("gRPC transport: {} ({} event loop threads, {} executor threads, {} channels per endpoint)",
+            useEpoll ? "epoll" : "nio",
+            config.getEventLoopThreads(),
+            config.getExecutorThreads(),
+            config.getChannelsPerEndpoint());
+
+        this.executor = Executors.newFixedThreadPool(config.getExecutorThreads(), daemonThreadFactory("grpc-executor"));
+    }
+
+    public synchronized ManagedChannelPool channelPool(String host, int port) {
+        List<ManagedChannel> channels = new ArrayList<>(config.getChannelsPerEndpoint());
+        for (int i = 0; i < config.getChannelsPerEndpoint(); i++) {
+            channels.add(NettyChannelBuilder.forAddress(host, port)
+                .usePlaintext()
+                .eventLoopGroup(eventLoopGroup)
+                .channelType(channelType)
+                .executor(executor)
+                .flowControlWindow(config.getFlowControlWindowBytes())
+                .keepAliveTime(config.getKeepAliveTimeMs(), TimeUnit.MILLISECONDS)
+                .keepAliveTimeout(config.getKeepAliveTimeoutMs(), TimeUnit.MILLISECONDS)
+                .keepAliveWithoutCalls(config.isKeepAliveWithoutCalls())
+                .maxInboundMessageSize(config.getMaxInboundMessageSize())
+                .build());
+        }
+
+        ManagedChannelPool pool = new ManagedChannelPool(host + ":" + port, channels);
+        pools.add(pool);
+        return pool;
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    public synchronized void shutdown() {
+        pools.forEach(ManagedChannelPool::shutdown);
+        try {
+            for (ManagedChannelPool pool : pools) {
+                if (!pool.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    LOGGER.warn("Channels to {} did not terminate gracefully", pool.getTarget());
+                    pool.shutdownNow();
+                }
+            }
+        } catch (InterruptedException e) {
+            pools.forEach(ManagedChannelPool::shutdownNow);
+            Thread.currentThread().interrupt();
+        }
+        pools.clear();
+
+        executor.shutdown();
+        eventLoopGroup.shutdownGracefully(0, SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private static ThreadFactory daemonThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
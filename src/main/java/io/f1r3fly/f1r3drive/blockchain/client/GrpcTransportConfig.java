@@ -0,0 +1,170 @@
+package io.f1r3fly.f1r3drive.blockchain.client;
+
+/**
+ * Configuration of the gRPC transport used to talk to the F1r3fly validator and observer nodes.
+ */
+public class GrpcTransportConfig {
+
+    private final int channelsPerEndpoint;
+    private final int executorThreads;
+    private final int eventLoopThreads;
+    private final int flowControlWindowBytes;
+    private final long keepAliveTimeMs;
+    private final long keepAliveTimeoutMs;
+    private final boolean keepAliveWithoutCalls;
+    private final int maxInboundMessageSize;
+    private final boolean preferNativeTransport;
+
+    private GrpcTransportConfig(Builder builder) {
+        this.channelsPerEndpoint = builder.channelsPerEndpoint;
+        this.executorThreads = builder.executorThreads;
+        this.eventLoopThreads = builder.eventLoopThreads;
+        this.flowControlWindowBytes = builder.flowControlWindowBytes;
+        this.keepAliveTimeMs = builder.keepAliveTimeMs;
+        this.keepAliveTimeoutMs = builder.keepAliveTimeoutMs;
+        this.keepAliveWithoutCalls = builder.keepAliveWithoutCalls;
+        this.maxInboundMessageSize = builder.maxInboundMessageSize;
+        this.preferNativeTransport = builder.preferNativeTransport;
+    }
+
+    /**
+     * Number of HTTP/2 connections opened to each node. Calls are spread round-robin across them,
+     * so large uploads don't serialize on a single connection's flow-control window.
+     */
+    public int getChannelsPerEndpoint() {
+        return channelsPerEndpoint;
+    }
+
+    public int getExecutorThreads() {
+        return executorThreads;
+    }
+
+    public int getEventLoopThreads() {
+        return eventLoopThreads;
+    }
+
+    public int getFlowControlWindowBytes() {
+        return flowControlWindowBytes;
+    }
+
+    /**
+     * Interval of HTTP/2 keepalive pings. A gRPC server by default closes connections that ping more often
+     * than every 5 minutes with GOAWAY too_many_pings; a shorter interval needs the node to permit it.
+     */
+    public long getKeepAliveTimeMs() {
+        return keepAliveTimeMs;
+    }
+
+    public long getKeepAliveTimeoutMs() {
+        return keepAliveTimeoutMs;
+    }
+
+    /**
+     * Ping also connections with no call in flight. A gRPC server by default treats those pings as abuse, so
+     * idle pooled connections would be closed and opened again; it needs the node to permit them.
+     */
+    public boolean isKeepAliveWithoutCalls() {
+        return keepAliveWithoutCalls;
+    }
+
+    public int getMaxInboundMessageSize() {
+        return maxInboundMessageSize;
+    }
+
+    /**
+     * Use Netty epoll when it is available (Linux); NIO is used otherwise.
+     */
+    public boolean isPreferNativeTransport() {
+        return preferNativeTransport;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static GrpcTransportConfig defaultConfig() {
+        return builder().build();
+    }
+
+    public static class Builder {
+        private int channelsPerEndpoint = 4;
+        private int executorThreads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+        private int eventLoopThreads = Runtime.getRuntime().availableProcessors();
+        private int flowControlWindowBytes = 16 * 1024 * 1024; // 16 mb
+        private long keepAliveTimeMs = 300_000; // the least a gRPC server permits by default
+        private long keepAliveTimeoutMs = 10_000;
+        private boolean keepAliveWithoutCalls = false;
+        private int maxInboundMessageSize = Integer.MAX_VALUE; // ~2 GB
+        private boolean preferNativeTransport = true;
+
+        public Builder channelsPerEndpoint(int channelsPerEndpoint) {
+            if (channelsPerEndpoint <= 0) {
+                throw new IllegalArgumentException("Channels per endpoint must be positive");
+            }
+            this.channelsPerEndpoint = channelsPerEndpoint;
+            return this;
+        }
+
+        public Builder executorThreads(int executorThreads) {
+            if (executorThreads <= 0) {
+                throw new IllegalArgumentException("Executor threads must be positive");
+            }
+            this.executorThreads = executorThreads;
+            return this;
+        }
+
+        public Builder eventLoopThreads(int eventLoopThreads) {
+            if (eventLoopThreads <= 0) {
+                throw new IllegalArgumentException("Event loop threads must be positive");
+            }
+            this.eventLoopThreads = eventLoopThreads;
+            return this;
+        }
+
+        public Builder flowControlWindowBytes(int flowControlWindowBytes) {
+            if (flowControlWindowBytes <= 0) {
+                throw new IllegalArgumentException("Flow control window must be positive");
+            }
+            this.flowControlWindowBytes = flowControlWindowBytes;
+            return this;
+        }
+
+        public Builder keepAliveTimeMs(long keepAliveTimeMs) {
+            if (keepAliveTimeMs <= 0) {
+                throw new IllegalArgumentException("Keepalive time must be positive");
+            }
+            this.keepAliveTimeMs = keepAliveTimeMs;
+            return this;
+        }
+
+        public Builder keepAliveTimeoutMs(long keepAliveTimeoutMs) {
+            if (keepAliveTimeoutMs <= 0) {
+                throw new IllegalArgumentException("Keepalive timeout must be positive");
+            }
+            this.keepAliveTimeoutMs = keepAliveTimeoutMs;
+            return this;
+        }
+
+        public Builder keepAliveWithoutCalls(boolean keepAliveWithoutCalls) {
+            this.keepAliveWithoutCalls = keepAliveWithoutCalls;
+            return this;
+        }
+
+        public Builder maxInboundMessageSize(int maxInboundMessageSize) {
+            if (maxInboundMessageSize <= 0) {
+                throw new IllegalArgumentException("Max inbound message size must be positive");
+            }
+            this.maxInboundMessageSize = maxInboundMessageSize;
+            return this;
+        }
+
+        public Builder preferNativeTransport(boolean preferNativeTransport) {
+            this.preferNativeTransport = preferNativeTransport;
+            return this;
+        }
+
+        public GrpcTransportConfig build() {
+            return new GrpcTransportConfig(this);
+        }
+    }
+}
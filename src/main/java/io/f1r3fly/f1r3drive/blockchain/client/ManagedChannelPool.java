@@ -0,0 +1,57 @@
+package io.f1r3fly.f1r3drive.blockchain.client;
+
+import io.grpc.ManagedChannel;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed set of channels to one endpoint. Each channel is a separate HTTP/2 connection,
+ * calls are spread across them round-robin.
+ */
+public class ManagedChannelPool {
+
+    private final String target;
+    private final List<ManagedChannel> channels;
+    private final AtomicInteger next = new AtomicInteger();
+
+    ManagedChannelPool(String target, List<ManagedChannel> channels) {
+        if (channels.isEmpty()) {
+            throw new IllegalArgumentException("Channel pool for %s must not be empty".formatted(target));
+        }
+        this.target = target;
+        this.channels = List.copyOf(channels);
+    }
+
+    public ManagedChannel next() {
+        return channels.get(Math.floorMod(next.getAndIncrement(), channels.size()));
+    }
+
+    public int size() {
+        return channels.size();
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public void shutdown() {
+        channels.forEach(ManagedChannel::shutdown);
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (ManagedChannel channel : channels) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || !channel.awaitTermination(remaining, TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void shutdownNow() {
+        channels.forEach(ManagedChannel::shutdownNow);
+    }
+}
@@ -1,5 +1,8 @@
 package io.f1r3fly.f1r3drive.blockchain.rholang;
 
+import com.google.protobuf.ByteString;
+import io.f1r3fly.f1r3drive.encryption.ChunkManifest;
+import io.f1r3fly.f1r3drive.encryption.ContentCodec;
 import org.apache.commons.codec.binary.Hex;
 import org.jetbrains.annotations.NotNull;
 import rhoapi.RhoTypes;
@@ -20,17 +23,48 @@ public class RholangExpressionConstructor {
     private static final String CHILDREN = "children";
     private static final String LAST_UPDATED = "lastUpdated";
     private static final String OTHER_CHUNKS = "otherChunks";
+    private static final String SIZE = "size";
+    private static final String CHUNK_HASHES = "chunkHashes";
+    // root of the chunk hashes, see ChunkManifest
+    private static final String MERKLE_ROOT = "merkleRoot";
+    // how the chunks of a file are compressed, see ContentCodec
+    private static final String CODEC = "codec";
+    // set on the manifest entry of a file kept in the channel of its directory
+    private static final String INLINE = "inline";
+    // content of the files kept in the channel of a directory, by name
+    private static final String INLINE_FILES = "inlineFiles";
+
+    // not a path, so it never clashes with a file or directory channel
+    private static final String MANIFEST_CHANNEL_PREFIX = "manifest:";
+    // channels named by the hash of what they hold: written once and shared by every file and wallet
+    private static final String BLOCK_CHANNEL_PREFIX = "block:";
+    private static final String CHUNK_CHANNEL_PREFIX = "chunk:";
+
+    // a file whose size was never deployed (written before the field existed)
+    public static final long UNKNOWN_SIZE = -1;
 
     /**
      * Represents a file or a folder
      *
      * @param type        "f" for file, "d" for directory
      * @param lastUpdated timestamp of the last update
-     * @param firstChunk content of the file; null for a folder
+     * @param firstChunk content of the file, as received from the node (not copied);
+     *                    null for a folder or when only the metadata was read
      * @param children    list of children; null for a file
      * @param otherChunks map of sub channels; null for a folder
+     * @param size        size of the file content in bytes; {@link #UNKNOWN_SIZE} for a folder or a file without the field
+     * @param chunkHashes hex Blake2b-256 hashes of the deployed chunks by chunk number; null for a folder
+     * @param merkleRoot  {@link ChunkManifest#merkleRoot root} of the chunk hashes, computed for a file deployed
+     *                    without one; null for a folder
+     * @param codec       how the chunks of the file are compressed, {@link ContentCodec#NONE} for a file deployed
+     *                    without one; null for a folder
+     * @param inline      true for a manifest entry of a file kept in the channel of its directory
+     * @param inlineFiles content of the files kept in the channel of a folder, by name, as received from the node;
+     *                    null for a file
      */
-    public record ChannelData(String type, long lastUpdated, byte[] firstChunk, Set<String> children, Map<Integer, String> otherChunks) {
+    public record ChannelData(String type, long lastUpdated, ByteString firstChunk, Set<String> children, Map<Integer, String> otherChunks, long size,
+                              Map<Integer, String> chunkHashes, String merkleRoot, String codec, boolean inline,
+                              Map<String, ByteString> inlineFiles) {
         public boolean isFile() {
             return type.equals(FILE_TYPE);
         }
@@ -61,7 +95,7 @@ public class RholangExpressionConstructor {
 
     //** Creates a chanel with a file */
     public static String sendEmptyFileIntoNewChanel(String channelName, long lastUpdated) {
-        // output looks like: @"path"!({"type":"f","firstChunk":[]}, "otherChunks":{}, "lastUpdated":123})
+        // output looks like: @"path"!({"type":"f","firstChunk":[],"otherChunks":{},"chunkHashes":{},"size":0,"lastUpdated":123})
         return new StringBuilder()
             .append("@\"")
             .append(channelName)
@@ -74,6 +108,10 @@ public class RholangExpressionConstructor {
             .append("\":[],\"")
             .append(OTHER_CHUNKS)
             .append("\":{},\"")
+            .append(CHUNK_HASHES)
+            .append("\":{},\"")
+            .append(SIZE)
+            .append("\":0,\"")
             .append(LAST_UPDATED)
             .append("\":")
             .append(lastUpdated)
@@ -122,16 +160,84 @@ public class RholangExpressionConstructor {
             .append("\"){")
             .append("@\"")
             .append(chanel)
-            .append("\"!(v.set(\"")
+            .append("\"!(v")
+            .append(childrenSetters(newChildren, lastUpdated))
+            .append(")")
+            .append("}")
+            .toString();
+    }
+
+    /**
+     * Like {@link #updateChildren}, and keeps the content of a new child in the directory channel,
+     * see {@link #setInlineFile}.
+     */
+    public static String updateChildrenWithInlineFile(String chanel, Set<String> newChildren, long lastUpdated,
+                                                      String name, byte[] content) {
+        // output looks like:
+        // for(@v <- @"path"){
+        //      @"path"!(v.set("lastUpdated",123).set("children",["a"]).set("inlineFiles",v.getOrElse("inlineFiles",{}).set("a","".hexToBytes())))
+        // }
+        return new StringBuilder()
+            .append("for(@v <- @\"")
+            .append(chanel)
+            .append("\"){")
+            .append("@\"")
+            .append(chanel)
+            .append("\"!(v")
+            .append(childrenSetters(newChildren, lastUpdated))
+            .append(inlineFilesSetter(".set(" + string2RholngString(name) + ",\"" + Hex.encodeHexString(content) + "\".hexToBytes())"))
+            .append(")}")
+            .toString();
+    }
+
+    //** Keeps the content of a file in the channel of its directory, in place of a channel of its own */
+    public static String setInlineFile(String directoryChanel, String name, byte[] content) {
+        // output looks like:
+        // for(@v <- @"path"){
+        //      @"path"!(v.set("inlineFiles",v.getOrElse("inlineFiles",{}).set("name","base16encodedContent".hexToBytes())))
+        // }
+        return updateInlineFiles(directoryChanel,
+            ".set(" + string2RholngString(name) + ",\"" + Hex.encodeHexString(content) + "\".hexToBytes())");
+    }
+
+    public static String removeInlineFile(String directoryChanel, String name) {
+        // output looks like:
+        // for(@v <- @"path"){
+        //      @"path"!(v.set("inlineFiles",v.getOrElse("inlineFiles",{}).delete("name")))
+        // }
+        return updateInlineFiles(directoryChanel, ".delete(" + string2RholngString(name) + ")");
+    }
+
+    private static String updateInlineFiles(String directoryChanel, String change) {
+        return new StringBuilder()
+            .append("for(@v <- @\"")
+            .append(directoryChanel)
+            .append("\"){")
+            .append("@\"")
+            .append(directoryChanel)
+            .append("\"!(v")
+            .append(inlineFilesSetter(change))
+            .append(")}")
+            .toString();
+    }
+
+    // a directory written before inline files has no map yet
+    private static String inlineFilesSetter(String change) {
+        return ".set(\"" + INLINE_FILES + "\",v.getOrElse(\"" + INLINE_FILES + "\",{})" + change + ")";
+    }
+
+    // output looks like: .set("lastUpdated",123).set("children",["a","b"])
+    private static String childrenSetters(Set<String> children, long lastUpdated) {
+        return new StringBuilder()
+            .append(".set(\"")
             .append(LAST_UPDATED)
             .append("\",")
             .append(lastUpdated)
             .append(").set(\"")
             .append(CHILDREN)
             .append("\",")
-            .append(set2String(newChildren))
-            .append("))")
-            .append("}")
+            .append(set2String(children))
+            .append(")")
             .toString();
     }
 
@@ -174,10 +280,10 @@ public class RholangExpressionConstructor {
             .toString();
     }
 
-    public static String updateOtherChunksMap(String chanel, Map<Integer, String> otherChunks) {
+    public static String appendFileContent(String chanel, byte[] tail) {
         // output looks like:
         // for(@v <- @"path"){
-        //      @"path"!(v.set("otherChunks", {1:"subChannel"}))
+        //      @"path"!(v.set("firstChunk", v.get("firstChunk") ++ "base16encodedTail".hexToBytes()))
         // }
 
         return new StringBuilder()
@@ -187,17 +293,306 @@ public class RholangExpressionConstructor {
             .append("@\"")
             .append(chanel)
             .append("\"!(v.set(\"")
+            .append(FIRST_CHUNK)
+            .append("\",v.get(\"")
+            .append(FIRST_CHUNK)
+            .append("\") ++ \"")
+            .append(Hex.encodeHexString(tail))
+            .append("\".hexToBytes()))}")
+            .toString();
+    }
+
+    public static String updateFileMetadata(String chanel, Map<Integer, String> otherChunks, Map<Integer, String> chunkHashes,
+                                            String codec, long size, long lastUpdated) {
+        // output looks like:
+        // for(@v <- @"path"){
+        //      @"path"!(v.set("otherChunks", {1:"subChannel"}).set("chunkHashes", {0:"ab01"}).set("merkleRoot", "cd02")
+        //          .set("codec", "deflate").set("size", 123).set("lastUpdated", 123))
+        // }
+
+        return new StringBuilder()
+            .append("for(@v <- @\"")
+            .append(chanel)
+            .append("\"){")
+            .append("@\"")
+            .append(chanel)
+            .append("\"!(v")
+            .append(fileMetadataSetters(otherChunks, chunkHashes, codec, size, lastUpdated))
+            .append(")}")
+            .toString();
+    }
+
+    private static String fileMetadataSetters(Map<Integer, String> otherChunks, Map<Integer, String> chunkHashes,
+                                              String codec, long size, long lastUpdated) {
+        return new StringBuilder()
+            .append(".set(\"")
             .append(OTHER_CHUNKS)
-            .append("\",{")
+            .append("\",")
+            .append(intMap2String(otherChunks))
+            .append(").set(\"")
+            .append(CHUNK_HASHES)
+            .append("\",")
+            .append(intMap2String(chunkHashes))
+            .append(").set(\"")
+            .append(MERKLE_ROOT)
+            .append("\",")
+            .append(string2RholngString(ChunkManifest.merkleRoot(chunkHashes)))
+            .append(").set(\"")
+            .append(CODEC)
+            .append("\",")
+            .append(string2RholngString(codec))
+            .append(").set(\"")
+            .append(SIZE)
+            .append("\",")
+            .append(size)
+            .append(").set(\"")
+            .append(LAST_UPDATED)
+            .append("\",")
+            .append(lastUpdated)
+            .append(")")
+            .toString();
+    }
+
+    /**
+     * Like {@link #updateFileMetadata}, but changes only the given entries of the chunk maps, so the expression
+     * does not grow with the number of chunks. Entries that are gone need the full maps.
+     *
+     * @param merkleRoot root of all the chunk hashes after the change
+     */
+    public static String updateFileMetadataDelta(String chanel, Map<Integer, String> changedChunks,
+                                                 Map<Integer, String> changedHashes, String merkleRoot, String codec,
+                                                 long size, long lastUpdated) {
+        // output looks like:
+        // for(@v <- @"path"){
+        //      @"path"!(v.set("chunkHashes", v.getOrElse("chunkHashes", {}).set(1, "ab01")).set("merkleRoot", "cd02")
+        //          .set("codec", "deflate").set("size", 123).set("lastUpdated", 123))
+        // }
+
+        return new StringBuilder()
+            .append("for(@v <- @\"")
+            .append(chanel)
+            .append("\"){")
+            .append("@\"")
+            .append(chanel)
+            .append("\"!(v")
+            .append(fileMetadataDeltaSetters("v", changedChunks, changedHashes, merkleRoot, codec, size, lastUpdated))
+            .append(")}")
+            .toString();
+    }
+
+    private static String fileMetadataDeltaSetters(String metadata, Map<Integer, String> changedChunks,
+                                                   Map<Integer, String> changedHashes, String merkleRoot, String codec,
+                                                   long size, long lastUpdated) {
+        return new StringBuilder()
+            .append(intMapDeltaSetter(metadata, OTHER_CHUNKS, changedChunks))
+            .append(intMapDeltaSetter(metadata, CHUNK_HASHES, changedHashes))
+            .append(".set(\"")
+            .append(MERKLE_ROOT)
+            .append("\",")
+            .append(string2RholngString(merkleRoot))
+            .append(").set(\"")
+            .append(CODEC)
+            .append("\",")
+            .append(string2RholngString(codec))
+            .append(").set(\"")
+            .append(SIZE)
+            .append("\",")
+            .append(size)
+            .append(").set(\"")
+            .append(LAST_UPDATED)
+            .append("\",")
+            .append(lastUpdated)
+            .append(")")
+            .toString();
+    }
+
+    // output looks like: .set("chunkHashes",v.getOrElse("chunkHashes",{}).set(1,"a").set(2,"b")), or nothing if unchanged.
+    // Channels made by older versions or by sendEmptyFileIntoNewChanel may lack the map: Nil.set would fail after the
+    // value was consumed, leaving the channel empty
+    private static String intMapDeltaSetter(String metadata, String key, Map<Integer, String> changes) {
+        if (changes.isEmpty()) {
+            return "";
+        }
+        StringBuilder setter = new StringBuilder()
+            .append(".set(\"")
+            .append(key)
+            .append("\",")
+            .append(metadata)
+            .append(".getOrElse(\"")
+            .append(key)
+            .append("\",{})");
+        changes.forEach((chunkNumber, value) ->
+            setter.append(".set(").append(chunkNumber).append(",").append(string2RholngString(value)).append(")"));
+        return setter.append(")").toString();
+    }
+
+    /**
+     * Name of the channel holding the metadata of every file and directory of a wallet, keyed by path.
+     * Each entry has the same fields as the path channel, without {@code firstChunk}.
+     */
+    public static String manifestChannel(String revAddress) {
+        return MANIFEST_CHANNEL_PREFIX + revAddress;
+    }
+
+    public static String fileManifestEntry(long lastUpdated, long size, Map<Integer, String> otherChunks,
+                                           Map<Integer, String> chunkHashes) {
+        return fileManifestEntry(lastUpdated, size, otherChunks, chunkHashes, ContentCodec.NONE, false);
+    }
+
+    /**
+     * @param codec  how the chunks are compressed, see {@link ContentCodec}
+     * @param inline true for a file kept in the channel of its directory, see {@link #setInlineFile}
+     */
+    public static String fileManifestEntry(long lastUpdated, long size, Map<Integer, String> otherChunks,
+                                           Map<Integer, String> chunkHashes, String codec, boolean inline) {
+        // output looks like:
+        // {"type":"f","lastUpdated":123,"size":0,"otherChunks":{},"chunkHashes":{},"merkleRoot":"cd02","codec":"none","inline":true}
+        return new StringBuilder()
+            .append("{\"")
+            .append(TYPE)
+            .append("\":\"")
+            .append(FILE_TYPE)
+            .append("\",\"")
+            .append(LAST_UPDATED)
+            .append("\":")
+            .append(lastUpdated)
+            .append(",\"")
+            .append(SIZE)
+            .append("\":")
+            .append(size)
+            .append(",\"")
+            .append(OTHER_CHUNKS)
+            .append("\":")
+            .append(intMap2String(otherChunks))
+            .append(",\"")
+            .append(CHUNK_HASHES)
+            .append("\":")
+            .append(intMap2String(chunkHashes))
+            .append(",\"")
+            .append(MERKLE_ROOT)
+            .append("\":")
+            .append(string2RholngString(ChunkManifest.merkleRoot(chunkHashes)))
+            .append(",\"")
+            .append(CODEC)
+            .append("\":")
+            .append(string2RholngString(codec))
+            .append(inline ? ",\"" + INLINE + "\":true" : "")
+            .append("}")
+            .toString();
+    }
+
+    public static String directoryManifestEntry(Set<String> children, long lastUpdated) {
+        // output looks like: {"type":"d","children":["a","b"],"lastUpdated":123}
+        return new StringBuilder()
+            .append("{\"")
+            .append(TYPE)
+            .append("\":\"")
+            .append(DIR_TYPE)
+            .append("\",\"")
+            .append(CHILDREN)
+            .append("\":")
+            .append(set2String(children))
+            .append(",\"")
+            .append(LAST_UPDATED)
+            .append("\":")
+            .append(lastUpdated)
+            .append("}")
+            .toString();
+    }
+
+    //** Creates a manifest channel from entries rendered by fileManifestEntry and directoryManifestEntry */
+    public static String sendManifestIntoNewChannel(String manifestChannel, Map<String, String> entries) {
+        // output looks like: @"manifest:rev"!({"/rev":{...},"/rev/a.txt":{...}})
+        return new StringBuilder()
+            .append("@\"")
+            .append(manifestChannel)
+            .append("\"!({")
             .append(
-                otherChunks.entrySet().stream()
-                    .map(e -> e.getKey() + ": " + string2RholngString(e.getValue()))
+                entries.entrySet().stream()
+                    .map(e -> string2RholngString(e.getKey()) + ":" + e.getValue())
                     .collect(Collectors.joining(LIST_DELIMITER))
             )
-            .append("}))}")
+            .append("})")
+            .toString();
+    }
+
+    public static String setManifestEntry(String manifestChannel, String path, String entry) {
+        // output looks like: for(@m <- @"manifest:rev"){ @"manifest:rev"!(m.set("path", {...})) }
+        return replaceManifest(manifestChannel, "m.set(" + string2RholngString(path) + "," + entry + ")");
+    }
+
+    public static String removeManifestEntry(String manifestChannel, String path) {
+        // output looks like: for(@m <- @"manifest:rev"){ @"manifest:rev"!(m.delete("path")) }
+        return replaceManifest(manifestChannel, "m.delete(" + string2RholngString(path) + ")");
+    }
+
+    public static String renameManifestEntry(String manifestChannel, String oldPath, String newPath) {
+        // output looks like:
+        // for(@m <- @"manifest:rev"){
+        //      match m.get("oldPath") { Nil => @"manifest:rev"!(m)  e => @"manifest:rev"!(m.delete("oldPath").set("newPath", e)) }
+        // }
+        return updateManifestEntry(manifestChannel, oldPath,
+            "m.delete(" + string2RholngString(oldPath) + ").set(" + string2RholngString(newPath) + ",e)");
+    }
+
+    public static String updateManifestChildren(String manifestChannel, String path, Set<String> children, long lastUpdated) {
+        return updateManifestEntry(manifestChannel, path,
+            "m.set(" + string2RholngString(path) + ",e" + childrenSetters(children, lastUpdated) + ")");
+    }
+
+    public static String updateManifestFileMetadata(String manifestChannel, String path, Map<Integer, String> otherChunks,
+                                                    Map<Integer, String> chunkHashes, String codec, long size, long lastUpdated) {
+        return updateManifestEntry(manifestChannel, path,
+            "m.set(" + string2RholngString(path) + ",e" + fileMetadataSetters(otherChunks, chunkHashes, codec, size, lastUpdated) + ")");
+    }
+
+    public static String updateManifestFileMetadataDelta(String manifestChannel, String path, Map<Integer, String> changedChunks,
+                                                         Map<Integer, String> changedHashes, String merkleRoot, String codec,
+                                                         long size, long lastUpdated) {
+        return updateManifestEntry(manifestChannel, path,
+            "m.set(" + string2RholngString(path) + ",e"
+                + fileMetadataDeltaSetters("e", changedChunks, changedHashes, merkleRoot, codec, size, lastUpdated) + ")");
+    }
+
+    // an entry that is missing is left missing instead of being created without a type
+    private static String updateManifestEntry(String manifestChannel, String path, String newManifest) {
+        return new StringBuilder()
+            .append("for(@m <- @\"")
+            .append(manifestChannel)
+            .append("\"){")
+            .append("match m.get(")
+            .append(string2RholngString(path))
+            .append(") {")
+            .append("Nil => @\"")
+            .append(manifestChannel)
+            .append("\"!(m) ")
+            .append("e => @\"")
+            .append(manifestChannel)
+            .append("\"!(")
+            .append(newManifest)
+            .append(")")
+            .append("}}")
+            .toString();
+    }
+
+    private static String replaceManifest(String manifestChannel, String newManifest) {
+        return new StringBuilder()
+            .append("for(@m <- @\"")
+            .append(manifestChannel)
+            .append("\"){")
+            .append("@\"")
+            .append(manifestChannel)
+            .append("\"!(")
+            .append(newManifest)
+            .append(")}")
             .toString();
     }
 
+    //** Runs expressions in one deploy */
+    public static String parallel(String... expressions) {
+        return String.join(" | ", expressions);
+    }
+
     public static String sendFileContentChunk(String channel, byte[] chunk) {
         // output looks like:
         // @"channel"!("base16EncodedChunk".hexToBytes())
@@ -211,6 +606,73 @@ public class RholangExpressionConstructor {
             .toString();
     }
 
+    /**
+     * Name of the channel holding a block of content, by the hex hash of the block as deployed.
+     */
+    public static String blockChannel(String hash) {
+        return BLOCK_CHANNEL_PREFIX + hash;
+    }
+
+    /**
+     * Name of the channel holding the list of blocks of a chunk, by the hex hash of the chunk as deployed:
+     * its blocks one after another. Stands in for the sub channel of the chunk in {@code otherChunks},
+     * also for chunk 0.
+     */
+    public static String chunkChannel(String hash) {
+        return CHUNK_CHANNEL_PREFIX + hash;
+    }
+
+    public static boolean isChunkChannel(String channel) {
+        return channel.startsWith(CHUNK_CHANNEL_PREFIX);
+    }
+
+    /**
+     * @return the hash a {@link #chunkChannel chunk channel} is named by
+     */
+    public static String chunkChannelHash(String chunkChannel) {
+        return chunkChannel.substring(CHUNK_CHANNEL_PREFIX.length());
+    }
+
+    /**
+     * @return true for a channel named by the hash of its content; other files may refer to it, so it is
+     * never forgotten
+     */
+    public static boolean isContentAddressed(String channel) {
+        return channel.startsWith(BLOCK_CHANNEL_PREFIX) || channel.startsWith(CHUNK_CHANNEL_PREFIX);
+    }
+
+    public static String sendBlockList(String chunkChannel, List<String> blockHashes) {
+        // output looks like:
+        // @"chunk:ab01"!(["cd02","ef03"])
+
+        return new StringBuilder()
+            .append("@\"")
+            .append(chunkChannel)
+            .append("\"!([")
+            .append(blockHashes.stream().map(RholangExpressionConstructor::string2RholngString)
+                .collect(Collectors.joining(LIST_DELIMITER)))
+            .append("])")
+            .toString();
+    }
+
+    public static String appendFileContentChunk(String channel, byte[] tail) {
+        // output looks like:
+        // for(@c <- @"channel"){
+        //      @"channel"!(c ++ "base16EncodedTail".hexToBytes())
+        // }
+
+        return new StringBuilder()
+            .append("for(@c <- @\"")
+            .append(channel)
+            .append("\"){")
+            .append("@\"")
+            .append(channel)
+            .append("\"!(c ++ \"")
+            .append(Hex.encodeHexString(tail))
+            .append("\".hexToBytes())}")
+            .toString();
+    }
+
     @NotNull
     public static String string2RholngString(String stringValue) {
         // wraps a string with quotes
@@ -231,6 +693,19 @@ public class RholangExpressionConstructor {
             .toString();
     }
 
+    static String intMap2String(Map<Integer, String> emap) {
+        // output looks like: {1:"a",2:"b"}
+        return new StringBuilder()
+            .append("{")
+            .append(
+                emap.entrySet().stream()
+                    .map(e -> e.getKey() + ":" + string2RholngString(e.getValue()))
+                    .collect(Collectors.joining(LIST_DELIMITER))
+            )
+            .append("}")
+            .toString();
+    }
+
     static String map2String(Map<String, String> emap) {
         return new StringBuilder()
             .append("{")
@@ -243,14 +718,55 @@ public class RholangExpressionConstructor {
             .toString();
     }
 
-    public static @NotNull byte[] parseBytes(@NotNull List<RhoTypes.Par> pars) {
+    // returns the bytes as received from the node, without copying them
+    public static @NotNull ByteString parseBytes(@NotNull List<RhoTypes.Par> pars) {
         RhoTypes.Par par = pars.get(pars.size() - 1);
         int exprsCount = par.getExprsCount() - 1;
         if (exprsCount < 0) {
             throw new IllegalArgumentException("Empty channel data");
         }
 
-        return par.getExprs(exprsCount).getGByteArray().toByteArray();
+        return par.getExprs(exprsCount).getGByteArray();
+    }
+
+    /**
+     * Every byte array sent to a channel, the last one first. A content-addressed channel written by several
+     * deploys holds the same content several times, or content someone else sent to the name.
+     */
+    public static @NotNull List<ByteString> parseAllBytes(@NotNull List<RhoTypes.Par> pars) {
+        List<ByteString> values = new ArrayList<>(pars.size());
+        for (int i = pars.size() - 1; i >= 0; i--) {
+            RhoTypes.Par par = pars.get(i);
+            if (par.getExprsCount() > 0 && par.getExprs(par.getExprsCount() - 1).hasGByteArray()) {
+                values.add(par.getExprs(par.getExprsCount() - 1).getGByteArray());
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Every block list sent to a {@link #chunkChannel chunk channel}, the last one first, see {@link #parseAllBytes}.
+     */
+    public static @NotNull List<List<String>> parseBlockLists(@NotNull List<RhoTypes.Par> pars) {
+        List<List<String>> lists = new ArrayList<>(pars.size());
+        for (int i = pars.size() - 1; i >= 0; i--) {
+            RhoTypes.Par par = pars.get(i);
+            if (par.getExprsCount() == 0 || !par.getExprs(par.getExprsCount() - 1).hasEListBody()) {
+                continue;
+            }
+            List<RhoTypes.Par> hashes = par.getExprs(par.getExprsCount() - 1).getEListBody().getPsList();
+            List<String> list = new ArrayList<>(hashes.size());
+            for (RhoTypes.Par hash : hashes) {
+                if (hash.getExprsCount() == 0 || !hash.getExprs(hash.getExprsCount() - 1).hasGString()) {
+                    break; // not a block list; anyone may send to the channel
+                }
+                list.add(hash.getExprs(hash.getExprsCount() - 1).getGString());
+            }
+            if (list.size() == hashes.size()) {
+                lists.add(list);
+            }
+        }
+        return lists;
     }
 
     public static @NotNull ChannelData parseChannelData(@NotNull List<RhoTypes.Par> pars) throws IllegalArgumentException {
@@ -275,7 +791,8 @@ public class RholangExpressionConstructor {
     }
 
     /**
-     * Processes a list of key-value pairs and converts them into ChannelData
+     * Processes a list of key-value pairs and converts them into ChannelData.
+     * The list is walked once; values are decoded only for the fields the type needs.
      * 
      * @param keyValues List of key-value pairs from RhoTypes
      * @return ChannelData extracted from the key-value pairs
@@ -283,45 +800,112 @@ public class RholangExpressionConstructor {
      */
     private static @NotNull ChannelData buildChannelDataFromKeyValues(@NotNull List<RhoTypes.KeyValuePair> keyValues) 
             throws IllegalArgumentException {
-        String type = keyValues.stream().filter(kv -> kv.getKey().getExprs(0).getGString().equals(TYPE))
-            .findFirst()
-            .map(kv -> kv.getValue().getExprs(0).getGString())
-            .orElseThrow(() -> new IllegalArgumentException("No type in channel data"));
+        RhoTypes.Expr typeValue = null;
+        RhoTypes.Expr lastUpdatedValue = null;
+        RhoTypes.Expr firstChunkValue = null;
+        RhoTypes.Expr otherChunksValue = null;
+        RhoTypes.Expr childrenValue = null;
+        RhoTypes.Expr sizeValue = null;
+        RhoTypes.Expr chunkHashesValue = null;
+        RhoTypes.Expr merkleRootValue = null;
+        RhoTypes.Expr codecValue = null;
+        RhoTypes.Expr inlineValue = null;
+        RhoTypes.Expr inlineFilesValue = null;
 
-        long lastUpdated = keyValues.stream().filter(kv -> kv.getKey().getExprs(0).getGString().equals(LAST_UPDATED))
-            .findFirst()
-            .map(kv -> kv.getValue().getExprs(0).getGInt())
-            .orElseThrow(() -> new IllegalArgumentException("No lastUpdated in channel data"));
+        for (int i = 0, n = keyValues.size(); i < n; i++) {
+            RhoTypes.KeyValuePair kv = keyValues.get(i);
+            switch (kv.getKey().getExprs(0).getGString()) {
+                case TYPE:
+                    typeValue = kv.getValue().getExprs(0);
+                    break;
+                case LAST_UPDATED:
+                    lastUpdatedValue = kv.getValue().getExprs(0);
+                    break;
+                case FIRST_CHUNK:
+                    firstChunkValue = kv.getValue().getExprs(0);
+                    break;
+                case OTHER_CHUNKS:
+                    otherChunksValue = kv.getValue().getExprs(0);
+                    break;
+                case CHILDREN:
+                    childrenValue = kv.getValue().getExprs(0);
+                    break;
+                case SIZE:
+                    sizeValue = kv.getValue().getExprs(0);
+                    break;
+                case CHUNK_HASHES:
+                    chunkHashesValue = kv.getValue().getExprs(0);
+                    break;
+                case MERKLE_ROOT:
+                    merkleRootValue = kv.getValue().getExprs(0);
+                    break;
+                case CODEC:
+                    codecValue = kv.getValue().getExprs(0);
+                    break;
+                case INLINE:
+                    inlineValue = kv.getValue().getExprs(0);
+                    break;
+                case INLINE_FILES:
+                    inlineFilesValue = kv.getValue().getExprs(0);
+                    break;
+                default:
+                    // unknown keys are skipped
+            }
+        }
 
-        byte[] content = null;
+        if (typeValue == null) {
+            throw new IllegalArgumentException("No type in channel data");
+        }
+        if (lastUpdatedValue == null) {
+            throw new IllegalArgumentException("No lastUpdated in channel data");
+        }
+
+        String type = typeValue.getGString();
+        long lastUpdated = lastUpdatedValue.getGInt();
+
+        ByteString content = null;
         Set<String> children = null;
         Map<Integer, String> otherChunks = null;
+        long size = UNKNOWN_SIZE;
+        Map<Integer, String> chunkHashes = null;
+        String merkleRoot = null;
+        String codec = null;
+        boolean inline = false;
+        Map<String, ByteString> inlineFiles = null;
 
         if (type.equals(FILE_TYPE)) {
 
-            content = keyValues.stream().filter(kv -> kv.getKey().getExprs(0).getGString().equals(FIRST_CHUNK))
-                .findFirst()
-                .map(kv -> kv.getValue().getExprs(0).getGByteArray().toByteArray())
-                .orElseThrow(() -> new IllegalArgumentException("No value in file data"));
+            // firstChunk is absent when only the metadata was read, see readMetadataFromChannel
+            if (otherChunksValue == null) {
+                throw new IllegalArgumentException("No otherChunks in file data");
+            }
 
-            otherChunks = keyValues.stream().filter(kv -> kv.getKey().getExprs(0).getGString().equals(OTHER_CHUNKS))
-                .findFirst()
-                .map(kv -> kv.getValue().getExprs(0).getEMapBody().getKvsList().stream()
-                    .collect(Collectors.toMap(
-                        k -> (int) k.getKey().getExprs(0).getGInt(),
-                        v -> v.getValue().getExprs(0).getGString()
-                    )))
-                .orElseThrow(() -> new IllegalArgumentException("No otherChunks in file data"));
+            if (firstChunkValue != null) {
+                content = firstChunkValue.getGByteArray();
+            }
+            if (sizeValue != null) {
+                size = sizeValue.getGInt();
+            }
+
+            otherChunks = parseIntMap(otherChunksValue);
+            chunkHashes = chunkHashesValue == null ? new HashMap<>() : parseIntMap(chunkHashesValue);
+            merkleRoot = merkleRootValue == null ? ChunkManifest.merkleRoot(chunkHashes) : merkleRootValue.getGString();
+            codec = codecValue == null ? ContentCodec.NONE : codecValue.getGString();
+            inline = inlineValue != null && inlineValue.getGBool();
 
         } else if (type.equals(DIR_TYPE)) {
 
-            children = keyValues.stream().filter(kv -> kv.getKey().getExprs(0).getGString().equals(CHILDREN))
-                .findFirst()
-                .map(kv ->
-                    kv.getValue().getExprs(0).getEListBody().getPsList().stream()
-                        .map(p -> p.getExprs(p.getExprsCount() - 1).getGString())
-                        .collect(Collectors.toSet()))
-                .orElseThrow(() -> new IllegalArgumentException("No children in channel data"));
+            if (childrenValue == null) {
+                throw new IllegalArgumentException("No children in channel data");
+            }
+
+            List<RhoTypes.Par> names = childrenValue.getEListBody().getPsList();
+            children = new HashSet<>(capacityFor(names.size()));
+            for (int i = 0, n = names.size(); i < n; i++) {
+                RhoTypes.Par p = names.get(i);
+                children.add(p.getExprs(p.getExprsCount() - 1).getGString());
+            }
+            inlineFiles = inlineFilesValue == null ? Map.of() : parseBytesMap(inlineFilesValue);
 
         } else {
 
@@ -329,7 +913,63 @@ public class RholangExpressionConstructor {
 
         }
 
-        return new ChannelData(type, lastUpdated, content, children, otherChunks);
+        return new ChannelData(type, lastUpdated, content, children, otherChunks, size, chunkHashes, merkleRoot, codec,
+            inline, inlineFiles);
+    }
+
+    private static Map<Integer, String> parseIntMap(RhoTypes.Expr value) {
+        List<RhoTypes.KeyValuePair> kvs = value.getEMapBody().getKvsList();
+        Map<Integer, String> map = new HashMap<>(capacityFor(kvs.size()));
+        for (int i = 0, n = kvs.size(); i < n; i++) {
+            RhoTypes.KeyValuePair kv = kvs.get(i);
+            map.put((int) kv.getKey().getExprs(0).getGInt(), kv.getValue().getExprs(0).getGString());
+        }
+        return map;
+    }
+
+    // the bytes as received from the node, without copying them
+    private static Map<String, ByteString> parseBytesMap(RhoTypes.Expr value) {
+        List<RhoTypes.KeyValuePair> kvs = value.getEMapBody().getKvsList();
+        Map<String, ByteString> map = new HashMap<>(capacityFor(kvs.size()));
+        for (int i = 0, n = kvs.size(); i < n; i++) {
+            RhoTypes.KeyValuePair kv = kvs.get(i);
+            map.put(kv.getKey().getExprs(0).getGString(), kv.getValue().getExprs(0).getGByteArray());
+        }
+        return map;
+    }
+
+    /**
+     * Parses the value of a manifest channel, see {@link #manifestChannel(String)}.
+     *
+     * @return channel data by path
+     * @throws IllegalArgumentException if the manifest or one of its entries is malformed
+     */
+    public static @NotNull Map<String, ChannelData> parseManifest(@NotNull List<RhoTypes.Par> pars) throws IllegalArgumentException {
+        if (pars.isEmpty()) {
+            throw new IllegalArgumentException("Empty manifest");
+        }
+        RhoTypes.Par par = pars.get(pars.size() - 1);
+        if (par.getExprsCount() == 0 || !par.getExprs(par.getExprsCount() - 1).hasEMapBody()) {
+            throw new IllegalArgumentException("Manifest is not an EMap");
+        }
+
+        List<RhoTypes.KeyValuePair> entries = par.getExprs(par.getExprsCount() - 1).getEMapBody().getKvsList();
+        Map<String, ChannelData> manifest = new HashMap<>(capacityFor(entries.size()));
+        for (int i = 0, n = entries.size(); i < n; i++) {
+            RhoTypes.KeyValuePair entry = entries.get(i);
+            String path = entry.getKey().getExprs(0).getGString();
+            RhoTypes.Expr value = entry.getValue().getExprs(0);
+            if (!value.hasEMapBody()) {
+                throw new IllegalArgumentException("Manifest entry of " + path + " is not an EMap");
+            }
+            manifest.put(path, buildChannelDataFromKeyValues(value.getEMapBody().getKvsList()));
+        }
+        return manifest;
+    }
+
+    // initial capacity of a hash-based collection that holds the given number of entries without rehashing
+    private static int capacityFor(int expectedSize) {
+        return (int) (expectedSize / 0.75f) + 1;
     }
     
     /**
@@ -431,6 +1071,22 @@ public class RholangExpressionConstructor {
             .append("}")
             .toString();
     }
+
+    //** Reads a value from a chanel without the content of the first chunk */
+    public static String readMetadataFromChannel(String channelName) {
+        // output looks like: new return in { for (@v <<- @"path"){ return!(v.delete("firstChunk")) } }
+        return new StringBuilder()
+            .append("new return in {")
+            .append("for (@v <<- @\"")
+            .append(channelName)
+            .append("\"){")
+            .append("return!(v.delete(\"")
+            .append(FIRST_CHUNK)
+            .append("\"))")
+            .append("}")
+            .append("}")
+            .toString();
+    }
     
     /**
      * Parse the result of an exploratory deploy directly into ChannelData
@@ -8,6 +8,8 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 
@@ -16,22 +18,38 @@ public class AESCipher {
     private static final String CIPHER_NAME = "AES/ECB/PKCS5Padding";
     private static final String KEY_ALGORITHM = "AES";
 
-    private final Cipher cipher;
+    // plaintext is written out in steps of this size, so decrypting a chunk never needs a second copy of it
+    private static final int STREAM_STEP_SIZE = 1024 * 1024; // 1 mb
+
+    // a Cipher is stateful, so every thread encrypting or decrypting chunks gets its own
+    private final ThreadLocal<Cipher> cipher;
     private final SecretKeySpec keySpec;
 
     private static AESCipher instance;
 
     private AESCipher(String keyToPath) throws FuseException {
         try {
-            this.cipher = Cipher.getInstance(CIPHER_NAME);
             this.keySpec = readOrGenerateKey(keyToPath);
-            this.cipher.init(Cipher.ENCRYPT_MODE, keySpec);
+            // fail here, not on the first chunk, if the key does not fit the cipher
+            newCipher().init(Cipher.ENCRYPT_MODE, keySpec);
         } catch (NoSuchAlgorithmException | NoSuchPaddingException | IOException | InvalidKeyException e) {
             throw new FuseException("Failed to initialize AES cipher", e);
         }
+        this.cipher = ThreadLocal.withInitial(() -> {
+            try {
+                return newCipher();
+            } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+                throw new FuseException("Failed to initialize AES cipher", e);
+            }
+        });
+    }
+
+    private static Cipher newCipher() throws NoSuchAlgorithmException, NoSuchPaddingException {
+        return Cipher.getInstance(CIPHER_NAME);
     }
 
     public byte[] encrypt(byte[] data) throws FuseException {
+        Cipher cipher = this.cipher.get();
         try {
             cipher.init(Cipher.ENCRYPT_MODE, keySpec);
             return cipher.doFinal(data);
@@ -41,6 +59,7 @@ public class AESCipher {
     }
 
     public byte[] decrypt(byte[] data) throws FuseException {
+        Cipher cipher = this.cipher.get();
         try {
             cipher.init(Cipher.DECRYPT_MODE, keySpec);
             return cipher.doFinal(data);
@@ -49,6 +68,48 @@ public class AESCipher {
         }
     }
 
+    /**
+     * Decrypts {@code input} straight into {@code output} at {@code position}
+     *
+     * @return number of plaintext bytes written
+     */
+    public long decrypt(Iterable<ByteBuffer> input, FileChannel output, long position) throws FuseException, IOException {
+        Cipher cipher = this.cipher.get();
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, keySpec);
+            ByteBuffer plain = ByteBuffer.allocateDirect(STREAM_STEP_SIZE + cipher.getBlockSize() * 2);
+            long written = 0;
+
+            for (ByteBuffer buffer : input) {
+                while (buffer.hasRemaining()) {
+                    ByteBuffer step = buffer.slice();
+                    step.limit(Math.min(step.remaining(), STREAM_STEP_SIZE));
+                    buffer.position(buffer.position() + step.limit());
+
+                    plain.clear();
+                    cipher.update(step, plain);
+                    written += writeFully(plain.flip(), output, position + written);
+                }
+            }
+
+            plain.clear();
+            cipher.doFinal(ByteBuffer.allocate(0), plain);
+            written += writeFully(plain.flip(), output, position + written);
+
+            return written;
+        } catch (InvalidKeyException | ShortBufferException | IllegalBlockSizeException | BadPaddingException e) {
+            throw new FuseException("Failed to decrypt data", e);
+        }
+    }
+
+    private static long writeFully(ByteBuffer buffer, FileChannel output, long position) throws IOException {
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            written += output.write(buffer, position + written);
+        }
+        return written;
+    }
+
     private SecretKeySpec generateKey() throws NoSuchAlgorithmException {
         KeyGenerator keyGen = KeyGenerator.getInstance(KEY_ALGORITHM);
         keyGen.init(128); // 128-bit key size
@@ -0,0 +1,79 @@
+package io.f1r3fly.f1r3drive.encryption;
+
+import org.apache.commons.codec.binary.Hex;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The Merkle manifest of a file: the Blake2b-256 hashes of its chunks as deployed, see {@link ContentHash},
+ * and a root hash over them. Two versions of a file with the same root have the same content; otherwise only
+ * the chunks whose hashes differ need to be transferred.
+ * <p>
+ * A leaf is the hash of a chunk number and the hash of that chunk, in chunk order; a parent is the hash of its
+ * two children, and the last node of a level with an odd count moves up as it is. Leaves and parents are hashed
+ * with different prefixes, so a leaf never passes for a parent.
+ */
+public class ChunkManifest {
+
+    private static final byte LEAF = 0;
+    private static final byte PARENT = 1;
+
+    private ChunkManifest() {
+    }
+
+    /**
+     * @param chunkHashes hex hashes of the chunks by chunk number
+     * @return the hex root; the hash of no bytes for a file without chunks
+     */
+    public static String merkleRoot(Map<Integer, String> chunkHashes) {
+        List<byte[]> level = new ArrayList<>(chunkHashes.size());
+        for (Map.Entry<Integer, String> chunk : new TreeMap<>(chunkHashes).entrySet()) {
+            MessageDigest digest = ContentHash.newBlake2b256();
+            digest.update(LEAF);
+            digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(chunk.getKey()).array());
+            digest.update(chunk.getValue().getBytes(StandardCharsets.US_ASCII));
+            level.add(digest.digest());
+        }
+        if (level.isEmpty()) {
+            return ContentHash.blake2b256Hex(new byte[0]);
+        }
+
+        while (level.size() > 1) {
+            List<byte[]> parents = new ArrayList<>((level.size() + 1) / 2);
+            for (int i = 0; i < level.size(); i += 2) {
+                if (i + 1 == level.size()) {
+                    parents.add(level.get(i));
+                    continue;
+                }
+                MessageDigest digest = ContentHash.newBlake2b256();
+                digest.update(PARENT);
+                digest.update(level.get(i));
+                digest.update(level.get(i + 1));
+                parents.add(digest.digest());
+            }
+            level = parents;
+        }
+        return Hex.encodeHexString(level.get(0));
+    }
+
+    /**
+     * @return the chunks of {@code to} whose content is not at the same chunk of {@code from}, in chunk order
+     */
+    public static Set<Integer> changedChunks(Map<Integer, String> from, Map<Integer, String> to) {
+        Set<Integer> changed = new TreeSet<>();
+        to.forEach((chunkNumber, hash) -> {
+            if (!hash.equals(from.get(chunkNumber))) {
+                changed.add(chunkNumber);
+            }
+        });
+        return changed;
+    }
+}
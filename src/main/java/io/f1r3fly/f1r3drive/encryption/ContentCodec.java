@@ -0,0 +1,146 @@
+package io.f1r3fly.f1r3drive.encryption;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compression of file content before it is encrypted and deployed. The codec of a file is kept in its metadata,
+ * see {@link io.f1r3fly.f1r3drive.blockchain.rholang.RholangExpressionConstructor.ChannelData#codec()}, and
+ * applies to every chunk, or every block of a chunk, as stored.
+ * <p>
+ * Whether a file is compressed at all is chosen by {@link #choose sampling} its content: already compressed
+ * media and archives are deployed as they are, rather than paying for a pass that saves nothing.
+ */
+public class ContentCodec {
+
+    public static final String NONE = "none";
+    public static final String DEFLATE = "deflate";
+
+    // a few samples spread over the content tell compressible content from the rest at a fraction of the cost
+    private static final int SAMPLES = 4;
+    private static final int SAMPLE_BYTES = 64 * 1024; // 64 kb
+    // compressed samples larger than this part of the original are not worth it
+    private static final double MAX_RATIO = 0.9;
+
+    // output is inflated and written out in steps of this size, so a chunk is never held twice
+    private static final int STREAM_STEP_SIZE = 1024 * 1024; // 1 mb
+
+    private ContentCodec() {
+    }
+
+    /**
+     * @return {@link #DEFLATE} if samples of the content compress well, {@link #NONE} otherwise
+     */
+    public static String choose(byte[] content) {
+        if (content.length == 0) {
+            return NONE;
+        }
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        byte[] output = new byte[SAMPLE_BYTES];
+        long sampled = 0;
+        long compressed = 0;
+        try {
+            int sampleBytes = Math.min(SAMPLE_BYTES, content.length);
+            int stride = Math.max(sampleBytes, (content.length - sampleBytes) / (SAMPLES - 1));
+            for (int sample = 0, from = 0; sample < SAMPLES && content.length - from >= sampleBytes; sample++, from += stride) {
+                deflater.reset();
+                deflater.setInput(content, from, sampleBytes);
+                deflater.finish();
+                while (!deflater.finished()) {
+                    compressed += deflater.deflate(output);
+                }
+                sampled += sampleBytes;
+            }
+        } finally {
+            deflater.end();
+        }
+        return compressed <= sampled * MAX_RATIO ? DEFLATE : NONE;
+    }
+
+    /**
+     * @return the content as stored with the codec; the content itself for {@link #NONE}
+     */
+    public static byte[] encode(String codec, byte[] content) {
+        switch (codec) {
+            case NONE:
+                return content;
+            case DEFLATE:
+                Deflater deflater = new Deflater();
+                try {
+                    deflater.setInput(content);
+                    deflater.finish();
+                    ByteArrayOutputStream stored = new ByteArrayOutputStream(content.length / 2 + 64);
+                    byte[] output = new byte[64 * 1024];
+                    while (!deflater.finished()) {
+                        stored.write(output, 0, deflater.deflate(output));
+                    }
+                    return stored.toByteArray();
+                } finally {
+                    deflater.end();
+                }
+            default:
+                throw new IllegalArgumentException("Unknown codec: " + codec);
+        }
+    }
+
+    /**
+     * Decodes {@code input} straight into {@code output} at {@code position}.
+     *
+     * @return number of decoded bytes written
+     * @throws IOException if the codec is unknown or the input is not valid for it
+     */
+    public static long decode(String codec, Iterable<ByteBuffer> input, FileChannel output, long position) throws IOException {
+        switch (codec) {
+            case NONE:
+                long written = 0;
+                for (ByteBuffer buffer : input) {
+                    written += writeFully(buffer, output, position + written);
+                }
+                return written;
+            case DEFLATE:
+                return inflate(input, output, position);
+            default:
+                throw new IOException("Unknown codec: " + codec);
+        }
+    }
+
+    private static long inflate(Iterable<ByteBuffer> input, FileChannel output, long position) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            ByteBuffer plain = ByteBuffer.allocateDirect(STREAM_STEP_SIZE);
+            long written = 0;
+            for (ByteBuffer buffer : input) {
+                inflater.setInput(buffer);
+                while (!inflater.finished() && !inflater.needsInput()) {
+                    plain.clear();
+                    if (inflater.inflate(plain) == 0 && inflater.needsDictionary()) {
+                        throw new IOException("Compressed content needs a dictionary");
+                    }
+                    written += writeFully(plain.flip(), output, position + written);
+                }
+            }
+            if (!inflater.finished()) {
+                throw new IOException("Compressed content ended after %d bytes".formatted(written));
+            }
+            return written;
+        } catch (DataFormatException e) {
+            throw new IOException("Malformed compressed content", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static long writeFully(ByteBuffer buffer, FileChannel output, long position) throws IOException {
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            written += output.write(buffer, position + written);
+        }
+        return written;
+    }
+}
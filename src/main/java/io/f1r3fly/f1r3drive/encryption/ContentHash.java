@@ -0,0 +1,45 @@
+package io.f1r3fly.f1r3drive.encryption;
+
+import com.rfksystems.blake2b.Blake2b;
+import com.rfksystems.blake2b.security.Blake2bProvider;
+import org.apache.commons.codec.binary.Hex;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Security;
+
+/**
+ * Blake2b-256 hashes of file content as it is stored on the shard.
+ */
+public class ContentHash {
+
+    static {
+        Security.addProvider(new Blake2bProvider());
+    }
+
+    private ContentHash() {
+    }
+
+    /**
+     * A digest for content hashed piece by piece, see {@link #toHex(MessageDigest)}.
+     */
+    public static MessageDigest newBlake2b256() {
+        try {
+            return MessageDigest.getInstance(Blake2b.BLAKE2_B_256);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Blake2b-256 is not available", e);
+        }
+    }
+
+    public static byte[] blake2b256(byte[] data) {
+        return newBlake2b256().digest(data);
+    }
+
+    public static String blake2b256Hex(byte[] data) {
+        return Hex.encodeHexString(blake2b256(data));
+    }
+
+    public static String toHex(MessageDigest digest) {
+        return Hex.encodeHexString(digest.digest());
+    }
+}
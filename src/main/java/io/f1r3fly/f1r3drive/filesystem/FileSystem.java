@@ -14,6 +14,7 @@ import jnr.ffi.types.size_t;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.Map;
 
 public interface FileSystem {
 
@@ -52,6 +53,14 @@ public interface FileSystem {
     void flushFile(String path) throws PathNotFound, PathIsNotAFile;
 
     void unlockRootDirectory(String revAddress, String privateKey);
+
+    /**
+     * Unlocks several wallets at once. Their trees keep loading in the background.
+     *
+     * @param privateKeysByRevAddress private keys by the rev addresses of the wallets to unlock
+     * @return the errors of the wallets that could not be unlocked, by rev address
+     */
+    Map<String, Throwable> unlockRootDirectories(Map<String, String> privateKeysByRevAddress);
     void changeTokenFile(String tokenFilePath) throws NoDataByPath;
 
     // utils
@@ -13,8 +13,17 @@ import io.f1r3fly.f1r3drive.blockchain.client.F1r3flyBlockchainClient;
 import io.f1r3fly.f1r3drive.filesystem.common.Directory;
 import io.f1r3fly.f1r3drive.filesystem.common.File;
 import io.f1r3fly.f1r3drive.filesystem.common.Path;
+import io.f1r3fly.f1r3drive.filesystem.cache.CacheConfig;
+import io.f1r3fly.f1r3drive.filesystem.cache.ContentCache;
+import io.f1r3fly.f1r3drive.filesystem.deployable.ChunkDownloader;
+import io.f1r3fly.f1r3drive.filesystem.deployable.ChunkPrefetcher;
+import io.f1r3fly.f1r3drive.filesystem.deployable.ChunkSealer;
+import io.f1r3fly.f1r3drive.filesystem.deployable.SealConfig;
 import io.f1r3fly.f1r3drive.filesystem.deployable.BlockchainFile;
 import io.f1r3fly.f1r3drive.filesystem.deployable.UnlockedWalletDirectory;
+import io.f1r3fly.f1r3drive.filesystem.fetch.FetchConfig;
+import io.f1r3fly.f1r3drive.filesystem.fetch.WalletSyncer;
+import io.f1r3fly.f1r3drive.filesystem.fetch.WalletTreeFetcher;
 import io.f1r3fly.f1r3drive.filesystem.local.LockedWalletDirectory;
 import io.f1r3fly.f1r3drive.filesystem.local.RootDirectory;
 import io.f1r3fly.f1r3drive.filesystem.local.TokenDirectory;
@@ -34,8 +43,16 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class InMemoryFileSystem implements FileSystem {
 
@@ -48,7 +65,62 @@ public class InMemoryFileSystem implements FileSystem {
 
     private final StateChangeEventsManager stateChangeEventsManager;
 
+    @NotNull
+    private final WalletTreeFetcher walletTreeFetcher;
+
+    @NotNull
+    private final WalletSyncer walletSyncer;
+
+    @NotNull
+    private final ContentCache contentCache;
+
+    @NotNull
+    private final ChunkSealer chunkSealer;
+
+    @NotNull
+    private final ChunkPrefetcher chunkPrefetcher;
+
+    @NotNull
+    private final ChunkDownloader chunkDownloader;
+
+    // validates the keys of a batch unlock; the trees are loaded by walletTreeFetcher
+    @NotNull
+    private final ExecutorService unlockExecutor;
+
     public InMemoryFileSystem(F1r3flyBlockchainClient f1R3FlyBlockchainClient) throws F1r3DriveError {
+        this(f1R3FlyBlockchainClient, FetchConfig.defaultConfig());
+    }
+
+    public InMemoryFileSystem(F1r3flyBlockchainClient f1R3FlyBlockchainClient, FetchConfig fetchConfig) throws F1r3DriveError {
+        this(f1R3FlyBlockchainClient, fetchConfig, CacheConfig.defaultConfig());
+    }
+
+    public InMemoryFileSystem(F1r3flyBlockchainClient f1R3FlyBlockchainClient, FetchConfig fetchConfig,
+                              CacheConfig cacheConfig) throws F1r3DriveError {
+        this(f1R3FlyBlockchainClient, fetchConfig, cacheConfig, SealConfig.defaultConfig());
+    }
+
+    public InMemoryFileSystem(F1r3flyBlockchainClient f1R3FlyBlockchainClient, FetchConfig fetchConfig,
+                              CacheConfig cacheConfig, SealConfig sealConfig) throws F1r3DriveError {
+
+        this.contentCache = new ContentCache(cacheConfig);
+
+        this.chunkSealer = new ChunkSealer(sealConfig);
+
+        this.chunkPrefetcher = new ChunkPrefetcher(fetchConfig);
+
+        this.chunkDownloader = new ChunkDownloader(fetchConfig);
+
+        this.walletTreeFetcher = new WalletTreeFetcher(f1R3FlyBlockchainClient, fetchConfig);
+
+        this.walletSyncer = new WalletSyncer(f1R3FlyBlockchainClient, walletTreeFetcher, fetchConfig);
+
+        AtomicInteger unlockThreadCounter = new AtomicInteger();
+        this.unlockExecutor = Executors.newFixedThreadPool(fetchConfig.getUnlockConcurrency(), r -> {
+            Thread t = new Thread(r, "WalletUnlock-" + unlockThreadCounter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
 
         this.stateChangeEventsManager = new StateChangeEventsManager();
         this.stateChangeEventsManager.start();
@@ -56,6 +128,8 @@ public class InMemoryFileSystem implements FileSystem {
         this.deployDispatcher = new DeployDispatcher(f1R3FlyBlockchainClient, stateChangeEventsManager);
         deployDispatcher.startBackgroundDeploy();
 
+        walletSyncer.start();
+
         this.rootDirectory = new RootDirectory();
         Set<Path> lockedRemoteDirectories = createRavAddressDirectories(this.deployDispatcher);
         for (Path LockedWalletDirectory : lockedRemoteDirectories) {
@@ -351,7 +425,8 @@ public class InMemoryFileSystem implements FileSystem {
 
         for (String address : ravAddresses) {
             children.add(new LockedWalletDirectory(
-                    new BlockchainContext(new RevWalletInfo(address, null), deployDispatcher), rootDirectory));
+                    new BlockchainContext(new RevWalletInfo(address, null), deployDispatcher, contentCache, chunkSealer,
+                        chunkPrefetcher, chunkDownloader), rootDirectory));
         }
 
         return children;
@@ -365,11 +440,21 @@ public class InMemoryFileSystem implements FileSystem {
         if (lockedRoot instanceof LockedWalletDirectory) {
             try {
                 UnlockedWalletDirectory unlockedRoot = ((LockedWalletDirectory) lockedRoot).unlock(privateKey,
-                        deployDispatcher);
+                        deployDispatcher, walletTreeFetcher);
 
+                // mounted while the tree is still loading; operations wait only for the directories they touch
                 this.rootDirectory.deleteChild(lockedRoot);
                 this.rootDirectory.addChild(unlockedRoot);
 
+                unlockedRoot.getTreeLoaded().whenComplete((ignored, e) -> {
+                    if (e == null) {
+                        logger.info("Loaded wallet {}", revAddress);
+                    } else {
+                        logger.error("Failed to load wallet {}", revAddress, e);
+                    }
+                });
+                walletSyncer.register(unlockedRoot);
+
                 TokenDirectory tokenDirectory = unlockedRoot.getTokenDirectory();
                 if (tokenDirectory != null) {
                     stateChangeEventsManager.registerEventProcessor(StateChangeEvents.WalletBalanceChanged.class,
@@ -405,6 +490,30 @@ public class InMemoryFileSystem implements FileSystem {
         }
     }
 
+    /**
+     * Validates the keys on a bounded pool. A wallet is mounted as soon as its key is valid and its tree
+     * loads on the shared fetch pool while the keys of the other wallets are still being validated.
+     */
+    @Override
+    public Map<String, Throwable> unlockRootDirectories(Map<String, String> privateKeysByRevAddress) {
+        Map<String, CompletableFuture<Void>> unlocks = new LinkedHashMap<>();
+        privateKeysByRevAddress.forEach((revAddress, privateKey) -> unlocks.put(revAddress,
+            CompletableFuture.runAsync(() -> unlockRootDirectory(revAddress, privateKey), unlockExecutor)));
+
+        Map<String, Throwable> failures = new LinkedHashMap<>();
+        unlocks.forEach((revAddress, unlock) -> {
+            try {
+                unlock.join();
+            } catch (CompletionException e) {
+                logger.warn("Failed to unlock root directory: {}", revAddress, e.getCause());
+                failures.put(revAddress, e.getCause());
+            }
+        });
+
+        logger.info("Unlocked {} of {} wallets", unlocks.size() - failures.size(), unlocks.size());
+        return failures;
+    }
+
     @Override
     public void changeTokenFile(String filePath) throws NoDataByPath {
         File file = getFile(filePath);
@@ -438,6 +547,28 @@ public class InMemoryFileSystem implements FileSystem {
     @Override
     public void terminate() {
         logger.info("Terminating filesystem");
+
+        try {
+            logger.debug("Shutting down wallet syncer...");
+            this.walletSyncer.shutdown();
+            logger.info("Shut down wallet syncer");
+        } catch (Throwable e) {
+            logger.warn("Error shutting down wallet syncer during termination", e);
+        }
+
+        this.chunkPrefetcher.shutdown();
+        this.chunkDownloader.shutdown();
+
+        try {
+            logger.debug("Shutting down chunk sealer...");
+            this.chunkSealer.shutdown(); // its chunks join the background deployments
+            logger.info("Shut down chunk sealer");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            logger.warn("Error shutting down chunk sealer during termination", e);
+        }
+
         try {
             logger.debug("Waiting for background deployments to complete before termination...");
             waitOnBackgroundDeploy();
@@ -445,6 +576,7 @@ public class InMemoryFileSystem implements FileSystem {
         } catch (Throwable e) {
             logger.warn("Error waiting for background deployments during termination, continuing with cleanup", e);
         }
+        this.contentCache.getBlockIndex().flush(); // the blocks of the deployments just waited for
 
         try {
             logger.debug("Destroying deploy dispatcher...");
@@ -454,6 +586,26 @@ public class InMemoryFileSystem implements FileSystem {
             logger.warn("Error destroying deploy dispatcher during termination", e);
         }
 
+        try {
+            logger.debug("Shutting down wallet unlock executor...");
+            this.unlockExecutor.shutdownNow();
+            if (!this.unlockExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.warn("Wallet unlock executor did not terminate gracefully");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            logger.warn("Error shutting down wallet unlock executor during termination", e);
+        }
+
+        try {
+            logger.debug("Shutting down wallet tree fetcher...");
+            this.walletTreeFetcher.shutdown();
+            logger.info("Shut down wallet tree fetcher");
+        } catch (Throwable e) {
+            logger.warn("Error shutting down wallet tree fetcher during termination", e);
+        }
+
         try {
             logger.debug("Cleaning local cache...");
             this.rootDirectory.cleanLocalCache();
@@ -462,6 +614,9 @@ public class InMemoryFileSystem implements FileSystem {
             logger.warn("Error cleaning local cache during termination", e);
         }
 
+        this.contentCache.getBlockCache().logStats();
+        this.contentCache.getSmallFileStore().logStats();
+
         try {
             logger.debug("Shutting down state change events manager...");
             this.stateChangeEventsManager.shutdown();
@@ -0,0 +1,285 @@
+package io.f1r3fly.f1r3drive.filesystem.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Blocks of cached files kept in memory, outside the heap, so hot files are read without touching the disk.
+ * <p>
+ * The memory is split into blocks of {@link CacheConfig#getBlockSize()} bytes shared by all files and reused
+ * with the clock algorithm: a block read since the hand last passed gets another round. A file changing its
+ * cached file invalidates the blocks it changed, see {@link #invalidate(Handle, long, long)}.
+ */
+public class BlockCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlockCache.class);
+
+    // a single direct buffer is limited to 2 GB
+    private static final int MAX_SLAB_SIZE = 1 << 30;
+
+    /**
+     * Reads a cached file from disk.
+     */
+    @FunctionalInterface
+    public interface BlockSource {
+        /**
+         * Fills {@code dst} with content starting at {@code position}, up to the end of the file.
+         *
+         * @return number of bytes read
+         */
+        int read(long position, ByteBuffer dst) throws IOException;
+    }
+
+    /**
+     * Blocks of one file. Guarded by the cache.
+     */
+    public static final class Handle {
+        private final Map<Long, Integer> slots = new HashMap<>(); // by block number
+        private long version; // changes with every invalidation
+
+        private Handle() {
+        }
+    }
+
+    private final int blockSize;
+    private final int blocksPerSlab;
+    private final ByteBuffer[] slabs;
+    private final int slotCount;
+
+    // by slot
+    private final Handle[] owners;
+    private final long[] blockNumbers;
+    private final int[] lengths;
+    private final boolean[] referenced;
+
+    private final List<Integer> freeSlots = new ArrayList<>();
+    private int usedSlots = 0;
+    private int hand = 0;
+
+    private final ThreadLocal<ByteBuffer> scratch;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param capacityBytes memory for blocks; 0 disables the cache
+     * @param blockSize     bytes per block
+     */
+    public BlockCache(long capacityBytes, int blockSize) {
+        this.blockSize = blockSize;
+        this.blocksPerSlab = MAX_SLAB_SIZE / blockSize;
+        this.slotCount = (int) Math.min(capacityBytes / blockSize, Integer.MAX_VALUE);
+
+        int slabCount = (slotCount + blocksPerSlab - 1) / blocksPerSlab;
+        this.slabs = new ByteBuffer[slabCount];
+        for (int i = 0; i < slabCount; i++) {
+            int blocks = Math.min(blocksPerSlab, slotCount - i * blocksPerSlab);
+            slabs[i] = ByteBuffer.allocateDirect(blocks * blockSize);
+        }
+
+        this.owners = new Handle[slotCount];
+        this.blockNumbers = new long[slotCount];
+        this.lengths = new int[slotCount];
+        this.referenced = new boolean[slotCount];
+        this.scratch = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(blockSize));
+
+        logger.info("Block cache holds {} blocks of {} bytes", slotCount, blockSize);
+    }
+
+    public Handle newHandle() {
+        return new Handle();
+    }
+
+    /**
+     * Fills {@code dst} with the content of a file starting at {@code offset}, taking cached blocks from memory
+     * and reading the others from {@code source}.
+     *
+     * @return number of bytes read, less than requested at the end of the file
+     */
+    public int read(Handle handle, long offset, ByteBuffer dst, BlockSource source) throws IOException {
+        if (slotCount == 0) {
+            return source.read(offset, dst);
+        }
+
+        int total = 0;
+        while (dst.hasRemaining()) {
+            long position = offset + total;
+            long blockNumber = position / blockSize;
+            int inBlock = (int) (position - blockNumber * blockSize);
+
+            int copied = copyCached(handle, blockNumber, inBlock, dst);
+            if (copied < 0) {
+                copied = load(handle, blockNumber, inBlock, dst, source);
+            }
+            if (copied == 0) {
+                break; // end of the file
+            }
+            total += copied;
+        }
+        return total;
+    }
+
+    // -1 if the block is not cached
+    private synchronized int copyCached(Handle handle, long blockNumber, int inBlock, ByteBuffer dst) {
+        Integer slot = handle.slots.get(blockNumber);
+        if (slot != null && inBlock >= lengths[slot]) {
+            // the last block of a file that has grown since
+            handle.slots.remove(blockNumber);
+            release(slot);
+            slot = null;
+        }
+        if (slot == null) {
+            misses.increment();
+            return -1;
+        }
+        hits.increment();
+        referenced[slot] = true;
+        return copy(slabs[slot / blocksPerSlab], (slot % blocksPerSlab) * blockSize + inBlock, lengths[slot] - inBlock, dst);
+    }
+
+    private int load(Handle handle, long blockNumber, int inBlock, ByteBuffer dst, BlockSource source) throws IOException {
+        long version;
+        synchronized (this) {
+            version = handle.version;
+        }
+
+        ByteBuffer block = scratch.get();
+        block.clear();
+        int length = source.read(blockNumber * blockSize, block);
+        block.flip();
+        if (length > 0) {
+            store(handle, blockNumber, version, block);
+        }
+        return copy(block, inBlock, length - inBlock, dst);
+    }
+
+    private static int copy(ByteBuffer src, int srcOffset, int available, ByteBuffer dst) {
+        int length = Math.min(available, dst.remaining());
+        if (length <= 0) {
+            return 0;
+        }
+        dst.put(dst.position(), src, srcOffset, length);
+        dst.position(dst.position() + length);
+        return length;
+    }
+
+    private synchronized void store(Handle handle, long blockNumber, long version, ByteBuffer block) {
+        if (handle.version != version || handle.slots.containsKey(blockNumber)) {
+            return; // changed while it was read, or read by another thread meanwhile
+        }
+
+        int slot = allocateSlot();
+        slabs[slot / blocksPerSlab].put((slot % blocksPerSlab) * blockSize, block, 0, block.limit());
+        owners[slot] = handle;
+        blockNumbers[slot] = blockNumber;
+        lengths[slot] = block.limit();
+        referenced[slot] = false;
+        handle.slots.put(blockNumber, slot);
+    }
+
+    private int allocateSlot() {
+        if (!freeSlots.isEmpty()) {
+            return freeSlots.remove(freeSlots.size() - 1);
+        }
+        if (usedSlots < slotCount) {
+            return usedSlots++;
+        }
+
+        while (true) {
+            int slot = hand;
+            hand = (hand + 1) % slotCount;
+            if (referenced[slot]) {
+                referenced[slot] = false; // another round
+                continue;
+            }
+            owners[slot].slots.remove(blockNumbers[slot]);
+            evictions.increment();
+            return slot;
+        }
+    }
+
+    /**
+     * Drops the blocks of a file overlapping the given range. Called after the cached file changed there.
+     */
+    public synchronized void invalidate(Handle handle, long offset, long length) {
+        handle.version++;
+        if (length <= 0 || handle.slots.isEmpty()) {
+            return;
+        }
+
+        long firstBlock = offset / blockSize;
+        long lastBlock = (offset + length - 1) / blockSize;
+        if (lastBlock - firstBlock >= handle.slots.size()) {
+            Iterator<Map.Entry<Long, Integer>> iterator = handle.slots.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Long, Integer> entry = iterator.next();
+                if (entry.getKey() >= firstBlock && entry.getKey() <= lastBlock) {
+                    release(entry.getValue());
+                    iterator.remove();
+                }
+            }
+        } else {
+            for (long blockNumber = firstBlock; blockNumber <= lastBlock; blockNumber++) {
+                Integer slot = handle.slots.remove(blockNumber);
+                if (slot != null) {
+                    release(slot);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops all blocks of a file.
+     */
+    public synchronized void invalidateAll(Handle handle) {
+        handle.version++;
+        handle.slots.values().forEach(this::release);
+        handle.slots.clear();
+    }
+
+    private void release(int slot) {
+        owners[slot] = null;
+        referenced[slot] = false;
+        freeSlots.add(slot);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public synchronized long getCachedBytes() {
+        long bytes = 0;
+        for (int slot = 0; slot < usedSlots; slot++) {
+            if (owners[slot] != null) {
+                bytes += lengths[slot];
+            }
+        }
+        return bytes;
+    }
+
+    public void logStats() {
+        long hitCount = getHits();
+        long missCount = getMisses();
+        logger.info("Block cache: {} hits, {} misses ({}% hit rate), {} evictions, {} bytes cached",
+            hitCount, missCount, hitCount + missCount == 0 ? 0 : hitCount * 100 / (hitCount + missCount),
+            getEvictions(), getCachedBytes());
+    }
+}
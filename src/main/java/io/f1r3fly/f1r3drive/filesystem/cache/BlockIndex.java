@@ -0,0 +1,125 @@
+package io.f1r3fly.f1r3drive.filesystem.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Hashes of the content blocks and block lists known to be on the shard, so that content deployed once, by any
+ * file or version of this mount or an earlier one, is referenced instead of deployed again. Channels of blocks
+ * are named by hash, see {@link io.f1r3fly.f1r3drive.blockchain.rholang.RholangExpressionConstructor#blockChannel},
+ * and shared by every wallet.
+ * <p>
+ * A block whose deploy is in the queue counts as known: deploys of a mount land in order, so a later deploy
+ * referencing it finds it there. It is written to the index file, one hash per line, once its deploy is
+ * finalized. Like the rest of the content cache, the index belongs to the shard it was filled from.
+ */
+public class BlockIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlockIndex.class);
+
+    private final Path file;
+    private final Set<String> known = ConcurrentHashMap.newKeySet();
+    // in the deploy queue, in the order they were queued; guarded by this
+    private final Map<String, BooleanSupplier> pending = new LinkedHashMap<>();
+
+    public BlockIndex(Path file) throws IOException {
+        this.file = file;
+        if (Files.exists(file)) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.US_ASCII)) {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    if (!line.isBlank()) {
+                        known.add(line.strip());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if the block is on the shard, or queued for it
+     */
+    public boolean contains(String hash) {
+        return known.contains(hash);
+    }
+
+    /**
+     * Records a block read from the shard.
+     */
+    public void addDeployed(String hash) {
+        if (known.add(hash)) {
+            synchronized (this) {
+                pending.put(hash, () -> true);
+                persistFinalized();
+            }
+        }
+    }
+
+    /**
+     * Records a block queued for deployment.
+     *
+     * @param finalized tells whether the deploy holding the block is finalized
+     */
+    public void addPending(String hash, BooleanSupplier finalized) {
+        if (known.add(hash)) {
+            synchronized (this) {
+                pending.put(hash, finalized);
+                persistFinalized();
+            }
+        }
+    }
+
+    public int size() {
+        return known.size();
+    }
+
+    /**
+     * Writes the blocks whose deploys were finalized since the last one was recorded.
+     */
+    public synchronized void flush() {
+        persistFinalized();
+        logger.info("Block index holds {} blocks, {} of them not finalized", known.size(), pending.size());
+    }
+
+    // appends the blocks finalized so far; a failure leaves them for the next call
+    private void persistFinalized() {
+        StringBuilder lines = new StringBuilder();
+        int count = 0;
+        for (Map.Entry<String, BooleanSupplier> block : pending.entrySet()) {
+            if (!block.getValue().getAsBoolean()) {
+                break; // the ones queued after it are not finalized either
+            }
+            lines.append(block.getKey()).append('\n');
+            count++;
+        }
+        if (count == 0) {
+            return;
+        }
+
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.US_ASCII, StandardOpenOption.CREATE,
+            StandardOpenOption.APPEND)) {
+            writer.write(lines.toString());
+        } catch (IOException e) {
+            logger.warn("Failed to write the block index {}", file, e);
+            return;
+        }
+        Iterator<String> written = pending.keySet().iterator();
+        for (int i = 0; i < count; i++) {
+            written.next();
+            written.remove();
+        }
+    }
+}
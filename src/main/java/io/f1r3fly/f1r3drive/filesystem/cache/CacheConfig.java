@@ -0,0 +1,121 @@
+package io.f1r3fly.f1r3drive.filesystem.cache;
+
+import java.nio.file.Path;
+
+/**
+ * Configuration of the local cache of file content, see {@link ContentCache}, {@link BlockCache} and
+ * {@link SmallFileStore}.
+ */
+public class CacheConfig {
+
+    private final Path directory;
+    private final long quotaBytes;
+    private final long memoryBytes;
+    private final int blockSize;
+    private final int smallFileBytes;
+
+    private CacheConfig(Builder builder) {
+        this.directory = builder.directory;
+        this.quotaBytes = builder.quotaBytes;
+        this.memoryBytes = builder.memoryBytes;
+        this.blockSize = builder.blockSize;
+        this.smallFileBytes = builder.smallFileBytes;
+    }
+
+    /**
+     * Where the content is kept between mounts.
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * How many bytes of downloaded content the cache may hold.
+     */
+    public long getQuotaBytes() {
+        return quotaBytes;
+    }
+
+    /**
+     * How much memory outside the heap keeps blocks of hot files; 0 reads every block from disk.
+     */
+    public long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    /**
+     * Bytes per block kept in memory.
+     */
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Files up to this size are packed together into shared segments instead of having a file each;
+     * 0 gives every file its own.
+     */
+    public int getSmallFileBytes() {
+        return smallFileBytes;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static CacheConfig defaultConfig() {
+        return builder().build();
+    }
+
+    public static class Builder {
+        private Path directory = Path.of(System.getProperty("user.home"), ".f1r3drive", "cache");
+        private long quotaBytes = 10L * 1024 * 1024 * 1024; // 10 GB
+        private long memoryBytes = 64L * 1024 * 1024; // 64 MB
+        private int blockSize = 64 * 1024; // 64 KB
+        private int smallFileBytes = 64 * 1024; // 64 KB
+
+        public Builder directory(Path directory) {
+            if (directory == null) {
+                throw new IllegalArgumentException("Cache directory must be set");
+            }
+            this.directory = directory;
+            return this;
+        }
+
+        public Builder quotaBytes(long quotaBytes) {
+            if (quotaBytes <= 0) {
+                throw new IllegalArgumentException("Cache quota must be positive");
+            }
+            this.quotaBytes = quotaBytes;
+            return this;
+        }
+
+        public Builder memoryBytes(long memoryBytes) {
+            if (memoryBytes < 0) {
+                throw new IllegalArgumentException("Cache memory must not be negative");
+            }
+            this.memoryBytes = memoryBytes;
+            return this;
+        }
+
+        // a power of two, so a block never spans two file chunks
+        public Builder blockSize(int blockSize) {
+            if (blockSize < 4096 || blockSize > 1024 * 1024 || Integer.bitCount(blockSize) != 1) {
+                throw new IllegalArgumentException("Cache block size must be a power of two from 4 KB to 1 MB");
+            }
+            this.blockSize = blockSize;
+            return this;
+        }
+
+        public Builder smallFileBytes(int smallFileBytes) {
+            if (smallFileBytes < 0 || smallFileBytes > SmallFileStore.MAX_SMALL_FILE_BYTES) {
+                throw new IllegalArgumentException("Small file size must be from 0 to 1 MB");
+            }
+            this.smallFileBytes = smallFileBytes;
+            return this;
+        }
+
+        public CacheConfig build() {
+            return new CacheConfig(this);
+        }
+    }
+}
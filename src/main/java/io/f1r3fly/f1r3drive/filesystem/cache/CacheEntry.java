@@ -0,0 +1,118 @@
+package io.f1r3fly.f1r3drive.filesystem.cache;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The cached content of one version of a file. The data file is sparse: it holds only the chunks
+ * listed by {@link #getLoadedChunks()}. The hashes of the chunks of the version are kept along, so that
+ * a later version finds the chunks it shares with this one in place.
+ */
+public class CacheEntry {
+
+    private final ContentCache cache;
+    private final File dataFile;
+    private final File indexFile;
+    private final String path;
+    private final String version;
+    private final long size;
+    private final Map<Integer, String> chunkHashes;
+
+    // bytes of each chunk in the data file
+    private final Map<Integer, Long> loadedChunks = new ConcurrentHashMap<>();
+
+    // guarded by the cache
+    long loadedBytes;
+    boolean inUse;
+    boolean valid = true;
+
+    volatile long lastAccess;
+    volatile Evictable owner;
+
+    CacheEntry(ContentCache cache, File dataFile, File indexFile, String path, String version, long size,
+               Map<Integer, String> chunkHashes) {
+        this.cache = cache;
+        this.dataFile = dataFile;
+        this.indexFile = indexFile;
+        this.path = path;
+        this.version = version;
+        this.size = size;
+        this.chunkHashes = Map.copyOf(chunkHashes);
+    }
+
+    public File getDataFile() {
+        return dataFile;
+    }
+
+    File getIndexFile() {
+        return indexFile;
+    }
+
+    String getPath() {
+        return path;
+    }
+
+    String getVersion() {
+        return version;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    Map<Integer, String> getChunkHashes() {
+        return chunkHashes;
+    }
+
+    /**
+     * Chunks already in the data file, downloaded during this mount or an earlier one.
+     */
+    public Set<Integer> getLoadedChunks() {
+        return Collections.unmodifiableSet(loadedChunks.keySet());
+    }
+
+    Map<Integer, Long> loadedChunks() {
+        return loadedChunks;
+    }
+
+    /**
+     * Records a chunk written into the data file, so it is not downloaded again after a remount.
+     * Other content may be evicted to stay within the quota.
+     */
+    public void markLoaded(int chunkNumber, long bytes) {
+        cache.markLoaded(this, chunkNumber, bytes);
+        cache.enforceQuota();
+    }
+
+    /**
+     * Records that the data file holds no downloaded chunks anymore.
+     */
+    public void clearLoaded() {
+        cache.clearLoaded(this);
+    }
+
+    /**
+     * Records a use of the content, for eviction of the least recently used.
+     */
+    public void touch() {
+        lastAccess = System.currentTimeMillis();
+    }
+
+    /**
+     * Stops keeping this version: the data file stays as it is, but is not used by later mounts.
+     * Called when the file is changed locally.
+     */
+    public void invalidate() {
+        cache.invalidate(this);
+    }
+
+    /**
+     * Removes the entry together with its data file.
+     */
+    public void remove() {
+        cache.remove(this);
+    }
+}
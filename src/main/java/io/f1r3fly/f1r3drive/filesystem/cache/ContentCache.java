@@ -0,0 +1,440 @@
+package io.f1r3fly.f1r3drive.filesystem.cache;
+
+import io.f1r3fly.f1r3drive.encryption.ChunkManifest;
+import io.f1r3fly.f1r3drive.encryption.ContentHash;
+import io.f1r3fly.f1r3drive.errors.F1r3DriveError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Content of files read from the shard, kept on disk between mounts.
+ * <p>
+ * An entry is keyed by wallet and path and holds one version of the file, identified by its
+ * {@link #version(long, long, Map) last update, size and chunk hashes}. A file unlocked with the same
+ * version again finds its downloaded chunks in place; with another version, it finds the chunks whose hashes
+ * did not change, and only the others are downloaded again. Every entry has a data file and an index file
+ * listing the downloaded chunks and the hashes of the version:
+ * <pre>
+ *   &lt;directory&gt;/&lt;rev address&gt;/&lt;hash of path&gt;.data
+ *   &lt;directory&gt;/&lt;rev address&gt;/&lt;hash of path&gt;.properties
+ * </pre>
+ * Downloaded bytes are bounded by {@link CacheConfig#getQuotaBytes()}. Over the quota, entries not used by
+ * this mount are dropped first, then files of this mount are asked to drop their content, see {@link Evictable};
+ * both least recently used first.
+ * <p>
+ * The cache also keeps the {@link BlockIndex} of the content blocks on the shard, in {@code blocks.index}.
+ */
+public class ContentCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContentCache.class);
+
+    private static final String DATA_SUFFIX = ".data";
+    private static final String INDEX_SUFFIX = ".properties";
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final String SLABS_DIRECTORY = ".slabs";
+    private static final String BLOCK_INDEX = "blocks.index";
+    private static final int ZERO_STEP_BYTES = 1024 * 1024; // 1 mb
+
+    private static final String PATH = "path";
+    private static final String VERSION = "version";
+    private static final String SIZE = "size";
+    private static final String CHUNKS = "chunks";
+    private static final String CHUNK_HASHES = "chunkHashes";
+    private static final String LOADED_BYTES = "loadedBytes";
+
+    private final CacheConfig config;
+    private final BlockCache blockCache;
+    private final SmallFileStore smallFileStore;
+    private final BlockIndex blockIndex;
+
+    // an entry in use and when it was last used, fixed for sorting
+    private record Candidate(CacheEntry entry, long lastAccess) {
+    }
+
+    // by data file
+    private final Map<File, CacheEntry> entries = new HashMap<>();
+    private long usedBytes;
+
+    public ContentCache(CacheConfig config) throws F1r3DriveError {
+        this.config = config;
+        this.blockCache = new BlockCache(config.getMemoryBytes(), config.getBlockSize());
+        try {
+            Files.createDirectories(config.getDirectory());
+            scan();
+            this.smallFileStore = new SmallFileStore(config.getDirectory().resolve(SLABS_DIRECTORY),
+                config.getSmallFileBytes());
+            this.blockIndex = new BlockIndex(config.getDirectory().resolve(BLOCK_INDEX));
+        } catch (IOException e) {
+            throw new F1r3DriveError("Failed to open the content cache at " + config.getDirectory(), e);
+        }
+        synchronized (this) {
+            evictUnused();
+        }
+        logger.info("Content cache at {} holds {} entries, {} bytes", config.getDirectory(), entries.size(), usedBytes);
+    }
+
+    /**
+     * Identifies a version of a file: the same metadata means the same content.
+     */
+    public static String version(long lastUpdated, long size, Map<Integer, String> chunkHashes) {
+        return ContentHash.blake2b256Hex((lastUpdated + "|" + size + "|" + ChunkManifest.merkleRoot(chunkHashes))
+            .getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Opens the entry of a file. An entry left with the same version keeps its downloaded chunks;
+     * an entry of another version is dropped.
+     */
+    public CacheEntry open(String revAddress, String path, String version, long size) throws IOException {
+        return open(revAddress, path, version, size, Map.of(), size, null);
+    }
+
+    /**
+     * @param owner asked to drop the content when the cache is over its quota; null to keep it while in use
+     */
+    public CacheEntry open(String revAddress, String path, String version, long size, Evictable owner)
+        throws IOException {
+        return open(revAddress, path, version, size, Map.of(), size, owner);
+    }
+
+    /**
+     * Opens the entry of a file. An entry left with the same version keeps its downloaded chunks;
+     * an entry of another version keeps the ones with the same hash at the same chunk number. The rest of
+     * the data file reads as zeros again.
+     *
+     * @param chunkHashes hashes of the chunks of the version
+     * @param chunkBytes  size of a chunk: chunk n starts at n times it
+     * @param owner       asked to drop the content when the cache is over its quota; null to keep it while in use
+     */
+    public synchronized CacheEntry open(String revAddress, String path, String version, long size,
+                                        Map<Integer, String> chunkHashes, long chunkBytes, Evictable owner)
+        throws IOException {
+        File walletDirectory = config.getDirectory().resolve(revAddress).toFile();
+        String name = ContentHash.blake2b256Hex(path.getBytes(StandardCharsets.UTF_8));
+        File dataFile = new File(walletDirectory, name + DATA_SUFFIX);
+
+        CacheEntry existing = entries.get(dataFile);
+        if (existing != null) {
+            if (existing.getPath().equals(path) && existing.getVersion().equals(version) && existing.getSize() == size
+                && dataFile.exists()) {
+                existing.inUse = true;
+                existing.owner = owner;
+                existing.touch();
+                logger.debug("Reusing {} cached chunks of {}", existing.loadedChunks().size(), path);
+                return existing;
+            }
+        }
+
+        Map<Integer, Long> unchanged = existing == null ? Map.of() : unchangedChunks(existing, path, chunkHashes);
+        if (existing != null && unchanged.isEmpty()) {
+            remove(existing);
+        } else if (existing != null) {
+            invalidate(existing); // the data file goes on with the new entry
+            logger.debug("Reusing {} of {} cached chunks of {} unchanged in the new version", unchanged.size(),
+                existing.loadedChunks().size(), path);
+        }
+
+        Files.createDirectories(walletDirectory.toPath());
+        if (unchanged.isEmpty()) {
+            Files.write(dataFile.toPath(), new byte[0]);
+        } else {
+            clearChangedChunks(dataFile, unchanged, chunkBytes);
+        }
+        CacheEntry entry = new CacheEntry(this, dataFile, new File(walletDirectory, name + INDEX_SUFFIX), path, version, size,
+            chunkHashes);
+        entry.loadedChunks().putAll(unchanged);
+        entry.loadedBytes = unchanged.values().stream().mapToLong(Long::longValue).sum();
+        usedBytes += entry.loadedBytes;
+        entry.inUse = true;
+        entry.owner = owner;
+        entry.touch();
+        writeIndex(entry);
+        entries.put(dataFile, entry);
+        return entry;
+    }
+
+    // the downloaded chunks of an earlier version whose hashes did not change: the same bytes at the same offset
+    private static Map<Integer, Long> unchangedChunks(CacheEntry existing, String path, Map<Integer, String> chunkHashes) {
+        if (!existing.getPath().equals(path) || !existing.getDataFile().exists()) {
+            return Map.of();
+        }
+        Set<Integer> changed = ChunkManifest.changedChunks(existing.getChunkHashes(), chunkHashes);
+        Map<Integer, Long> unchanged = new HashMap<>();
+        existing.loadedChunks().forEach((chunkNumber, bytes) -> {
+            if (chunkHashes.containsKey(chunkNumber) && !changed.contains(chunkNumber)) {
+                unchanged.put(chunkNumber, bytes);
+            }
+        });
+        return unchanged;
+    }
+
+    // a changed chunk may be shorter in the new version, or gone, and is not always downloaded over in full:
+    // what the earlier version had there must not show through
+    private static void clearChangedChunks(File dataFile, Map<Integer, Long> unchanged, long chunkBytes) throws IOException {
+        long unchangedEnd = unchanged.entrySet().stream()
+            .mapToLong(chunk -> chunk.getKey() * chunkBytes + chunk.getValue())
+            .max().orElse(0);
+        try (RandomAccessFile file = new RandomAccessFile(dataFile, "rw")) {
+            if (file.length() > unchangedEnd) {
+                file.setLength(unchangedEnd); // extended as a sparse file by the owner
+            }
+            FileChannel channel = file.getChannel();
+            ByteBuffer zeros = ByteBuffer.allocate(ZERO_STEP_BYTES);
+            for (long chunkStart = 0; chunkStart < unchangedEnd; chunkStart += chunkBytes) {
+                if (unchanged.containsKey((int) (chunkStart / chunkBytes))) {
+                    continue;
+                }
+                long chunkEnd = Math.min(chunkStart + chunkBytes, unchangedEnd);
+                for (long position = chunkStart; position < chunkEnd; ) {
+                    zeros.clear().limit((int) Math.min(ZERO_STEP_BYTES, chunkEnd - position));
+                    position += channel.write(zeros, position);
+                }
+            }
+        }
+    }
+
+    /**
+     * The blocks of cached files kept in memory, shared by all files.
+     */
+    public BlockCache getBlockCache() {
+        return blockCache;
+    }
+
+    /**
+     * Where small files are kept while no one has them open, shared by all files.
+     */
+    public SmallFileStore getSmallFileStore() {
+        return smallFileStore;
+    }
+
+    /**
+     * The content blocks known to be on the shard, shared by all files.
+     */
+    public BlockIndex getBlockIndex() {
+        return blockIndex;
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    synchronized void markLoaded(CacheEntry entry, int chunkNumber, long bytes) {
+        if (!entry.valid || entry.loadedChunks().putIfAbsent(chunkNumber, bytes) != null) {
+            return;
+        }
+        entry.loadedBytes += bytes;
+        entry.touch();
+        usedBytes += bytes;
+        try {
+            writeIndex(entry);
+        } catch (IOException e) {
+            logger.warn("Failed to record chunk {} of {} in the content cache", chunkNumber, entry.getPath(), e);
+            invalidate(entry);
+        }
+    }
+
+    synchronized void clearLoaded(CacheEntry entry) {
+        if (!entry.valid) {
+            return;
+        }
+        usedBytes -= entry.loadedBytes;
+        entry.loadedBytes = 0;
+        entry.loadedChunks().clear();
+        try {
+            writeIndex(entry);
+        } catch (IOException e) {
+            logger.warn("Failed to clear {} in the content cache", entry.getPath(), e);
+            invalidate(entry);
+        }
+    }
+
+    /**
+     * Brings the downloaded bytes back within the quota if possible.
+     * The owners are called without holding the cache, as they lock their files first.
+     */
+    void enforceQuota() {
+        List<Candidate> candidates;
+        synchronized (this) {
+            evictUnused();
+            if (usedBytes <= config.getQuotaBytes()) {
+                return;
+            }
+            candidates = new ArrayList<>();
+            for (CacheEntry entry : entries.values()) {
+                if (entry.inUse && entry.owner != null && entry.loadedBytes > 0) {
+                    candidates.add(new Candidate(entry, entry.lastAccess));
+                }
+            }
+        }
+
+        candidates.sort(Comparator.comparingLong(Candidate::lastAccess));
+        for (Candidate candidate : candidates) {
+            if (getUsedBytes() <= config.getQuotaBytes()) {
+                return;
+            }
+            Evictable owner = candidate.entry().owner;
+            if (owner != null && owner.evictLocalCopy()) {
+                logger.debug("Evicted the local copy of {}", candidate.entry().getPath());
+            }
+        }
+
+        if (getUsedBytes() > config.getQuotaBytes()) {
+            logger.debug("Content cache holds {} bytes over its quota of {}: the rest is open or not finalized yet",
+                getUsedBytes() - config.getQuotaBytes(), config.getQuotaBytes());
+        }
+    }
+
+    synchronized void invalidate(CacheEntry entry) {
+        if (!entry.valid) {
+            return;
+        }
+        entry.valid = false;
+        usedBytes -= entry.loadedBytes;
+        entries.remove(entry.getDataFile(), entry);
+        if (!entry.getIndexFile().delete() && entry.getIndexFile().exists()) {
+            logger.warn("Failed to delete {}", entry.getIndexFile());
+        }
+    }
+
+    synchronized void remove(CacheEntry entry) {
+        invalidate(entry);
+        if (!entry.getDataFile().delete() && entry.getDataFile().exists()) {
+            logger.warn("Failed to delete {}", entry.getDataFile());
+        }
+    }
+
+    // entries used by this mount stay; their files point at the data
+    private void evictUnused() {
+        if (usedBytes <= config.getQuotaBytes()) {
+            return;
+        }
+        List<CacheEntry> candidates = new ArrayList<>();
+        for (CacheEntry entry : entries.values()) {
+            if (!entry.inUse) {
+                candidates.add(entry);
+            }
+        }
+        candidates.sort(Comparator.comparingLong(entry -> entry.lastAccess));
+        for (CacheEntry entry : candidates) {
+            if (usedBytes <= config.getQuotaBytes()) {
+                break;
+            }
+            logger.debug("Evicting {} from the content cache", entry.getPath());
+            remove(entry);
+        }
+    }
+
+    private void scan() throws IOException {
+        File[] walletDirectories = config.getDirectory().toFile().listFiles(File::isDirectory);
+        if (walletDirectories == null) {
+            return;
+        }
+        for (File walletDirectory : walletDirectories) {
+            File[] files = walletDirectory.listFiles();
+            if (files == null) {
+                continue;
+            }
+            for (File file : files) {
+                if (file.getName().endsWith(INDEX_SUFFIX)) {
+                    loadEntry(walletDirectory, file);
+                }
+            }
+            // data without an index is a working copy of a file changed during an earlier mount
+            for (File file : files) {
+                if ((file.getName().endsWith(DATA_SUFFIX) && !entries.containsKey(file))
+                    || file.getName().endsWith(TMP_SUFFIX)) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    private void loadEntry(File walletDirectory, File indexFile) {
+        String name = indexFile.getName().substring(0, indexFile.getName().length() - INDEX_SUFFIX.length());
+        File dataFile = new File(walletDirectory, name + DATA_SUFFIX);
+
+        Properties index = new Properties();
+        try (InputStream in = new FileInputStream(indexFile)) {
+            index.load(in);
+            CacheEntry entry = new CacheEntry(this, dataFile, indexFile, index.getProperty(PATH),
+                index.getProperty(VERSION), Long.parseLong(index.getProperty(SIZE)),
+                parseChunkMap(index.getProperty(CHUNK_HASHES, "")));
+            // "number:bytes"; an entry written before the bytes were kept has the numbers only
+            for (String chunk : splitList(index.getProperty(CHUNKS, ""))) {
+                int separator = chunk.indexOf(':');
+                entry.loadedChunks().put(Integer.parseInt(separator < 0 ? chunk : chunk.substring(0, separator)),
+                    separator < 0 ? 0L : Long.parseLong(chunk.substring(separator + 1)));
+            }
+            entry.loadedBytes = Long.parseLong(index.getProperty(LOADED_BYTES, "0"));
+            entry.lastAccess = indexFile.lastModified();
+            if (entry.getPath() == null || entry.getVersion() == null || !dataFile.exists()) {
+                throw new IOException("Incomplete entry");
+            }
+            entries.put(dataFile, entry);
+            usedBytes += entry.loadedBytes;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Dropping unreadable content cache entry {}", indexFile, e);
+            indexFile.delete();
+            dataFile.delete();
+        }
+    }
+
+    private static Map<Integer, String> parseChunkMap(String value) {
+        Map<Integer, String> map = new HashMap<>();
+        for (String chunk : splitList(value)) {
+            int separator = chunk.indexOf(':');
+            map.put(Integer.parseInt(chunk.substring(0, separator)), chunk.substring(separator + 1));
+        }
+        return map;
+    }
+
+    private static String[] splitList(String value) {
+        return value.isEmpty() ? new String[0] : value.split(",");
+    }
+
+    private static String chunkMap2String(Map<Integer, ?> map) {
+        return new TreeMap<>(map).entrySet().stream()
+            .map(e -> e.getKey() + ":" + e.getValue())
+            .collect(Collectors.joining(","));
+    }
+
+    private void writeIndex(CacheEntry entry) throws IOException {
+        Properties index = new Properties();
+        index.setProperty(PATH, entry.getPath());
+        index.setProperty(VERSION, entry.getVersion());
+        index.setProperty(SIZE, Long.toString(entry.getSize()));
+        index.setProperty(CHUNKS, chunkMap2String(entry.loadedChunks()));
+        index.setProperty(CHUNK_HASHES, chunkMap2String(entry.getChunkHashes()));
+        index.setProperty(LOADED_BYTES, Long.toString(entry.loadedBytes));
+
+        // replaced at once, so a crash leaves either the old or the new index
+        File tmp = new File(entry.getIndexFile().getPath() + TMP_SUFFIX);
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            index.store(out, null);
+        }
+        Files.move(tmp.toPath(), entry.getIndexFile().toPath(), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+    }
+}
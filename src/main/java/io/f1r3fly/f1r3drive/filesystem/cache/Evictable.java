@@ -0,0 +1,14 @@
+package io.f1r3fly.f1r3drive.filesystem.cache;
+
+/**
+ * The owner of a {@link CacheEntry} that can drop its downloaded content and download it again when needed.
+ */
+public interface Evictable {
+
+    /**
+     * Drops the downloaded content if it can be downloaded again, and clears the entry.
+     *
+     * @return false if the content is needed locally, e.g. the file is open or not finalized yet
+     */
+    boolean evictLocalCopy();
+}
@@ -0,0 +1,248 @@
+package io.f1r3fly.f1r3drive.filesystem.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Content of small files packed together into large segments, so that a tree of many small files does not
+ * take a file, and an inode, on the host for each of them.
+ * <p>
+ * A segment is a file mapped into memory. Content is appended to the active segment and found by its
+ * {@link Extent}. Freeing an extent leaves a hole; once the content left in a full segment drops under half
+ * of it, the segment is compacted: its extents move to the active segment and its file is deleted.
+ * Extents are kept in memory only, so the segments of an earlier mount are deleted at start.
+ */
+public class SmallFileStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(SmallFileStore.class);
+
+    public static final int MAX_SMALL_FILE_BYTES = 1024 * 1024; // 1 mb
+
+    static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024; // 64 mb
+
+    private static final String SEGMENT_SUFFIX = ".slab";
+
+    /**
+     * Where the content of a file is. Moved by compaction; guarded by the store.
+     */
+    public static final class Extent {
+        private Segment segment; // null once freed, and for no content
+        private int offset;
+        private final int length;
+
+        private Extent(Segment segment, int offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        public int getLength() {
+            return length;
+        }
+    }
+
+    private static final class Segment {
+        private final Path file;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final Set<Extent> extents = new HashSet<>();
+        private int used = 0;
+        private int liveBytes = 0;
+
+        private Segment(Path file, FileChannel channel, MappedByteBuffer buffer) {
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+    private final Path directory;
+    private final int maxFileBytes;
+    private final int segmentSize;
+    private final List<Segment> segments = new ArrayList<>();
+    private Segment active;
+    private int segmentCounter = 0;
+    private long compactions = 0;
+
+    /**
+     * @param maxFileBytes files up to this size are packed; 0 packs none
+     */
+    public SmallFileStore(Path directory, int maxFileBytes) throws IOException {
+        this(directory, maxFileBytes, DEFAULT_SEGMENT_SIZE);
+    }
+
+    SmallFileStore(Path directory, int maxFileBytes, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.maxFileBytes = maxFileBytes;
+        this.segmentSize = segmentSize;
+
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path leftover : leftovers) {
+                Files.delete(leftover);
+            }
+        }
+    }
+
+    /**
+     * @return true if content of this size is packed
+     */
+    public boolean accepts(long size) {
+        return maxFileBytes > 0 && size <= maxFileBytes;
+    }
+
+    /**
+     * Copies the first {@code length} bytes of a file into the store.
+     */
+    public synchronized Extent pack(FileChannel source, int length) throws IOException {
+        if (length == 0) {
+            return new Extent(null, 0, 0);
+        }
+
+        Segment segment = segmentWithRoom(length);
+        ByteBuffer target = segment.buffer.slice(segment.used, length);
+        while (target.hasRemaining()) {
+            if (source.read(target, target.position()) < 0) {
+                throw new EOFException("Content ended after %d of %d bytes".formatted(target.position(), length));
+            }
+        }
+
+        return append(segment, length);
+    }
+
+    /**
+     * Copies the remaining bytes of a buffer into the store.
+     */
+    public synchronized Extent pack(ByteBuffer content) {
+        int length = content.remaining();
+        if (length == 0) {
+            return new Extent(null, 0, 0);
+        }
+
+        Segment segment = segmentWithRoom(length);
+        segment.buffer.put(segment.used, content, content.position(), length);
+        return append(segment, length);
+    }
+
+    // the content was copied to the end of the segment
+    private Extent append(Segment segment, int length) {
+        Extent extent = new Extent(segment, segment.used, length);
+        segment.used += length;
+        segment.liveBytes += length;
+        segment.extents.add(extent);
+        return extent;
+    }
+
+    /**
+     * Fills {@code dst} with content starting at {@code position}, up to its end.
+     *
+     * @return number of bytes read
+     */
+    public synchronized int read(Extent extent, long position, ByteBuffer dst) {
+        int length = (int) Math.max(0, Math.min(extent.length - position, dst.remaining()));
+        if (length == 0 || extent.segment == null) {
+            return 0;
+        }
+        dst.put(dst.position(), extent.segment.buffer, extent.offset + (int) position, length);
+        dst.position(dst.position() + length);
+        return length;
+    }
+
+    /**
+     * Writes the content to the start of a file of its own and frees it.
+     */
+    public synchronized void unpack(Extent extent, FileChannel target) throws IOException {
+        if (extent.segment != null) {
+            ByteBuffer content = extent.segment.buffer.slice(extent.offset, extent.length);
+            while (content.hasRemaining()) {
+                target.write(content, content.position());
+            }
+        }
+        free(extent);
+    }
+
+    public synchronized void free(Extent extent) {
+        Segment segment = extent.segment;
+        if (segment == null) {
+            return;
+        }
+        extent.segment = null;
+        segment.extents.remove(extent);
+        segment.liveBytes -= extent.length;
+
+        if (segment != active && segment.liveBytes < segment.used / 2) {
+            compact(segment);
+        }
+    }
+
+    // moves the content left in a segment to the active one
+    private void compact(Segment segment) {
+        for (Extent extent : List.copyOf(segment.extents)) {
+            Segment target = segmentWithRoom(extent.length);
+            target.buffer.put(target.used, segment.buffer, extent.offset, extent.length);
+            extent.segment = target;
+            extent.offset = target.used;
+            target.used += extent.length;
+            target.liveBytes += extent.length;
+            target.extents.add(extent);
+        }
+        segment.extents.clear();
+        segments.remove(segment);
+        compactions++;
+
+        try {
+            segment.channel.close();
+            Files.deleteIfExists(segment.file);
+        } catch (IOException e) {
+            logger.warn("Failed to delete segment {}", segment.file, e);
+        }
+    }
+
+    private Segment segmentWithRoom(int length) {
+        if (active != null && active.used + length <= segmentSize) {
+            return active;
+        }
+
+        Path file = directory.resolve("segment-" + (++segmentCounter) + SEGMENT_SUFFIX);
+        try {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            active = new Segment(file, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to create segment " + file, e);
+        }
+        segments.add(active);
+        return active;
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    public synchronized long getPackedBytes() {
+        return segments.stream().mapToLong(segment -> segment.liveBytes).sum();
+    }
+
+    public synchronized long getCompactions() {
+        return compactions;
+    }
+
+    public void logStats() {
+        logger.info("Small file store: {} bytes packed in {} segments, {} compactions",
+            getPackedBytes(), getSegmentCount(), getCompactions());
+    }
+}
@@ -9,8 +9,13 @@ import io.f1r3fly.f1r3drive.filesystem.common.Directory;
 import io.f1r3fly.f1r3drive.blockchain.rholang.RholangExpressionConstructor;
 import io.f1r3fly.f1r3drive.blockchain.wallet.RevWalletInfo;
 
+import java.util.function.BooleanSupplier;
+
 public abstract class AbstractDeployablePath extends AbstractPath {
 
+    // number of the last deployment enqueued for this path; see DeployDispatcher#isDeployed
+    private volatile long lastDeploymentNumber = 0;
+
     public AbstractDeployablePath(BlockchainContext blockchainContext, String name, Directory parent) {
         super(blockchainContext, name, parent);
     }
@@ -26,14 +31,56 @@ public abstract class AbstractDeployablePath extends AbstractPath {
                 revWalletInfo.signingKey(),
                 System.currentTimeMillis());
 
-        getBlockchainContext().getDeployDispatcher().enqueueDeploy(deployment);
+        lastDeploymentNumber = getBlockchainContext().getDeployDispatcher().enqueueDeploy(deployment);
+    }
+
+    /**
+     * @return true if every change of this path made so far is finalized on the shard
+     */
+    public boolean isFinalized() {
+        return getBlockchainContext().getDeployDispatcher().isDeployed(lastDeploymentNumber);
+    }
+
+    /**
+     * @return tells whether the changes of this path made so far are finalized, also after later changes
+     */
+    protected BooleanSupplier lastMutationFinalized() {
+        DeployDispatcher deployDispatcher = getBlockchainContext().getDeployDispatcher();
+        long deploymentNumber = lastDeploymentNumber;
+        return () -> deployDispatcher.isDeployed(deploymentNumber);
     }
 
+    /**
+     * Enqueues a mutation of a path channel together with the matching update of the wallet manifest,
+     * so both land in the same deploy. Until the manifest exists, only the path channel is changed;
+     * the manifest deployed later is built from the current tree (see WalletTreeFetcher).
+     */
+    protected void enqueueMutation(String rholangExpression, String manifestUpdate) {
+        BlockchainContext blockchainContext = getBlockchainContext();
+        synchronized (blockchainContext) {
+            if (blockchainContext.isManifestAvailable()) {
+                enqueueMutation(RholangExpressionConstructor.parallel(rholangExpression, manifestUpdate));
+            } else {
+                enqueueMutation(rholangExpression);
+            }
+        }
+    }
+
+    protected String getManifestChannel() {
+        return RholangExpressionConstructor.manifestChannel(getBlockchainContext().getWalletInfo().revAddress());
+    }
+
+    /**
+     * The manifest entry of this path, as rendered by {@link RholangExpressionConstructor}.
+     */
+    public abstract String manifestEntry();
+
     @Override
     public synchronized void delete() {
         refreshLastUpdated();
         String rholangExpression = RholangExpressionConstructor.forgetChanel(getAbsolutePath());
-        enqueueMutation(rholangExpression);
+        enqueueMutation(rholangExpression,
+            RholangExpressionConstructor.removeManifestEntry(getManifestChannel(), getAbsolutePath()));
     }
 
     @Override
@@ -41,7 +88,8 @@ public abstract class AbstractDeployablePath extends AbstractPath {
         String oldPath = getAbsolutePath();
         super.rename(newName, newParent);
         String newPath = getAbsolutePath();
-        enqueueMutation(RholangExpressionConstructor.renameChanel(oldPath, newPath, getLastUpdated()));
+        enqueueMutation(RholangExpressionConstructor.renameChanel(oldPath, newPath, getLastUpdated()),
+            RholangExpressionConstructor.renameManifestEntry(getManifestChannel(), oldPath, newPath));
     }
 
 }
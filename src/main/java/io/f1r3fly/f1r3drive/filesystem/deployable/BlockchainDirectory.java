@@ -7,10 +7,16 @@ import io.f1r3fly.f1r3drive.blockchain.wallet.RevWalletInfo;
 import io.f1r3fly.f1r3drive.filesystem.common.Directory;
 import io.f1r3fly.f1r3drive.filesystem.common.Path;
 import io.f1r3fly.f1r3drive.blockchain.rholang.RholangExpressionConstructor;
+import io.f1r3fly.f1r3drive.errors.F1r3DriveError;
 import io.f1r3fly.f1r3drive.errors.OperationNotPermitted;
+import com.google.protobuf.ByteString;
 
-import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import io.f1r3fly.f1r3drive.filesystem.local.TokenDirectory;
@@ -22,7 +28,11 @@ public class BlockchainDirectory extends AbstractDeployablePath implements Direc
 
     private static final Logger logger = LoggerFactory.getLogger(BlockchainDirectory.class);
 
-    protected Set<Path> children = new HashSet<>();
+    // changed by the background resync too, see WalletSyncer
+    protected Set<Path> children = ConcurrentHashMap.newKeySet();
+
+    // a directory read from the shard is published before its children are known; see WalletTreeFetcher
+    private final CompletableFuture<Void> childrenLoaded;
 
     public BlockchainDirectory(BlockchainContext blockchainContext, String name, BlockchainDirectory parent) {
         this(blockchainContext, name, parent, true);
@@ -30,10 +40,55 @@ public class BlockchainDirectory extends AbstractDeployablePath implements Direc
 
     protected BlockchainDirectory(BlockchainContext blockchainContext, String name, Directory parent,
             boolean sendToShard) {
+        this(blockchainContext, name, parent, sendToShard, false);
+    }
+
+    protected BlockchainDirectory(BlockchainContext blockchainContext, String name, Directory parent,
+            boolean sendToShard, boolean loading) {
         super(blockchainContext, name, parent);
+        this.childrenLoaded = loading ? new CompletableFuture<>() : CompletableFuture.completedFuture(null);
         if (sendToShard) {
             String rholang = RholangExpressionConstructor.sendDirectoryIntoNewChannel(getAbsolutePath(), Set.of(), getLastUpdated());
-            enqueueMutation(rholang);
+            enqueueMutation(rholang, RholangExpressionConstructor.setManifestEntry(getManifestChannel(), getAbsolutePath(),
+                RholangExpressionConstructor.directoryManifestEntry(Set.of(), getLastUpdated())));
+        }
+    }
+
+    /**
+     * Publishes the children of a directory that was loading. Callers waiting on them are released.
+     */
+    public void completeLoading(Set<Path> loadedChildren) {
+        Set<Path> children = ConcurrentHashMap.newKeySet();
+        children.addAll(loadedChildren);
+        this.children = children;
+        childrenLoaded.complete(null);
+    }
+
+    /**
+     * Publishes the children of a directory that was loading, along with the time it was last changed on the shard.
+     */
+    public void completeLoading(Set<Path> loadedChildren, long lastUpdated) {
+        this.lastUpdated = lastUpdated;
+        completeLoading(loadedChildren);
+    }
+
+    /**
+     * Fails a directory that was loading: callers waiting on its children get the error.
+     */
+    public void failLoading(Throwable cause) {
+        childrenLoaded.completeExceptionally(cause);
+    }
+
+    public boolean isLoaded() {
+        return childrenLoaded.isDone() && !childrenLoaded.isCompletedExceptionally();
+    }
+
+    // blocks only until the children of this directory are known, not its whole subtree
+    protected void awaitChildren() {
+        try {
+            childrenLoaded.join();
+        } catch (CompletionException | CancellationException e) {
+            throw new F1r3DriveError("Failed to load directory " + getAbsolutePath(), e.getCause());
         }
     }
 
@@ -66,6 +121,8 @@ public class BlockchainDirectory extends AbstractDeployablePath implements Direc
                     System.currentTimeMillis()));
         } else {
 
+            awaitChildren();
+
             // force re-add
 
             // First remove any existing child with the same name
@@ -79,26 +136,104 @@ public class BlockchainDirectory extends AbstractDeployablePath implements Direc
 
             if (added) {
                 this.refreshLastUpdated();
-                enqueueUpdatingChildrenList();
+                if (p instanceof BlockchainFile file && file.takePendingInlineEntry()) {
+                    enqueueAddingInlineFile(file);
+                } else {
+                    enqueueUpdatingChildrenList();
+                }
             }
         }
     }
 
     private void enqueueUpdatingChildrenList() {
-        Set<String> newChildren = children.stream()
-                .filter((x) -> x instanceof AbstractDeployablePath)
-                .map(Path::getName)
-                .collect(Collectors.toSet());
+        Set<String> newChildren = getDeployableChildNames();
         String rholang = RholangExpressionConstructor.updateChildren(
                 getAbsolutePath(),
                 newChildren,
                 getLastUpdated());
 
-        enqueueMutation(rholang);
+        enqueueMutation(rholang, RholangExpressionConstructor.updateManifestChildren(
+                getManifestChannel(),
+                getAbsolutePath(),
+                newChildren,
+                getLastUpdated()));
+    }
+
+    // a new inline file is created in the same deploy that lists it
+    private void enqueueAddingInlineFile(BlockchainFile file) {
+        Set<String> newChildren = getDeployableChildNames();
+        String rholang = RholangExpressionConstructor.updateChildrenWithInlineFile(
+                getAbsolutePath(),
+                newChildren,
+                getLastUpdated(),
+                file.getName(),
+                new byte[0]);
+
+        enqueueMutation(rholang, RholangExpressionConstructor.parallel(
+                RholangExpressionConstructor.updateManifestChildren(
+                        getManifestChannel(),
+                        getAbsolutePath(),
+                        newChildren,
+                        getLastUpdated()),
+                RholangExpressionConstructor.setManifestEntry(
+                        getManifestChannel(),
+                        file.getAbsolutePath(),
+                        file.manifestEntry())));
+    }
+
+    /**
+     * Hands the content of inline files, read with the channel of this directory for one of them, to the other
+     * children that have not loaded theirs yet. Runs on the prefetcher, like a read-ahead.
+     */
+    void offerInlineContent(Map<String, ByteString> inlineFiles, Path reader) {
+        if (!isLoaded()) {
+            return;
+        }
+        ChunkPrefetcher prefetcher = getBlockchainContext().getChunkPrefetcher();
+        for (Path child : children) {
+            ByteString content = inlineFiles.get(child.getName());
+            if (child != reader && content != null && child instanceof FetchedFile file && file.awaitsInlineContent()) {
+                prefetcher.submit(() -> file.acceptInlineContent(content));
+            }
+        }
+    }
+
+    private Set<String> getDeployableChildNames() {
+        awaitChildren();
+        return children.stream()
+                .filter((x) -> x instanceof AbstractDeployablePath)
+                .map(Path::getName)
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public String manifestEntry() {
+        return RholangExpressionConstructor.directoryManifestEntry(getDeployableChildNames(), getLastUpdated());
+    }
+
+    /**
+     * Applies a change of the children made on the shard by someone else. Nothing is deployed.
+     *
+     * @param added       children to add, replacing local children with the same name
+     * @param removed     children to drop; their cached content is removed
+     * @param lastUpdated the time of the change on the shard
+     */
+    public synchronized void applyRemoteChildren(Set<Path> added, Set<Path> removed, Long lastUpdated) {
+        awaitChildren();
+        for (Path child : removed) {
+            children.remove(child);
+            child.cleanLocalCache();
+        }
+        for (Path child : added) {
+            children.removeIf(existing -> existing.getName().equals(child.getName()));
+            children.add(child);
+        }
+        this.lastUpdated = lastUpdated;
     }
 
     @Override
     public synchronized void deleteChild(Path child) {
+        awaitChildren();
         children.remove(child);
 
         refreshLastUpdated();
@@ -119,7 +254,16 @@ public class BlockchainDirectory extends AbstractDeployablePath implements Direc
 
     @Override
     public Set<Path> getChildren() {
+        awaitChildren();
         return children; // TODO: return immutable set?
     }
 
+    @Override
+    public void cleanLocalCache() {
+        // nothing is cached under a directory that did not finish loading, and waiting on it may never end
+        if (isLoaded()) {
+            children.forEach(Path::cleanLocalCache);
+        }
+    }
+
 }
\ No newline at end of file
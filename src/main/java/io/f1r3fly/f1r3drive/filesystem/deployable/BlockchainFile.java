@@ -1,8 +1,21 @@
 package io.f1r3fly.f1r3drive.filesystem.deployable;
 
 import io.f1r3fly.f1r3drive.encryption.AESCipher;
+import io.f1r3fly.f1r3drive.encryption.ChunkManifest;
+import io.f1r3fly.f1r3drive.encryption.ContentCodec;
+import io.f1r3fly.f1r3drive.encryption.ContentHash;
+import io.f1r3fly.f1r3drive.errors.F1r3DriveError;
 import io.f1r3fly.f1r3drive.errors.OperationNotPermitted;
+import com.google.protobuf.ByteString;
+import com.kenai.jffi.MemoryIO;
 import io.f1r3fly.f1r3drive.blockchain.BlockchainContext;
+import io.f1r3fly.f1r3drive.blockchain.client.F1r3flyBlockchainClient;
+import io.f1r3fly.f1r3drive.filesystem.cache.BlockCache;
+import io.f1r3fly.f1r3drive.filesystem.cache.BlockIndex;
+import io.f1r3fly.f1r3drive.filesystem.cache.CacheEntry;
+import io.f1r3fly.f1r3drive.filesystem.cache.ContentCache;
+import io.f1r3fly.f1r3drive.filesystem.cache.Evictable;
+import io.f1r3fly.f1r3drive.filesystem.cache.SmallFileStore;
 import io.f1r3fly.f1r3drive.filesystem.common.Directory;
 import io.f1r3fly.f1r3drive.filesystem.common.File;
 import io.f1r3fly.f1r3drive.blockchain.rholang.RholangExpressionConstructor;
@@ -12,23 +25,80 @@ import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-
-public class BlockchainFile extends AbstractDeployablePath implements File {
+import java.util.function.BooleanSupplier;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A file of an unlocked wallet. Its content is kept in a cached file and deployed to the shard in chunks.
+ * <p>
+ * Content already on the shard does not have to be local: a chunk is downloaded into the cached file the first
+ * time it is read or changed, and concurrent readers of the same chunk wait for a single download. Once a file
+ * is closed and its deployments are finalized, it is kept in the {@link ContentCache}, which may drop the local
+ * copy to stay within its quota; the content is downloaded again on the next use.
+ * <p>
+ * The cached file is created on first use. A small file is packed into the {@link SmallFileStore} when closed
+ * and read from there; it gets a file of its own again only to be changed.
+ * <p>
+ * A file created while {@link SealConfig#getInlineFileBytes()} is set is inline: its content is kept in the channel
+ * of its directory and deployed whole, with its metadata, in a single deploy. It moves to a channel of its own
+ * once it grows past that size.
+ */
+public class BlockchainFile extends AbstractDeployablePath implements File, Evictable {
 
     private final Logger log = org.slf4j.LoggerFactory.getLogger(BlockchainFile.class);
 
     // it should be a number that can be divisible by 16 because of AES block size
-    private static final int MAX_FILE_CHUNK_SIZE = 16 * 10 * 1024 * 1024; // 160 mb
+    protected static final int MAX_FILE_CHUNK_SIZE = 16 * 10 * 1024 * 1024; // 160 mb
+
+    // bounds the temporary direct buffer the JDK allocates when writing a heap buffer to a channel
+    private static final int MAX_WRITE_STEP_SIZE = 1024 * 1024; // 1 mb
 
     protected RandomAccessFile rif;
+    // null until the content needs a file, and while the file is packed
     protected java.io.File cachedFile;
-    protected long lastDeploymentOffset = 0;
+    // the content of a closed small file; changed under the write lock of the content
+    private SmallFileStore.Extent packed;
+    // opened and not closed yet; guarded by the monitor. The cached file is opened on first use
+    private boolean isOpen = false;
+    // chunks changed locally and not deployed yet; guarded by itself
+    private final BitSet dirtyChunks = new BitSet();
+    // offset of the first change to each dirty chunk; guarded by dirtyChunks. A chunk changed only past
+    // its deployed length is appended to instead of deployed again
+    private final Map<Integer, Long> changedFrom = new HashMap<>();
+
+    // the last chunk handed to the sealer; chunks of the file are sealed in order
+    private final Object sealLock = new Object();
+    private CompletableFuture<Void> sealing = CompletableFuture.completedFuture(null);
     protected boolean isDirty = true;
-    // cached file size; avoid IO operations at getattr
-    protected long size = -1;
+    // size of the content, kept in memory: the cached file is never asked
+    protected volatile long size = 0;
+
+    // positional reads of the cached file run concurrently; writes and closing the file are exclusive.
+    // Taken after the monitor of the file, never before
+    private final ReentrantReadWriteLock contentLock = new ReentrantReadWriteLock();
+    private final Object sizeLock = new Object();
 
     // Illegal Filename Characters.
     // In theory, it can't be used in filename, so it's safe to use it as a delimiter
@@ -36,6 +106,49 @@ public class BlockchainFile extends AbstractDeployablePath implements File {
 
     protected boolean isOtherChunksDeployed = false;
     protected Map<Integer, String> otherChunks = new ConcurrentHashMap<>();
+    // hashes of the deployed chunks, by chunk number; kept in the channel and the wallet manifest
+    protected Map<Integer, String> chunkHashes = new ConcurrentHashMap<>();
+    // how the deployed chunks are compressed; chosen again when none of them is left on the shard
+    protected volatile String codec = ContentCodec.NONE;
+    // chunks as they are on the shard, where known
+    protected final Map<Integer, DeployedChunk> deployedChunks = new ConcurrentHashMap<>();
+    // chunks whose entries in the chunk maps changed since the metadata was deployed; entries that are gone
+    // need the whole maps deployed instead
+    protected final Set<Integer> changedChunkEntries = ConcurrentHashMap.newKeySet();
+    protected boolean chunkMapRewrite = false;
+
+    // the content is kept in the channel of the parent directory, not in a channel of its own
+    protected volatile boolean inline = false;
+    // created inline: the entry is deployed along with the new children of the directory, see BlockchainDirectory
+    private boolean inlineEntryPending = false;
+
+    /**
+     * Length of a deployed chunk, and the state of the hash of its content if the digest can be copied,
+     * so that an append hashes only the appended bytes.
+     */
+    protected record DeployedChunk(long length, MessageDigest digest) {
+    }
+
+    // where the content lives on the shard; the file may be renamed or changed locally since then.
+    // Nothing is downloaded beyond remoteSize
+    protected String remoteChannel;
+    protected Map<Integer, String> remoteChunks = Collections.emptyMap();
+    protected long remoteSize = 0;
+    protected boolean remoteEncrypted;
+    protected String remoteCodec = ContentCodec.NONE;
+    protected boolean remoteInline;
+
+    // a completed future means the chunk is in the cached file
+    protected final Map<Integer, CompletableFuture<Void>> chunkLoads = new ConcurrentHashMap<>();
+
+    // null if the cached file is not kept in the content cache
+    protected volatile CacheEntry cacheEntry;
+
+    // blocks of the cached file kept in memory; invalidated wherever the cached file changes
+    protected final BlockCache.Handle blocks;
+
+    // downloads the chunks ahead of sequential readers
+    private final ReadAhead readAhead;
 
     public BlockchainFile(@NotNull BlockchainContext blockchainContext, @NotNull String name, @NotNull Directory parent) {
         this(blockchainContext, name, parent, true);
@@ -43,134 +156,614 @@ public class BlockchainFile extends AbstractDeployablePath implements File {
 
     protected BlockchainFile(@NotNull BlockchainContext blockchainContext, @NotNull String name, @NotNull Directory parent, boolean sendToShard) {
         super(blockchainContext, name, parent);
+        this.blocks = blockCache().newHandle();
+        this.readAhead = new ReadAhead(MAX_FILE_CHUNK_SIZE, prefetcher().getMaxChunks());
         if (sendToShard) {
-            enqueueCreatingFile();
-        }
-        try {
-            cachedFile = java.io.File.createTempFile(name, null);
-        } catch (Exception e) {
-            e.printStackTrace();
+            if (inlineFileBytes() > 0) {
+                refreshLastUpdated();
+                inline = true;
+                inlineEntryPending = true;
+            } else {
+                enqueueCreatingFile();
+            }
         }
     }
 
     private void enqueueCreatingFile() {
         refreshLastUpdated();
         String rholang = RholangExpressionConstructor.sendEmptyFileIntoNewChanel(getAbsolutePath(), getLastUpdated());
-        enqueueMutation(rholang);
+        enqueueMutation(rholang, RholangExpressionConstructor.setManifestEntry(getManifestChannel(), getAbsolutePath(),
+            RholangExpressionConstructor.fileManifestEntry(getLastUpdated(), 0, Map.of(), Map.of())));
     }
 
 
     public int read(Pointer buffer, long size, long offset) throws IOException {
-        open(); // make sure file is open
+        int bytesToRead = (int) Math.min(getSize() - offset, size);
+        if (bytesToRead <= 0) {
+            return 0;
+        }
+        CacheEntry entry = cacheEntry;
+        if (entry != null) {
+            entry.touch();
+        }
+        long remote = remoteSize;
+        if (offset < remote) { // the content past it is local
+            int remoteChunkCount = (int) ((remote + MAX_FILE_CHUNK_SIZE - 1) / MAX_FILE_CHUNK_SIZE);
+            readAhead.onRead(offset, bytesToRead, remoteChunkCount, System.nanoTime(),
+                chunkNumber -> prefetcher().submit(() -> prefetchChunk(chunkNumber)));
+        }
+
+        // straight into the FUSE buffer
+        ByteBuffer dst = asByteBuffer(buffer, bytesToRead);
+        int packedRead = readPacked(offset, dst);
+        if (packedRead >= 0) {
+            return packedRead;
+        }
+        return withCachedFile(contentLock.readLock(), offset, bytesToRead,
+            channel -> blockCache().read(blocks, offset, dst, (position, block) -> read(channel, position, block)));
+    }
 
-        int bytesToRead = (int) Math.min(this.size - offset, size);
-        byte[] chunk = new byte[bytesToRead];
+    // -1 if the file is not packed
+    private int readPacked(long offset, ByteBuffer dst) {
+        contentLock.readLock().lock();
+        try {
+            SmallFileStore.Extent extent = packed;
+            return extent == null ? -1 : smallFileStore().read(extent, offset, dst);
+        } finally {
+            contentLock.readLock().unlock();
+        }
+    }
+
+    private static int read(FileChannel channel, long position, ByteBuffer dst) throws IOException {
+        int bytesRead = 0;
+        while (dst.hasRemaining()) {
+            int read = channel.read(dst, position + bytesRead);
+            if (read < 0) {
+                break;
+            }
+            bytesRead += read;
+        }
+        return bytesRead;
+    }
+
+    // FUSE buffers are native memory
+    private static ByteBuffer asByteBuffer(Pointer pointer, int length) {
+        return MemoryIO.getInstance().newDirectByteBuffer(pointer.address(), length);
+    }
+
+    @FunctionalInterface
+    private interface CachedFileAction<T> {
+        T apply(FileChannel channel) throws IOException;
+    }
+
+    /**
+     * Runs an action on the open cached file under the content lock, once the given range is local.
+     * Starts over if another handle of the file closed it or the content was evicted meanwhile.
+     */
+    private <T> T withCachedFile(Lock lock, long offset, long length, CachedFileAction<T> action) throws IOException {
+        while (true) {
+            if (openCachedFile() == null) {
+                throw new IOException("Failed to open " + cachedFile);
+            }
+            ensureLocal(offset, length);
+
+            lock.lock();
+            try {
+                RandomAccessFile file = rif;
+                if (file != null && isLocal(offset, length)) {
+                    return action.apply(file.getChannel());
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private BlockCache blockCache() {
+        return getBlockchainContext().getContentCache().getBlockCache();
+    }
 
+    private int inlineFileBytes() {
+        return getBlockchainContext().getChunkSealer().getInlineFileBytes();
+    }
+
+    private boolean compress() {
+        return getBlockchainContext().getChunkSealer().isCompress();
+    }
+
+    private int dedupBlockBytes() {
+        return getBlockchainContext().getChunkSealer().getDedupBlockBytes();
+    }
+
+    private BlockIndex blockIndex() {
+        return getBlockchainContext().getContentCache().getBlockIndex();
+    }
+
+    /**
+     * @return true once for a file created inline, whose entry in the channel of its directory is still to be deployed
+     */
+    synchronized boolean takePendingInlineEntry() {
+        boolean pending = inlineEntryPending;
+        inlineEntryPending = false;
+        return pending;
+    }
+
+    private SmallFileStore smallFileStore() {
+        return getBlockchainContext().getContentCache().getSmallFileStore();
+    }
+
+    private ChunkPrefetcher prefetcher() {
+        return getBlockchainContext().getChunkPrefetcher();
+    }
+
+    // runs on the prefetcher; skipped once the file is closed or truncated, which wait for the downloads in progress
+    private void prefetchChunk(int chunkNumber) {
         synchronized (this) {
-            rif.seek(offset);
-            rif.read(chunk);
+            if (!isOpen || (long) chunkNumber * MAX_FILE_CHUNK_SIZE >= remoteSize) {
+                return;
+            }
+        }
+        try {
+            ensureChunkLocal(chunkNumber);
+        } catch (IOException e) {
+            log.debug("Failed to prefetch chunk {} of {}", chunkNumber, getAbsolutePath(), e);
         }
+    }
 
-        buffer.put(0, chunk, 0, bytesToRead);
-        return bytesToRead;
+    // must not be called holding the monitor of the file, which downloads take
+    private void stopReadAhead() {
+        readAhead.cancelAll().forEach(ChunkPrefetcher.Prefetch::await);
     }
 
-    public synchronized void truncate(long offset) throws IOException {
-        if (offset != 0) {
-            throw new RuntimeException("Unsupported");
+    /**
+     * Cuts the content at {@code offset} or extends it with zeros up to it. Only the chunks past the new end are
+     * forgotten on the shard and only the new last chunk is deployed again; an extension is not deployed at all
+     * but recorded in the size, since missing chunks read as zeros.
+     */
+    public void truncate(long offset) throws IOException {
+        if (offset < 0) {
+            throw new IOException("Negative size %d for %s".formatted(offset, getAbsolutePath()));
         }
 
-        if (size >= 0) {
-            size = 0; // size changed, reset it
+        awaitSealing(); // no chunk sealed before may be deployed after the truncation
+        stopReadAhead(); // nor downloaded past the new end
+
+        // the new last chunk is deployed again as a whole, so it must be local. It is downloaded before the monitor
+        // of the file is taken, like the downloads it may wait for
+        int tailChunk = offset == 0 ? 0 : (int) ((offset - 1) / MAX_FILE_CHUNK_SIZE);
+        long tailStart = (long) tailChunk * MAX_FILE_CHUNK_SIZE;
+        do {
+            detachFromCache(); // before loading anything: recording chunks may evict other files
+            if (inline) {
+                ensureLocal(0, getSize()); // deployed again as a whole, in the directory channel or out of it
+            } else if (offset < getSize()) {
+                ensureLocal(tailStart, offset - tailStart);
+            }
+        } while (!truncateTo(offset, tailChunk, tailStart));
+    }
+
+    /**
+     * @return false if the new last chunk is no longer local; nothing is changed then
+     */
+    private synchronized boolean truncateTo(long newSize, int tailChunk, long tailStart) throws IOException {
+        long oldSize = getSize();
+        if (newSize == oldSize) {
+            return true;
+        }
+        boolean tailCut = newSize < oldSize;
+        if (inline ? !isLocal(0, oldSize) : tailCut && !isLocal(tailStart, newSize - tailStart)) {
+            return false; // dropped by a refresh meanwhile
         }
+        boolean wasOpen = isOpen;
 
-        close();
+        detachFromCache(); // attached again by a close meanwhile
 
         isDirty = true;
+        refreshLastUpdated();
 
-        lastDeploymentOffset = 0;
+        int firstChunkPastEnd = (int) ((newSize + MAX_FILE_CHUNK_SIZE - 1) / MAX_FILE_CHUNK_SIZE);
+        if (openCachedFile() == null) {
+            throw new IOException("Failed to open " + cachedFile);
+        }
+        contentLock.writeLock().lock();
+        try {
+            rif.setLength(newSize);
+            size = newSize;
+            remoteSize = Math.min(remoteSize, newSize); // nothing past the end is downloaded any more
+            chunkLoads.keySet().removeIf(chunkNumber -> chunkNumber >= firstChunkPastEnd);
+            synchronized (dirtyChunks) {
+                dirtyChunks.clear(firstChunkPastEnd, Math.max(firstChunkPastEnd, dirtyChunks.length()));
+                changedFrom.keySet().removeIf(chunkNumber -> chunkNumber >= firstChunkPastEnd);
+                if (tailCut) {
+                    dirtyChunks.set(tailChunk);
+                    changedFrom.put(tailChunk, tailStart); // shorter than deployed: deployed again as a whole
+                }
+            }
+            blockCache().invalidate(blocks, Math.min(oldSize, newSize), Math.abs(newSize - oldSize));
+        } finally {
+            contentLock.writeLock().unlock();
+        }
 
-        cachedFile.delete();
-        cachedFile = Files.createTempFile(name, null).toFile();
+        // chunks past the end are forgotten rather than deployed empty; chunks by content may be used elsewhere
+        for (Map.Entry<Integer, String> chunk : new TreeMap<>(otherChunks).entrySet()) {
+            if (chunk.getKey() >= firstChunkPastEnd) {
+                if (!RholangExpressionConstructor.isContentAddressed(chunk.getValue())) {
+                    enqueueMutation(RholangExpressionConstructor.forgetChanel(chunk.getValue()));
+                }
+                otherChunks.remove(chunk.getKey());
+            }
+        }
+        chunkHashes.keySet().removeIf(chunkNumber -> chunkNumber >= firstChunkPastEnd);
+        deployedChunks.keySet().removeIf(chunkNumber -> chunkNumber >= firstChunkPastEnd);
+        chunkMapRewrite = true;
+        isOtherChunksDeployed = false;
+        if (inline && newSize > inlineFileBytes()) {
+            leaveInlineIfLocal(); // local, as checked above
+        }
+
+        // truncate(2) is not followed by a close, so the change goes out now
+        deployChanges();
+        if (!wasOpen) {
+            closeCachedFile();
+            packSmallFile();
+        }
+        return true;
+    }
+
+    public int write(Pointer buffer, long bufSize, long writeOffset) throws IOException {
+        log.trace("Writing to file {} at offset {}", getAbsolutePath(), writeOffset);
+
+        detachFromCache();
 
+        isDirty = true;
         refreshLastUpdated();
-        enqueueMutation(RholangExpressionConstructor.forgetChanel(getAbsolutePath()));
-        otherChunks.forEach((chunkNumber, subChannel) -> {
-            enqueueMutation(RholangExpressionConstructor.forgetChanel(subChannel));
+
+        // a partly overwritten chunk is deployed again as a whole, so it must be local
+        ByteBuffer src = asByteBuffer(buffer, (int) bufSize);
+        withCachedFile(contentLock.writeLock(), writeOffset, bufSize, channel -> {
+            long written = 0;
+            while (src.hasRemaining()) {
+                written += channel.write(src, writeOffset + written);
+            }
+            size = Math.max(size, writeOffset + written);
+            markDirty(writeOffset, written);
+            blockCache().invalidate(blocks, writeOffset, written);
+            return written;
         });
+        if (inline && getSize() > inlineFileBytes()) {
+            leaveInline();
+        }
 
-        otherChunks = new ConcurrentHashMap<>();
-        isOtherChunksDeployed = false;
+        // a chunk the write reached the end of is complete: seal it in the background while the rest is being written
+        long writeEnd = writeOffset + bufSize;
+        int firstChunk = (int) (writeOffset / MAX_FILE_CHUNK_SIZE);
+        int firstIncompleteChunk = (int) (writeEnd / MAX_FILE_CHUNK_SIZE);
+        for (int chunkNumber = firstChunk; chunkNumber < firstIncompleteChunk; chunkNumber++) {
+            if (isDirty(chunkNumber)) {
+                sealInBackground(chunkNumber);
+            }
+        }
 
-        enqueueCreatingFile();
+        return (int) bufSize;
+    }
 
-        open();
+    // the content outgrew the channel of the directory: it moves to a channel of its own and is deployed there as a whole
+    private void leaveInline() throws IOException {
+        do {
+            // before it is gone from the directory channel. Downloaded before the monitor of the file is taken,
+            // like the downloads it may wait for
+            ensureLocal(0, getSize());
+        } while (!leaveInlineIfLocal());
     }
 
-    public int write(Pointer buffer, long bufSize, long writeOffset) throws IOException {
-        log.trace("Writing to file {} at offset {}", cachedFile.getAbsolutePath(), writeOffset);
+    /**
+     * @return false if the content is no longer local; nothing is changed then
+     */
+    private synchronized boolean leaveInlineIfLocal() {
+        if (!inline) {
+            return true;
+        }
+        if (!isLocal(0, getSize())) {
+            return false; // dropped by a refresh meanwhile
+        }
 
-        open(); // make sure file is open
+        inline = false;
+        remoteInline = false;
+        refreshLastUpdated();
+        enqueueMutation(
+            RholangExpressionConstructor.parallel(
+                RholangExpressionConstructor.removeInlineFile(parent.getAbsolutePath(), name),
+                RholangExpressionConstructor.sendEmptyFileIntoNewChanel(getAbsolutePath(), getLastUpdated())),
+            RholangExpressionConstructor.setManifestEntry(getManifestChannel(), getAbsolutePath(),
+                RholangExpressionConstructor.fileManifestEntry(getLastUpdated(), 0, Map.of(), Map.of())));
+
+        chunkHashes.clear();
+        deployedChunks.clear();
+        changedChunkEntries.clear();
+        chunkMapRewrite = true;
+        isOtherChunksDeployed = false;
+        markDirty(0, getSize());
+        return true;
+    }
 
-        if (size >= 0) {
-            size = -1; // size changed, reset it
+    private void markDirty(long offset, long length) {
+        if (length <= 0) {
+            return;
         }
+        int firstChunk = (int) (offset / MAX_FILE_CHUNK_SIZE);
+        int lastChunk = (int) ((offset + length - 1) / MAX_FILE_CHUNK_SIZE);
+        synchronized (dirtyChunks) {
+            dirtyChunks.set(firstChunk, lastChunk + 1);
+            changedFrom.merge(firstChunk, offset, Math::min);
+            for (int chunkNumber = firstChunk + 1; chunkNumber <= lastChunk; chunkNumber++) {
+                changedFrom.put(chunkNumber, (long) chunkNumber * MAX_FILE_CHUNK_SIZE);
+            }
+        }
+    }
 
-        isDirty = true;
-        refreshLastUpdated();
+    private boolean isDirty(int chunkNumber) {
+        synchronized (dirtyChunks) {
+            return dirtyChunks.get(chunkNumber);
+        }
+    }
 
-        byte[] bytesToWrite = new byte[(int) bufSize];
-        buffer.get(0, bytesToWrite, 0, (int) bufSize);
-        synchronized (this) {
-            rif.seek(writeOffset);
-            rif.write(bytesToWrite, 0, (int) bufSize);
+    // -1 if there is none
+    private int nextDirtyChunk() {
+        synchronized (dirtyChunks) {
+            return dirtyChunks.nextSetBit(0);
         }
+    }
 
-        int writeEnd = (int) (writeOffset + bufSize);
-        int notDeployedChunkSize = (int) (writeEnd - lastDeploymentOffset);
-        if (notDeployedChunkSize >= MAX_FILE_CHUNK_SIZE) {
-            deployChunk();
+    private boolean hasDirtyChunks() {
+        synchronized (dirtyChunks) {
+            return !dirtyChunks.isEmpty();
         }
+    }
 
-        return (int) bufSize;
+    // waits while the sealer has too many chunks in flight
+    private void sealInBackground(int chunkNumber) {
+        ChunkSealer sealer = getBlockchainContext().getChunkSealer();
+        synchronized (sealLock) {
+            sealing = sealer.submit(sealing, () -> deployChunk(chunkNumber));
+        }
     }
 
-    private void deployChunk() throws IOException {
-        open(); // make sure file is open
+    // must not be called holding the monitor of the file, which sealing takes
+    private void awaitSealing() {
+        CompletableFuture<Void> lastSeal;
+        synchronized (sealLock) {
+            lastSeal = sealing;
+        }
+        lastSeal.join(); // completes also if sealing failed
+    }
+
+    private void deployChunk(int chunkNumber) throws IOException {
+        long chunkStart = (long) chunkNumber * MAX_FILE_CHUNK_SIZE;
+        long changeStart;
+        // cleared before reading: a write from now on marks it again
+        synchronized (dirtyChunks) {
+            if (!dirtyChunks.get(chunkNumber)) {
+                return; // deployed meanwhile, or the file was truncated
+            }
+            dirtyChunks.clear(chunkNumber);
+            changeStart = changedFrom.getOrDefault(chunkNumber, chunkStart);
+            changedFrom.remove(chunkNumber);
+        }
+        int size = (int) Math.max(0, Math.min(getSize() - chunkStart, MAX_FILE_CHUNK_SIZE));
+        if (size == 0 && chunkNumber > 0) {
+            return; // past the end
+        }
+
+        // a chunk that only grew gets the new bytes appended; a cipher text or compressed content cannot be
+        // extended, nor can a chunk in a channel named by its content
+        DeployedChunk deployed = deployedChunks.get(chunkNumber);
+        String deployedSubChannel = otherChunks.get(chunkNumber);
+        boolean append = deployed != null && deployed.length() > 0 && deployed.length() < size
+            && changeStart >= chunkStart + deployed.length()
+            && (deployedSubChannel == null ? chunkNumber == 0 : !RholangExpressionConstructor.isContentAddressed(deployedSubChannel))
+            && !PathUtils.isEncryptedExtension(name)
+            && ContentCodec.NONE.equals(codec);
+
+        try {
+            if (append) {
+                appendToChunk(chunkNumber, deployed, size, deployedSubChannel);
+            } else if (!deployWholeChunk(chunkNumber, size, deployed, deployedSubChannel)) {
+                return; // the same content is on the shard already
+            }
+        } catch (IOException e) {
+            markDirty(changeStart, 1); // still to deploy
+            throw e;
+        }
 
-        int size = (int) Math.min(getSize() - lastDeploymentOffset, MAX_FILE_CHUNK_SIZE);
+        changedChunkEntries.add(chunkNumber);
+        isOtherChunksDeployed = false; // the size changes with every chunk
+        refreshLastUpdated();
+    }
 
+    /**
+     * @return false if the chunk was not deployed, as its hash is the one of the chunk on the shard
+     */
+    private boolean deployWholeChunk(int chunkNumber, int size, DeployedChunk deployed, String deployedSubChannel)
+        throws IOException {
+        long chunkStart = (long) chunkNumber * MAX_FILE_CHUNK_SIZE;
         byte[] bytes = new byte[size];
-        synchronized (this) {
-            rif.seek(lastDeploymentOffset);
-            rif.read(bytes, 0, size);
+        withCachedFile(contentLock.readLock(), chunkStart, size,
+            channel -> read(channel, chunkStart, ByteBuffer.wrap(bytes)));
+
+        if (chunkHashes.isEmpty()) {
+            // nothing of the file is on the shard: the content of the first chunk deployed tells for all of them
+            codec = compress() ? ContentCodec.choose(bytes) : ContentCodec.NONE;
+        }
+
+        int blockBytes = dedupBlockBytes();
+        if (blockBytes > 0 && size >= blockBytes) {
+            return deployBlocks(chunkNumber, bytes, blockBytes, deployed, deployedSubChannel);
         }
 
+        bytes = ContentCodec.encode(codec, bytes);
         if (PathUtils.isEncryptedExtension(name)) {
             bytes = AESCipher.getInstance().encrypt(bytes);
         }
 
-        int chunkNumber = (int) (lastDeploymentOffset / MAX_FILE_CHUNK_SIZE);
+        MessageDigest digest = ContentHash.newBlake2b256();
+        digest.update(bytes);
+        deployedChunks.put(chunkNumber, new DeployedChunk(bytes.length, copyOf(digest)));
+        String hash = ContentHash.toHex(digest);
+        if (deployed != null && (chunkNumber == 0 || deployedSubChannel != null) && hash.equals(chunkHashes.get(chunkNumber))) {
+            log.debug("Chunk {} of {} is unchanged, not deployed again", chunkNumber, getAbsolutePath());
+            return false;
+        }
+        chunkHashes.put(chunkNumber, hash);
+
         String rholang;
         if (chunkNumber == 0) {
             rholang = RholangExpressionConstructor.updateFileContent(getAbsolutePath(), bytes);
+            if (deployedSubChannel != null) { // back from a chunk channel
+                otherChunks.remove(0);
+                chunkMapRewrite = true;
+            }
         } else {
             String subChannel = getAbsolutePath() + delimiter + chunkNumber;
+            if (deployedSubChannel != null && !RholangExpressionConstructor.isContentAddressed(deployedSubChannel)) {
+                enqueueMutation(RholangExpressionConstructor.forgetChanel(deployedSubChannel)); // replace, not add a second value
+            }
             rholang = RholangExpressionConstructor.sendFileContentChunk(subChannel, bytes);
             otherChunks.put(chunkNumber, subChannel);
-            isOtherChunksDeployed = false;
         }
-        refreshLastUpdated();
         enqueueMutation(rholang);
+        return true;
+    }
+
+    /**
+     * Deploys a chunk as blocks cut by its content, each to the channel named by its hash, and the list of blocks to
+     * the channel named by the hash of the chunk. Blocks and chunks already on the shard, see {@link BlockIndex},
+     * are not deployed again; the rest goes out in one deploy. Blocks are compressed and encrypted one by one, so
+     * that the same content gives the same blocks.
+     *
+     * @return false if the chunk was not deployed, as its hash is the one of the chunk on the shard
+     */
+    private boolean deployBlocks(int chunkNumber, byte[] content, int blockBytes, DeployedChunk deployed,
+                                 String deployedSubChannel) {
+        boolean encrypted = PathUtils.isEncryptedExtension(name);
+        BlockIndex index = blockIndex();
+        ContentDefinedChunker chunker = new ContentDefinedChunker(blockBytes);
+        MessageDigest chunkDigest = ContentHash.newBlake2b256();
+        List<String> blockHashes = new ArrayList<>();
+        Map<String, byte[]> newBlocks = new LinkedHashMap<>(); // a block repeated within the chunk goes out once
+        for (int from = 0; from < content.length; ) {
+            int to = chunker.nextBoundary(content, from, content.length);
+            byte[] block = ContentCodec.encode(codec, Arrays.copyOfRange(content, from, to));
+            if (encrypted) {
+                block = AESCipher.getInstance().encrypt(block);
+            }
+            chunkDigest.update(block);
+            String blockHash = ContentHash.blake2b256Hex(block);
+            blockHashes.add(blockHash);
+            if (!index.contains(blockHash)) {
+                newBlocks.putIfAbsent(blockHash, block);
+            }
+            from = to;
+        }
 
-        lastDeploymentOffset = lastDeploymentOffset + size;
+        String hash = ContentHash.toHex(chunkDigest);
+        deployedChunks.put(chunkNumber, new DeployedChunk(content.length, null)); // never appended to
+        if (deployed != null && deployedSubChannel != null && hash.equals(chunkHashes.get(chunkNumber))) {
+            log.debug("Chunk {} of {} is unchanged, not deployed again", chunkNumber, getAbsolutePath());
+            return false;
+        }
+        chunkHashes.put(chunkNumber, hash);
+
+        String chunkChannel = RholangExpressionConstructor.chunkChannel(hash);
+        boolean chunkKnown = index.contains(hash);
+        List<String> mutations = new ArrayList<>();
+        if (!chunkKnown) {
+            newBlocks.forEach((blockHash, block) -> mutations.add(
+                RholangExpressionConstructor.sendFileContentChunk(RholangExpressionConstructor.blockChannel(blockHash), block)));
+            mutations.add(RholangExpressionConstructor.sendBlockList(chunkChannel, blockHashes));
+        }
+        if (chunkNumber == 0 && deployedSubChannel == null) {
+            // the content moves out of the channel of the file
+            mutations.add(RholangExpressionConstructor.updateFileContent(getAbsolutePath(), new byte[0]));
+        } else if (deployedSubChannel != null && !RholangExpressionConstructor.isContentAddressed(deployedSubChannel)) {
+            mutations.add(RholangExpressionConstructor.forgetChanel(deployedSubChannel));
+        }
+        otherChunks.put(chunkNumber, chunkChannel);
+
+        if (!mutations.isEmpty()) {
+            enqueueMutation(RholangExpressionConstructor.parallel(mutations.toArray(String[]::new)));
+        }
+        if (!chunkKnown) {
+            BooleanSupplier finalized = lastMutationFinalized();
+            newBlocks.keySet().forEach(blockHash -> index.addPending(blockHash, finalized));
+            index.addPending(hash, finalized);
+        }
+        log.debug("Deployed chunk {} of {} as {} blocks, {} of them new", chunkNumber, getAbsolutePath(),
+            blockHashes.size(), chunkKnown ? 0 : newBlocks.size());
+        return true;
+    }
+
+    // deploys only the bytes past the deployed length of the chunk
+    private void appendToChunk(int chunkNumber, DeployedChunk deployed, int size, String deployedSubChannel)
+        throws IOException {
+        long chunkStart = (long) chunkNumber * MAX_FILE_CHUNK_SIZE;
+        long tailStart = chunkStart + deployed.length();
+        byte[] tail = new byte[(int) (size - deployed.length())];
+        MessageDigest copied = deployed.digest() == null ? null : copyOf(deployed.digest());
+        MessageDigest digest = copied != null ? copied : ContentHash.newBlake2b256();
+
+        withCachedFile(contentLock.readLock(), chunkStart, size, channel -> {
+            if (copied == null) {
+                // the deployed part is hashed again, a step at a time
+                digest.reset();
+                ByteBuffer step = ByteBuffer.allocate(MAX_WRITE_STEP_SIZE);
+                for (long position = chunkStart; position < tailStart; position += step.limit()) {
+                    step.clear().limit((int) Math.min(MAX_WRITE_STEP_SIZE, tailStart - position));
+                    if (read(channel, position, step) == 0) {
+                        break;
+                    }
+                    digest.update(step.flip());
+                }
+            }
+            return read(channel, tailStart, ByteBuffer.wrap(tail));
+        });
+
+        digest.update(tail);
+        deployedChunks.put(chunkNumber, new DeployedChunk(size, copyOf(digest)));
+        chunkHashes.put(chunkNumber, ContentHash.toHex(digest));
+
+        enqueueMutation(chunkNumber == 0
+            ? RholangExpressionConstructor.appendFileContent(getAbsolutePath(), tail)
+            : RholangExpressionConstructor.appendFileContentChunk(deployedSubChannel, tail));
+    }
+
+    // null if the digest does not support copying its state
+    private static MessageDigest copyOf(MessageDigest digest) {
+        try {
+            return (MessageDigest) digest.clone();
+        } catch (CloneNotSupportedException e) {
+            return null;
+        }
     }
 
-    public void open() {
+    // synchronized with evictLocalCopy, which drops the content of files nobody has open
+    public synchronized void open() {
+        isOpen = true; // a packed file is read without a file of its own
+    }
+
+    // creates the cached file on first use and unpacks the content into it
+    private synchronized RandomAccessFile openCachedFile() {
+        if (rif != null) {
+            return rif;
+        }
         try {
-            if (rif == null) {
+            if (cachedFile == null) {
+                cachedFile = java.io.File.createTempFile(name, null);
+                rif = createRIF();
+                rif.setLength(getSize()); // sparse up to the content not downloaded yet
+            } else {
                 rif = createRIF();
             }
+            unpack();
         } catch (FileNotFoundException e) {
             // TODO: if file not found, re-pull it from Node?
             try {
@@ -179,6 +772,78 @@ public class BlockchainFile extends AbstractDeployablePath implements File {
             } catch (IOException e1) {
                 log.warn("Failed to create file {} while creating RIT", cachedFile.getAbsolutePath(), e1);
             }
+        } catch (IOException e) {
+            log.warn("Failed to set up the cached file of {}", getAbsolutePath(), e);
+            if (rif != null) {
+                try {
+                    rif.close();
+                } catch (IOException ignored) {
+                    // unusable either way
+                }
+                rif = null;
+            }
+        }
+        return rif;
+    }
+
+    private void unpack() throws IOException {
+        contentLock.writeLock().lock();
+        try {
+            if (packed != null) {
+                smallFileStore().unpack(packed, rif.getChannel());
+                packed = null;
+            }
+        } finally {
+            contentLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Moves the content of a small file that is all deployed into the {@link SmallFileStore}, so that it takes
+     * no file of its own while closed. Content not downloaded yet is dropped with the cached file instead.
+     *
+     * @return false if the file is open, changed, too large or kept in the content cache
+     */
+    private synchronized boolean packSmallFile() {
+        long size = getSize();
+        if (hasLocalChanges() || cacheEntry != null || !smallFileStore().accepts(size)) {
+            return false;
+        }
+        if (cachedFile == null) {
+            return true; // packed already, or never used
+        }
+
+        contentLock.writeLock().lock();
+        try {
+            if (isLocal(0, size)) {
+                try (FileChannel channel = FileChannel.open(cachedFile.toPath(), StandardOpenOption.READ)) {
+                    packed = smallFileStore().pack(channel, (int) size);
+                }
+            } else {
+                chunkLoads.clear();
+            }
+        } catch (IOException e) {
+            log.warn("Failed to pack {}", getAbsolutePath(), e);
+            return false;
+        } finally {
+            contentLock.writeLock().unlock();
+        }
+
+        cachedFile.delete();
+        cachedFile = null;
+        return true;
+    }
+
+    // the content no longer matches the file
+    protected synchronized void freePacked() {
+        contentLock.writeLock().lock();
+        try {
+            if (packed != null) {
+                smallFileStore().free(packed);
+                packed = null;
+            }
+        } finally {
+            contentLock.writeLock().unlock();
         }
     }
 
@@ -187,52 +852,457 @@ public class BlockchainFile extends AbstractDeployablePath implements File {
     }
 
     public void close() {
+        stopReadAhead(); // a download in progress would open the cached file again
+        awaitSealing(); // the metadata lists the sealed chunks
+        deployAndClose();
+
+        if (!packSmallFile() && !hasLocalChanges()) {
+            attachToCache();
+        }
+    }
+
+    private void deployAndClose() {
         try {
-            // append a last part of the file if any
-            if (lastDeploymentOffset < getSize()) {
-                deployChunk();
+            deployChanges();
+            closeCachedFile();
+        } catch (IOException e) {
+            // Ignore
+            e.printStackTrace();
+        }
+    }
+
+    private void deployChanges() throws IOException {
+        if (inline) {
+            if (hasDirtyChunks() || !isOtherChunksDeployed) {
+                deployInline();
             }
+            return;
+        }
 
-            if (!isOtherChunksDeployed) {
-                if (!otherChunks.isEmpty()) {
-                    refreshLastUpdated();
-                    enqueueMutation(RholangExpressionConstructor.updateOtherChunksMap(getAbsolutePath(), otherChunks));
+        // the chunks changed since they were last deployed, and only those
+        for (int chunkNumber = nextDirtyChunk(); chunkNumber >= 0; chunkNumber = nextDirtyChunk()) {
+            deployChunk(chunkNumber);
+        }
+
+        if (!isOtherChunksDeployed) {
+            refreshLastUpdated();
+            Set<Integer> changed = Set.copyOf(changedChunkEntries);
+            if (chunkMapRewrite) {
+                enqueueMutation(
+                    RholangExpressionConstructor.updateFileMetadata(getAbsolutePath(), otherChunks, chunkHashes, codec, getSize(), getLastUpdated()),
+                    RholangExpressionConstructor.updateManifestFileMetadata(getManifestChannel(), getAbsolutePath(), otherChunks, chunkHashes, codec, getSize(), getLastUpdated()));
+            } else {
+                // only the entries of the chunks deployed since, so that the deploy does not grow with the file
+                Map<Integer, String> changedChunks = new TreeMap<>();
+                Map<Integer, String> changedHashes = new TreeMap<>();
+                for (int chunkNumber : changed) {
+                    String subChannel = otherChunks.get(chunkNumber);
+                    if (subChannel != null) {
+                        changedChunks.put(chunkNumber, subChannel);
+                    }
+                    String hash = chunkHashes.get(chunkNumber);
+                    if (hash != null) {
+                        changedHashes.put(chunkNumber, hash);
+                    }
                 }
-                isOtherChunksDeployed = true;
+                String merkleRoot = getMerkleRoot();
+                enqueueMutation(
+                    RholangExpressionConstructor.updateFileMetadataDelta(getAbsolutePath(), changedChunks, changedHashes, merkleRoot, codec, getSize(), getLastUpdated()),
+                    RholangExpressionConstructor.updateManifestFileMetadataDelta(getManifestChannel(), getAbsolutePath(), changedChunks, changedHashes, merkleRoot, codec, getSize(), getLastUpdated()));
             }
+            changedChunkEntries.removeAll(changed);
+            chunkMapRewrite = false;
+            isOtherChunksDeployed = true;
+        }
+    }
 
+    // the whole content goes to the channel of the directory, together with the metadata
+    private void deployInline() throws IOException {
+        synchronized (dirtyChunks) { // a write from now on marks it again
+            dirtyChunks.clear();
+            changedFrom.clear();
+        }
+
+        try {
+            ensureLocal(0, getSize());
+            byte[] bytes = readContent();
+            if (PathUtils.isEncryptedExtension(name)) {
+                bytes = AESCipher.getInstance().encrypt(bytes);
+            }
+            chunkHashes.clear();
+            chunkHashes.put(0, ContentHash.blake2b256Hex(bytes));
+            codec = ContentCodec.NONE; // small enough as it is
+
+            refreshLastUpdated();
+            enqueueMutation(
+                RholangExpressionConstructor.setInlineFile(parent.getAbsolutePath(), name, bytes),
+                RholangExpressionConstructor.updateManifestFileMetadata(getManifestChannel(), getAbsolutePath(),
+                    Map.of(), chunkHashes, codec, getSize(), getLastUpdated()));
+        } catch (IOException e) {
+            markDirty(0, 1); // still to deploy
+            throw e;
+        }
+
+        changedChunkEntries.clear();
+        chunkMapRewrite = false;
+        isOtherChunksDeployed = true;
+    }
+
+    private synchronized void closeCachedFile() throws IOException {
+        contentLock.writeLock().lock(); // after the readers in progress
+        try {
+            isOpen = false;
             if (rif != null) {
                 rif.close();
                 rif = null;
             }
+        } finally {
+            contentLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Moves a file whose content is all deployed into the content cache, so it is kept between mounts
+     * and can be evicted. Files read from the shard are there from the start.
+     * Must not be called holding the lock of this file: recording the chunks may evict other files.
+     */
+    private void attachToCache() {
+        if (cacheEntry != null || cachedFile == null) {
+            return;
+        }
+
+        long size = getSize();
+        try {
+            CacheEntry entry = getBlockchainContext().getContentCache().open(getBlockchainContext().getWalletInfo().revAddress(),
+                getAbsolutePath(), ContentCache.version(getLastUpdated(), size, chunkHashes), size, chunkHashes, MAX_FILE_CHUNK_SIZE, this);
+            Map<Integer, Long> localChunks = new TreeMap<>();
+            synchronized (this) {
+                Files.move(cachedFile.toPath(), entry.getDataFile().toPath(), StandardCopyOption.REPLACE_EXISTING);
+                cachedFile = entry.getDataFile();
+
+                // written locally, or downloaded already; the rest stays on the shard
+                for (int chunkNumber = 0; (long) chunkNumber * MAX_FILE_CHUNK_SIZE < size; chunkNumber++) {
+                    long chunkStart = (long) chunkNumber * MAX_FILE_CHUNK_SIZE;
+                    CompletableFuture<Void> load = chunkLoads.get(chunkNumber);
+                    if (chunkStart >= remoteSize || (load != null && load.isDone() && !load.isCompletedExceptionally())) {
+                        chunkLoads.put(chunkNumber, CompletableFuture.completedFuture(null));
+                        localChunks.put(chunkNumber, Math.min(MAX_FILE_CHUNK_SIZE, size - chunkStart));
+                    }
+                }
+
+                remoteChannel = getAbsolutePath();
+                remoteChunks = Map.copyOf(otherChunks);
+                remoteSize = size;
+                remoteEncrypted = PathUtils.isEncryptedExtension(name);
+                remoteCodec = codec;
+                remoteInline = inline;
+                cacheEntry = entry;
+            }
+
+            localChunks.forEach(entry::markLoaded);
         } catch (IOException e) {
-            // Ignore
-            e.printStackTrace();
+            log.warn("Failed to keep {} in the content cache", getAbsolutePath(), e);
         }
     }
 
-    public long getSize() {
-        if (size < 0) {
-            size = cachedFile.length();
+    // the cached file no longer matches the version it is kept under: moved out of the cache directory,
+    // which may create a new entry for the same path later
+    protected synchronized void detachFromCache() throws IOException {
+        CacheEntry entry = cacheEntry;
+        if (entry != null) {
+            cacheEntry = null;
+            entry.invalidate();
+            if (entry.getDataFile().equals(cachedFile)) {
+                Path detached = Files.createTempFile(name, null);
+                Files.move(cachedFile.toPath(), detached, StandardCopyOption.REPLACE_EXISTING);
+                cachedFile = detached.toFile();
+            }
+        }
+    }
+
+    @Override
+    public synchronized boolean evictLocalCopy() {
+        CacheEntry entry = cacheEntry;
+        if (entry == null || hasLocalChanges() || !isFinalized()) {
+            return false;
         }
+
+        // back to a sparse file; the content is downloaded again on first use
+        contentLock.writeLock().lock();
+        try (RandomAccessFile file = new RandomAccessFile(cachedFile, "rw")) {
+            file.setLength(0);
+            file.setLength(getSize());
+            blockCache().invalidateAll(blocks);
+            chunkLoads.clear();
+        } catch (IOException e) {
+            log.warn("Failed to evict the local copy of {}", getAbsolutePath(), e);
+            return false;
+        } finally {
+            contentLock.writeLock().unlock();
+        }
+        entry.clearLoaded();
+        return true;
+    }
+
+    public long getSize() {
         return size;
     }
 
-    public int initFromBytes(byte[] bytes, long offset) throws IOException {
-        open(); // make sure file is open
+    // every chunk overlapping the range is in the cached file
+    private boolean isLocal(long offset, long length) {
+        long end = Math.min(offset + length, remoteSize);
+        for (long chunkStart = offset / MAX_FILE_CHUNK_SIZE * MAX_FILE_CHUNK_SIZE; chunkStart < end; chunkStart += MAX_FILE_CHUNK_SIZE) {
+            CompletableFuture<Void> load = chunkLoads.get((int) (chunkStart / MAX_FILE_CHUNK_SIZE));
+            if (load == null || !load.isDone() || load.isCompletedExceptionally()) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-        if (PathUtils.isEncryptedExtension(name)) {
-            bytes = AESCipher.getInstance().decrypt(bytes);
+    public Map<Integer, String> getChunkHashes() {
+        return Collections.unmodifiableMap(chunkHashes);
+    }
+
+    /**
+     * @see ChunkManifest#merkleRoot(Map)
+     */
+    public String getMerkleRoot() {
+        return ChunkManifest.merkleRoot(chunkHashes);
+    }
+
+    /**
+     * @return true if the file is open or has content or metadata that is not deployed yet
+     */
+    public synchronized boolean hasLocalChanges() {
+        return isOpen || rif != null || hasDirtyChunks() || !isOtherChunksDeployed;
+    }
+
+    /**
+     * Makes sure the cached file holds the content in the given range before it is read or changed.
+     */
+    protected void ensureLocal(long offset, long length) throws IOException {
+        long end = Math.min(offset + length, remoteSize);
+        if (offset >= end) {
+            return;
         }
 
-        synchronized (this) {
-            rif.seek(offset);
-            rif.write(bytes);
+        int firstChunk = (int) (offset / MAX_FILE_CHUNK_SIZE);
+        int lastChunk = (int) ((end - 1) / MAX_FILE_CHUNK_SIZE);
+        List<Integer> missing = new ArrayList<>();
+        for (int chunkNumber = firstChunk; chunkNumber <= lastChunk; chunkNumber++) {
+            CompletableFuture<Void> load = chunkLoads.get(chunkNumber);
+            if (load == null || load.isCompletedExceptionally()) {
+                missing.add(chunkNumber);
+            }
+        }
+
+        if (missing.size() > 1) {
+            // downloaded at once; the loop below waits for the chunks other readers are loading
+            getBlockchainContext().getChunkDownloader().downloadAll(getAbsolutePath(), missing, this::ensureChunkLocal);
+        }
+        for (int chunkNumber = firstChunk; chunkNumber <= lastChunk; chunkNumber++) {
+            ensureChunkLocal(chunkNumber);
+        }
+    }
+
+    private void ensureChunkLocal(int chunkNumber) throws IOException {
+        CompletableFuture<Void> load = chunkLoads.get(chunkNumber);
+        if (load == null) {
+            CompletableFuture<Void> ownLoad = new CompletableFuture<>();
+            load = chunkLoads.putIfAbsent(chunkNumber, ownLoad);
+            if (load == null) {
+                try {
+                    long started = System.nanoTime();
+                    long loaded = loadChunk(chunkNumber);
+                    readAhead.onChunkLoaded(System.nanoTime() - started);
+                    CacheEntry entry = cacheEntry;
+                    if (entry != null) {
+                        entry.markLoaded(chunkNumber, loaded);
+                    }
+                    ownLoad.complete(null);
+                    return;
+                } catch (Throwable e) {
+                    chunkLoads.remove(chunkNumber, ownLoad); // the next reader tries again
+                    ownLoad.completeExceptionally(e);
+                    throw e;
+                }
+            }
+        }
+
+        try {
+            load.join();
+        } catch (CompletionException e) {
+            throw new IOException("Failed to load chunk %d of %s".formatted(chunkNumber, getAbsolutePath()), e.getCause());
+        }
+    }
+
+    /**
+     * Downloads a chunk into its place in the cached file.
+     *
+     * @return number of bytes written
+     */
+    protected long loadChunk(int chunkNumber) throws IOException {
+        log.debug("Loading chunk {} of {}", chunkNumber, getAbsolutePath());
+
+        ByteString bytes;
+        String subChannel = remoteChunks.get(chunkNumber);
+        if (chunkNumber == 0 && remoteInline) {
+            bytes = inlineContent();
+        } else if (subChannel != null && RholangExpressionConstructor.isChunkChannel(subChannel)) {
+            return loadBlocks(chunkNumber, subChannel);
+        } else if (chunkNumber == 0) {
+            bytes = RholangExpressionConstructor.parseChannelData(
+                getBlockchainContext().getBlockchainClient().findDataByName(remoteChannel)).firstChunk();
+        } else {
+            if (subChannel == null) {
+                return 0; // never deployed, nothing but zeros
+            }
+            bytes = RholangExpressionConstructor.parseBytes(
+                getBlockchainContext().getBlockchainClient().findDataByName(subChannel));
+        }
+
+        if (bytes == null || bytes.isEmpty()) {
+            return 0;
+        }
+        if (!remoteEncrypted && ContentCodec.NONE.equals(remoteCodec)) { // only plain chunks are appended to
+            MessageDigest digest = ContentHash.newBlake2b256();
+            bytes.asReadOnlyByteBufferList().forEach(digest::update);
+            deployedChunks.put(chunkNumber, new DeployedChunk(bytes.size(), digest));
+        }
+        return writeFetchedBytes(bytes, (long) chunkNumber * MAX_FILE_CHUNK_SIZE, remoteEncrypted, remoteCodec);
+    }
+
+    // a chunk deployed by content: its blocks one after another. Anyone may send to a channel named by a hash,
+    // so the block list is checked against the hash of the chunk before anything is written
+    private long loadBlocks(int chunkNumber, String chunkChannel) throws IOException {
+        F1r3flyBlockchainClient client = getBlockchainContext().getBlockchainClient();
+        String chunkHash = RholangExpressionConstructor.chunkChannelHash(chunkChannel);
+        for (List<String> blockHashes : RholangExpressionConstructor.parseBlockLists(client.findDataByName(chunkChannel))) {
+            List<ByteString> blocks = new ArrayList<>(blockHashes.size());
+            MessageDigest digest = ContentHash.newBlake2b256();
+            for (String blockHash : blockHashes) {
+                ByteString block = loadBlock(client, blockHash);
+                block.asReadOnlyByteBufferList().forEach(digest::update);
+                blocks.add(block);
+            }
+            if (!ContentHash.toHex(digest).equals(chunkHash)) {
+                log.warn("Skipping a block list of chunk {} of {} that does not match its hash", chunkNumber, getAbsolutePath());
+                continue;
+            }
+
+            long chunkStart = (long) chunkNumber * MAX_FILE_CHUNK_SIZE;
+            long written = 0;
+            for (ByteString block : blocks) {
+                written += writeFetchedBytes(block, chunkStart + written, remoteEncrypted, remoteCodec);
+            }
+            deployedChunks.put(chunkNumber, new DeployedChunk(written, null));
+            BlockIndex index = blockIndex();
+            blockHashes.forEach(index::addDeployed);
+            index.addDeployed(chunkHash);
+            return written;
+        }
+        throw new IOException("No block list of chunk %d of %s matches its hash".formatted(chunkNumber, getAbsolutePath()));
+    }
+
+    // a block sent by several deploys is there several times; a single copy is checked along with the chunk
+    private static ByteString loadBlock(F1r3flyBlockchainClient client, String blockHash) throws IOException {
+        List<ByteString> copies = RholangExpressionConstructor.parseAllBytes(
+            client.findDataByName(RholangExpressionConstructor.blockChannel(blockHash)));
+        if (copies.size() == 1) {
+            return copies.get(0);
+        }
+        for (ByteString copy : copies) {
+            MessageDigest digest = ContentHash.newBlake2b256();
+            copy.asReadOnlyByteBufferList().forEach(digest::update);
+            if (ContentHash.toHex(digest).equals(blockHash)) {
+                return copy;
+            }
+        }
+        throw new IOException("Block %s is not on the shard".formatted(blockHash));
+    }
+
+    // the content of an inline file comes with the channel of its directory: the other inline files there
+    // that are not loaded yet take theirs along
+    private ByteString inlineContent() throws IOException {
+        if (!(parent instanceof BlockchainDirectory directory)) {
+            throw new IOException("No directory channel holds the content of " + getAbsolutePath());
+        }
+        Map<String, ByteString> inlineFiles = RholangExpressionConstructor.parseChannelData(
+            getBlockchainContext().getBlockchainClient().findDataByName(directory.getAbsolutePath())).inlineFiles();
+        directory.offerInlineContent(inlineFiles, this);
+        return inlineFiles.getOrDefault(name, ByteString.EMPTY);
+    }
+
+    /**
+     * Packs content of a small file fetched from the shard, as if chunk 0 had been downloaded.
+     *
+     * @return false if the file is not small, or has content of its own already
+     */
+    protected synchronized boolean packFetchedContent(byte[] content) {
+        if (hasLocalChanges() || cachedFile != null || packed != null || content.length != getSize()
+            || !smallFileStore().accepts(content.length)) {
+            return false;
         }
 
-        lastDeploymentOffset = offset + bytes.length;
+        contentLock.writeLock().lock();
+        try {
+            SmallFileStore.Extent extent = smallFileStore().pack(ByteBuffer.wrap(content));
+            if (chunkLoads.putIfAbsent(0, CompletableFuture.completedFuture(null)) != null) {
+                smallFileStore().free(extent); // being downloaded meanwhile
+                return false;
+            }
+            packed = extent;
+        } finally {
+            contentLock.writeLock().unlock();
+        }
+        return true;
+    }
 
-        return bytes.length;
+    public long initFromBytes(ByteString bytes, long offset) throws IOException {
+        return writeFetchedBytes(bytes, offset); // the shard already has it: nothing becomes dirty
+    }
+
+    /**
+     * Writes bytes fetched from the shard into the cached file at {@code offset}, decrypting and decompressing
+     * them if needed. Plain bytes go from the received buffers to the file without intermediate heap copies.
+     *
+     * @return number of bytes written to the cached file
+     */
+    protected long writeFetchedBytes(ByteString bytes, long offset) throws IOException {
+        return writeFetchedBytes(bytes, offset, PathUtils.isEncryptedExtension(name), ContentCodec.NONE);
+    }
+
+    protected long writeFetchedBytes(ByteString bytes, long offset, boolean encrypted, String codec) throws IOException {
+        // downloads fill parts nobody reads until they are loaded, so they share the lock with readers
+        return withCachedFile(contentLock.readLock(), offset, 0, channel -> {
+            long written = 0;
+            if (!ContentCodec.NONE.equals(codec)) {
+                written = ContentCodec.decode(codec, encrypted
+                    ? List.of(ByteBuffer.wrap(AESCipher.getInstance().decrypt(bytes.toByteArray())))
+                    : bytes.asReadOnlyByteBufferList(), channel, offset);
+            } else if (encrypted) {
+                written = AESCipher.getInstance().decrypt(bytes.asReadOnlyByteBufferList(), channel, offset);
+            } else {
+                for (ByteBuffer buffer : bytes.asReadOnlyByteBufferList()) {
+                    while (buffer.hasRemaining()) {
+                        ByteBuffer step = buffer.slice();
+                        step.limit(Math.min(step.remaining(), MAX_WRITE_STEP_SIZE));
+                        int stepSize = step.limit();
+                        while (step.hasRemaining()) {
+                            written += channel.write(step, offset + written);
+                        }
+                        buffer.position(buffer.position() + stepSize);
+                    }
+                }
+            }
+
+            synchronized (sizeLock) { // downloads of several chunks run at once
+                size = Math.max(size, offset + written);
+            }
+            blockCache().invalidate(blocks, offset, written);
+            return written;
+        });
     }
 
     public void initSubChannels(Map<Integer, String> subChannels) {
@@ -244,8 +1314,9 @@ public class BlockchainFile extends AbstractDeployablePath implements File {
         if (isDirty) {
             if (isDeployable()) {
                 try {
+                    ensureLocal(0, getSize());
                     refreshLastUpdated();
-                    String rholangExpression = Files.readString(cachedFile.toPath());
+                    String rholangExpression = new String(readContent(), StandardCharsets.UTF_8);
                     enqueueMutation(rholangExpression); // deploy a file as rho expression
                 } catch (IOException e) {
                     e.printStackTrace();
@@ -255,12 +1326,39 @@ public class BlockchainFile extends AbstractDeployablePath implements File {
         }
     }
 
+    // the whole content, from the slab if the file is packed
+    private synchronized byte[] readContent() throws IOException {
+        contentLock.readLock().lock();
+        try {
+            if (packed != null) {
+                ByteBuffer content = ByteBuffer.allocate(packed.getLength());
+                smallFileStore().read(packed, 0, content);
+                return content.array();
+            }
+        } finally {
+            contentLock.readLock().unlock();
+        }
+        return cachedFile == null ? new byte[0] : Files.readAllBytes(cachedFile.toPath());
+    }
+
     @Override
     public void rename(String newName, Directory newParent) throws OperationNotPermitted {
+        // the first chunk is stored in the file channel, which is moved to the new path
+        try {
+            ensureLocal(0, MAX_FILE_CHUNK_SIZE);
+            detachFromCache(); // kept by path
+        } catch (IOException e) {
+            throw new F1r3DriveError("Failed to load %s before renaming it".formatted(getAbsolutePath()), e);
+        }
 
         isDirty = true;
         refreshLastUpdated();
 
+        if (inline) {
+            renameInline(newName, newParent);
+            return;
+        }
+
         boolean wasEncrypted = PathUtils.isEncryptedExtension(name);
         boolean willBeEncrypted = PathUtils.isEncryptedExtension(newName);
 
@@ -271,7 +1369,8 @@ public class BlockchainFile extends AbstractDeployablePath implements File {
         boolean needDecrypt = wasEncrypted && !willBeEncrypted;
 
         if (needEncrypt || needDecrypt) {
-            enqueueMutation(RholangExpressionConstructor.forgetChanel(getAbsolutePath())); // delete old
+            enqueueMutation(RholangExpressionConstructor.forgetChanel(getAbsolutePath()), // delete old
+                RholangExpressionConstructor.removeManifestEntry(getManifestChannel(), getAbsolutePath()));
 
             this.name = newName;
             this.parent = newParent;
@@ -284,16 +1383,38 @@ public class BlockchainFile extends AbstractDeployablePath implements File {
 
     }
 
+    // the content is deployed again under the new name, encrypted or not as the name says
+    private void renameInline(String newName, Directory newParent) {
+        String oldPath = getAbsolutePath();
+        String oldParentPath = parent.getAbsolutePath();
+        String oldName = name;
+        this.name = newName;
+        this.parent = newParent;
+
+        enqueueMutation(RholangExpressionConstructor.removeInlineFile(oldParentPath, oldName),
+            RholangExpressionConstructor.renameManifestEntry(getManifestChannel(), oldPath, getAbsolutePath()));
+        try {
+            deployInline();
+        } catch (IOException e) {
+            throw new F1r3DriveError("Failed to deploy %s after renaming it".formatted(getAbsolutePath()), e);
+        }
+        isDirty = false;
+    }
+
     private void redeployFileIntoChanel() {
+        awaitSealing();
         refreshLastUpdated();
         enqueueCreatingFile(); // create new
+        // nothing is in the new channel yet, so no chunk is left out as unchanged
+        deployedChunks.clear();
+        chunkHashes.clear();
 
         open(); // make sure file is open
-        // append
-        lastDeploymentOffset = 0;
-        while (lastDeploymentOffset < getSize()) {
+        // all of it goes to the new channel
+        markDirty(0, getSize());
+        for (int chunkNumber = nextDirtyChunk(); chunkNumber >= 0; chunkNumber = nextDirtyChunk()) {
             try {
-                deployChunk();
+                deployChunk(chunkNumber);
             } catch (IOException e) {
                 e.printStackTrace();
             }
@@ -302,6 +1423,11 @@ public class BlockchainFile extends AbstractDeployablePath implements File {
         close(); // close file
     }
 
+    @Override
+    public String manifestEntry() {
+        return RholangExpressionConstructor.fileManifestEntry(getLastUpdated(), getSize(), otherChunks, chunkHashes, codec, inline);
+    }
+
     private boolean isDeployable() {
         return PathUtils.isDeployableFile(name);
     }
@@ -309,6 +1435,9 @@ public class BlockchainFile extends AbstractDeployablePath implements File {
 
     @Override
     public void cleanLocalCache() {
+        if (cacheEntry != null || cachedFile == null) {
+            return; // kept for the next mount, or packed
+        }
         try {
             this.cachedFile.delete();
         } catch (Throwable t) {
@@ -318,7 +1447,22 @@ public class BlockchainFile extends AbstractDeployablePath implements File {
 
     @Override
     public synchronized void delete() {
-        cachedFile.delete();
-        super.delete();
+        CacheEntry entry = cacheEntry;
+        if (entry != null) {
+            cacheEntry = null;
+            entry.remove();
+        }
+        if (cachedFile != null) {
+            cachedFile.delete();
+        }
+        freePacked();
+        blockCache().invalidateAll(blocks);
+        if (inline) {
+            refreshLastUpdated();
+            enqueueMutation(RholangExpressionConstructor.removeInlineFile(parent.getAbsolutePath(), name),
+                RholangExpressionConstructor.removeManifestEntry(getManifestChannel(), getAbsolutePath()));
+        } else {
+            super.delete();
+        }
     }
 }
@@ -0,0 +1,93 @@
+package io.f1r3fly.f1r3drive.filesystem.deployable;
+
+import io.f1r3fly.f1r3drive.filesystem.fetch.FetchConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Downloads several chunks of a file at once, so that hydrating a large file is bound by bandwidth rather than
+ * by the round trip of each chunk. Every chunk is written to its own offset of the cached file.
+ * <p>
+ * The pool has {@link FetchConfig#getChunkDownloadConcurrency()} threads, shared by every file.
+ */
+public class ChunkDownloader {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkDownloader.class);
+
+    @FunctionalInterface
+    public interface ChunkDownload {
+        void download(int chunkNumber) throws IOException;
+    }
+
+    private final ExecutorService executor;
+
+    public ChunkDownloader(FetchConfig config) {
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(config.getChunkDownloadConcurrency(), r -> {
+            Thread t = new Thread(r, "ChunkDownloader-" + threadCounter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Downloads the chunks concurrently and waits for all of them, reporting progress as they complete.
+     *
+     * @param path for progress reports
+     * @throws IOException the failure of the first chunk that failed, once the others are done
+     */
+    public void downloadAll(String path, List<Integer> chunkNumbers, ChunkDownload download) throws IOException {
+        long started = System.nanoTime();
+        AtomicInteger completed = new AtomicInteger();
+
+        CompletableFuture<?>[] downloads;
+        try {
+            downloads = chunkNumbers.stream()
+                .map(chunkNumber -> CompletableFuture.runAsync(() -> {
+                    try {
+                        download.download(chunkNumber);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                    logger.debug("Downloaded chunk {} of {} ({}/{})", chunkNumber, path, completed.incrementAndGet(),
+                        chunkNumbers.size());
+                }, executor))
+                .toArray(CompletableFuture[]::new);
+        } catch (RejectedExecutionException e) {
+            throw new IOException("Chunk downloader is shut down", e);
+        }
+
+        IOException failure = null;
+        for (CompletableFuture<?> chunk : downloads) {
+            try {
+                chunk.join();
+            } catch (CompletionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+
+        logger.info("Downloaded {} chunks of {} in {} ms", chunkNumbers.size(), path,
+            (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Takes no more downloads; the ones queued still run for the readers waiting on them.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
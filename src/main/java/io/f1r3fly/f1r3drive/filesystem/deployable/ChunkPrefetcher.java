@@ -0,0 +1,118 @@
+package io.f1r3fly.f1r3drive.filesystem.deployable;
+
+import io.f1r3fly.f1r3drive.filesystem.fetch.FetchConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Downloads chunks of files ahead of their sequential readers, see {@link ReadAhead}.
+ * <p>
+ * The pool has one thread per chunk of {@link FetchConfig#getReadAheadChunks()}, shared by every file.
+ */
+public class ChunkPrefetcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkPrefetcher.class);
+
+    /**
+     * A chunk download ahead of the reader. It is skipped if cancelled before it starts.
+     */
+    public static final class Prefetch {
+        private static final int PENDING = 0;
+        private static final int RUNNING = 1;
+        private static final int FINISHED = 2;
+
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Prefetch() {
+        }
+
+        private void run(Runnable task) {
+            if (!state.compareAndSet(PENDING, RUNNING)) {
+                return; // cancelled
+            }
+            try {
+                task.run();
+            } catch (Throwable e) {
+                logger.debug("Failed to prefetch a chunk; it is downloaded when read", e);
+            } finally {
+                state.set(FINISHED);
+                done.complete(null);
+            }
+        }
+
+        /**
+         * Skips the download unless it has started; a download in progress runs to the end.
+         */
+        public void cancel() {
+            if (state.compareAndSet(PENDING, FINISHED)) {
+                done.complete(null);
+            }
+        }
+
+        public boolean isDone() {
+            return done.isDone();
+        }
+
+        /**
+         * Waits for a download in progress.
+         */
+        public void await() {
+            done.join();
+        }
+    }
+
+    private final int maxChunks;
+    private final ExecutorService executor; // null if read-ahead is disabled
+
+    public ChunkPrefetcher(FetchConfig config) {
+        this.maxChunks = config.getReadAheadChunks();
+        if (maxChunks == 0) {
+            this.executor = null;
+            return;
+        }
+
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(maxChunks, r -> {
+            Thread t = new Thread(r, "ChunkPrefetcher-" + threadCounter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Maximum number of chunks a reader gets ahead.
+     */
+    public int getMaxChunks() {
+        return maxChunks;
+    }
+
+    public Prefetch submit(Runnable task) {
+        Prefetch prefetch = new Prefetch();
+        if (executor == null) {
+            prefetch.cancel();
+            return prefetch;
+        }
+        try {
+            executor.execute(() -> prefetch.run(task));
+        } catch (RejectedExecutionException e) {
+            prefetch.cancel(); // shut down
+        }
+        return prefetch;
+    }
+
+    /**
+     * Stops at once: prefetched chunks are only a head start for readers.
+     */
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package io.f1r3fly.f1r3drive.filesystem.deployable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Seals full chunks of written files off the FUSE threads: a chunk is read back from the cached file,
+ * encrypted, encoded and enqueued for deployment while the application keeps writing.
+ * <p>
+ * The number of chunks in flight is bounded by {@link SealConfig#getMaxPendingChunks()}: a writer that gets
+ * further ahead waits in {@link #submit(CompletableFuture, SealTask)}.
+ */
+public class ChunkSealer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkSealer.class);
+
+    @FunctionalInterface
+    public interface SealTask {
+        void seal() throws Exception;
+    }
+
+    private final ExecutorService executor;
+    private final Semaphore pendingChunks;
+    private final int inlineFileBytes;
+    private final int dedupBlockBytes;
+    private final boolean compress;
+
+    public ChunkSealer(SealConfig config) {
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(config.getThreads(), r -> {
+            Thread t = new Thread(r, "ChunkSealer-" + threadCounter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.pendingChunks = new Semaphore(config.getMaxPendingChunks());
+        this.inlineFileBytes = config.getInlineFileBytes();
+        this.dedupBlockBytes = config.getDedupBlockBytes();
+        this.compress = config.isCompress();
+    }
+
+    /**
+     * @see SealConfig#getInlineFileBytes()
+     */
+    public int getInlineFileBytes() {
+        return inlineFileBytes;
+    }
+
+    /**
+     * @see SealConfig#getDedupBlockBytes()
+     */
+    public int getDedupBlockBytes() {
+        return dedupBlockBytes;
+    }
+
+    /**
+     * @see SealConfig#isCompress()
+     */
+    public boolean isCompress() {
+        return compress;
+    }
+
+    /**
+     * Seals a chunk once the chunks sealed before it are done, so the deployments of one file keep their order.
+     * Waits while too many chunks are in flight.
+     *
+     * @param previous the last seal of the same file
+     * @return completes when the chunk is sealed, also if sealing failed
+     */
+    public CompletableFuture<Void> submit(CompletableFuture<Void> previous, SealTask task) {
+        pendingChunks.acquireUninterruptibly();
+        try {
+            return previous.handle((result, e) -> null).thenRunAsync(() -> {
+                try {
+                    task.seal();
+                } catch (Throwable e) {
+                    logger.warn("Failed to seal a chunk; it is sealed again on close", e);
+                } finally {
+                    pendingChunks.release();
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            pendingChunks.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for the chunks in flight, then stops.
+     */
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+            logger.warn("Chunk sealer did not terminate gracefully");
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package io.f1r3fly.f1r3drive.filesystem.deployable;
+
+/**
+ * Cuts content into blocks at boundaries chosen by the content itself, so that inserting or removing bytes
+ * moves only the boundaries next to the change: the blocks around it are cut as before and found in the
+ * {@link io.f1r3fly.f1r3drive.filesystem.cache.BlockIndex} again.
+ * <p>
+ * A Gear rolling hash runs over the content from the minimum block size on; a block ends where the top bits of
+ * the hash are all zero, or at the maximum size. Each step shifts the hash by one bit, so the top bits depend
+ * on the last 64 bytes only. Blocks are between a quarter and four times the average size, except the last
+ * one of the content, and come out around the average.
+ */
+final class ContentDefinedChunker {
+
+    // one value per byte, the same in every run and on every machine: boundaries must not move between them
+    private static final long[] GEAR = new long[256];
+
+    static {
+        long state = 0x2545F4914F6CDD1DL;
+        for (int i = 0; i < GEAR.length; i++) {
+            // splitmix64
+            state += 0x9E3779B97F4A7C15L;
+            long z = state;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            GEAR[i] = z ^ (z >>> 31);
+        }
+    }
+
+    private final int minSize;
+    private final int maxSize;
+    private final long mask;
+
+    /**
+     * @param averageSize a power of two
+     */
+    ContentDefinedChunker(int averageSize) {
+        if (averageSize < 64 || Integer.bitCount(averageSize) != 1) {
+            throw new IllegalArgumentException("Average block size must be a power of two of at least 64");
+        }
+        this.minSize = averageSize / 4;
+        this.maxSize = averageSize * 4;
+        this.mask = -1L << (Long.SIZE - Integer.numberOfTrailingZeros(averageSize));
+    }
+
+    /**
+     * @return the end of the block starting at {@code from}, at most {@code to}
+     */
+    int nextBoundary(byte[] content, int from, int to) {
+        int end = (int) Math.min(to, (long) from + maxSize);
+        long hash = 0;
+        for (int i = (int) Math.min(end, (long) from + minSize); i < end; i++) {
+            hash = (hash << 1) + GEAR[content[i] & 0xff];
+            if ((hash & mask) == 0) {
+                return i + 1;
+            }
+        }
+        return end;
+    }
+}
@@ -5,14 +5,18 @@ import io.f1r3fly.f1r3drive.filesystem.common.Path;
 
 import java.util.Set;
 
+/**
+ * A directory read from the shard. It is published as soon as its own channel is read;
+ * {@link #getChildren()} waits until {@link #setChildren(Set)} is called.
+ */
 public class FetchedDirectory extends BlockchainDirectory {
     public FetchedDirectory(BlockchainContext blockchainContext, String name, BlockchainDirectory parent, Long lastUpdated) {
-        super(blockchainContext, name, parent, false);
+        super(blockchainContext, name, parent, false, true);
         this.lastUpdated = lastUpdated;
     }
 
     public void setChildren(Set<Path> children) {
-        this.children = children;
+        completeLoading(children);
     }
 
     public void updateParent(BlockchainDirectory parent) {
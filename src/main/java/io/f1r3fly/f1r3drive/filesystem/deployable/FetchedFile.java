@@ -1,12 +1,31 @@
 package io.f1r3fly.f1r3drive.filesystem.deployable;
 
+import com.google.protobuf.ByteString;
 import io.f1r3fly.f1r3drive.blockchain.BlockchainContext;
+import io.f1r3fly.f1r3drive.blockchain.rholang.RholangExpressionConstructor;
+import io.f1r3fly.f1r3drive.encryption.AESCipher;
+import io.f1r3fly.f1r3drive.encryption.ContentCodec;
+import io.f1r3fly.f1r3drive.encryption.ContentHash;
+import io.f1r3fly.f1r3drive.filesystem.cache.CacheEntry;
+import io.f1r3fly.f1r3drive.filesystem.cache.ContentCache;
+import io.f1r3fly.f1r3drive.filesystem.cache.SmallFileStore;
 import io.f1r3fly.f1r3drive.filesystem.common.Directory;
+import io.f1r3fly.f1r3drive.filesystem.utils.PathUtils;
 
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * A file read from the shard. Only the metadata is loaded at unlock; the content is downloaded on first use.
+ * <p>
+ * The cached file lives in the {@link ContentCache}, so chunks downloaded by an earlier mount are used again
+ * as long as their hashes have not changed. A local change detaches the file from the cache. Small files are not kept
+ * there: they are downloaded again on first use in each mount, see {@link SmallFileStore}. The content of an inline
+ * file comes with the channel of its directory, so reading one loads the other small files of the directory too.
+ */
 public class FetchedFile extends BlockchainFile {
 
     public FetchedFile(BlockchainContext blockchainContext, String name, Directory parent, Long lastUpdated) {
@@ -14,22 +33,170 @@ public class FetchedFile extends BlockchainFile {
         this.lastUpdated = lastUpdated;
     }
 
-    public int initFromBytes(byte[] bytes, long offset) throws IOException {
-        open();
+    /**
+     * Sets the file up from its channel metadata without downloading the content.
+     * A file stored without a size has its last chunk downloaded to find the size out.
+     *
+     * @param channel     the file channel the metadata was read from
+     * @param size        the size of the content, or {@link RholangExpressionConstructor#UNKNOWN_SIZE}
+     * @param subChannels sub channels of the chunks after the first one
+     * @param hashes      hashes of the deployed chunks
+     * @param codec       how the chunks are compressed, see {@link ContentCodec}
+     * @param inline      the content is kept in the channel of the directory
+     */
+    public void initFromMetadata(String channel, long size, Map<Integer, String> subChannels,
+                                 Map<Integer, String> hashes, String codec, boolean inline) throws IOException {
+        applyMetadata(channel, null, size, subChannels, hashes, codec, inline);
+    }
+
+    /**
+     * A refresh, given the time of the newer version, leaves a file with local changes as it is. The last chunk of a
+     * file without a size is downloaded outside the monitor of the file, which downloads started elsewhere take.
+     *
+     * @return false if nothing was changed
+     */
+    private boolean applyMetadata(String channel, Long refreshedLastUpdated, long size, Map<Integer, String> subChannels,
+                                  Map<Integer, String> hashes, String codec, boolean inline) throws IOException {
+        boolean sizeKnown = size != RholangExpressionConstructor.UNKNOWN_SIZE;
         synchronized (this) {
-            rif.seek(offset);
-            rif.write(bytes);
+            if (refreshedLastUpdated != null) {
+                if (hasLocalChanges()) {
+                    return false;
+                }
+                chunkLoads.clear();
+                this.lastUpdated = refreshedLastUpdated;
+            }
+            applyChannelMetadata(channel, subChannels, hashes, codec, inline);
+            if (!sizeKnown) {
+                detachFromCache(); // no version to keep it under
+            }
+        }
+
+        if (!sizeKnown) {
+            int lastChunk = subChannels.keySet().stream().mapToInt(Integer::intValue).max().orElse(0);
+            long lastChunkSize = loadChunk(lastChunk);
+            chunkLoads.put(lastChunk, CompletableFuture.completedFuture(null));
+            size = (long) lastChunk * MAX_FILE_CHUNK_SIZE + lastChunkSize;
         }
-        return bytes.length;
+
+        applySize(channel, size, sizeKnown, hashes);
+        return true;
     }
 
-    public void initSubChannels(Map<Integer, String> subChannels) {
-        otherChunks = new ConcurrentHashMap<>(subChannels);
+    private void applyChannelMetadata(String channel, Map<Integer, String> subChannels, Map<Integer, String> hashes,
+                                      String codec, boolean inline) {
+        this.remoteChannel = channel;
+        this.inline = inline;
+        this.remoteInline = inline;
+        this.remoteChunks = Map.copyOf(subChannels);
+        this.remoteEncrypted = PathUtils.isEncryptedExtension(name);
+        this.remoteCodec = codec;
+        this.codec = codec;
+        this.otherChunks = new ConcurrentHashMap<>(subChannels);
+        this.chunkHashes = new ConcurrentHashMap<>(hashes);
+        this.deployedChunks.clear(); // learnt again as chunks are downloaded
+        this.changedChunkEntries.clear();
+        this.chunkMapRewrite = false;
+        this.isOtherChunksDeployed = true;
+        freePacked(); // an older version
     }
 
-    public void updateParent(BlockchainDirectory parent) {
-        this.parent = parent;
+    private synchronized void applySize(String channel, long size, boolean sizeKnown, Map<Integer, String> hashes)
+        throws IOException {
+        if (!sizeKnown && rif != null) {
+            rif.close(); // keep no descriptor open for files nobody uses
+            rif = null;
+        }
+
+        this.remoteSize = size;
+        this.size = size;
+
+        ContentCache contentCache = getBlockchainContext().getContentCache();
+        if (sizeKnown && contentCache.getSmallFileStore().accepts(size)) {
+            // no file until first use
+            detachFromCache();
+            if (cachedFile != null) {
+                cachedFile.delete();
+                cachedFile = null;
+            }
+            contentCache.getBlockCache().invalidateAll(blocks);
+            return;
+        }
+
+        boolean reused = false;
+        if (sizeKnown) { // a file whose size was unknown keeps its temporary copy
+            // an entry left for another version of the path keeps only the chunks that did not change
+            CacheEntry entry = contentCache.open(getBlockchainContext().getWalletInfo().revAddress(),
+                channel, ContentCache.version(lastUpdated, size, hashes), size, hashes, MAX_FILE_CHUNK_SIZE, this);
+            if (!entry.getDataFile().equals(cachedFile)) {
+                if (cachedFile != null) {
+                    cachedFile.delete();
+                }
+                cachedFile = entry.getDataFile();
+            }
+            for (int chunkNumber : entry.getLoadedChunks()) {
+                chunkLoads.put(chunkNumber, CompletableFuture.completedFuture(null));
+            }
+            reused = !entry.getLoadedChunks().isEmpty();
+            cacheEntry = entry;
+        }
+
+        // a sparse file: takes disk space only for the chunks downloaded later
+        try (RandomAccessFile file = new RandomAccessFile(cachedFile, "rw")) {
+            if (!reused) {
+                file.setLength(0); // drop content cached for an older version
+            }
+            file.setLength(size);
+        }
+        contentCache.getBlockCache().invalidateAll(blocks);
+    }
+
+    /**
+     * Sets an inline file up from its content, read along with the channel of its directory.
+     *
+     * @param channel the path of the file
+     * @param stored  the content as deployed, encrypted if the name says so
+     */
+    public void initFromInlineContent(String channel, ByteString stored) throws IOException {
+        byte[] content = decode(stored);
+        initFromMetadata(channel, content.length, Map.of(), Map.of(0, ContentHash.blake2b256Hex(stored.toByteArray())),
+            ContentCodec.NONE, true);
+        packFetchedContent(content);
+    }
+
+    // the content on the shard is in the channel of the directory and not loaded yet
+    boolean awaitsInlineContent() {
+        return remoteInline && !chunkLoads.containsKey(0);
+    }
+
+    /**
+     * Takes the content of an inline file read along with its directory for another file. Content of a version
+     * other than the metadata, changed on the shard meanwhile, is left to be downloaded.
+     */
+    void acceptInlineContent(ByteString stored) {
+        if (awaitsInlineContent() && ContentHash.blake2b256Hex(stored.toByteArray()).equals(chunkHashes.get(0))) {
+            packFetchedContent(decode(stored));
+        }
+    }
+
+    private byte[] decode(ByteString stored) {
+        return PathUtils.isEncryptedExtension(name)
+            ? AESCipher.getInstance().decrypt(stored.toByteArray())
+            : stored.toByteArray();
     }
 
+    /**
+     * Replaces the content with a newer version changed on the shard by someone else. Downloaded chunks
+     * whose hashes changed are dropped and downloaded again on first use; the others stay in the content cache.
+     *
+     * @return false if the file has local changes, which win; nothing is changed then
+     */
+    public boolean refreshFromMetadata(long lastUpdated, long size, Map<Integer, String> subChannels,
+                                       Map<Integer, String> hashes, String codec, boolean inline) throws IOException {
+        return applyMetadata(getAbsolutePath(), lastUpdated, size, subChannels, hashes, codec, inline);
+    }
 
+    public void updateParent(BlockchainDirectory parent) {
+        this.parent = parent;
+    }
 }
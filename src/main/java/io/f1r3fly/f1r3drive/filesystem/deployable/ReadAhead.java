@@ -0,0 +1,147 @@
+package io.f1r3fly.f1r3drive.filesystem.deployable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
+
+/**
+ * Detects sequential reads of a file and downloads the chunks ahead of them.
+ * <p>
+ * FUSE handles are not passed down to files, so reads are told apart by offset: a read starting where a stream
+ * of reads stopped continues it, any other read starts a new stream in place of the least recently used one.
+ * A stream is sequential from its second read on. It is kept a window of chunks ahead of the reader: the
+ * time a chunk takes to download divided by the time the reader takes to get through one, so that a fast
+ * reader of a slow shard gets further ahead. Downloads of a replaced stream that have not started are
+ * cancelled, which stops read-ahead when the access turns random.
+ */
+final class ReadAhead {
+
+    static final int MAX_STREAMS = 4;
+
+    // reads of a multi-threaded FUSE loop arrive slightly out of order
+    static final long SEQUENTIAL_SLACK = 1024 * 1024; // 1 mb
+
+    private static final class Stream {
+        long next; // where the next read is expected
+        long lastUsed;
+        int chunk; // chunk of the last byte read
+        long chunkEnteredAt;
+        long nanosPerChunk; // time the reader took to get through a chunk, 0 until measured
+        int prefetchedUpTo;
+        final Map<Integer, ChunkPrefetcher.Prefetch> pending = new TreeMap<>();
+    }
+
+    private final long chunkSize;
+    private final int maxWindow;
+    private final List<Stream> streams = new ArrayList<>();
+    private long reads = 0;
+    private long loadNanos = 0; // moving average of a chunk download, 0 until measured
+
+    ReadAhead(long chunkSize, int maxWindow) {
+        this.chunkSize = chunkSize;
+        this.maxWindow = maxWindow;
+    }
+
+    /**
+     * Records a read and starts the downloads it makes worthwhile.
+     *
+     * @param chunkCount chunks that may be downloaded; the ones after are not on the shard
+     * @param now        {@link System#nanoTime()}
+     * @param prefetch   starts the download of a chunk
+     */
+    synchronized void onRead(long offset, long length, int chunkCount, long now,
+                             IntFunction<ChunkPrefetcher.Prefetch> prefetch) {
+        if (maxWindow == 0 || length <= 0) {
+            return;
+        }
+        reads++;
+        int chunk = (int) ((offset + length - 1) / chunkSize);
+
+        Stream stream = find(offset);
+        if (stream == null) {
+            stream = replaceLeastRecentlyUsed();
+            stream.next = offset + length;
+            stream.lastUsed = reads;
+            stream.chunk = chunk;
+            stream.chunkEnteredAt = now;
+            stream.prefetchedUpTo = chunk;
+            return;
+        }
+
+        stream.next = Math.max(stream.next, offset + length);
+        stream.lastUsed = reads;
+        if (chunk > stream.chunk) {
+            stream.nanosPerChunk = (now - stream.chunkEnteredAt) / (chunk - stream.chunk);
+            stream.chunk = chunk;
+            stream.chunkEnteredAt = now;
+        }
+        stream.pending.values().removeIf(ChunkPrefetcher.Prefetch::isDone);
+
+        int last = Math.min(chunk + window(stream), chunkCount - 1);
+        for (int chunkNumber = Math.max(stream.prefetchedUpTo, chunk) + 1; chunkNumber <= last; chunkNumber++) {
+            stream.pending.put(chunkNumber, prefetch.apply(chunkNumber));
+            stream.prefetchedUpTo = chunkNumber;
+        }
+    }
+
+    /**
+     * Records how long a chunk took to download, to size the window.
+     */
+    synchronized void onChunkLoaded(long nanos) {
+        loadNanos = loadNanos == 0 ? nanos : (3 * loadNanos + nanos) / 4;
+    }
+
+    // chunks a stream is kept ahead of its reader, from 1 to the maximum
+    private int window(Stream stream) {
+        if (loadNanos == 0 || stream.nanosPerChunk <= 0) {
+            return Math.min(1, maxWindow);
+        }
+        long chunksPerLoad = (loadNanos + stream.nanosPerChunk - 1) / stream.nanosPerChunk;
+        return (int) Math.max(1, Math.min(maxWindow, chunksPerLoad));
+    }
+
+    /**
+     * Forgets every stream and cancels the downloads that have not started.
+     *
+     * @return downloads of the streams, some of which may still be running
+     */
+    synchronized List<ChunkPrefetcher.Prefetch> cancelAll() {
+        List<ChunkPrefetcher.Prefetch> prefetches = new ArrayList<>();
+        for (Stream stream : streams) {
+            stream.pending.values().forEach(ChunkPrefetcher.Prefetch::cancel);
+            prefetches.addAll(stream.pending.values());
+        }
+        streams.clear();
+        return prefetches;
+    }
+
+    private Stream find(long offset) {
+        for (Stream stream : streams) {
+            if (Math.abs(offset - stream.next) <= SEQUENTIAL_SLACK) {
+                return stream;
+            }
+        }
+        return null;
+    }
+
+    private Stream replaceLeastRecentlyUsed() {
+        if (streams.size() < MAX_STREAMS) {
+            Stream stream = new Stream();
+            streams.add(stream);
+            return stream;
+        }
+
+        Stream oldest = streams.get(0);
+        for (Stream stream : streams) {
+            if (stream.lastUsed < oldest.lastUsed) {
+                oldest = stream;
+            }
+        }
+        oldest.pending.values().forEach(ChunkPrefetcher.Prefetch::cancel);
+        oldest.pending.clear();
+        oldest.nanosPerChunk = 0;
+        return oldest;
+    }
+}
@@ -0,0 +1,130 @@
+package io.f1r3fly.f1r3drive.filesystem.deployable;
+
+/**
+ * Configuration for sealing full chunks of written files in the background, see {@link ChunkSealer},
+ * for keeping the content of small files in the channel of their directory, for deploying chunks as
+ * content-defined blocks, and for compressing them.
+ */
+public class SealConfig {
+
+    public static final int MAX_INLINE_FILE_BYTES = 64 * 1024; // 64 kb
+    public static final int MIN_DEDUP_BLOCK_BYTES = 64 * 1024; // 64 kb
+    public static final int MAX_DEDUP_BLOCK_BYTES = 16 * 1024 * 1024; // 16 mb
+
+    private final int threads;
+    private final int maxPendingChunks;
+    private final int inlineFileBytes;
+    private final int dedupBlockBytes;
+    private final boolean compress;
+
+    private SealConfig(Builder builder) {
+        this.threads = builder.threads;
+        this.maxPendingChunks = builder.maxPendingChunks;
+        this.inlineFileBytes = builder.inlineFileBytes;
+        this.dedupBlockBytes = builder.dedupBlockBytes;
+        this.compress = builder.compress;
+    }
+
+    /**
+     * Number of chunks sealed at once. Chunks of one file are sealed one after another.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Maximum number of chunks waiting for sealing or being sealed. A writer that gets further ahead waits,
+     * as every chunk in flight is read back into memory.
+     */
+    public int getMaxPendingChunks() {
+        return maxPendingChunks;
+    }
+
+    /**
+     * Files created up to this size keep their content in the channel of their directory instead of a channel
+     * of their own, so that creating and writing one takes a deploy each and a directory is read in one request.
+     * A file that grows past it moves to a channel of its own. 0 stores every file in its own channel, the
+     * layout clients without inline files read.
+     */
+    public int getInlineFileBytes() {
+        return inlineFileBytes;
+    }
+
+    /**
+     * Average size of the blocks a chunk is cut into by its content, see {@link ContentDefinedChunker}. Each block
+     * is deployed to a channel named by its hash, once: content already on the shard, in any file, version or
+     * wallet, is referenced instead. Chunks smaller than a block stay in the channel of the file. 0 deploys every
+     * chunk to the channel of the file, the layout clients without content-addressed chunks read.
+     */
+    public int getDedupBlockBytes() {
+        return dedupBlockBytes;
+    }
+
+    /**
+     * Whether chunks are compressed before they are encrypted and deployed, see {@link io.f1r3fly.f1r3drive.encryption.ContentCodec}.
+     * Each file is sampled when its content is first deployed, and only content that compresses well is
+     * compressed. Files deployed compressed stay so while the content of one of their chunks is on the shard.
+     */
+    public boolean isCompress() {
+        return compress;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static SealConfig defaultConfig() {
+        return builder().build();
+    }
+
+    public static class Builder {
+        private int threads = 2;
+        private int maxPendingChunks = 4;
+        private int inlineFileBytes = 0;
+        private int dedupBlockBytes = 0;
+        private boolean compress = false;
+
+        public Builder threads(int threads) {
+            if (threads <= 0) {
+                throw new IllegalArgumentException("Seal threads must be positive");
+            }
+            this.threads = threads;
+            return this;
+        }
+
+        public Builder maxPendingChunks(int maxPendingChunks) {
+            if (maxPendingChunks <= 0) {
+                throw new IllegalArgumentException("Max pending chunks must be positive");
+            }
+            this.maxPendingChunks = maxPendingChunks;
+            return this;
+        }
+
+        public Builder inlineFileBytes(int inlineFileBytes) {
+            if (inlineFileBytes < 0 || inlineFileBytes > MAX_INLINE_FILE_BYTES) {
+                throw new IllegalArgumentException("Inline file bytes must be between 0 and " + MAX_INLINE_FILE_BYTES);
+            }
+            this.inlineFileBytes = inlineFileBytes;
+            return this;
+        }
+
+        public Builder dedupBlockBytes(int dedupBlockBytes) {
+            if (dedupBlockBytes != 0 && (dedupBlockBytes < MIN_DEDUP_BLOCK_BYTES || dedupBlockBytes > MAX_DEDUP_BLOCK_BYTES
+                || Integer.bitCount(dedupBlockBytes) != 1)) {
+                throw new IllegalArgumentException("Dedup block bytes must be 0 or a power of two between "
+                    + MIN_DEDUP_BLOCK_BYTES + " and " + MAX_DEDUP_BLOCK_BYTES);
+            }
+            this.dedupBlockBytes = dedupBlockBytes;
+            return this;
+        }
+
+        public Builder compress(boolean compress) {
+            this.compress = compress;
+            return this;
+        }
+
+        public SealConfig build() {
+            return new SealConfig(this);
+        }
+    }
+}
@@ -1,40 +1,83 @@
 package io.f1r3fly.f1r3drive.filesystem.deployable;
 
+import io.f1r3fly.f1r3drive.errors.NoDataByPath;
 import io.f1r3fly.f1r3drive.filesystem.common.Path;
 import io.f1r3fly.f1r3drive.blockchain.rholang.RholangExpressionConstructor;
+import io.f1r3fly.f1r3drive.filesystem.fetch.WalletTreeFetcher;
 import io.f1r3fly.f1r3drive.filesystem.local.RootDirectory;
 import io.f1r3fly.f1r3drive.filesystem.local.TokenDirectory;
 import io.f1r3fly.f1r3drive.blockchain.BlockchainContext;
 
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+/**
+ * The root of an unlocked wallet. It is mounted right away and its tree is loaded in the background:
+ * an operation waits only for the directories on its own path.
+ */
 public class UnlockedWalletDirectory extends BlockchainDirectory {
 
-    public UnlockedWalletDirectory(BlockchainContext blockchainContext, Set<Path> children, RootDirectory parent, boolean sendToShard) {
-        super(blockchainContext, blockchainContext.getWalletInfo().revAddress(), parent, false);
+    private final TokenDirectory tokenDirectory;
 
-        if (sendToShard && !children.isEmpty()) {
-            // if sendToShard is true, it's a new folder, so children must be empty
-            throw new IllegalArgumentException("Children must be empty when new folder created");
-        }
+    private volatile CompletableFuture<Void> treeLoaded = CompletableFuture.completedFuture(null);
 
-        if (sendToShard) {
-            refreshLastUpdated();
-            String rholang = RholangExpressionConstructor.sendDirectoryIntoNewChannel(getAbsolutePath(), Set.of(), getLastUpdated());
-            enqueueMutation(rholang);
-        }
+    public UnlockedWalletDirectory(BlockchainContext blockchainContext, RootDirectory parent) {
+        super(blockchainContext, blockchainContext.getWalletInfo().revAddress(), parent, false, true);
 
         // create token directory
-        TokenDirectory tokenDirectory = new TokenDirectory(this.getBlockchainContext(), this);
-        this.children = new HashSet<>(children);
-        this.children.add(tokenDirectory);
+        this.tokenDirectory = new TokenDirectory(this.getBlockchainContext(), this);
+    }
+
+    /**
+     * Starts loading the wallet tree from the shard. A wallet that has nothing on the shard yet is created there.
+     *
+     * @return completes when the whole tree is loaded
+     */
+    public CompletableFuture<Void> load(WalletTreeFetcher walletTreeFetcher) {
+        treeLoaded = walletTreeFetcher.fetchTree(getBlockchainContext(), this)
+            .exceptionally(e -> {
+                Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                if (cause instanceof NoDataByPath) {
+                    // no previous mount: need to create a new root and deploy to the shard
+                    createOnShard();
+                    return null;
+                }
+                failLoading(cause);
+                throw e instanceof CompletionException completionException ? completionException : new CompletionException(e);
+            });
+        return treeLoaded;
+    }
+
+    public CompletableFuture<Void> getTreeLoaded() {
+        return treeLoaded;
+    }
+
+    private void createOnShard() {
+        refreshLastUpdated();
+        String rholang = RholangExpressionConstructor.sendDirectoryIntoNewChannel(getAbsolutePath(), Set.of(), getLastUpdated());
+        // a new wallet gets a new manifest
+        String manifest = RholangExpressionConstructor.sendManifestIntoNewChannel(getManifestChannel(),
+            Map.of(getAbsolutePath(), RholangExpressionConstructor.directoryManifestEntry(Set.of(), getLastUpdated())));
+
+        synchronized (getBlockchainContext()) {
+            enqueueMutation(RholangExpressionConstructor.parallel(rholang, manifest));
+            getBlockchainContext().setManifestAvailable();
+        }
+
+        completeLoading(Set.of());
+    }
+
+    @Override
+    public void completeLoading(Set<Path> loadedChildren) {
+        Set<Path> children = new HashSet<>(loadedChildren);
+        children.add(tokenDirectory);
+        super.completeLoading(children);
     }
 
     public TokenDirectory getTokenDirectory() {
-        return (TokenDirectory) this.children.stream()
-                .filter(p -> p instanceof TokenDirectory)
-                .findFirst()
-                .orElse(null);
+        return tokenDirectory;
     }
 }
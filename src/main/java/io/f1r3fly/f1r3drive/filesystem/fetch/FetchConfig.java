@@ -0,0 +1,139 @@
+package io.f1r3fly.f1r3drive.filesystem.fetch;
+
+import java.time.Duration;
+
+/**
+ * Configuration for reading wallet trees from the shard.
+ */
+public class FetchConfig {
+
+    private final int concurrency;
+    private final Duration requestDeadline;
+    private final int unlockConcurrency;
+    private final Duration syncInterval;
+    private final int readAheadChunks;
+    private final int chunkDownloadConcurrency;
+
+    private FetchConfig(Builder builder) {
+        this.concurrency = builder.concurrency;
+        this.requestDeadline = builder.requestDeadline;
+        this.unlockConcurrency = builder.unlockConcurrency;
+        this.syncInterval = builder.syncInterval;
+        this.readAheadChunks = builder.readAheadChunks;
+        this.chunkDownloadConcurrency = builder.chunkDownloadConcurrency;
+    }
+
+    /**
+     * Maximum number of channel reads in flight at once.
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * How long a single channel read may take before the fetch fails.
+     */
+    public Duration getRequestDeadline() {
+        return requestDeadline;
+    }
+
+    /**
+     * Maximum number of wallets whose keys are validated at once by a batch unlock. Their trees are loaded
+     * on the shared pool bounded by {@link #getConcurrency()}.
+     */
+    public int getUnlockConcurrency() {
+        return unlockConcurrency;
+    }
+
+    /**
+     * How often the last finalized block is checked for changes made to unlocked wallets elsewhere.
+     * Zero disables the resync.
+     */
+    public Duration getSyncInterval() {
+        return syncInterval;
+    }
+
+    /**
+     * Maximum number of chunks downloaded ahead of a sequential reader of a file. Zero disables read-ahead.
+     */
+    public int getReadAheadChunks() {
+        return readAheadChunks;
+    }
+
+    /**
+     * Maximum number of chunks downloaded at once when a read or a write needs several chunks of a file.
+     * Shared by every file.
+     */
+    public int getChunkDownloadConcurrency() {
+        return chunkDownloadConcurrency;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static FetchConfig defaultConfig() {
+        return builder().build();
+    }
+
+    public static class Builder {
+        private int concurrency = 16;
+        private Duration requestDeadline = Duration.ofMinutes(2);
+        private int unlockConcurrency = 4;
+        private Duration syncInterval = Duration.ofSeconds(30);
+        private int readAheadChunks = 2;
+        private int chunkDownloadConcurrency = 4;
+
+        public Builder concurrency(int concurrency) {
+            if (concurrency <= 0) {
+                throw new IllegalArgumentException("Concurrency must be positive");
+            }
+            this.concurrency = concurrency;
+            return this;
+        }
+
+        public Builder requestDeadline(Duration requestDeadline) {
+            if (requestDeadline == null || requestDeadline.isNegative() || requestDeadline.isZero()) {
+                throw new IllegalArgumentException("Request deadline must be positive");
+            }
+            this.requestDeadline = requestDeadline;
+            return this;
+        }
+
+        public Builder unlockConcurrency(int unlockConcurrency) {
+            if (unlockConcurrency <= 0) {
+                throw new IllegalArgumentException("Unlock concurrency must be positive");
+            }
+            this.unlockConcurrency = unlockConcurrency;
+            return this;
+        }
+
+        public Builder syncInterval(Duration syncInterval) {
+            if (syncInterval == null || syncInterval.isNegative()) {
+                throw new IllegalArgumentException("Sync interval must not be negative");
+            }
+            this.syncInterval = syncInterval;
+            return this;
+        }
+
+        public Builder readAheadChunks(int readAheadChunks) {
+            if (readAheadChunks < 0) {
+                throw new IllegalArgumentException("Read-ahead chunks must not be negative");
+            }
+            this.readAheadChunks = readAheadChunks;
+            return this;
+        }
+
+        public Builder chunkDownloadConcurrency(int chunkDownloadConcurrency) {
+            if (chunkDownloadConcurrency <= 0) {
+                throw new IllegalArgumentException("Chunk download concurrency must be positive");
+            }
+            this.chunkDownloadConcurrency = chunkDownloadConcurrency;
+            return this;
+        }
+
+        public FetchConfig build() {
+            return new FetchConfig(this);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package io.f1r3fly.f1r3drive.filesystem.fetch;
+
+import io.f1r3fly.f1r3drive.blockchain.BlockchainContext;
+import io.f1r3fly.f1r3drive.blockchain.client.DeployDispatcher;
+import io.f1r3fly.f1r3drive.blockchain.client.F1r3flyBlockchainClient;
+import io.f1r3fly.f1r3drive.blockchain.rholang.RholangExpressionConstructor;
+import io.f1r3fly.f1r3drive.filesystem.common.Path;
+import io.f1r3fly.f1r3drive.filesystem.deployable.AbstractDeployablePath;
+import io.f1r3fly.f1r3drive.filesystem.deployable.BlockchainDirectory;
+import io.f1r3fly.f1r3drive.filesystem.deployable.BlockchainFile;
+import io.f1r3fly.f1r3drive.filesystem.deployable.FetchedFile;
+import io.f1r3fly.f1r3drive.filesystem.deployable.UnlockedWalletDirectory;
+import io.f1r3fly.f1r3drive.filesystem.utils.PathUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps unlocked wallets in step with changes made to them by other F1r3Drive instances.
+ * <p>
+ * Whenever a new block is finalized, the manifest of every wallet is read and compared with the tree:
+ * a file whose entry is newer or has other chunk hashes is refreshed in place and only its cached
+ * content is dropped, and the children of a directory are added or removed as the manifest says.
+ * Local changes win: a wallet is skipped while its changes are being deployed, and a file that is open
+ * or not deployed yet is left as it is.
+ */
+public class WalletSyncer {
+
+    private static final Logger logger = LoggerFactory.getLogger(WalletSyncer.class);
+
+    private final F1r3flyBlockchainClient blockchainClient;
+    private final WalletTreeFetcher walletTreeFetcher;
+    private final FetchConfig config;
+    private final ScheduledExecutorService scheduler;
+
+    private final CopyOnWriteArrayList<UnlockedWalletDirectory> wallets = new CopyOnWriteArrayList<>();
+
+    // the last block all wallets were synced at; accessed by the scheduler thread only
+    private String lastSyncedBlockHash;
+
+    public WalletSyncer(F1r3flyBlockchainClient blockchainClient, WalletTreeFetcher walletTreeFetcher, FetchConfig config) {
+        this.blockchainClient = blockchainClient;
+        this.walletTreeFetcher = walletTreeFetcher;
+        this.config = config;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "WalletSyncer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public void start() {
+        if (config.getSyncInterval().isZero()) {
+            logger.info("Wallet resync is disabled");
+            return;
+        }
+        long intervalMs = config.getSyncInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::syncOnNewBlock, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts following a wallet once its tree is loaded.
+     */
+    public void register(UnlockedWalletDirectory wallet) {
+        wallet.getTreeLoaded().thenRun(() -> wallets.add(wallet));
+    }
+
+    private void syncOnNewBlock() {
+        try {
+            String blockHash = blockchainClient.getLastFinalizedBlockHash();
+            if (blockHash.equals(lastSyncedBlockHash)) {
+                return;
+            }
+
+            boolean allSynced = true;
+            for (UnlockedWalletDirectory wallet : wallets) {
+                allSynced &= syncWallet(wallet);
+            }
+
+            // a skipped wallet is tried again on the next tick even if no block is finalized meanwhile
+            if (allSynced) {
+                lastSyncedBlockHash = blockHash;
+            }
+        } catch (Throwable e) {
+            logger.warn("Failed to sync wallets with the shard", e);
+        }
+    }
+
+    /**
+     * @return false if the wallet was skipped because it has changes that are not deployed yet
+     */
+    boolean syncWallet(UnlockedWalletDirectory wallet) throws IOException {
+        BlockchainContext blockchainContext = wallet.getBlockchainContext();
+        DeployDispatcher deployDispatcher = blockchainContext.getDeployDispatcher();
+        if (!deployDispatcher.isIdle()) {
+            return false;
+        }
+
+        Map<String, RholangExpressionConstructor.ChannelData> manifest = walletTreeFetcher.readManifest(
+            RholangExpressionConstructor.manifestChannel(blockchainContext.getWalletInfo().revAddress()));
+        if (manifest == null) {
+            return true;
+        }
+        // a change made while the manifest was read is not in it
+        if (!deployDispatcher.isIdle()) {
+            return false;
+        }
+
+        syncDirectory(blockchainContext, manifest, wallet.getAbsolutePath(), wallet);
+        return true;
+    }
+
+    private void syncDirectory(BlockchainContext blockchainContext,
+                               Map<String, RholangExpressionConstructor.ChannelData> manifest,
+                               String absolutePath, BlockchainDirectory dir) throws IOException {
+        RholangExpressionConstructor.ChannelData entry = manifest.get(absolutePath);
+        if (entry == null || !entry.isDir()) {
+            return; // removed or replaced; the parent takes care of it
+        }
+
+        Map<String, AbstractDeployablePath> localChildren = new HashMap<>();
+        for (Path child : dir.getChildren()) {
+            if (child instanceof AbstractDeployablePath deployable) {
+                localChildren.put(child.getName(), deployable);
+            }
+        }
+
+        Set<Path> added = new HashSet<>();
+        Set<Path> removed = new HashSet<>();
+        boolean childrenChanged = entry.lastUpdated() >= dir.getLastUpdated();
+
+        if (childrenChanged) {
+            for (String childName : entry.children()) {
+                if (!localChildren.containsKey(childName)) {
+                    addIfPresent(added, WalletTreeFetcher.buildFromManifest(blockchainContext, manifest,
+                        childPath(absolutePath, childName), childName, dir));
+                }
+            }
+            for (AbstractDeployablePath child : localChildren.values()) {
+                if (!entry.children().contains(child.getName()) && !hasLocalChanges(child)) {
+                    removed.add(child);
+                }
+            }
+        }
+
+        for (AbstractDeployablePath child : localChildren.values()) {
+            String childPath = childPath(absolutePath, child.getName());
+            RholangExpressionConstructor.ChannelData childEntry = manifest.get(childPath);
+            if (childEntry == null || !entry.children().contains(child.getName())) {
+                continue;
+            }
+
+            boolean isDir = child instanceof BlockchainDirectory;
+            if (childEntry.isDir() != isDir) {
+                // replaced by a path of the other type
+                if (childrenChanged && !hasLocalChanges(child)) {
+                    removed.add(child);
+                    addIfPresent(added, WalletTreeFetcher.buildFromManifest(blockchainContext, manifest, childPath,
+                        child.getName(), dir));
+                }
+            } else if (child instanceof BlockchainDirectory childDir) {
+                syncDirectory(blockchainContext, manifest, childPath, childDir);
+            } else if (child instanceof BlockchainFile file && isNewer(childEntry, file)) {
+                if (file instanceof FetchedFile fetchedFile) {
+                    if (fetchedFile.refreshFromMetadata(childEntry.lastUpdated(), childEntry.size(),
+                        childEntry.otherChunks(), childEntry.chunkHashes(), childEntry.codec(), childEntry.inline())) {
+                        logger.info("Refreshed {} changed on the shard", childPath);
+                    }
+                } else if (!file.hasLocalChanges()) {
+                    // created here and changed elsewhere since
+                    removed.add(file);
+                    addIfPresent(added, WalletTreeFetcher.buildFromManifest(blockchainContext, manifest, childPath,
+                        file.getName(), dir));
+                }
+            }
+        }
+
+        if (!added.isEmpty() || !removed.isEmpty()) {
+            logger.info("Applying changes of {} from the shard: {} added, {} removed", absolutePath,
+                added.size(), removed.size());
+            dir.applyRemoteChildren(added, removed, entry.lastUpdated());
+        }
+    }
+
+    private static boolean isNewer(RholangExpressionConstructor.ChannelData entry, BlockchainFile file) {
+        if (entry.lastUpdated() != file.getLastUpdated()) {
+            return entry.lastUpdated() > file.getLastUpdated();
+        }
+        // changed within the same second
+        return entry.size() != file.getSize() || !entry.merkleRoot().equals(file.getMerkleRoot());
+    }
+
+    private static boolean hasLocalChanges(AbstractDeployablePath path) {
+        return path instanceof BlockchainFile file && file.hasLocalChanges();
+    }
+
+    private static void addIfPresent(Set<Path> paths, Path path) {
+        if (path != null) {
+            paths.add(path);
+        }
+    }
+
+    private static String childPath(String absolutePath, String childName) {
+        return absolutePath + PathUtils.getPathDelimiterBasedOnOS() + childName;
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+        try {
+            if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.warn("Wallet syncer did not terminate gracefully");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
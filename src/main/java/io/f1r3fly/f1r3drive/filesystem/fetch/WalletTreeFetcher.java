@@ -0,0 +1,319 @@
+package io.f1r3fly.f1r3drive.filesystem.fetch;
+
+import com.google.protobuf.ByteString;
+import io.f1r3fly.f1r3drive.blockchain.BlockchainContext;
+import io.f1r3fly.f1r3drive.blockchain.client.DeployDispatcher;
+import io.f1r3fly.f1r3drive.blockchain.client.F1r3flyBlockchainClient;
+import io.f1r3fly.f1r3drive.blockchain.rholang.RholangExpressionConstructor;
+import io.f1r3fly.f1r3drive.blockchain.wallet.RevWalletInfo;
+import io.f1r3fly.f1r3drive.errors.NoDataByPath;
+import io.f1r3fly.f1r3drive.filesystem.common.Path;
+import io.f1r3fly.f1r3drive.filesystem.deployable.AbstractDeployablePath;
+import io.f1r3fly.f1r3drive.filesystem.deployable.BlockchainDirectory;
+import io.f1r3fly.f1r3drive.filesystem.deployable.FetchedDirectory;
+import io.f1r3fly.f1r3drive.filesystem.deployable.FetchedFile;
+import io.f1r3fly.f1r3drive.filesystem.utils.PathUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads wallet trees from the shard. A wallet with a manifest channel is read in a single request.
+ * Otherwise all children of a directory are requested at once, so the time to fetch a tree grows
+ * with its depth rather than with the number of nodes, and a manifest is deployed for the next time.
+ * The number of reads in flight is bounded by {@link FetchConfig#getConcurrency()} and shared by every wallet.
+ * <p>
+ * Directories are published as soon as they are read and fill in as their children arrive, so the tree
+ * can be used while it is still loading. Only metadata is read; file content is downloaded on first use,
+ * see {@link FetchedFile}, except for inline files, whose content comes with their directory.
+ */
+public class WalletTreeFetcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(WalletTreeFetcher.class);
+
+    private final F1r3flyBlockchainClient blockchainClient;
+    private final FetchConfig config;
+    private final ExecutorService executor;
+
+    // a fetched node and the loading of everything below it
+    private record Fetched(Path path, CompletableFuture<Void> subtree) {
+    }
+
+    public WalletTreeFetcher(F1r3flyBlockchainClient blockchainClient, FetchConfig config) {
+        this.blockchainClient = blockchainClient;
+        this.config = config;
+
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(config.getConcurrency(), r -> {
+            Thread t = new Thread(r, "WalletTreeFetcher-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Loads the tree stored at the path of {@code root} into it. The children of {@code root} are published
+     * as soon as they are known, before the rest of the tree.
+     *
+     * @return completes when every directory of the tree is loaded; fails with {@link NoDataByPath}
+     * if there is nothing stored at the path of {@code root}, leaving {@code root} loading
+     */
+    public CompletableFuture<Void> fetchTree(BlockchainContext blockchainContext, BlockchainDirectory root) {
+        String rootPath = root.getAbsolutePath();
+        String manifestChannel = RholangExpressionConstructor.manifestChannel(blockchainContext.getWalletInfo().revAddress());
+
+        return CompletableFuture.supplyAsync(() -> readManifest(manifestChannel), executor).thenCompose(manifest -> {
+            if (manifest != null && manifest.containsKey(rootPath)) {
+                blockchainContext.setManifestAvailable();
+                try {
+                    root.completeLoading(buildChildrenFromManifest(blockchainContext, manifest, rootPath, root),
+                        manifest.get(rootPath).lastUpdated());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return CompletableFuture.completedFuture(null);
+            }
+
+            return readChannelData(rootPath).thenCompose(rootData -> {
+                if (!rootData.isDir()) {
+                    throw new IllegalStateException("Root directory is not a directory");
+                }
+                CompletableFuture<Void> tree = loadChildren(blockchainContext, rootPath, root, rootData.children(),
+                    rootData.inlineFiles(), rootData.lastUpdated());
+                if (manifest != null) {
+                    return tree; // a manifest without the root; leave it as it is
+                }
+                return tree.thenRun(() -> publishManifest(blockchainContext, manifestChannel, root));
+            });
+        });
+    }
+
+    /**
+     * @return the manifest by path, or null if the wallet has none or it cannot be read
+     */
+    Map<String, RholangExpressionConstructor.ChannelData> readManifest(String manifestChannel) {
+        try {
+            return RholangExpressionConstructor.parseManifest(
+                blockchainClient.findDataByName(manifestChannel, config.getRequestDeadline()));
+        } catch (NoDataByPath e) {
+            logger.info("No manifest found at {}", manifestChannel);
+            return null;
+        } catch (IllegalArgumentException e) {
+            logger.warn("Ignoring malformed manifest at {}", manifestChannel, e);
+            return null;
+        }
+    }
+
+    static Set<Path> buildChildrenFromManifest(BlockchainContext blockchainContext,
+                                               Map<String, RholangExpressionConstructor.ChannelData> manifest,
+                                               String absolutePath, BlockchainDirectory dir) throws IOException {
+        Set<Path> children = new HashSet<>();
+        for (String childName : manifest.get(absolutePath).children()) {
+            String childPath = absolutePath + PathUtils.getPathDelimiterBasedOnOS() + childName;
+            Path child = buildFromManifest(blockchainContext, manifest, childPath, childName, dir);
+            if (child != null) {
+                children.add(child);
+            }
+        }
+        return children;
+    }
+
+    /**
+     * @return the file or directory stored at {@code absolutePath}, with its subtree; null if the manifest has no entry
+     */
+    static Path buildFromManifest(BlockchainContext blockchainContext,
+                                  Map<String, RholangExpressionConstructor.ChannelData> manifest,
+                                  String absolutePath, String name, BlockchainDirectory parent) throws IOException {
+        RholangExpressionConstructor.ChannelData fileOrDir = manifest.get(absolutePath);
+        if (fileOrDir == null) {
+            logger.error("No manifest entry for path: {}", absolutePath);
+            return null;
+        }
+
+        if (fileOrDir.isFile()) {
+            FetchedFile file = new FetchedFile(blockchainContext, name, parent, fileOrDir.lastUpdated());
+            file.initFromMetadata(absolutePath, fileOrDir.size(), fileOrDir.otherChunks(), fileOrDir.chunkHashes(),
+                fileOrDir.codec(), fileOrDir.inline());
+            return file;
+        } else {
+            FetchedDirectory dir = new FetchedDirectory(blockchainContext, name, parent, fileOrDir.lastUpdated());
+            dir.setChildren(buildChildrenFromManifest(blockchainContext, manifest, absolutePath, dir));
+            return dir;
+        }
+    }
+
+    /**
+     * Deploys a manifest built from the tree as it is now. Mutations enqueued from here on update it.
+     */
+    private void publishManifest(BlockchainContext blockchainContext, String manifestChannel, BlockchainDirectory root) {
+        synchronized (blockchainContext) {
+            Map<String, String> entries = new HashMap<>();
+            collectManifestEntries(root, entries);
+
+            logger.info("Deploying a manifest of {} entries to {}", entries.size(), manifestChannel);
+
+            RevWalletInfo walletInfo = blockchainContext.getWalletInfo();
+            blockchainContext.getDeployDispatcher().enqueueDeploy(new DeployDispatcher.Deployment(
+                RholangExpressionConstructor.sendManifestIntoNewChannel(manifestChannel, entries),
+                true,
+                F1r3flyBlockchainClient.RHOLANG,
+                walletInfo.revAddress(),
+                walletInfo.signingKey(),
+                System.currentTimeMillis()));
+
+            blockchainContext.setManifestAvailable();
+        }
+    }
+
+    private static void collectManifestEntries(AbstractDeployablePath path, Map<String, String> entries) {
+        entries.put(path.getAbsolutePath(), path.manifestEntry());
+        if (path instanceof BlockchainDirectory dir) {
+            for (Path child : dir.getChildren()) {
+                if (child instanceof AbstractDeployablePath deployable) {
+                    collectManifestEntries(deployable, entries);
+                }
+            }
+        }
+    }
+
+    private CompletableFuture<Fetched> fetchPath(BlockchainContext blockchainContext, String absolutePath, String name,
+                                                 BlockchainDirectory parent) {
+        return readChannelData(absolutePath).thenCompose(fileOrDir -> {
+            if (fileOrDir.isDir()) {
+                FetchedDirectory dir = new FetchedDirectory(blockchainContext, name, parent, fileOrDir.lastUpdated());
+                CompletableFuture<Void> subtree = loadChildren(blockchainContext, absolutePath, dir, fileOrDir.children(),
+                    fileOrDir.inlineFiles(), fileOrDir.lastUpdated());
+                return CompletableFuture.completedFuture(new Fetched(dir, subtree));
+            } else {
+                return fetchFile(blockchainContext, absolutePath, parent, fileOrDir)
+                    .thenApply(file -> new Fetched(file, CompletableFuture.completedFuture(null)));
+            }
+        });
+    }
+
+    /**
+     * Reads the children of {@code dir}, publishes them once all of them are read, then goes on
+     * with the subdirectories.
+     *
+     * @param inlineFiles content of the inline files among the children, which are not read again
+     * @return completes when the whole subtree is loaded
+     */
+    private CompletableFuture<Void> loadChildren(BlockchainContext blockchainContext, String absolutePath,
+                                                 BlockchainDirectory dir, Set<String> childNames,
+                                                 Map<String, ByteString> inlineFiles, long lastUpdated) {
+        List<CompletableFuture<Fetched>> children = new ArrayList<>(childNames.size());
+        for (String childName : childNames) {
+            String childPath = absolutePath + PathUtils.getPathDelimiterBasedOnOS() + childName;
+            ByteString inlineContent = inlineFiles.get(childName);
+            CompletableFuture<Fetched> child = inlineContent != null
+                ? fetchInlineFile(blockchainContext, childPath, dir, inlineContent, lastUpdated)
+                : fetchPath(blockchainContext, childPath, childName, dir);
+            children.add(child
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                    if (cause instanceof NoDataByPath) {
+                        logger.error("Error fetching child directory from shard for path: {}", childPath, cause);
+                        return null;
+                    }
+                    throw e instanceof CompletionException completionException ? completionException : new CompletionException(e);
+                }));
+        }
+
+        CompletableFuture<Void> subtree = CompletableFuture.allOf(children.toArray(CompletableFuture[]::new)).thenCompose(ignored -> {
+            Set<Path> fetched = new HashSet<>();
+            List<CompletableFuture<Void>> subtrees = new ArrayList<>();
+            for (CompletableFuture<Fetched> child : children) {
+                Fetched node = child.join();
+                if (node != null) {
+                    fetched.add(node.path());
+                    subtrees.add(node.subtree());
+                }
+            }
+            dir.completeLoading(fetched, lastUpdated);
+            return CompletableFuture.allOf(subtrees.toArray(CompletableFuture[]::new));
+        });
+
+        // whoever waits on this directory gets the error; no-op once it is loaded
+        subtree.whenComplete((ignored, e) -> {
+            if (e != null) {
+                dir.failLoading(e instanceof CompletionException ? e.getCause() : e);
+            }
+        });
+
+        return subtree;
+    }
+
+    private CompletableFuture<Path> fetchFile(BlockchainContext blockchainContext, String absolutePath,
+                                              BlockchainDirectory parent,
+                                              RholangExpressionConstructor.ChannelData fileOrDir) {
+        FetchedFile file = new FetchedFile(blockchainContext, PathUtils.getFileName(absolutePath),
+            parent, fileOrDir.lastUpdated());
+
+        // runs on the pool: a file stored without a size downloads its last chunk here
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                file.initFromMetadata(absolutePath, fileOrDir.size(), fileOrDir.otherChunks(), fileOrDir.chunkHashes(),
+                    fileOrDir.codec(), false);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return file;
+        }, executor);
+    }
+
+    // the content came with the directory, and the time of the last change with it
+    private CompletableFuture<Fetched> fetchInlineFile(BlockchainContext blockchainContext, String absolutePath,
+                                                       BlockchainDirectory parent, ByteString content, long lastUpdated) {
+        FetchedFile file = new FetchedFile(blockchainContext, PathUtils.getFileName(absolutePath), parent, lastUpdated);
+
+        // runs on the pool: encrypted content is decrypted to learn its size
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                file.initFromInlineContent(absolutePath, content);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return new Fetched(file, CompletableFuture.completedFuture(null));
+        }, executor);
+    }
+
+    private CompletableFuture<RholangExpressionConstructor.ChannelData> readChannelData(String absolutePath) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return RholangExpressionConstructor.parseExploratoryDeployResult(
+                    blockchainClient.findMetadataByName(absolutePath, config.getRequestDeadline()));
+            } catch (NoDataByPath e) {
+                logger.info("No data found for path: {}", absolutePath);
+                throw e;
+            } catch (Throwable e) {
+                logger.error("Error fetching directory from shard for path: {}", absolutePath, e);
+                throw new RuntimeException("Failed to fetch directory data for " + absolutePath, e);
+            }
+        }, executor);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.warn("Wallet tree fetcher did not terminate gracefully");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
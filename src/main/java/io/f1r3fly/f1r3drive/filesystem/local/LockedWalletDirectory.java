@@ -5,30 +5,19 @@ import io.f1r3fly.f1r3drive.blockchain.client.DeployDispatcher;
 import io.f1r3fly.f1r3drive.blockchain.wallet.PrivateKeyValidator;
 import io.f1r3fly.f1r3drive.blockchain.wallet.RevWalletInfo;
 import io.f1r3fly.f1r3drive.errors.InvalidSigningKeyException;
-import io.f1r3fly.f1r3drive.errors.NoDataByPath;
 import io.f1r3fly.f1r3drive.errors.OperationNotPermitted;
 import io.f1r3fly.f1r3drive.blockchain.client.F1r3flyBlockchainClient;
 import io.f1r3fly.f1r3drive.blockchain.BlockchainContext;
-import io.f1r3fly.f1r3drive.filesystem.FileSystemAction;
 import io.f1r3fly.f1r3drive.filesystem.common.Path;
 import io.f1r3fly.f1r3drive.filesystem.common.ReadOnlyDirectory;
-import io.f1r3fly.f1r3drive.filesystem.deployable.BlockchainDirectory;
-import io.f1r3fly.f1r3drive.filesystem.deployable.FetchedDirectory;
-import io.f1r3fly.f1r3drive.filesystem.deployable.FetchedFile;
 import io.f1r3fly.f1r3drive.filesystem.deployable.UnlockedWalletDirectory;
+import io.f1r3fly.f1r3drive.filesystem.fetch.WalletTreeFetcher;
 import io.f1r3fly.f1r3drive.blockchain.rholang.RholangExpressionConstructor;
-import io.f1r3fly.f1r3drive.filesystem.utils.PathUtils;
 
-import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import rhoapi.RhoTypes;
 
-import java.util.HashSet;
-import java.util.List;
-import java.util.Objects;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 public class LockedWalletDirectory extends AbstractLocalPath implements ReadOnlyDirectory {
 
@@ -44,53 +33,21 @@ public class LockedWalletDirectory extends AbstractLocalPath implements ReadOnly
         return Set.of();
     }
 
-    public UnlockedWalletDirectory unlock(String signingKeyRaw, DeployDispatcher deployDispatcher)
-            throws InvalidSigningKeyException {
+    /**
+     * Validates the key and returns the unlocked wallet right away; its tree keeps loading in the background,
+     * see {@link UnlockedWalletDirectory#getTreeLoaded()}.
+     */
+    public UnlockedWalletDirectory unlock(String signingKeyRaw, DeployDispatcher deployDispatcher,
+            WalletTreeFetcher walletTreeFetcher) throws InvalidSigningKeyException {
         validateKeyAndUpdateContext(signingKeyRaw, deployDispatcher);
 
         // If validation passes, proceed with unlock
-        try {
-            Path root = fetchDirectoryFromShard(
-                    deployDispatcher.getBlockchainClient(),
-                    PathUtils.getPathDelimiterBasedOnOS() + getBlockchainContext().getWalletInfo().revAddress(),
-                    getBlockchainContext().getWalletInfo().revAddress(),
-                    null);
-
-            if (!(root instanceof FetchedDirectory)) {
-                throw new IllegalStateException("Root directory is not a directory");
-            }
-
-            // TODO: avoid converting RootDirectory to UnlockedWalletDirectory (rework
-            // fetchDirectoryFromShard) and delete the next lines
-
-            // convert RootDirectory to UnlockedWalletDirectory
-            UnlockedWalletDirectory unlockedWalletDirectory = new UnlockedWalletDirectory(
-                    blockchainContext,
-                    ((FetchedDirectory) root).getChildren(),
-                    getParent() == null ? null : (RootDirectory) getParent(),
-                    false // skip deploy
-            );
-
-            // fix links to a new parent instance
-            for (Path child : unlockedWalletDirectory.getChildren()) {
-                if (child instanceof FetchedFile fetchedFile) {
-                    fetchedFile.updateParent(unlockedWalletDirectory);
-                }
-                if (child instanceof FetchedDirectory fetchedDirectory) {
-                    fetchedDirectory.updateParent(unlockedWalletDirectory);
-                }
-            }
-
-            return unlockedWalletDirectory;
-
-        } catch (NoDataByPath e) {
-            // no previous mount: need to create a new root and deploy to the shard
-            return new UnlockedWalletDirectory(
-                    blockchainContext,
-                    new HashSet<>(),
-                    getParent() == null ? null : (RootDirectory) getParent(),
-                    true); // do deploy
-        }
+        UnlockedWalletDirectory unlockedWalletDirectory = new UnlockedWalletDirectory(
+                blockchainContext,
+                getParent() == null ? null : (RootDirectory) getParent());
+        unlockedWalletDirectory.load(walletTreeFetcher);
+
+        return unlockedWalletDirectory;
     }
 
     private void validateKeyAndUpdateContext(String signingKeyRaw, DeployDispatcher deployDispatcher) {
@@ -112,63 +69,11 @@ public class LockedWalletDirectory extends AbstractLocalPath implements ReadOnly
 
         this.blockchainContext = new BlockchainContext(
                 new RevWalletInfo(getBlockchainContext().getWalletInfo().revAddress(), signingKey),
-                deployDispatcher);
-    }
-
-    public Path fetchDirectoryFromShard(F1r3flyBlockchainClient f1R3FlyBlockchainClient, String absolutePath,
-            String name, BlockchainDirectory parent) throws NoDataByPath {
-        try {
-            List<RhoTypes.Par> pars = f1R3FlyBlockchainClient.findDataByName(absolutePath);
-
-            RholangExpressionConstructor.ChannelData fileOrDir = RholangExpressionConstructor.parseChannelData(pars);
-
-            if (fileOrDir.isDir()) {
-                FetchedDirectory dir = new FetchedDirectory(this.getBlockchainContext(), name, parent, fileOrDir.lastUpdated());
-
-                Set<Path> children = fileOrDir.children().stream().map((childName) -> {
-                    try {
-                        return fetchDirectoryFromShard(f1R3FlyBlockchainClient,
-                                absolutePath + PathUtils.getPathDelimiterBasedOnOS() + childName, childName, dir);
-                    } catch (NoDataByPath e) {
-                        logger.error("Error fetching child directory from shard for path: {}",
-                                absolutePath + PathUtils.getPathDelimiterBasedOnOS() + childName, e);
-                        return null;
-                    }
-                }).filter(Objects::nonNull).collect(Collectors.toSet());
-
-                dir.setChildren(children);
-                return dir;
-
-            } else {
-                FetchedFile file = new FetchedFile(this.getBlockchainContext(), PathUtils.getFileName(absolutePath),
-                        parent, fileOrDir.lastUpdated());
-                long offset = 0;
-                offset = file.initFromBytes(fileOrDir.firstChunk(), offset);
-
-                if (!fileOrDir.otherChunks().isEmpty()) {
-                    Set<Integer> chunkNumbers = fileOrDir.otherChunks().keySet();
-                    Integer[] sortedChunkNumbers = chunkNumbers.stream().sorted().toArray(Integer[]::new);
-
-                    for (Integer chunkNumber : sortedChunkNumbers) {
-                        String subChannel = fileOrDir.otherChunks().get(chunkNumber);
-                        List<RhoTypes.Par> subChannelPars = f1R3FlyBlockchainClient.findDataByName(subChannel);
-                        byte[] data = RholangExpressionConstructor.parseBytes(subChannelPars);
-
-                        offset = offset + file.initFromBytes(data, offset);
-                    }
-                }
-
-                file.initSubChannels(fileOrDir.otherChunks());
-                return file;
-            }
-
-        } catch (NoDataByPath e) {
-            logger.info("No data found for path: {}", absolutePath);
-            throw e;
-        } catch (Throwable e) {
-            logger.error("Error fetching directory from shard for path: {}", absolutePath, e);
-            throw new RuntimeException("Failed to fetch directory data for " + absolutePath, e);
-        }
+                deployDispatcher,
+                getBlockchainContext().getContentCache(),
+                getBlockchainContext().getChunkSealer(),
+                getBlockchainContext().getChunkPrefetcher(),
+                getBlockchainContext().getChunkDownloader());
     }
 
     @Override
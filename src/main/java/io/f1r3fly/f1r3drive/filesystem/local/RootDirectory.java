@@ -1,7 +1,7 @@
 package io.f1r3fly.f1r3drive.filesystem.local;
 
-import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import io.f1r3fly.f1r3drive.errors.OperationNotPermitted;
 import io.f1r3fly.f1r3drive.blockchain.BlockchainContext;
@@ -15,7 +15,7 @@ public class RootDirectory extends AbstractLocalPath implements Directory {
 
     public RootDirectory() {
         super(null, "/", null);
-        children = new HashSet<>();
+        children = ConcurrentHashMap.newKeySet(); // wallets are unlocked concurrently
         this.lastUpdated = 0L;
     }
 
@@ -10,6 +10,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class FinderSyncExtensionServiceServer {
     private static final Logger logger = LoggerFactory.getLogger(FinderSyncExtensionServiceServer.class);
@@ -41,9 +43,9 @@ public class FinderSyncExtensionServiceServer {
         }
     }
 
-    public FinderSyncExtensionServiceServer(java.util.function.Function<String, Result> onChange, java.util.function.BiFunction<String, String, Result> onUnlockRevDirectory, int port) {
+    public FinderSyncExtensionServiceServer(java.util.function.Function<String, Result> onChange, java.util.function.BiFunction<String, String, Result> onUnlockRevDirectory, java.util.function.Function<Map<String, String>, Map<String, Result>> onUnlockRevDirectories, int port) {
         server = ServerBuilder.forPort(port)
-            .addService(new FinderSyncExtensionServiceImpl(onChange, onUnlockRevDirectory))
+            .addService(new FinderSyncExtensionServiceImpl(onChange, onUnlockRevDirectory, onUnlockRevDirectories))
             .build();
     }
 
@@ -67,10 +69,12 @@ public class FinderSyncExtensionServiceServer {
     static class FinderSyncExtensionServiceImpl extends FinderSyncExtensionServiceGrpc.FinderSyncExtensionServiceImplBase {
         private final java.util.function.Function<String, Result> onChange;
         private final java.util.function.BiFunction<String, String, Result> onUnlockRevDirectory;
+        private final java.util.function.Function<Map<String, String>, Map<String, Result>> onUnlockRevDirectories;
 
-        public FinderSyncExtensionServiceImpl(java.util.function.Function<String, Result> onChange, java.util.function.BiFunction<String, String, Result> onUnlockRevDirectory) {
+        public FinderSyncExtensionServiceImpl(java.util.function.Function<String, Result> onChange, java.util.function.BiFunction<String, String, Result> onUnlockRevDirectory, java.util.function.Function<Map<String, String>, Map<String, Result>> onUnlockRevDirectories) {
             this.onChange = onChange;
             this.onUnlockRevDirectory = onUnlockRevDirectory;
+            this.onUnlockRevDirectories = onUnlockRevDirectories;
         }
 
         @Override
@@ -150,5 +154,48 @@ public class FinderSyncExtensionServiceServer {
                 responseObserver.onCompleted();
             }
         }
+
+        @Override
+        public void unlockWalletDirectories(FinderSyncExtensionServiceOuterClass.UnlockWalletDirectoriesRequest request, StreamObserver<FinderSyncExtensionServiceOuterClass.UnlockWalletDirectoriesResponse> responseObserver) {
+            logger.info("UnlockWalletDirectories called with {} wallets", request.getWalletsCount());
+
+            Map<String, String> privateKeysByRevAddress = new LinkedHashMap<>();
+            for (FinderSyncExtensionServiceOuterClass.UnlockWalletDirectoryRequest wallet : request.getWalletsList()) {
+                privateKeysByRevAddress.put(wallet.getRevAddress(), wallet.getPrivateKey());
+            }
+
+            FinderSyncExtensionServiceOuterClass.UnlockWalletDirectoriesResponse.Builder response =
+                FinderSyncExtensionServiceOuterClass.UnlockWalletDirectoriesResponse.newBuilder();
+            try {
+                Map<String, Result> results = onUnlockRevDirectories.apply(privateKeysByRevAddress);
+                for (String revAddress : privateKeysByRevAddress.keySet()) {
+                    Result result = results.getOrDefault(revAddress, Result.error("No result"));
+                    response.addResults(walletUnlockResult(revAddress, result));
+                }
+            } catch (Throwable e) {
+                logger.error("Error unlocking rev directories - {}", e.getMessage(), e);
+                for (String revAddress : privateKeysByRevAddress.keySet()) {
+                    response.addResults(walletUnlockResult(revAddress, Result.error(e.getMessage())));
+                }
+            } finally {
+                responseObserver.onNext(response.build());
+                responseObserver.onCompleted();
+            }
+        }
+
+        private static FinderSyncExtensionServiceOuterClass.WalletUnlockResult walletUnlockResult(String revAddress, Result result) {
+            FinderSyncExtensionServiceOuterClass.Response.Builder response = FinderSyncExtensionServiceOuterClass.Response.newBuilder();
+            if (result.isSuccess()) {
+                response.setSuccess(FinderSyncExtensionServiceOuterClass.EmptyResponse.newBuilder().build());
+            } else {
+                response.setError(FinderSyncExtensionServiceOuterClass.ErrorResponse.newBuilder()
+                    .setErrorMessage("Failed to unlock directory: " + result.getErrorMessage())
+                    .build());
+            }
+            return FinderSyncExtensionServiceOuterClass.WalletUnlockResult.newBuilder()
+                .setRevAddress(revAddress)
+                .setResult(response.build())
+                .build();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,68 @@
+package io.f1r3fly.f1r3drive.blockchain.client;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for GrpcTransportConfig.
+ */
+class GrpcTransportConfigTest {
+
+    @Test
+    void shouldCreateConfigWithDefaultValues() {
+        // When
+        GrpcTransportConfig config = GrpcTransportConfig.defaultConfig();
+
+        // Then
+        assertEquals(4, config.getChannelsPerEndpoint());
+        assertEquals(Runtime.getRuntime().availableProcessors(), config.getEventLoopThreads());
+        assertTrue(config.getExecutorThreads() >= 4);
+        assertEquals(16 * 1024 * 1024, config.getFlowControlWindowBytes());
+        assertEquals(300_000, config.getKeepAliveTimeMs());
+        assertEquals(10_000, config.getKeepAliveTimeoutMs());
+        assertFalse(config.isKeepAliveWithoutCalls());
+        assertEquals(Integer.MAX_VALUE, config.getMaxInboundMessageSize());
+        assertTrue(config.isPreferNativeTransport());
+    }
+
+    @Test
+    void shouldCreateConfigWithCustomValues() {
+        // When
+        GrpcTransportConfig config = GrpcTransportConfig.builder()
+            .channelsPerEndpoint(8)
+            .executorThreads(16)
+            .eventLoopThreads(2)
+            .flowControlWindowBytes(1024 * 1024)
+            .keepAliveTimeMs(60_000)
+            .keepAliveTimeoutMs(5_000)
+            .keepAliveWithoutCalls(true)
+            .maxInboundMessageSize(64 * 1024 * 1024)
+            .preferNativeTransport(false)
+            .build();
+
+        // Then
+        assertEquals(8, config.getChannelsPerEndpoint());
+        assertEquals(16, config.getExecutorThreads());
+        assertEquals(2, config.getEventLoopThreads());
+        assertEquals(1024 * 1024, config.getFlowControlWindowBytes());
+        assertEquals(60_000, config.getKeepAliveTimeMs());
+        assertEquals(5_000, config.getKeepAliveTimeoutMs());
+        assertTrue(config.isKeepAliveWithoutCalls());
+        assertEquals(64 * 1024 * 1024, config.getMaxInboundMessageSize());
+        assertFalse(config.isPreferNativeTransport());
+    }
+
+    @Test
+    void shouldRejectNonPositiveValues() {
+        GrpcTransportConfig.Builder builder = GrpcTransportConfig.builder();
+
+        assertThrows(IllegalArgumentException.class, () -> builder.channelsPerEndpoint(0));
+        assertThrows(IllegalArgumentException.class, () -> builder.executorThreads(0));
+        assertThrows(IllegalArgumentException.class, () -> builder.eventLoopThreads(-1));
+        assertThrows(IllegalArgumentException.class, () -> builder.flowControlWindowBytes(0));
+        assertThrows(IllegalArgumentException.class, () -> builder.keepAliveTimeMs(0));
+        assertThrows(IllegalArgumentException.class, () -> builder.keepAliveTimeoutMs(-5));
+        assertThrows(IllegalArgumentException.class, () -> builder.maxInboundMessageSize(0));
+    }
+}
@@ -0,0 +1,352 @@
+package io.f1r3fly.f1r3drive.blockchain.rholang;
+
+import com.google.protobuf.ByteString;
+import io.f1r3fly.f1r3drive.encryption.ChunkManifest;
+import io.f1r3fly.f1r3drive.encryption.ContentCodec;
+import org.junit.jupiter.api.Test;
+import rhoapi.RhoTypes;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for decoding channel data and building deploys in RholangExpressionConstructor.
+ */
+class RholangExpressionConstructorTest {
+
+    @Test
+    void shouldDecodeDirectory() {
+        // Given
+        RhoTypes.Expr expr = map(
+            keyValue("type", string("d")),
+            keyValue("children", list("a.txt", "b", "c.rho")),
+            keyValue("lastUpdated", integer(123))
+        );
+
+        // When
+        RholangExpressionConstructor.ChannelData data = RholangExpressionConstructor.parseExploratoryDeployResult(expr);
+
+        // Then
+        assertTrue(data.isDir());
+        assertEquals(123, data.lastUpdated());
+        assertEquals(Set.of("a.txt", "b", "c.rho"), data.children());
+        assertNull(data.firstChunk());
+        assertNull(data.otherChunks());
+    }
+
+    @Test
+    void shouldDecodeFileWithOtherChunks() {
+        // Given
+        RhoTypes.Expr expr = map(
+            keyValue("lastUpdated", integer(456)),
+            keyValue("otherChunks", par(RhoTypes.Expr.newBuilder().setEMapBody(RhoTypes.EMap.newBuilder()
+                .addKvs(RhoTypes.KeyValuePair.newBuilder().setKey(integer(1)).setValue(string("/a/file/1")))
+                .addKvs(RhoTypes.KeyValuePair.newBuilder().setKey(integer(2)).setValue(string("/a/file/2"))))
+                .build())),
+            keyValue("type", string("f")),
+            keyValue("firstChunk", par(RhoTypes.Expr.newBuilder().setGByteArray(ByteString.copyFromUtf8("abc")).build()))
+        );
+
+        // When
+        RholangExpressionConstructor.ChannelData data = RholangExpressionConstructor.parseExploratoryDeployResult(expr);
+
+        // Then
+        assertTrue(data.isFile());
+        assertEquals(456, data.lastUpdated());
+        assertEquals("abc", data.firstChunk().toStringUtf8());
+        assertEquals(Map.of(1, "/a/file/1", 2, "/a/file/2"), data.otherChunks());
+        assertEquals(RholangExpressionConstructor.UNKNOWN_SIZE, data.size());
+        assertNull(data.children());
+    }
+
+    @Test
+    void shouldDecodeFileMetadataWithoutFirstChunk() {
+        // Given
+        RhoTypes.Expr expr = map(
+            keyValue("type", string("f")),
+            keyValue("otherChunks", par(RhoTypes.Expr.newBuilder().setEMapBody(RhoTypes.EMap.newBuilder()
+                .addKvs(RhoTypes.KeyValuePair.newBuilder().setKey(integer(1)).setValue(string("/a/file/1"))))
+                .build())),
+            keyValue("size", integer(200L * 1024 * 1024)),
+            keyValue("lastUpdated", integer(789))
+        );
+
+        // When
+        RholangExpressionConstructor.ChannelData data = RholangExpressionConstructor.parseExploratoryDeployResult(expr);
+
+        // Then
+        assertTrue(data.isFile());
+        assertNull(data.firstChunk());
+        assertEquals(200L * 1024 * 1024, data.size());
+        assertEquals(Map.of(1, "/a/file/1"), data.otherChunks());
+        assertEquals(ChunkManifest.merkleRoot(Map.of()), data.merkleRoot(), "computed for a file deployed without one");
+        assertEquals(ContentCodec.NONE, data.codec(), "for a file deployed without one");
+    }
+
+    @Test
+    void shouldDecodeInlineFilesOfDirectory() {
+        // Given
+        RhoTypes.Expr expr = map(
+            keyValue("type", string("d")),
+            keyValue("children", list("a.txt", "b")),
+            keyValue("inlineFiles", par(RhoTypes.Expr.newBuilder().setEMapBody(RhoTypes.EMap.newBuilder()
+                .addKvs(RhoTypes.KeyValuePair.newBuilder().setKey(string("a.txt"))
+                    .setValue(par(RhoTypes.Expr.newBuilder().setGByteArray(ByteString.copyFromUtf8("abc")).build()))))
+                .build())),
+            keyValue("lastUpdated", integer(5))
+        );
+
+        // When
+        RholangExpressionConstructor.ChannelData data = RholangExpressionConstructor.parseExploratoryDeployResult(expr);
+
+        // Then
+        assertEquals(Map.of("a.txt", ByteString.copyFromUtf8("abc")), data.inlineFiles());
+    }
+
+    @Test
+    void shouldDecodeDirectoryWithoutInlineFiles() {
+        RhoTypes.Expr expr = map(
+            keyValue("type", string("d")),
+            keyValue("children", list("a.txt")),
+            keyValue("lastUpdated", integer(1))
+        );
+
+        RholangExpressionConstructor.ChannelData data = RholangExpressionConstructor.parseExploratoryDeployResult(expr);
+
+        assertEquals(Map.of(), data.inlineFiles());
+        assertFalse(data.inline());
+    }
+
+    @Test
+    void shouldDecodeEmptyDirectory() {
+        RhoTypes.Expr expr = map(
+            keyValue("type", string("d")),
+            keyValue("children", list()),
+            keyValue("lastUpdated", integer(1))
+        );
+
+        RholangExpressionConstructor.ChannelData data = RholangExpressionConstructor.parseExploratoryDeployResult(expr);
+
+        assertTrue(data.children().isEmpty());
+    }
+
+    @Test
+    void shouldIgnoreUnknownKeys() {
+        RhoTypes.Expr expr = map(
+            keyValue("type", string("d")),
+            keyValue("somethingElse", string("x")),
+            keyValue("children", list("a")),
+            keyValue("lastUpdated", integer(1))
+        );
+
+        RholangExpressionConstructor.ChannelData data = RholangExpressionConstructor.parseExploratoryDeployResult(expr);
+
+        assertEquals(Set.of("a"), data.children());
+    }
+
+    @Test
+    void shouldRejectMissingFields() {
+        assertThrows(IllegalArgumentException.class, () -> RholangExpressionConstructor.parseExploratoryDeployResult(
+            map(keyValue("children", list()), keyValue("lastUpdated", integer(1)))));
+
+        assertThrows(IllegalArgumentException.class, () -> RholangExpressionConstructor.parseExploratoryDeployResult(
+            map(keyValue("type", string("d")), keyValue("children", list()))));
+
+        assertThrows(IllegalArgumentException.class, () -> RholangExpressionConstructor.parseExploratoryDeployResult(
+            map(keyValue("type", string("d")), keyValue("lastUpdated", integer(1)))));
+
+        assertThrows(IllegalArgumentException.class, () -> RholangExpressionConstructor.parseExploratoryDeployResult(
+            map(keyValue("type", string("f")), keyValue("lastUpdated", integer(1)))));
+    }
+
+    @Test
+    void shouldRejectUnknownType() {
+        assertThrows(IllegalArgumentException.class, () -> RholangExpressionConstructor.parseExploratoryDeployResult(
+            map(keyValue("type", string("x")), keyValue("lastUpdated", integer(1)))));
+    }
+
+    @Test
+    void shouldParseChannelDataFromLastPar() {
+        List<RhoTypes.Par> pars = List.of(
+            par(map(keyValue("type", string("d")), keyValue("children", list("old")), keyValue("lastUpdated", integer(1)))),
+            par(map(keyValue("type", string("d")), keyValue("children", list("new")), keyValue("lastUpdated", integer(2))))
+        );
+
+        RholangExpressionConstructor.ChannelData data = RholangExpressionConstructor.parseChannelData(pars);
+
+        assertEquals(Set.of("new"), data.children());
+        assertEquals(2, data.lastUpdated());
+    }
+
+    @Test
+    void shouldParseBlockListsLastFirst() {
+        // Given: two lists sent to a chunk channel, and something that is not a list
+        List<RhoTypes.Par> pars = List.of(
+            list("ab01", "cd02"),
+            string("not a list"),
+            list("ef03")
+        );
+
+        // When
+        List<List<String>> lists = RholangExpressionConstructor.parseBlockLists(pars);
+
+        // Then
+        assertEquals(List.of(List.of("ef03"), List.of("ab01", "cd02")), lists);
+    }
+
+    @Test
+    void shouldNameContentAddressedChannels() {
+        String chunkChannel = RholangExpressionConstructor.chunkChannel("ab01");
+
+        assertTrue(RholangExpressionConstructor.isChunkChannel(chunkChannel));
+        assertEquals("ab01", RholangExpressionConstructor.chunkChannelHash(chunkChannel));
+        assertTrue(RholangExpressionConstructor.isContentAddressed(chunkChannel));
+        assertTrue(RholangExpressionConstructor.isContentAddressed(RholangExpressionConstructor.blockChannel("ab01")));
+        assertFalse(RholangExpressionConstructor.isContentAddressed("/rev/a.txt/1"));
+    }
+
+    @Test
+    void shouldParseManifestEntriesByPath() {
+        // Given
+        RhoTypes.Expr fileEntry = map(
+            keyValue("type", string("f")),
+            keyValue("lastUpdated", integer(2)),
+            keyValue("size", integer(3)),
+            keyValue("otherChunks", par(RhoTypes.Expr.newBuilder().setEMapBody(RhoTypes.EMap.newBuilder()).build())),
+            keyValue("chunkHashes", par(RhoTypes.Expr.newBuilder().setEMapBody(RhoTypes.EMap.newBuilder()
+                .addKvs(RhoTypes.KeyValuePair.newBuilder().setKey(integer(0)).setValue(string("ab01"))))
+                .build())),
+            keyValue("merkleRoot", string("cd02")),
+            keyValue("codec", string("deflate")),
+            keyValue("inline", par(RhoTypes.Expr.newBuilder().setGBool(true).build()))
+        );
+        RhoTypes.Expr dirEntry = map(
+            keyValue("type", string("d")),
+            keyValue("children", list("a.txt")),
+            keyValue("lastUpdated", integer(1))
+        );
+        RhoTypes.Expr manifest = map(
+            keyValue("/rev", par(dirEntry)),
+            keyValue("/rev/a.txt", par(fileEntry))
+        );
+
+        // When
+        Map<String, RholangExpressionConstructor.ChannelData> entries =
+            RholangExpressionConstructor.parseManifest(List.of(par(manifest)));
+
+        // Then
+        assertEquals(Set.of("/rev", "/rev/a.txt"), entries.keySet());
+        assertEquals(Set.of("a.txt"), entries.get("/rev").children());
+        assertEquals(3, entries.get("/rev/a.txt").size());
+        assertEquals(Map.of(0, "ab01"), entries.get("/rev/a.txt").chunkHashes());
+        assertEquals("cd02", entries.get("/rev/a.txt").merkleRoot());
+        assertEquals(ContentCodec.DEFLATE, entries.get("/rev/a.txt").codec());
+        assertTrue(entries.get("/rev/a.txt").inline());
+        assertFalse(entries.get("/rev").inline());
+    }
+
+    @Test
+    void shouldRejectMalformedManifest() {
+        assertThrows(IllegalArgumentException.class, () -> RholangExpressionConstructor.parseManifest(List.of()));
+        assertThrows(IllegalArgumentException.class, () -> RholangExpressionConstructor.parseManifest(
+            List.of(par(map(keyValue("/rev", string("not an entry")))))));
+    }
+
+    @Test
+    void shouldAppendToFirstChunk() {
+        assertEquals(
+            "for(@v <- @\"/rev/a.txt\"){@\"/rev/a.txt\"!(v.set(\"firstChunk\",v.get(\"firstChunk\") ++ \"01ab\".hexToBytes()))}",
+            RholangExpressionConstructor.appendFileContent("/rev/a.txt", new byte[]{0x01, (byte) 0xab}));
+    }
+
+    @Test
+    void shouldAppendToChunkChannel() {
+        assertEquals(
+            "for(@c <- @\"/rev/a.txt/1\"){@\"/rev/a.txt/1\"!(c ++ \"01ab\".hexToBytes())}",
+            RholangExpressionConstructor.appendFileContentChunk("/rev/a.txt/1", new byte[]{0x01, (byte) 0xab}));
+    }
+
+    @Test
+    void shouldSetOnlyChangedChunkEntries() {
+        // When
+        String rholang = RholangExpressionConstructor.updateFileMetadataDelta("/rev/a.txt", Map.of(1, "/rev/a.txt/1"),
+            Map.of(1, "ab01"), "cd02", ContentCodec.NONE, 10, 123);
+
+        // Then
+        assertEquals("for(@v <- @\"/rev/a.txt\"){@\"/rev/a.txt\"!(v"
+            + ".set(\"otherChunks\",v.getOrElse(\"otherChunks\",{}).set(1,\"/rev/a.txt/1\"))"
+            + ".set(\"chunkHashes\",v.getOrElse(\"chunkHashes\",{}).set(1,\"ab01\"))"
+            + ".set(\"merkleRoot\",\"cd02\").set(\"codec\",\"none\").set(\"size\",10).set(\"lastUpdated\",123))}",
+            rholang);
+    }
+
+    @Test
+    void shouldLeaveUnchangedChunkMapOutOfDelta() {
+        // When: the first chunk changed, which has no sub channel
+        String rholang = RholangExpressionConstructor.updateFileMetadataDelta("/rev/a.txt", Map.of(), Map.of(0, "ab01"),
+            "cd02", ContentCodec.NONE, 10, 123);
+
+        // Then
+        assertFalse(rholang.contains("otherChunks"));
+        assertTrue(rholang.contains(".set(\"chunkHashes\",v.getOrElse(\"chunkHashes\",{}).set(0,\"ab01\"))"));
+    }
+
+    @Test
+    void shouldApplyDeltaToChannelOfNewFile() {
+        // Given: a file channel as created for a new file, and the delta deployed on its first close
+        String created = RholangExpressionConstructor.sendEmptyFileIntoNewChanel("/rev/a.txt", 100);
+
+        // When
+        String rholang = RholangExpressionConstructor.updateFileMetadataDelta("/rev/a.txt", Map.of(1, "/rev/a.txt/1"),
+            Map.of(0, "ab01", 1, "ef03"), "cd02", ContentCodec.NONE, 10, 123);
+
+        // Then: every map the delta reads is either in the new channel or defaults to an empty one,
+        // so the value it consumes is always sent back
+        assertFalse(rholang.contains(".get("));
+        Matcher reads = Pattern.compile("v\\.getOrElse\\(\"(\\w+)\",\\{}\\)").matcher(rholang);
+        int readCount = 0;
+        while (reads.find()) {
+            assertTrue(created.contains("\"" + reads.group(1) + "\":{}"), reads.group(1));
+            readCount++;
+        }
+        assertEquals(2, readCount);
+    }
+
+    private static RhoTypes.Expr map(RhoTypes.KeyValuePair... keyValues) {
+        return RhoTypes.Expr.newBuilder()
+            .setEMapBody(RhoTypes.EMap.newBuilder().addAllKvs(List.of(keyValues)))
+            .build();
+    }
+
+    private static RhoTypes.KeyValuePair keyValue(String key, RhoTypes.Par value) {
+        return RhoTypes.KeyValuePair.newBuilder()
+            .setKey(string(key))
+            .setValue(value)
+            .build();
+    }
+
+    private static RhoTypes.Par list(String... values) {
+        RhoTypes.EList.Builder list = RhoTypes.EList.newBuilder();
+        for (String value : values) {
+            list.addPs(string(value));
+        }
+        return par(RhoTypes.Expr.newBuilder().setEListBody(list).build());
+    }
+
+    private static RhoTypes.Par string(String value) {
+        return par(RhoTypes.Expr.newBuilder().setGString(value).build());
+    }
+
+    private static RhoTypes.Par integer(long value) {
+        return par(RhoTypes.Expr.newBuilder().setGInt(value).build());
+    }
+
+    private static RhoTypes.Par par(RhoTypes.Expr expr) {
+        return RhoTypes.Par.newBuilder().addExprs(expr).build();
+    }
+}
@@ -0,0 +1,52 @@
+package io.f1r3fly.f1r3drive.encryption;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for AESCipher.
+ */
+class AESCipherTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldEncryptAndDecryptOnManyThreadsAtOnce() throws Exception {
+        // Given
+        AESCipher.init(directory.resolve("aes.key").toString());
+        AESCipher cipher = AESCipher.getInstance();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // When
+        List<Future<byte[][]>> roundTrips = new ArrayList<>();
+        try {
+            for (int i = 0; i < 64; i++) {
+                int seed = i;
+                roundTrips.add(executor.submit(() -> {
+                    byte[] content = new byte[64 * 1024 + seed];
+                    new Random(seed).nextBytes(content);
+                    return new byte[][]{content, cipher.decrypt(cipher.encrypt(content))};
+                }));
+            }
+
+            // Then
+            for (Future<byte[][]> roundTrip : roundTrips) {
+                byte[][] contentAndDecrypted = roundTrip.get();
+                assertArrayEquals(contentAndDecrypted[0], contentAndDecrypted[1]);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package io.f1r3fly.f1r3drive.encryption;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for ChunkManifest.
+ */
+class ChunkManifestTest {
+
+    @Test
+    void shouldGiveSameRootForSameChunks() {
+        assertEquals(ChunkManifest.merkleRoot(Map.of(0, "aa", 1, "bb", 2, "cc")),
+            ChunkManifest.merkleRoot(Map.of(2, "cc", 0, "aa", 1, "bb")));
+        assertEquals(64, ChunkManifest.merkleRoot(Map.of()).length());
+    }
+
+    @Test
+    void shouldChangeRootWithAnyChunk() {
+        // Given
+        String root = ChunkManifest.merkleRoot(Map.of(0, "aa", 1, "bb", 2, "cc"));
+
+        // Then
+        assertNotEquals(root, ChunkManifest.merkleRoot(Map.of(0, "aa", 1, "bb", 2, "cd")));
+        assertNotEquals(root, ChunkManifest.merkleRoot(Map.of(0, "ab", 1, "bb", 2, "cc")));
+        assertNotEquals(root, ChunkManifest.merkleRoot(Map.of(0, "aa", 1, "bb")));
+        assertNotEquals(root, ChunkManifest.merkleRoot(Map.of(0, "aa", 1, "cc", 2, "bb")), "chunks in another order");
+        assertNotEquals(ChunkManifest.merkleRoot(Map.of(0, "aa", 1, "bb")), ChunkManifest.merkleRoot(Map.of(0, "aa", 2, "bb")));
+    }
+
+    @Test
+    void shouldFindChangedChunks() {
+        // Given
+        Map<Integer, String> cached = Map.of(0, "aa", 1, "bb", 2, "cc", 3, "dd");
+        Map<Integer, String> deployed = Map.of(0, "aa", 1, "b2", 2, "cc", 4, "ee");
+
+        // When
+        Set<Integer> changed = ChunkManifest.changedChunks(cached, deployed);
+
+        // Then
+        assertEquals(Set.of(1, 4), changed);
+        assertTrue(ChunkManifest.changedChunks(deployed, deployed).isEmpty());
+    }
+}
@@ -0,0 +1,101 @@
+package io.f1r3fly.f1r3drive.encryption;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for ContentCodec.
+ */
+class ContentCodecTest {
+
+    @TempDir
+    Path directory;
+
+    private static byte[] text(int length) {
+        byte[] line = "2026-10-19 12:00:00 INFO request served in 12 ms\n".getBytes(StandardCharsets.US_ASCII);
+        byte[] content = new byte[length];
+        for (int i = 0; i < length; i++) {
+            content[i] = line[i % line.length];
+        }
+        return content;
+    }
+
+    private static byte[] random(int length) {
+        byte[] content = new byte[length];
+        new Random(42).nextBytes(content);
+        return content;
+    }
+
+    private byte[] decode(String codec, List<ByteBuffer> stored, long position) throws IOException {
+        Path file = directory.resolve("decoded");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+            long written = ContentCodec.decode(codec, stored, channel, position);
+            assertEquals(channel.size() - position, written);
+        }
+        byte[] decoded = Files.readAllBytes(file);
+        return Arrays.copyOfRange(decoded, (int) position, decoded.length);
+    }
+
+    @Test
+    void shouldChooseDeflateForCompressibleContent() {
+        assertEquals(ContentCodec.DEFLATE, ContentCodec.choose(text(1024 * 1024)));
+        assertEquals(ContentCodec.DEFLATE, ContentCodec.choose(text(100)));
+        assertEquals(ContentCodec.NONE, ContentCodec.choose(random(1024 * 1024)));
+        assertEquals(ContentCodec.NONE, ContentCodec.choose(new byte[0]));
+    }
+
+    @Test
+    void shouldDecodeWhatWasEncoded() throws IOException {
+        // Given
+        byte[] content = text(3 * 1024 * 1024 + 7);
+
+        // When
+        byte[] stored = ContentCodec.encode(ContentCodec.DEFLATE, content);
+        // received in several buffers, written past the start of the file
+        ByteBuffer first = ByteBuffer.wrap(stored, 0, stored.length / 3).slice();
+        ByteBuffer rest = ByteBuffer.wrap(stored, stored.length / 3, stored.length - stored.length / 3).slice();
+        byte[] decoded = decode(ContentCodec.DEFLATE, List.of(first, rest), 100);
+
+        // Then
+        assertTrue(stored.length < content.length / 10);
+        assertArrayEquals(content, decoded);
+    }
+
+    @Test
+    void shouldKeepContentAsIsWithoutCodec() throws IOException {
+        // Given
+        byte[] content = random(1000);
+
+        // When
+        byte[] stored = ContentCodec.encode(ContentCodec.NONE, content);
+
+        // Then
+        assertSame(content, stored);
+        assertArrayEquals(content, decode(ContentCodec.NONE, List.of(ByteBuffer.wrap(stored)), 0));
+    }
+
+    @Test
+    void shouldRejectMalformedOrUnknownContent() {
+        byte[] stored = ContentCodec.encode(ContentCodec.DEFLATE, text(10_000));
+        byte[] truncated = Arrays.copyOf(stored, stored.length / 2);
+
+        assertThrows(IOException.class, () -> decode(ContentCodec.DEFLATE, List.of(ByteBuffer.wrap(random(1000))), 0));
+        assertThrows(IOException.class, () -> decode(ContentCodec.DEFLATE, List.of(ByteBuffer.wrap(truncated)), 0));
+        assertThrows(IOException.class, () -> decode("zstd", List.of(ByteBuffer.wrap(stored)), 0));
+        assertThrows(IllegalArgumentException.class, () -> ContentCodec.encode("zstd", stored));
+    }
+}
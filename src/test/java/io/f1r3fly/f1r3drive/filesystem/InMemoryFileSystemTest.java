@@ -0,0 +1,127 @@
+package io.f1r3fly.f1r3drive.filesystem;
+
+import casper.DeployServiceCommon;
+import io.f1r3fly.f1r3drive.blockchain.client.F1r3flyBlockchainClient;
+import io.f1r3fly.f1r3drive.blockchain.rholang.RholangExpressionConstructor;
+import io.f1r3fly.f1r3drive.errors.InvalidSigningKeyException;
+import io.f1r3fly.f1r3drive.errors.PathNotFound;
+import io.f1r3fly.f1r3drive.filesystem.cache.CacheConfig;
+import io.f1r3fly.f1r3drive.filesystem.deployable.SealConfig;
+import io.f1r3fly.f1r3drive.filesystem.deployable.UnlockedWalletDirectory;
+import io.f1r3fly.f1r3drive.filesystem.fetch.FetchConfig;
+import io.f1r3fly.f1r3drive.filesystem.local.LockedWalletDirectory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import rhoapi.RhoTypes;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for InMemoryFileSystem.
+ */
+class InMemoryFileSystemTest {
+
+    private static final String REV_ADDRESS_1 = "1111AtahZeefej4tvVR6ti9TJtv8yxLebT31SCEVDCKMNikBk5r3g";
+    private static final String PRIVATE_KEY_1 = "5f668a7ee96d944a4494cc947e4005e172d7ab3461ee5538f1f2a45a835e9657";
+    private static final String REV_ADDRESS_2 = "111127RX5ZgiAdRaQy4AWy57RdvAAckdELReEBxzvWYVvdnR32PiHA";
+    private static final String UNKNOWN_REV_ADDRESS = "1111UnknownWalletNotInGenesisBlock";
+
+    @TempDir
+    java.nio.file.Path cacheDirectory;
+
+    @Mock
+    private F1r3flyBlockchainClient blockchainClient;
+
+    private InMemoryFileSystem fileSystem;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+
+        when(blockchainClient.getGenesisBlock()).thenReturn(DeployServiceCommon.BlockInfo.newBuilder()
+            .addDeploys(DeployServiceCommon.DeployInfo.newBuilder()
+                .setTerm("new revVaultInitCh in { revVaultInitCh!([\"" + REV_ADDRESS_1 + "\", \"" + REV_ADDRESS_2 + "\"]) }"))
+            .build());
+        // both wallets are already on the shard, so mounting them deploys nothing
+        for (String revAddress : List.of(REV_ADDRESS_1, REV_ADDRESS_2)) {
+            when(blockchainClient.findDataByName(eq(RholangExpressionConstructor.manifestChannel(revAddress)), any()))
+                .thenReturn(List.of(par(map(keyValue("/" + revAddress, par(emptyDirData()))))));
+        }
+
+        FetchConfig fetchConfig = FetchConfig.builder().syncInterval(Duration.ZERO).build();
+        fileSystem = new InMemoryFileSystem(blockchainClient, fetchConfig,
+            CacheConfig.builder().directory(cacheDirectory).build(), SealConfig.defaultConfig());
+    }
+
+    @AfterEach
+    void tearDown() {
+        fileSystem.terminate();
+    }
+
+    @Test
+    void shouldReportFailureOfEachWalletAndMountTheOthers() throws Exception {
+        // Given: a valid key, a key of another wallet and a wallet that is not in the genesis block
+        Map<String, String> privateKeysByRevAddress = new LinkedHashMap<>();
+        privateKeysByRevAddress.put(REV_ADDRESS_1, PRIVATE_KEY_1);
+        privateKeysByRevAddress.put(REV_ADDRESS_2, PRIVATE_KEY_1);
+        privateKeysByRevAddress.put(UNKNOWN_REV_ADDRESS, PRIVATE_KEY_1);
+
+        // When
+        Map<String, Throwable> failures = fileSystem.unlockRootDirectories(privateKeysByRevAddress);
+
+        // Then: one failure does not keep the other wallets locked
+        assertEquals(Set.of(REV_ADDRESS_2, UNKNOWN_REV_ADDRESS), failures.keySet());
+        assertInstanceOf(InvalidSigningKeyException.class, failures.get(REV_ADDRESS_2));
+        assertInstanceOf(PathNotFound.class, failures.get(UNKNOWN_REV_ADDRESS));
+
+        UnlockedWalletDirectory unlocked = assertInstanceOf(UnlockedWalletDirectory.class,
+            fileSystem.findPath("/" + REV_ADDRESS_1));
+        unlocked.getTreeLoaded().get(10, TimeUnit.SECONDS);
+        assertInstanceOf(LockedWalletDirectory.class, fileSystem.findPath("/LOCKED-REMOTE-REV-" + REV_ADDRESS_2));
+        assertNull(fileSystem.findPath("/" + REV_ADDRESS_2));
+    }
+
+    private static RhoTypes.Expr emptyDirData() {
+        return map(
+            keyValue("type", string("d")),
+            keyValue("children", par(RhoTypes.Expr.newBuilder().setEListBody(RhoTypes.EList.newBuilder()).build())),
+            keyValue("lastUpdated", integer(100)));
+    }
+
+    private static RhoTypes.Expr map(RhoTypes.KeyValuePair... keyValues) {
+        return RhoTypes.Expr.newBuilder()
+            .setEMapBody(RhoTypes.EMap.newBuilder().addAllKvs(List.of(keyValues)))
+            .build();
+    }
+
+    private static RhoTypes.KeyValuePair keyValue(String key, RhoTypes.Par value) {
+        return RhoTypes.KeyValuePair.newBuilder()
+            .setKey(string(key))
+            .setValue(value)
+            .build();
+    }
+
+    private static RhoTypes.Par string(String value) {
+        return par(RhoTypes.Expr.newBuilder().setGString(value).build());
+    }
+
+    private static RhoTypes.Par integer(long value) {
+        return par(RhoTypes.Expr.newBuilder().setGInt(value).build());
+    }
+
+    private static RhoTypes.Par par(RhoTypes.Expr expr) {
+        return RhoTypes.Par.newBuilder().addExprs(expr).build();
+    }
+}
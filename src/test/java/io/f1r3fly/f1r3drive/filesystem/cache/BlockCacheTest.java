@@ -0,0 +1,181 @@
+package io.f1r3fly.f1r3drive.filesystem.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for BlockCache.
+ */
+class BlockCacheTest {
+
+    private static final int BLOCK_SIZE = 4096;
+
+    // a cached file in memory that records the positions it is read from
+    private static class FakeFile implements BlockCache.BlockSource {
+        byte[] content;
+        final List<Long> reads = new ArrayList<>();
+
+        FakeFile(int size) {
+            content = new byte[size];
+            new Random(size).nextBytes(content);
+        }
+
+        @Override
+        public int read(long position, ByteBuffer dst) {
+            reads.add(position);
+            int length = (int) Math.max(0, Math.min(dst.remaining(), content.length - position));
+            dst.put(content, (int) position, length);
+            return length;
+        }
+    }
+
+    private static byte[] read(BlockCache cache, BlockCache.Handle handle, FakeFile file, long offset, int length)
+        throws Exception {
+        ByteBuffer dst = ByteBuffer.allocate(length);
+        int read = cache.read(handle, offset, dst, file);
+        byte[] bytes = new byte[read];
+        dst.flip().get(bytes);
+        return bytes;
+    }
+
+    private static byte[] slice(byte[] bytes, int offset, int length) {
+        byte[] slice = new byte[length];
+        System.arraycopy(bytes, offset, slice, 0, length);
+        return slice;
+    }
+
+    @Test
+    void shouldServeRepeatedReadsFromMemory() throws Exception {
+        // Given
+        BlockCache cache = new BlockCache(16 * BLOCK_SIZE, BLOCK_SIZE);
+        BlockCache.Handle handle = cache.newHandle();
+        FakeFile file = new FakeFile(3 * BLOCK_SIZE);
+
+        // When
+        byte[] first = read(cache, handle, file, 100, 2 * BLOCK_SIZE);
+        byte[] second = read(cache, handle, file, 100, 2 * BLOCK_SIZE);
+
+        // Then
+        assertArrayEquals(slice(file.content, 100, 2 * BLOCK_SIZE), first);
+        assertArrayEquals(first, second);
+        assertEquals(List.of(0L, (long) BLOCK_SIZE, 2L * BLOCK_SIZE), file.reads);
+        assertEquals(3, cache.getMisses());
+        assertEquals(3, cache.getHits());
+        assertEquals(3L * BLOCK_SIZE, cache.getCachedBytes());
+    }
+
+    @Test
+    void shouldStopAtEndOfFile() throws Exception {
+        // Given
+        BlockCache cache = new BlockCache(16 * BLOCK_SIZE, BLOCK_SIZE);
+        BlockCache.Handle handle = cache.newHandle();
+        FakeFile file = new FakeFile(BLOCK_SIZE + 10);
+
+        // When
+        byte[] first = read(cache, handle, file, BLOCK_SIZE, 100);
+        byte[] second = read(cache, handle, file, BLOCK_SIZE, 100);
+
+        // Then
+        assertArrayEquals(slice(file.content, BLOCK_SIZE, 10), first);
+        assertArrayEquals(first, second);
+    }
+
+    @Test
+    void shouldReadChangedBlocksAgainAfterInvalidation() throws Exception {
+        // Given
+        BlockCache cache = new BlockCache(16 * BLOCK_SIZE, BLOCK_SIZE);
+        BlockCache.Handle handle = cache.newHandle();
+        FakeFile file = new FakeFile(2 * BLOCK_SIZE);
+        read(cache, handle, file, 0, 2 * BLOCK_SIZE);
+
+        // When
+        file.content[BLOCK_SIZE + 1] ^= 1;
+        cache.invalidate(handle, BLOCK_SIZE + 1, 1);
+        byte[] changed = read(cache, handle, file, 0, 2 * BLOCK_SIZE);
+
+        // Then
+        assertArrayEquals(file.content, changed);
+        assertEquals(List.of(0L, (long) BLOCK_SIZE, (long) BLOCK_SIZE), file.reads);
+    }
+
+    @Test
+    void shouldReadGrownLastBlockAgain() throws Exception {
+        // Given
+        BlockCache cache = new BlockCache(16 * BLOCK_SIZE, BLOCK_SIZE);
+        BlockCache.Handle handle = cache.newHandle();
+        FakeFile file = new FakeFile(100);
+        read(cache, handle, file, 0, 100);
+
+        // When
+        byte[] grown = new byte[200];
+        System.arraycopy(file.content, 0, grown, 0, 100);
+        grown[150] = 42;
+        file.content = grown;
+        byte[] read = read(cache, handle, file, 0, 200);
+
+        // Then
+        assertArrayEquals(grown, read);
+    }
+
+    @Test
+    void shouldKeepBlocksOfFilesApart() throws Exception {
+        // Given
+        BlockCache cache = new BlockCache(16 * BLOCK_SIZE, BLOCK_SIZE);
+        BlockCache.Handle firstHandle = cache.newHandle();
+        BlockCache.Handle secondHandle = cache.newHandle();
+        FakeFile firstFile = new FakeFile(BLOCK_SIZE);
+        FakeFile secondFile = new FakeFile(BLOCK_SIZE + 1);
+        read(cache, firstHandle, firstFile, 0, BLOCK_SIZE);
+
+        // When
+        byte[] second = read(cache, secondHandle, secondFile, 0, BLOCK_SIZE);
+        cache.invalidateAll(firstHandle);
+
+        // Then
+        assertArrayEquals(slice(secondFile.content, 0, BLOCK_SIZE), second);
+        assertEquals(BLOCK_SIZE, cache.getCachedBytes());
+    }
+
+    @Test
+    void shouldGiveRecentlyReadBlocksAnotherRound() throws Exception {
+        // Given
+        BlockCache cache = new BlockCache(2 * BLOCK_SIZE, BLOCK_SIZE);
+        BlockCache.Handle handle = cache.newHandle();
+        FakeFile file = new FakeFile(3 * BLOCK_SIZE);
+        read(cache, handle, file, 0, 1);
+        read(cache, handle, file, BLOCK_SIZE, 1);
+        read(cache, handle, file, 0, 1); // block 0 is hot
+
+        // When
+        read(cache, handle, file, 2 * BLOCK_SIZE, 1);
+        file.reads.clear();
+        read(cache, handle, file, 0, 1);
+
+        // Then
+        assertEquals(1, cache.getEvictions());
+        assertTrue(file.reads.isEmpty(), "the hot block stays");
+    }
+
+    @Test
+    void shouldReadFromSourceWhenDisabled() throws Exception {
+        // Given
+        BlockCache cache = new BlockCache(0, BLOCK_SIZE);
+        BlockCache.Handle handle = cache.newHandle();
+        FakeFile file = new FakeFile(BLOCK_SIZE);
+
+        // When
+        byte[] first = read(cache, handle, file, 10, 20);
+        byte[] second = read(cache, handle, file, 10, 20);
+
+        // Then
+        assertArrayEquals(first, second);
+        assertEquals(List.of(10L, 10L), file.reads);
+        assertEquals(0, cache.getCachedBytes());
+    }
+}
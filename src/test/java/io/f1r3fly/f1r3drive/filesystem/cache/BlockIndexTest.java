@@ -0,0 +1,58 @@
+package io.f1r3fly.f1r3drive.filesystem.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for BlockIndex.
+ */
+class BlockIndexTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldKnowPendingBlocks() throws IOException {
+        // Given
+        BlockIndex index = new BlockIndex(directory.resolve("blocks.index"));
+
+        // When
+        index.addPending("ab01", () -> false);
+        index.addDeployed("cd02");
+
+        // Then
+        assertTrue(index.contains("ab01"));
+        assertTrue(index.contains("cd02"));
+        assertFalse(index.contains("ef03"));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void shouldPersistOnlyFinalizedBlocks() throws IOException {
+        // Given
+        Path file = directory.resolve("blocks.index");
+        BlockIndex index = new BlockIndex(file);
+        AtomicBoolean firstFinalized = new AtomicBoolean(false);
+        index.addPending("ab01", firstFinalized::get);
+        index.addDeployed("cd02"); // read after a block still in the queue
+
+        // When
+        index.flush();
+        BlockIndex beforeFinalized = new BlockIndex(file);
+        firstFinalized.set(true);
+        index.flush();
+        BlockIndex afterFinalized = new BlockIndex(file);
+
+        // Then
+        assertEquals(0, beforeFinalized.size());
+        assertTrue(afterFinalized.contains("ab01"));
+        assertTrue(afterFinalized.contains("cd02"));
+        assertEquals(2, afterFinalized.size());
+    }
+}
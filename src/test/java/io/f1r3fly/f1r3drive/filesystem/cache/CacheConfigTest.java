@@ -0,0 +1,59 @@
+package io.f1r3fly.f1r3drive.filesystem.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for CacheConfig.
+ */
+class CacheConfigTest {
+
+    @Test
+    void shouldCreateConfigWithDefaultValues() {
+        // When
+        CacheConfig config = CacheConfig.defaultConfig();
+
+        // Then
+        assertEquals(Path.of(System.getProperty("user.home"), ".f1r3drive", "cache"), config.getDirectory());
+        assertEquals(10L * 1024 * 1024 * 1024, config.getQuotaBytes());
+        assertEquals(64L * 1024 * 1024, config.getMemoryBytes());
+        assertEquals(64 * 1024, config.getBlockSize());
+        assertEquals(64 * 1024, config.getSmallFileBytes());
+    }
+
+    @Test
+    void shouldCreateConfigWithCustomValues() {
+        // When
+        CacheConfig config = CacheConfig.builder()
+            .directory(Path.of("/tmp/cache"))
+            .quotaBytes(1024)
+            .memoryBytes(0)
+            .blockSize(4096)
+            .smallFileBytes(0)
+            .build();
+
+        // Then
+        assertEquals(Path.of("/tmp/cache"), config.getDirectory());
+        assertEquals(1024, config.getQuotaBytes());
+        assertEquals(0, config.getMemoryBytes());
+        assertEquals(4096, config.getBlockSize());
+        assertEquals(0, config.getSmallFileBytes());
+    }
+
+    @Test
+    void shouldRejectInvalidValues() {
+        CacheConfig.Builder builder = CacheConfig.builder();
+
+        assertThrows(IllegalArgumentException.class, () -> builder.directory(null));
+        assertThrows(IllegalArgumentException.class, () -> builder.quotaBytes(0));
+        assertThrows(IllegalArgumentException.class, () -> builder.memoryBytes(-1));
+        assertThrows(IllegalArgumentException.class, () -> builder.blockSize(1024));
+        assertThrows(IllegalArgumentException.class, () -> builder.blockSize(48 * 1024));
+        assertThrows(IllegalArgumentException.class, () -> builder.blockSize(2 * 1024 * 1024));
+        assertThrows(IllegalArgumentException.class, () -> builder.smallFileBytes(-1));
+        assertThrows(IllegalArgumentException.class, () -> builder.smallFileBytes(2 * 1024 * 1024));
+    }
+}
@@ -0,0 +1,188 @@
+package io.f1r3fly.f1r3drive.filesystem.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for ContentCache.
+ */
+class ContentCacheTest {
+
+    private static final String REV_ADDRESS = "111127RX5ZgiAdRaQy4AWy57RdvAAckdELReEBxzvWYVvdnR32PiHA";
+
+    @TempDir
+    Path cacheDirectory;
+
+    private ContentCache newCache(long quotaBytes) {
+        return new ContentCache(CacheConfig.builder().directory(cacheDirectory).quotaBytes(quotaBytes).build());
+    }
+
+    @Test
+    void shouldKeepLoadedChunksOfSameVersionBetweenInstances() throws IOException {
+        // Given
+        String version = ContentCache.version(100, 10, Map.of(0, "aa"));
+        CacheEntry entry = newCache(1024).open(REV_ADDRESS, "/wallet/file.txt", version, 10);
+        Files.write(entry.getDataFile().toPath(), "0123456789".getBytes());
+        entry.markLoaded(0, 10);
+
+        // When
+        ContentCache reopened = newCache(1024);
+        CacheEntry reused = reopened.open(REV_ADDRESS, "/wallet/file.txt", version, 10);
+
+        // Then
+        assertEquals(Set.of(0), reused.getLoadedChunks());
+        assertEquals("0123456789", Files.readString(reused.getDataFile().toPath()));
+        assertEquals(10, reopened.getUsedBytes());
+    }
+
+    @Test
+    void shouldDropEntryOfAnotherVersion() throws IOException {
+        // Given
+        CacheEntry entry = newCache(1024).open(REV_ADDRESS, "/wallet/file.txt", ContentCache.version(100, 10, Map.of()), 10);
+        entry.markLoaded(0, 10);
+
+        // When
+        ContentCache reopened = newCache(1024);
+        CacheEntry newer = reopened.open(REV_ADDRESS, "/wallet/file.txt", ContentCache.version(200, 10, Map.of()), 10);
+
+        // Then
+        assertTrue(newer.getLoadedChunks().isEmpty());
+        assertEquals(0, reopened.getUsedBytes());
+    }
+
+    @Test
+    void shouldKeepChunksWithSameHashesOfAnotherVersion() throws IOException {
+        // Given
+        Map<Integer, String> hashes = Map.of(0, "aa", 1, "bb", 2, "cc");
+        CacheEntry entry = newCache(1024).open(REV_ADDRESS, "/wallet/file.txt", ContentCache.version(100, 30, hashes),
+            30, hashes, 10, null);
+        Files.write(entry.getDataFile().toPath(), "0123456789abcdefghijABCDEFGHIJ".getBytes());
+        entry.markLoaded(0, 10);
+        entry.markLoaded(1, 10);
+        entry.markLoaded(2, 10);
+
+        // When: the middle chunk changed on the shard
+        Map<Integer, String> newHashes = Map.of(0, "aa", 1, "b2", 2, "cc");
+        ContentCache reopened = newCache(1024);
+        CacheEntry newer = reopened.open(REV_ADDRESS, "/wallet/file.txt", ContentCache.version(200, 30, newHashes),
+            30, newHashes, 10, null);
+
+        // Then
+        assertEquals(Set.of(0, 2), newer.getLoadedChunks());
+        assertEquals(20, reopened.getUsedBytes());
+        assertEquals("0123456789" + "\0".repeat(10) + "ABCDEFGHIJ", Files.readString(newer.getDataFile().toPath()),
+            "the changed chunk reads as zeros until downloaded");
+        assertEquals(Set.of(0, 2), newCache(1024).open(REV_ADDRESS, "/wallet/file.txt",
+            ContentCache.version(200, 30, newHashes), 30, newHashes, 10, null).getLoadedChunks());
+    }
+
+    @Test
+    void shouldNotKeepContentOfChunksShorterOrGoneInAnotherVersion() throws IOException {
+        // Given
+        Map<Integer, String> hashes = Map.of(0, "aa", 1, "bb", 2, "cc");
+        CacheEntry entry = newCache(1024).open(REV_ADDRESS, "/wallet/file.txt", ContentCache.version(100, 30, hashes),
+            30, hashes, 10, null);
+        Files.write(entry.getDataFile().toPath(), "0123456789abcdefghijABCDEFGHIJ".getBytes());
+        entry.markLoaded(0, 10);
+        entry.markLoaded(1, 10);
+        entry.markLoaded(2, 10);
+
+        // When: truncated on the shard into the middle chunk, which changed, and the last chunk is gone
+        Map<Integer, String> newHashes = Map.of(0, "aa", 1, "b2");
+        ContentCache reopened = newCache(1024);
+        CacheEntry newer = reopened.open(REV_ADDRESS, "/wallet/file.txt", ContentCache.version(200, 15, newHashes),
+            15, newHashes, 10, null);
+
+        // Then: only the unchanged chunk is left; the file reads as zeros past it when extended
+        assertEquals(Set.of(0), newer.getLoadedChunks());
+        assertEquals("0123456789", Files.readString(newer.getDataFile().toPath()));
+    }
+
+    @Test
+    void shouldForgetInvalidatedEntry() throws IOException {
+        // Given
+        String version = ContentCache.version(100, 10, Map.of());
+        CacheEntry entry = newCache(1024).open(REV_ADDRESS, "/wallet/file.txt", version, 10);
+        entry.markLoaded(0, 10);
+
+        // When
+        entry.invalidate();
+        ContentCache reopened = newCache(1024);
+
+        // Then
+        assertFalse(entry.getDataFile().exists(), "a working copy left by an earlier mount is deleted");
+        assertTrue(reopened.open(REV_ADDRESS, "/wallet/file.txt", version, 10).getLoadedChunks().isEmpty());
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedEntriesNotInUseOverQuota() throws IOException {
+        // Given
+        ContentCache cache = newCache(1024);
+        CacheEntry older = cache.open(REV_ADDRESS, "/wallet/older", ContentCache.version(1, 600, Map.of()), 600);
+        older.markLoaded(0, 600);
+        assertTrue(older.getIndexFile().setLastModified(1000)); // used long ago
+        CacheEntry newer = cache.open(REV_ADDRESS, "/wallet/newer", ContentCache.version(1, 400, Map.of()), 400);
+        newer.markLoaded(0, 400);
+
+        // When
+        ContentCache reopened = newCache(1024);
+        CacheEntry inUse = reopened.open(REV_ADDRESS, "/wallet/third", ContentCache.version(1, 500, Map.of()), 500);
+        inUse.markLoaded(0, 500);
+
+        // Then
+        assertEquals(900, reopened.getUsedBytes());
+        assertFalse(older.getDataFile().exists());
+        assertTrue(newer.getDataFile().exists());
+    }
+
+    @Test
+    void shouldAskOwnersOfLeastRecentlyUsedEntriesInUseToEvictOverQuota() throws IOException {
+        // Given
+        ContentCache cache = newCache(1024);
+        List<String> asked = new ArrayList<>();
+        CacheEntry busy = cache.open(REV_ADDRESS, "/wallet/busy", ContentCache.version(1, 300, Map.of()), 300, () -> {
+            asked.add("busy");
+            return false; // open, so it keeps its content
+        });
+        busy.markLoaded(0, 300);
+        busy.lastAccess = 1;
+        CacheEntry[] idle = new CacheEntry[1];
+        idle[0] = cache.open(REV_ADDRESS, "/wallet/idle", ContentCache.version(1, 600, Map.of()), 600, () -> {
+            asked.add("idle");
+            idle[0].clearLoaded();
+            return true;
+        });
+        idle[0].markLoaded(0, 600);
+        idle[0].lastAccess = 2;
+
+        // When
+        CacheEntry recent = cache.open(REV_ADDRESS, "/wallet/recent", ContentCache.version(1, 500, Map.of()), 500, () -> {
+            asked.add("recent");
+            return true;
+        });
+        recent.markLoaded(0, 500);
+
+        // Then
+        assertEquals(List.of("busy", "idle"), asked);
+        assertEquals(800, cache.getUsedBytes());
+        assertTrue(idle[0].getLoadedChunks().isEmpty());
+        assertEquals(Set.of(0), busy.getLoadedChunks());
+    }
+
+    @Test
+    void shouldIdentifyVersionByMetadata() {
+        assertEquals(ContentCache.version(1, 2, Map.of(0, "a", 1, "b")), ContentCache.version(1, 2, Map.of(1, "b", 0, "a")));
+        assertNotEquals(ContentCache.version(1, 2, Map.of()), ContentCache.version(1, 3, Map.of()));
+        assertNotEquals(ContentCache.version(1, 2, Map.of(0, "a")), ContentCache.version(1, 2, Map.of(0, "b")));
+    }
+}
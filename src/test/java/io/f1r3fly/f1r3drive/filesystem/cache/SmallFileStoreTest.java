@@ -0,0 +1,142 @@
+package io.f1r3fly.f1r3drive.filesystem.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for SmallFileStore.
+ */
+class SmallFileStoreTest {
+
+    private static final int SEGMENT_SIZE = 1024;
+
+    @TempDir
+    Path directory;
+
+    private SmallFileStore.Extent pack(SmallFileStore store, String content) throws IOException {
+        Path file = Files.createTempFile(directory, "content", null);
+        Files.writeString(file, content);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return store.pack(channel, content.length());
+        }
+    }
+
+    private String read(SmallFileStore store, SmallFileStore.Extent extent, long position, int length) {
+        ByteBuffer dst = ByteBuffer.allocate(length);
+        int read = store.read(extent, position, dst);
+        return new String(dst.array(), 0, read);
+    }
+
+    @Test
+    void shouldReadPackedContent() throws IOException {
+        // Given
+        SmallFileStore store = new SmallFileStore(directory.resolve("slabs"), 512, SEGMENT_SIZE);
+        SmallFileStore.Extent first = pack(store, "first file");
+        SmallFileStore.Extent second = pack(store, "second file");
+
+        // When
+        String firstContent = read(store, first, 0, 100);
+        String secondTail = read(store, second, 7, 100);
+
+        // Then
+        assertEquals("first file", firstContent);
+        assertEquals("file", secondTail);
+        assertEquals("", read(store, second, 11, 100));
+        assertEquals(1, store.getSegmentCount());
+    }
+
+    @Test
+    void shouldPackContentOfBuffer() throws IOException {
+        // Given
+        SmallFileStore store = new SmallFileStore(directory.resolve("slabs"), 512, SEGMENT_SIZE);
+        pack(store, "from a file");
+
+        // When
+        SmallFileStore.Extent extent = store.pack(ByteBuffer.wrap("from memory".getBytes()));
+
+        // Then
+        assertEquals("from memory", read(store, extent, 0, 100));
+        assertEquals(22, store.getPackedBytes());
+    }
+
+    @Test
+    void shouldUnpackIntoFileOfItsOwn() throws IOException {
+        // Given
+        SmallFileStore store = new SmallFileStore(directory.resolve("slabs"), 512, SEGMENT_SIZE);
+        SmallFileStore.Extent extent = pack(store, "promoted");
+        Path target = directory.resolve("target");
+
+        // When
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            store.unpack(extent, channel);
+        }
+
+        // Then
+        assertEquals("promoted", Files.readString(target));
+        assertEquals(0, store.getPackedBytes());
+    }
+
+    @Test
+    void shouldCompactSegmentLeftMostlyEmpty() throws IOException {
+        // Given: a full segment of ten files and a second one taking further files
+        SmallFileStore store = new SmallFileStore(directory.resolve("slabs"), 512, SEGMENT_SIZE);
+        List<SmallFileStore.Extent> extents = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            extents.add(pack(store, String.valueOf(i).repeat(100)));
+        }
+        SmallFileStore.Extent next = pack(store, "n".repeat(30));
+
+        // When
+        for (int i = 0; i < 6; i++) {
+            store.free(extents.get(i));
+        }
+
+        // Then
+        assertEquals(1, store.getSegmentCount());
+        assertEquals(1, store.getCompactions());
+        assertEquals(4 * 100 + 30, store.getPackedBytes());
+        for (int i = 6; i < 10; i++) {
+            assertEquals(String.valueOf(i).repeat(100), read(store, extents.get(i), 0, 100));
+        }
+        assertEquals("n".repeat(30), read(store, next, 0, 100));
+    }
+
+    @Test
+    void shouldDeleteSegmentsOfEarlierInstance() throws IOException {
+        // Given
+        pack(new SmallFileStore(directory.resolve("slabs"), 512, SEGMENT_SIZE), "left over");
+
+        // When
+        SmallFileStore store = new SmallFileStore(directory.resolve("slabs"), 512, SEGMENT_SIZE);
+
+        // Then
+        try (var files = Files.list(directory.resolve("slabs"))) {
+            assertEquals(0, files.count());
+        }
+        assertEquals(0, store.getSegmentCount());
+    }
+
+    @Test
+    void shouldAcceptOnlyFilesUpToThreshold() throws IOException {
+        // Given
+        SmallFileStore store = new SmallFileStore(directory.resolve("slabs"), 512, SEGMENT_SIZE);
+        SmallFileStore disabled = new SmallFileStore(directory.resolve("none"), 0, SEGMENT_SIZE);
+
+        // Then
+        assertTrue(store.accepts(0));
+        assertTrue(store.accepts(512));
+        assertFalse(store.accepts(513));
+        assertFalse(disabled.accepts(0));
+    }
+}
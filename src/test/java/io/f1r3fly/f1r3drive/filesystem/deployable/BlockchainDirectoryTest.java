@@ -0,0 +1,100 @@
+package io.f1r3fly.f1r3drive.filesystem.deployable;
+
+import io.f1r3fly.f1r3drive.blockchain.BlockchainContext;
+import io.f1r3fly.f1r3drive.blockchain.client.DeployDispatcher;
+import io.f1r3fly.f1r3drive.blockchain.wallet.RevWalletInfo;
+import io.f1r3fly.f1r3drive.errors.F1r3DriveError;
+import io.f1r3fly.f1r3drive.filesystem.common.Path;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for BlockchainDirectory.
+ */
+class BlockchainDirectoryTest {
+
+    private static final String REV_ADDRESS = "111127RX5ZgiAdRaQy4AWy57RdvAAckdELReEBxzvWYVvdnR32PiHA";
+
+    @Mock
+    private BlockchainContext blockchainContext;
+
+    @Mock
+    private DeployDispatcher deployDispatcher;
+
+    // published from its own channel, children still being read
+    private FetchedDirectory loading;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(blockchainContext.getWalletInfo()).thenReturn(new RevWalletInfo(REV_ADDRESS, null));
+        when(blockchainContext.getDeployDispatcher()).thenReturn(deployDispatcher);
+
+        loading = new FetchedDirectory(blockchainContext, "/" + REV_ADDRESS, null, 100L);
+    }
+
+    private static Set<String> names(Set<Path> paths) {
+        return paths.stream().map(Path::getName).collect(Collectors.toSet());
+    }
+
+    @Test
+    void shouldBlockGetChildrenUntilDirectoryIsPublished() throws Exception {
+        // Given
+        CompletableFuture<Set<Path>> children = CompletableFuture.supplyAsync(loading::getChildren);
+
+        // When
+        assertThrows(TimeoutException.class, () -> children.get(200, TimeUnit.MILLISECONDS));
+        loading.setChildren(Set.of(new FetchedDirectory(blockchainContext, "docs", loading, 100L)));
+
+        // Then
+        assertEquals(Set.of("docs"), names(children.get(5, TimeUnit.SECONDS)));
+        assertTrue(loading.isLoaded());
+    }
+
+    @Test
+    void shouldFailGetChildrenIfLoadingFailed() {
+        // Given
+        CompletableFuture<Set<Path>> children = CompletableFuture.supplyAsync(loading::getChildren);
+
+        // When
+        loading.failLoading(new IOException("shard unavailable"));
+
+        // Then
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> children.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(F1r3DriveError.class, failure.getCause());
+        assertFalse(loading.isLoaded());
+    }
+
+    @Test
+    void shouldKeepChildrenFetchedAfterAddChildWhileLoading() throws Exception {
+        // Given: a child is added before the children of the directory are read
+        FetchedDirectory added = new FetchedDirectory(blockchainContext, "added", loading, 100L);
+        CompletableFuture<Void> adding = CompletableFuture.runAsync(() -> loading.addChild(added));
+        assertThrows(TimeoutException.class, () -> adding.get(200, TimeUnit.MILLISECONDS));
+
+        // When
+        loading.setChildren(Set.of(new FetchedDirectory(blockchainContext, "fetched", loading, 100L)));
+        adding.get(5, TimeUnit.SECONDS);
+
+        // Then: both are listed, here and in the deployed children list
+        assertEquals(Set.of("added", "fetched"), names(loading.getChildren()));
+        ArgumentCaptor<DeployDispatcher.Deployment> deployment = ArgumentCaptor.forClass(DeployDispatcher.Deployment.class);
+        verify(deployDispatcher).enqueueDeploy(deployment.capture());
+        assertTrue(deployment.getValue().rhoOrMettaExpression().contains("\"added\""));
+        assertTrue(deployment.getValue().rhoOrMettaExpression().contains("\"fetched\""));
+    }
+}
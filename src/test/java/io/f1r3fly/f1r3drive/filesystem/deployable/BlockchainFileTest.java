@@ -0,0 +1,441 @@
+package io.f1r3fly.f1r3drive.filesystem.deployable;
+
+import io.f1r3fly.f1r3drive.blockchain.BlockchainContext;
+import io.f1r3fly.f1r3drive.blockchain.client.DeployDispatcher;
+import io.f1r3fly.f1r3drive.blockchain.wallet.RevWalletInfo;
+import io.f1r3fly.f1r3drive.encryption.ContentCodec;
+import io.f1r3fly.f1r3drive.encryption.ContentHash;
+import io.f1r3fly.f1r3drive.filesystem.cache.CacheConfig;
+import io.f1r3fly.f1r3drive.filesystem.cache.ContentCache;
+import io.f1r3fly.f1r3drive.filesystem.fetch.FetchConfig;
+import jnr.ffi.Pointer;
+import jnr.ffi.Runtime;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static io.f1r3fly.f1r3drive.blockchain.rholang.RholangExpressionConstructor.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for BlockchainFile.
+ * <p>
+ * Files span several chunks by being sparse: only the chunks a test touches are read or deployed, and those are small.
+ */
+class BlockchainFileTest {
+
+    private static final String REV_ADDRESS = "111127RX5ZgiAdRaQy4AWy57RdvAAckdELReEBxzvWYVvdnR32PiHA";
+    private static final String WALLET_PATH = "/" + REV_ADDRESS;
+    private static final long CHUNK = BlockchainFile.MAX_FILE_CHUNK_SIZE;
+
+    @TempDir
+    Path cacheDirectory;
+
+    @Mock
+    private DeployDispatcher deployDispatcher;
+
+    private BlockchainContext blockchainContext;
+    private FetchedDirectory wallet;
+
+    /**
+     * A file on the shard with chunks of zeros. Downloads are recorded instead of read from the shard.
+     */
+    private static class ShardFile extends FetchedFile {
+        final List<Integer> loadedChunks = new CopyOnWriteArrayList<>();
+
+        // downloads wait for it when set, and fail while unavailable
+        volatile CountDownLatch answer;
+        volatile boolean unavailable;
+
+        ShardFile(BlockchainContext blockchainContext, String name, BlockchainDirectory parent) {
+            super(blockchainContext, name, parent, 100L);
+        }
+
+        @Override
+        protected long loadChunk(int chunkNumber) throws IOException {
+            loadedChunks.add(chunkNumber);
+            CountDownLatch answer = this.answer;
+            try {
+                if (answer != null && !answer.await(10, TimeUnit.SECONDS)) {
+                    throw new IOException("no answer from the shard");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            if (unavailable) {
+                throw new IOException("shard unavailable");
+            }
+            return Math.min(CHUNK, remoteSize - chunkNumber * CHUNK);
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+
+        FetchConfig fetchConfig = FetchConfig.defaultConfig();
+        blockchainContext = new BlockchainContext(new RevWalletInfo(REV_ADDRESS, null), deployDispatcher,
+            new ContentCache(CacheConfig.builder().directory(cacheDirectory).build()),
+            new ChunkSealer(SealConfig.defaultConfig()), new ChunkPrefetcher(fetchConfig), new ChunkDownloader(fetchConfig));
+
+        wallet = new FetchedDirectory(blockchainContext, WALLET_PATH, null, 100L);
+        wallet.setChildren(Set.of());
+    }
+
+    // three chunks on the shard: the first in the channel of the file, the others in sub channels
+    private ShardFile threeChunkFile() throws IOException {
+        return threeChunkFile(ContentCodec.NONE);
+    }
+
+    private ShardFile threeChunkFile(String codec) throws IOException {
+        ShardFile file = new ShardFile(blockchainContext, "big.bin", wallet);
+        file.initFromMetadata(file.getAbsolutePath(), 2 * CHUNK + 10, Map.of(1, chunkChannel(file, 1), 2, chunkChannel(file, 2)),
+            Map.of(0, "aa", 1, "bb", 2, "cc"), codec, false);
+        return file;
+    }
+
+    private static String chunkChannel(BlockchainFile file, int chunkNumber) {
+        return file.getAbsolutePath() + "/" + chunkNumber;
+    }
+
+    private static void write(BlockchainFile file, long offset, String content) throws IOException {
+        write(file, offset, content.getBytes(UTF_8));
+    }
+
+    private static void write(BlockchainFile file, long offset, byte[] bytes) throws IOException {
+        Pointer buffer = Runtime.getSystemRuntime().getMemoryManager().allocateDirect(bytes.length);
+        buffer.put(0, bytes, 0, bytes.length);
+        file.write(buffer, bytes.length, offset);
+    }
+
+    private static byte[] read(BlockchainFile file, long offset, int length) throws IOException {
+        Pointer buffer = Runtime.getSystemRuntime().getMemoryManager().allocateDirect(length);
+        byte[] bytes = new byte[file.read(buffer, length, offset)];
+        buffer.get(0, bytes, 0, bytes.length);
+        return bytes;
+    }
+
+    // runs the tasks at once, each on a thread of its own, and fails with the first of them that failed
+    private static void runConcurrently(List<Callable<Void>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        try {
+            for (Future<Void> task : executor.invokeAll(tasks, 30, TimeUnit.SECONDS)) {
+                task.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // the Rholang of every deploy enqueued so far, in order
+    private List<String> deployed() {
+        ArgumentCaptor<DeployDispatcher.Deployment> deployments = ArgumentCaptor.forClass(DeployDispatcher.Deployment.class);
+        verify(deployDispatcher, atLeast(0)).enqueueDeploy(deployments.capture());
+        return deployments.getAllValues().stream().map(DeployDispatcher.Deployment::rhoOrMettaExpression).toList();
+    }
+
+    @Test
+    void shouldRedeployOnlyTailChunkWhenShrinkingInsideIt() throws IOException {
+        // Given
+        ShardFile file = threeChunkFile();
+
+        // When
+        file.truncate(2 * CHUNK + 4);
+
+        // Then: chunk 2 is cut short and replaced; nothing is past the new end
+        assertEquals(List.of(2), file.loadedChunks);
+        assertEquals(2 * CHUNK + 4, file.getSize());
+        assertEquals(List.of(
+            forgetChanel(chunkChannel(file, 2)),
+            sendFileContentChunk(chunkChannel(file, 2), new byte[4]),
+            updateFileMetadata(file.getAbsolutePath(), new TreeMap<>(Map.of(1, chunkChannel(file, 1), 2, chunkChannel(file, 2))),
+                file.getChunkHashes(), ContentCodec.NONE, 2 * CHUNK + 4, file.getLastUpdated())), deployed());
+        assertEquals(ContentHash.blake2b256Hex(new byte[4]), file.getChunkHashes().get(2));
+        assertFalse(file.hasLocalChanges());
+    }
+
+    @Test
+    void shouldForgetChunksPastEndWhenShrinkingAcrossChunkBoundary() throws IOException {
+        // Given
+        ShardFile file = threeChunkFile();
+
+        // When
+        file.truncate(CHUNK + 5);
+
+        // Then: chunk 2 is forgotten for good, chunk 1 is the new tail and replaced
+        assertEquals(List.of(1), file.loadedChunks);
+        assertEquals(CHUNK + 5, file.getSize());
+        assertEquals(List.of(
+            forgetChanel(chunkChannel(file, 2)),
+            forgetChanel(chunkChannel(file, 1)),
+            sendFileContentChunk(chunkChannel(file, 1), new byte[5]),
+            updateFileMetadata(file.getAbsolutePath(), Map.of(1, chunkChannel(file, 1)),
+                file.getChunkHashes(), ContentCodec.NONE, CHUNK + 5, file.getLastUpdated())), deployed());
+        assertEquals(Set.of(0, 1), file.getChunkHashes().keySet());
+    }
+
+    @Test
+    void shouldDeployOnlySizeWhenGrowingSparsely() throws IOException {
+        // Given
+        ShardFile file = threeChunkFile();
+
+        // When
+        file.truncate(4 * CHUNK);
+
+        // Then: the new chunks read as zeros without being downloaded or deployed
+        assertTrue(file.loadedChunks.isEmpty());
+        assertEquals(4 * CHUNK, file.getSize());
+        assertEquals(List.of(
+            updateFileMetadata(file.getAbsolutePath(), new TreeMap<>(Map.of(1, chunkChannel(file, 1), 2, chunkChannel(file, 2))),
+                file.getChunkHashes(), ContentCodec.NONE, 4 * CHUNK, file.getLastUpdated())), deployed());
+        assertEquals(Set.of(0, 1, 2), file.getChunkHashes().keySet());
+    }
+
+    @Test
+    void shouldDownloadInlineContentBeforeLeavingDirectoryChannel() throws IOException {
+        // Given: a small file kept in the channel of its directory
+        ShardFile file = new ShardFile(blockchainContext, "small.txt", wallet);
+        file.initFromMetadata(file.getAbsolutePath(), 10, Map.of(), Map.of(0, "aa"), ContentCodec.NONE, true);
+
+        // When: grown past the inline size, which is 0 here
+        file.truncate(20);
+
+        // Then: moved to a channel of its own with the content it had
+        assertEquals(List.of(0), file.loadedChunks);
+        List<String> deployed = deployed();
+        assertTrue(deployed.get(0).contains(removeInlineFile(WALLET_PATH, "small.txt")));
+        assertTrue(deployed.contains(updateFileContent(file.getAbsolutePath(), new byte[20])));
+        assertFalse(file.hasLocalChanges());
+    }
+
+    @Test
+    void shouldAppendOnlyNewBytesToGrownChunk() throws IOException {
+        // Given: a file deployed with its first bytes
+        BlockchainFile file = new BlockchainFile(blockchainContext, "log.txt", wallet);
+        file.open();
+        write(file, 0, "hello");
+        file.close();
+        int deployedBefore = deployed().size();
+
+        // When
+        file.open();
+        write(file, 5, " world");
+        file.close();
+
+        // Then: the deployed bytes are not sent again, and the hash covers the whole chunk
+        List<String> deployed = deployed();
+        assertEquals(List.of(
+            appendFileContent(file.getAbsolutePath(), " world".getBytes(UTF_8)),
+            updateFileMetadataDelta(file.getAbsolutePath(), Map.of(), Map.of(0, file.getChunkHashes().get(0)),
+                file.getMerkleRoot(), ContentCodec.NONE, 11, file.getLastUpdated())),
+            deployed.subList(deployedBefore, deployed.size()));
+        assertEquals(ContentHash.blake2b256Hex("hello world".getBytes(UTF_8)), file.getChunkHashes().get(0));
+    }
+
+    @Test
+    void shouldDeployWholeChunkWhenEarlierBytesChange() throws IOException {
+        // Given
+        BlockchainFile file = new BlockchainFile(blockchainContext, "log.txt", wallet);
+        file.open();
+        write(file, 0, "hello");
+        file.close();
+        int deployedBefore = deployed().size();
+
+        // When: a deployed byte changes along with the appended ones
+        file.open();
+        write(file, 5, " world");
+        write(file, 0, "J");
+        file.close();
+
+        // Then
+        List<String> deployed = deployed();
+        assertEquals(updateFileContent(file.getAbsolutePath(), "Jello world".getBytes(UTF_8)), deployed.get(deployedBefore));
+        assertEquals(deployedBefore + 2, deployed.size()); // and the metadata
+        assertFalse(deployed.subList(deployedBefore, deployed.size()).stream().anyMatch(rholang -> rholang.contains("++")));
+        assertEquals(ContentHash.blake2b256Hex("Jello world".getBytes(UTF_8)), file.getChunkHashes().get(0));
+    }
+
+    @Test
+    void shouldDeployNothingAfterReadOnlyOpenAndClose() throws IOException {
+        // Given
+        ShardFile file = new ShardFile(blockchainContext, "small.txt", wallet);
+        file.initFromMetadata(file.getAbsolutePath(), 10, Map.of(), Map.of(0, "aa"), ContentCodec.NONE, false);
+
+        // When
+        file.open();
+        byte[] read = read(file, 0, 10);
+        file.close();
+
+        // Then
+        assertArrayEquals(new byte[10], read);
+        assertEquals(List.of(0), file.loadedChunks);
+        assertFalse(file.hasLocalChanges());
+        verify(deployDispatcher, never()).enqueueDeploy(any());
+    }
+
+    @Test
+    void shouldRedeployOnlyChunkWrittenInTheMiddle() throws IOException {
+        // Given: compressed, so that the chunk of zeros deployed again is small
+        ShardFile file = threeChunkFile(ContentCodec.DEFLATE);
+
+        // When
+        file.open();
+        write(file, CHUNK + CHUNK / 2, "abc");
+        file.close();
+
+        // Then: chunk 1 is replaced, the others are neither downloaded nor deployed
+        byte[] chunk = new byte[(int) CHUNK];
+        System.arraycopy("abc".getBytes(UTF_8), 0, chunk, (int) (CHUNK / 2), 3);
+        assertEquals(List.of(1), file.loadedChunks);
+        assertEquals(List.of(
+            forgetChanel(chunkChannel(file, 1)),
+            sendFileContentChunk(chunkChannel(file, 1), ContentCodec.encode(ContentCodec.DEFLATE, chunk)),
+            updateFileMetadataDelta(file.getAbsolutePath(), Map.of(1, chunkChannel(file, 1)), Map.of(1, file.getChunkHashes().get(1)),
+                file.getMerkleRoot(), ContentCodec.DEFLATE, 2 * CHUNK + 10, file.getLastUpdated())), deployed());
+        assertEquals("aa", file.getChunkHashes().get(0));
+        assertEquals("cc", file.getChunkHashes().get(2));
+        assertFalse(file.hasLocalChanges());
+    }
+
+    @Test
+    void shouldReadWholeBlocksWhileAnotherThreadWrites() throws Exception {
+        // Given: blocks of 'a'
+        int blockSize = 4096;
+        int blockCount = 16;
+        BlockchainFile file = new BlockchainFile(blockchainContext, "data.bin", wallet);
+        file.open();
+        for (int block = 0; block < blockCount; block++) {
+            write(file, (long) block * blockSize, filled(blockSize, 'a'));
+        }
+
+        // When: readers read the blocks over and over while a writer turns them into 'b', one write per block
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int reader = 0; reader < 4; reader++) {
+            tasks.add(() -> {
+                for (int i = 0; i < 200; i++) {
+                    byte[] read = read(file, (long) (i % blockCount) * blockSize, blockSize);
+                    // Then: never a block written only in part
+                    assertTrue(Arrays.equals(filled(blockSize, 'a'), read) || Arrays.equals(filled(blockSize, 'b'), read));
+                }
+                return null;
+            });
+        }
+        tasks.add(() -> {
+            for (int block = 0; block < blockCount; block++) {
+                write(file, (long) block * blockSize, filled(blockSize, 'b'));
+            }
+            return null;
+        });
+        runConcurrently(tasks);
+
+        // Then
+        for (int block = 0; block < blockCount; block++) {
+            assertArrayEquals(filled(blockSize, 'b'), read(file, (long) block * blockSize, blockSize));
+        }
+        assertEquals((long) blockCount * blockSize, file.getSize());
+        file.close();
+    }
+
+    @Test
+    void shouldRetryReadsOfFileClosedMeanwhile() throws Exception {
+        // Given
+        ShardFile file = new ShardFile(blockchainContext, "shared.bin", wallet);
+        file.initFromMetadata(file.getAbsolutePath(), 4096, Map.of(), Map.of(0, "aa"), ContentCodec.NONE, false);
+
+        // When: readers read while the cached file is closed under them again and again
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int reader = 0; reader < 4; reader++) {
+            tasks.add(() -> {
+                for (int i = 0; i < 200; i++) {
+                    // Then: every read gets the whole content
+                    assertArrayEquals(new byte[4096], read(file, 0, 4096));
+                }
+                return null;
+            });
+        }
+        tasks.add(() -> {
+            for (int i = 0; i < 200; i++) {
+                file.open();
+                file.close();
+            }
+            return null;
+        });
+        runConcurrently(tasks);
+
+        // Then: downloaded once, and reading changed nothing to deploy
+        assertEquals(List.of(0), file.loadedChunks);
+        verify(deployDispatcher, never()).enqueueDeploy(any());
+    }
+
+    @Test
+    void shouldShareOneDownloadOfChunkBetweenReaders() throws Exception {
+        // Given: the shard answers only when told to
+        ShardFile file = new ShardFile(blockchainContext, "shared.bin", wallet);
+        file.initFromMetadata(file.getAbsolutePath(), 4096, Map.of(), Map.of(0, "aa"), ContentCodec.NONE, false);
+        file.answer = new CountDownLatch(1);
+
+        // When: four readers want the chunk while it is being downloaded
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<byte[]>> reads = new ArrayList<>();
+            for (int reader = 0; reader < 4; reader++) {
+                reads.add(executor.submit(() -> read(file, 0, 4096)));
+            }
+            Thread.sleep(200); // all of them waiting
+            file.answer.countDown();
+
+            // Then
+            for (Future<byte[]> read : reads) {
+                assertArrayEquals(new byte[4096], read.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(List.of(0), file.loadedChunks);
+    }
+
+    @Test
+    void shouldDownloadChunkAgainAfterFailedLoad() throws IOException {
+        // Given
+        ShardFile file = new ShardFile(blockchainContext, "flaky.bin", wallet);
+        file.initFromMetadata(file.getAbsolutePath(), 4096, Map.of(), Map.of(0, "aa"), ContentCodec.NONE, false);
+        file.unavailable = true;
+        assertThrows(IOException.class, () -> read(file, 0, 4096));
+
+        // When
+        file.unavailable = false;
+        byte[] read = read(file, 0, 4096);
+
+        // Then: the failure was not kept as the result of the chunk
+        assertArrayEquals(new byte[4096], read);
+        assertEquals(List.of(0, 0), file.loadedChunks);
+    }
+
+    private static byte[] filled(int length, char value) {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, (byte) value);
+        return bytes;
+    }
+}
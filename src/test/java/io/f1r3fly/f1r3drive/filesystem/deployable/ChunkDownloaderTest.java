@@ -0,0 +1,65 @@
+package io.f1r3fly.f1r3drive.filesystem.deployable;
+
+import io.f1r3fly.f1r3drive.filesystem.fetch.FetchConfig;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for ChunkDownloader.
+ */
+class ChunkDownloaderTest {
+
+    @Test
+    void shouldDownloadChunksConcurrently() throws Exception {
+        // Given
+        ChunkDownloader downloader = new ChunkDownloader(FetchConfig.builder().chunkDownloadConcurrency(3).build());
+        CountDownLatch allStarted = new CountDownLatch(3);
+        Set<Integer> downloaded = ConcurrentHashMap.newKeySet();
+
+        // When: no download finishes before all of them started
+        downloader.downloadAll("/file", List.of(1, 2, 3), chunkNumber -> {
+            allStarted.countDown();
+            try {
+                if (!allStarted.await(5, TimeUnit.SECONDS)) {
+                    throw new IOException("downloaded one at a time");
+                }
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            downloaded.add(chunkNumber);
+        });
+
+        // Then
+        assertEquals(Set.of(1, 2, 3), downloaded);
+        downloader.shutdown();
+    }
+
+    @Test
+    void shouldFailAfterTheOtherChunksAreDone() {
+        // Given
+        ChunkDownloader downloader = new ChunkDownloader(FetchConfig.builder().chunkDownloadConcurrency(2).build());
+        Set<Integer> downloaded = ConcurrentHashMap.newKeySet();
+
+        // When
+        IOException failure = assertThrows(IOException.class, () ->
+            downloader.downloadAll("/file", List.of(1, 2, 3, 4), chunkNumber -> {
+                if (chunkNumber == 2) {
+                    throw new IOException("chunk 2 is gone");
+                }
+                downloaded.add(chunkNumber);
+            }));
+
+        // Then
+        assertEquals("chunk 2 is gone", failure.getMessage());
+        assertEquals(Set.of(1, 3, 4), downloaded);
+        downloader.shutdown();
+    }
+}
@@ -0,0 +1,77 @@
+package io.f1r3fly.f1r3drive.filesystem.deployable;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for ChunkSealer.
+ */
+class ChunkSealerTest {
+
+    @Test
+    void shouldSealChunksOfFileInOrder() throws Exception {
+        // Given
+        ChunkSealer sealer = new ChunkSealer(SealConfig.builder().threads(4).maxPendingChunks(8).build());
+        List<Integer> sealed = new CopyOnWriteArrayList<>();
+
+        // When
+        CompletableFuture<Void> last = CompletableFuture.completedFuture(null);
+        for (int chunkNumber = 0; chunkNumber < 8; chunkNumber++) {
+            int chunk = chunkNumber;
+            last = sealer.submit(last, () -> {
+                Thread.sleep(8 - chunk); // later chunks are quicker
+                sealed.add(chunk);
+            });
+        }
+        last.get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7), sealed);
+        sealer.shutdown();
+    }
+
+    @Test
+    void shouldGoOnAfterFailedSeal() throws Exception {
+        // Given
+        ChunkSealer sealer = new ChunkSealer(SealConfig.defaultConfig());
+        List<Integer> sealed = new CopyOnWriteArrayList<>();
+
+        // When
+        CompletableFuture<Void> failed = sealer.submit(CompletableFuture.completedFuture(null), () -> {
+            throw new IllegalStateException("disk is gone");
+        });
+        sealer.submit(failed, () -> sealed.add(1)).get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertTrue(failed.isDone());
+        assertFalse(failed.isCompletedExceptionally());
+        assertEquals(List.of(1), sealed);
+        sealer.shutdown();
+    }
+
+    @Test
+    void shouldHoldWriterBackWhenTooManyChunksArePending() throws Exception {
+        // Given
+        ChunkSealer sealer = new ChunkSealer(SealConfig.builder().threads(1).maxPendingChunks(1).build());
+        CountDownLatch release = new CountDownLatch(1);
+        sealer.submit(CompletableFuture.completedFuture(null), release::await);
+
+        // When
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(
+            () -> sealer.submit(CompletableFuture.completedFuture(null), () -> { }));
+        Thread.sleep(100);
+
+        // Then
+        assertFalse(writer.isDone(), "the second chunk waits for the first one");
+        release.countDown();
+        writer.get(5, TimeUnit.SECONDS);
+        sealer.shutdown();
+    }
+}
@@ -0,0 +1,94 @@
+package io.f1r3fly.f1r3drive.filesystem.deployable;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for ContentDefinedChunker.
+ */
+class ContentDefinedChunkerTest {
+
+    private static final int AVERAGE = 1024;
+
+    private static byte[] randomContent(int length) {
+        byte[] content = new byte[length];
+        new Random(42).nextBytes(content);
+        return content;
+    }
+
+    private static List<byte[]> cut(ContentDefinedChunker chunker, byte[] content) {
+        List<byte[]> blocks = new ArrayList<>();
+        for (int from = 0; from < content.length; ) {
+            int to = chunker.nextBoundary(content, from, content.length);
+            blocks.add(Arrays.copyOfRange(content, from, to));
+            from = to;
+        }
+        return blocks;
+    }
+
+    @Test
+    void shouldCutBlocksWithinBounds() {
+        // Given
+        ContentDefinedChunker chunker = new ContentDefinedChunker(AVERAGE);
+        byte[] content = randomContent(256 * AVERAGE);
+
+        // When
+        List<byte[]> blocks = cut(chunker, content);
+
+        // Then
+        for (int i = 0; i < blocks.size() - 1; i++) {
+            assertTrue(blocks.get(i).length >= AVERAGE / 4, "block " + i + " too small");
+            assertTrue(blocks.get(i).length <= AVERAGE * 4, "block " + i + " too large");
+        }
+        assertTrue(blocks.size() > 256 / 4 && blocks.size() < 256 * 4, "unexpected count " + blocks.size());
+    }
+
+    @Test
+    void shouldCutWithinBoundsAndContent() {
+        // Given: content that repeats itself
+        ContentDefinedChunker chunker = new ContentDefinedChunker(AVERAGE);
+        byte[] content = new byte[10 * AVERAGE];
+
+        // When
+        int boundary = chunker.nextBoundary(content, 0, content.length);
+
+        // Then
+        assertTrue(boundary > AVERAGE / 4 && boundary <= AVERAGE * 4);
+        assertEquals(100, chunker.nextBoundary(content, 0, 100));
+    }
+
+    @Test
+    void shouldKeepBlocksAroundInsertedByte() {
+        // Given
+        ContentDefinedChunker chunker = new ContentDefinedChunker(AVERAGE);
+        byte[] content = randomContent(256 * AVERAGE);
+        byte[] changed = new byte[content.length + 1];
+        int insertAt = content.length / 2;
+        System.arraycopy(content, 0, changed, 0, insertAt);
+        changed[insertAt] = 7;
+        System.arraycopy(content, insertAt, changed, insertAt + 1, content.length - insertAt);
+
+        // When
+        Set<String> before = new HashSet<>();
+        cut(chunker, content).forEach(block -> before.add(Arrays.toString(block)));
+        List<byte[]> after = cut(chunker, changed);
+
+        // Then: only the blocks next to the insertion are new
+        long newBlocks = after.stream().filter(block -> !before.contains(Arrays.toString(block))).count();
+        assertTrue(newBlocks <= 2, newBlocks + " new blocks");
+    }
+
+    @Test
+    void shouldRejectAverageNotPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new ContentDefinedChunker(1000));
+        assertThrows(IllegalArgumentException.class, () -> new ContentDefinedChunker(32));
+    }
+}
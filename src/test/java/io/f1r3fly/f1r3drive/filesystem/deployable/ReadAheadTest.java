@@ -0,0 +1,158 @@
+package io.f1r3fly.f1r3drive.filesystem.deployable;
+
+import io.f1r3fly.f1r3drive.filesystem.fetch.FetchConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for ReadAhead.
+ */
+class ReadAheadTest {
+
+    private static final long READ_SIZE = ReadAhead.SEQUENTIAL_SLACK;
+    private static final long CHUNK_SIZE = 4 * READ_SIZE;
+
+    // records the chunks it is asked for; the downloads never start
+    private static class FakePrefetcher implements IntFunction<ChunkPrefetcher.Prefetch> {
+        final List<Integer> chunks = new ArrayList<>();
+        final List<ChunkPrefetcher.Prefetch> prefetches = new ArrayList<>();
+
+        @Override
+        public ChunkPrefetcher.Prefetch apply(int chunkNumber) {
+            chunks.add(chunkNumber);
+            ChunkPrefetcher.Prefetch prefetch = new ChunkPrefetcher.Prefetch();
+            prefetches.add(prefetch);
+            return prefetch;
+        }
+    }
+
+    @Test
+    void shouldPrefetchNextChunkOfSequentialReader() {
+        // Given
+        ReadAhead readAhead = new ReadAhead(CHUNK_SIZE, 4);
+        FakePrefetcher prefetcher = new FakePrefetcher();
+
+        // When
+        readAhead.onRead(0, 4096, 10, 0, prefetcher);
+        List<Integer> afterFirstRead = List.copyOf(prefetcher.chunks);
+        readAhead.onRead(4096, 4096, 10, 1, prefetcher);
+        readAhead.onRead(8192, 4096, 10, 2, prefetcher);
+
+        // Then
+        assertEquals(List.of(), afterFirstRead, "a single read is not sequential yet");
+        assertEquals(List.of(1), prefetcher.chunks);
+    }
+
+    @Test
+    void shouldNotPrefetchForRandomReads() {
+        // Given
+        ReadAhead readAhead = new ReadAhead(CHUNK_SIZE, 4);
+        FakePrefetcher prefetcher = new FakePrefetcher();
+
+        // When
+        for (long offset : new long[]{5 * CHUNK_SIZE, 0, 9 * CHUNK_SIZE, 3 * CHUNK_SIZE}) {
+            readAhead.onRead(offset, 4096, 10, 0, prefetcher);
+        }
+
+        // Then
+        assertTrue(prefetcher.chunks.isEmpty());
+    }
+
+    @Test
+    void shouldGetFurtherAheadOfReaderFasterThanDownloads() {
+        // Given
+        ReadAhead readAhead = new ReadAhead(CHUNK_SIZE, 4);
+        FakePrefetcher prefetcher = new FakePrefetcher();
+        readAhead.onChunkLoaded(3_000);
+
+        // When: the reader gets through a chunk in a third of the time a download takes
+        for (int read = 0; read <= 4; read++) {
+            readAhead.onRead(read * READ_SIZE, READ_SIZE, 10, read * 250L, prefetcher);
+        }
+
+        // Then
+        assertEquals(List.of(1, 2, 3, 4), prefetcher.chunks);
+    }
+
+    @Test
+    void shouldStayOneChunkAheadOfSlowReader() {
+        // Given
+        ReadAhead readAhead = new ReadAhead(CHUNK_SIZE, 4);
+        FakePrefetcher prefetcher = new FakePrefetcher();
+        readAhead.onChunkLoaded(1_000);
+
+        // When: the reader takes longer for a chunk than a download
+        for (int read = 0; read <= 4; read++) {
+            readAhead.onRead(read * READ_SIZE, READ_SIZE, 10, read * 1_250L, prefetcher);
+        }
+
+        // Then
+        assertEquals(List.of(1, 2), prefetcher.chunks);
+    }
+
+    @Test
+    void shouldNotPrefetchPastLastChunk() {
+        // Given
+        ReadAhead readAhead = new ReadAhead(CHUNK_SIZE, 4);
+        FakePrefetcher prefetcher = new FakePrefetcher();
+
+        // When
+        readAhead.onRead(0, 4096, 1, 0, prefetcher);
+        readAhead.onRead(4096, 4096, 1, 1, prefetcher);
+
+        // Then
+        assertTrue(prefetcher.chunks.isEmpty());
+    }
+
+    @Test
+    void shouldCancelPrefetchesWhenAccessTurnsRandom() {
+        // Given
+        ReadAhead readAhead = new ReadAhead(CHUNK_SIZE, 4);
+        FakePrefetcher prefetcher = new FakePrefetcher();
+        readAhead.onRead(0, 4096, 10, 0, prefetcher);
+        readAhead.onRead(4096, 4096, 10, 1, prefetcher);
+        ChunkPrefetcher.Prefetch pending = prefetcher.prefetches.get(0);
+
+        // When
+        for (int i = 0; i < ReadAhead.MAX_STREAMS; i++) {
+            readAhead.onRead((2 + 2 * i) * CHUNK_SIZE, 4096, 10, 2, prefetcher);
+        }
+
+        // Then
+        assertTrue(pending.isDone());
+        assertEquals(List.of(1), prefetcher.chunks);
+    }
+
+    @Test
+    void shouldSkipPrefetchCancelledBeforeItStarts() throws Exception {
+        // Given
+        ChunkPrefetcher chunkPrefetcher = new ChunkPrefetcher(FetchConfig.builder().readAheadChunks(1).build());
+        CountDownLatch blocked = new CountDownLatch(1);
+        List<Integer> downloaded = new ArrayList<>();
+        ChunkPrefetcher.Prefetch running = chunkPrefetcher.submit(() -> {
+            try {
+                blocked.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        ChunkPrefetcher.Prefetch queued = chunkPrefetcher.submit(() -> downloaded.add(1));
+
+        // When
+        queued.cancel();
+        blocked.countDown();
+        running.await();
+
+        // Then
+        assertTrue(queued.isDone());
+        assertTrue(downloaded.isEmpty());
+        chunkPrefetcher.shutdown();
+    }
+}
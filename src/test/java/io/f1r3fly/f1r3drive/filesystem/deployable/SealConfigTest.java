@@ -0,0 +1,56 @@
+package io.f1r3fly.f1r3drive.filesystem.deployable;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for SealConfig.
+ */
+class SealConfigTest {
+
+    @Test
+    void shouldCreateConfigWithDefaultValues() {
+        // When
+        SealConfig config = SealConfig.defaultConfig();
+
+        // Then
+        assertEquals(2, config.getThreads());
+        assertEquals(4, config.getMaxPendingChunks());
+        assertEquals(0, config.getInlineFileBytes());
+        assertEquals(0, config.getDedupBlockBytes());
+        assertFalse(config.isCompress());
+    }
+
+    @Test
+    void shouldCreateConfigWithCustomValues() {
+        // When
+        SealConfig config = SealConfig.builder()
+            .threads(1)
+            .maxPendingChunks(8)
+            .inlineFileBytes(4096)
+            .dedupBlockBytes(1024 * 1024)
+            .compress(true)
+            .build();
+
+        // Then
+        assertEquals(1, config.getThreads());
+        assertEquals(8, config.getMaxPendingChunks());
+        assertEquals(4096, config.getInlineFileBytes());
+        assertEquals(1024 * 1024, config.getDedupBlockBytes());
+        assertTrue(config.isCompress());
+    }
+
+    @Test
+    void shouldRejectInvalidValues() {
+        SealConfig.Builder builder = SealConfig.builder();
+
+        assertThrows(IllegalArgumentException.class, () -> builder.threads(0));
+        assertThrows(IllegalArgumentException.class, () -> builder.maxPendingChunks(0));
+        assertThrows(IllegalArgumentException.class, () -> builder.inlineFileBytes(-1));
+        assertThrows(IllegalArgumentException.class, () -> builder.inlineFileBytes(SealConfig.MAX_INLINE_FILE_BYTES + 1));
+        assertThrows(IllegalArgumentException.class, () -> builder.dedupBlockBytes(SealConfig.MIN_DEDUP_BLOCK_BYTES / 2));
+        assertThrows(IllegalArgumentException.class, () -> builder.dedupBlockBytes(SealConfig.MAX_DEDUP_BLOCK_BYTES * 2));
+        assertThrows(IllegalArgumentException.class, () -> builder.dedupBlockBytes(1000 * 1000));
+    }
+}
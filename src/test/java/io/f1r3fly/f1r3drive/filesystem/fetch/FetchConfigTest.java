@@ -0,0 +1,63 @@
+package io.f1r3fly.f1r3drive.filesystem.fetch;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for FetchConfig.
+ */
+class FetchConfigTest {
+
+    @Test
+    void shouldCreateConfigWithDefaultValues() {
+        // When
+        FetchConfig config = FetchConfig.defaultConfig();
+
+        // Then
+        assertEquals(16, config.getConcurrency());
+        assertEquals(Duration.ofMinutes(2), config.getRequestDeadline());
+        assertEquals(4, config.getUnlockConcurrency());
+        assertEquals(Duration.ofSeconds(30), config.getSyncInterval());
+        assertEquals(2, config.getReadAheadChunks());
+        assertEquals(4, config.getChunkDownloadConcurrency());
+    }
+
+    @Test
+    void shouldCreateConfigWithCustomValues() {
+        // When
+        FetchConfig config = FetchConfig.builder()
+            .concurrency(4)
+            .requestDeadline(Duration.ofSeconds(10))
+            .unlockConcurrency(8)
+            .syncInterval(Duration.ZERO)
+            .readAheadChunks(0)
+            .chunkDownloadConcurrency(2)
+            .build();
+
+        // Then
+        assertEquals(4, config.getConcurrency());
+        assertEquals(Duration.ofSeconds(10), config.getRequestDeadline());
+        assertEquals(8, config.getUnlockConcurrency());
+        assertEquals(Duration.ZERO, config.getSyncInterval());
+        assertEquals(0, config.getReadAheadChunks());
+        assertEquals(2, config.getChunkDownloadConcurrency());
+    }
+
+    @Test
+    void shouldRejectInvalidValues() {
+        FetchConfig.Builder builder = FetchConfig.builder();
+
+        assertThrows(IllegalArgumentException.class, () -> builder.concurrency(0));
+        assertThrows(IllegalArgumentException.class, () -> builder.requestDeadline(Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> builder.requestDeadline(Duration.ofSeconds(-1)));
+        assertThrows(IllegalArgumentException.class, () -> builder.requestDeadline(null));
+        assertThrows(IllegalArgumentException.class, () -> builder.unlockConcurrency(0));
+        assertThrows(IllegalArgumentException.class, () -> builder.syncInterval(Duration.ofSeconds(-1)));
+        assertThrows(IllegalArgumentException.class, () -> builder.syncInterval(null));
+        assertThrows(IllegalArgumentException.class, () -> builder.readAheadChunks(-1));
+        assertThrows(IllegalArgumentException.class, () -> builder.chunkDownloadConcurrency(0));
+    }
+}
@@ -0,0 +1,188 @@
+package io.f1r3fly.f1r3drive.filesystem.fetch;
+
+import com.google.protobuf.ByteString;
+import io.f1r3fly.f1r3drive.blockchain.BlockchainContext;
+import io.f1r3fly.f1r3drive.blockchain.client.DeployDispatcher;
+import io.f1r3fly.f1r3drive.blockchain.client.F1r3flyBlockchainClient;
+import io.f1r3fly.f1r3drive.blockchain.rholang.RholangExpressionConstructor.ChannelData;
+import io.f1r3fly.f1r3drive.blockchain.wallet.RevWalletInfo;
+import io.f1r3fly.f1r3drive.encryption.ContentCodec;
+import io.f1r3fly.f1r3drive.filesystem.cache.CacheConfig;
+import io.f1r3fly.f1r3drive.filesystem.cache.ContentCache;
+import io.f1r3fly.f1r3drive.filesystem.common.Path;
+import io.f1r3fly.f1r3drive.filesystem.deployable.AbstractDeployablePath;
+import io.f1r3fly.f1r3drive.filesystem.deployable.ChunkDownloader;
+import io.f1r3fly.f1r3drive.filesystem.deployable.ChunkPrefetcher;
+import io.f1r3fly.f1r3drive.filesystem.deployable.ChunkSealer;
+import io.f1r3fly.f1r3drive.filesystem.deployable.FetchedFile;
+import io.f1r3fly.f1r3drive.filesystem.deployable.SealConfig;
+import io.f1r3fly.f1r3drive.filesystem.deployable.UnlockedWalletDirectory;
+import io.f1r3fly.f1r3drive.filesystem.local.RootDirectory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for WalletSyncer.
+ */
+class WalletSyncerTest {
+
+    private static final String REV_ADDRESS = "111127RX5ZgiAdRaQy4AWy57RdvAAckdELReEBxzvWYVvdnR32PiHA";
+    private static final String WALLET_PATH = "/" + REV_ADDRESS;
+
+    @TempDir
+    java.nio.file.Path cacheDirectory;
+
+    @Mock
+    private F1r3flyBlockchainClient blockchainClient;
+
+    @Mock
+    private WalletTreeFetcher walletTreeFetcher;
+
+    @Mock
+    private DeployDispatcher deployDispatcher;
+
+    private BlockchainContext blockchainContext;
+    private UnlockedWalletDirectory wallet;
+    private FetchedFile file;
+    private WalletSyncer syncer;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        MockitoAnnotations.openMocks(this);
+        when(deployDispatcher.isIdle()).thenReturn(true);
+
+        FetchConfig fetchConfig = FetchConfig.defaultConfig();
+        blockchainContext = new BlockchainContext(new RevWalletInfo(REV_ADDRESS, null), deployDispatcher,
+            new ContentCache(CacheConfig.builder().directory(cacheDirectory).build()),
+            new ChunkSealer(SealConfig.defaultConfig()), new ChunkPrefetcher(fetchConfig), new ChunkDownloader(fetchConfig));
+
+        // a wallet loaded from the shard with a single small file in it
+        wallet = new UnlockedWalletDirectory(blockchainContext, new RootDirectory());
+        file = new FetchedFile(blockchainContext, "a.txt", wallet, 100L);
+        file.initFromMetadata(WALLET_PATH + "/a.txt", 10, Map.of(), Map.of(0, "aa"), ContentCodec.NONE, false);
+        wallet.completeLoading(Set.of(file), 100L);
+
+        syncer = new WalletSyncer(blockchainClient, walletTreeFetcher, fetchConfig);
+    }
+
+    private static ChannelData dirEntry(long lastUpdated, Set<String> children) {
+        return new ChannelData("d", lastUpdated, ByteString.EMPTY, children, Map.of(), 0, Map.of(), "",
+            ContentCodec.NONE, false, Map.of());
+    }
+
+    private static ChannelData fileEntry(long lastUpdated, long size, Map<Integer, String> hashes) {
+        return new ChannelData("f", lastUpdated, ByteString.EMPTY, Set.of(), Map.of(), size, hashes, "",
+            ContentCodec.NONE, false, Map.of());
+    }
+
+    private void givenManifest(Map<String, ChannelData> manifest) {
+        when(walletTreeFetcher.readManifest(anyString())).thenReturn(new HashMap<>(manifest));
+    }
+
+    private Set<String> deployableChildNames() {
+        return wallet.getChildren().stream()
+            .filter(child -> child instanceof AbstractDeployablePath)
+            .map(Path::getName)
+            .collect(Collectors.toSet());
+    }
+
+    @Test
+    void shouldRefreshFileChangedOnTheShard() throws IOException {
+        // Given
+        givenManifest(Map.of(
+            WALLET_PATH, dirEntry(100, Set.of("a.txt")),
+            WALLET_PATH + "/a.txt", fileEntry(200, 20, Map.of(0, "bb"))));
+
+        // When
+        boolean synced = syncer.syncWallet(wallet);
+
+        // Then: the same file, with the metadata of the newer version
+        assertTrue(synced);
+        assertTrue(wallet.getChildren().contains(file));
+        assertEquals(20, file.getSize());
+        assertEquals(Long.valueOf(200), file.getLastUpdated());
+        assertFalse(file.hasLocalChanges());
+        verify(deployDispatcher, never()).enqueueDeploy(any());
+    }
+
+    @Test
+    void shouldAddAndRemoveChildrenChangedOnTheShard() throws IOException {
+        // Given: a.txt was removed and b.txt was added by another instance
+        givenManifest(Map.of(
+            WALLET_PATH, dirEntry(200, Set.of("b.txt")),
+            WALLET_PATH + "/b.txt", fileEntry(200, 5, Map.of(0, "cc"))));
+
+        // When
+        boolean synced = syncer.syncWallet(wallet);
+
+        // Then
+        assertTrue(synced);
+        assertEquals(Set.of("b.txt"), deployableChildNames());
+        assertEquals(Long.valueOf(200), wallet.getLastUpdated());
+        verify(deployDispatcher, never()).enqueueDeploy(any());
+    }
+
+    @Test
+    void shouldSkipWalletWhileDeploysArePending() throws IOException {
+        // Given
+        when(deployDispatcher.isIdle()).thenReturn(false);
+
+        // When
+        boolean synced = syncer.syncWallet(wallet);
+
+        // Then
+        assertFalse(synced);
+        verify(walletTreeFetcher, never()).readManifest(anyString());
+        assertEquals(10, file.getSize());
+    }
+
+    @Test
+    void shouldSkipWalletChangedWhileManifestWasRead() throws IOException {
+        // Given: a change is enqueued after the manifest was requested
+        when(deployDispatcher.isIdle()).thenReturn(true, false);
+        givenManifest(Map.of(
+            WALLET_PATH, dirEntry(200, Set.of("b.txt")),
+            WALLET_PATH + "/b.txt", fileEntry(200, 5, Map.of(0, "cc"))));
+
+        // When
+        boolean synced = syncer.syncWallet(wallet);
+
+        // Then: the manifest may miss that change, so nothing is applied
+        assertFalse(synced);
+        assertEquals(Set.of("a.txt"), deployableChildNames());
+        assertEquals(Long.valueOf(100), wallet.getLastUpdated());
+    }
+
+    @Test
+    void shouldLeaveFileWithLocalChangesAsItIs() throws IOException {
+        // Given: the file is open here while it is changed and then removed on the shard
+        file.open();
+        givenManifest(Map.of(
+            WALLET_PATH, dirEntry(200, Set.of("a.txt")),
+            WALLET_PATH + "/a.txt", fileEntry(200, 20, Map.of(0, "bb"))));
+
+        // When
+        boolean changedSynced = syncer.syncWallet(wallet);
+        givenManifest(Map.of(WALLET_PATH, dirEntry(300, Set.of())));
+        boolean removedSynced = syncer.syncWallet(wallet);
+
+        // Then
+        assertTrue(changedSynced);
+        assertTrue(removedSynced);
+        assertTrue(wallet.getChildren().contains(file));
+        assertEquals(10, file.getSize());
+        assertEquals(Long.valueOf(100), file.getLastUpdated());
+    }
+}
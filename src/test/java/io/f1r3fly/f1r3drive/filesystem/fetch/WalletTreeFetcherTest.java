@@ -0,0 +1,267 @@
+package io.f1r3fly.f1r3drive.filesystem.fetch;
+
+import io.f1r3fly.f1r3drive.blockchain.BlockchainContext;
+import io.f1r3fly.f1r3drive.blockchain.client.DeployDispatcher;
+import io.f1r3fly.f1r3drive.blockchain.client.F1r3flyBlockchainClient;
+import io.f1r3fly.f1r3drive.blockchain.rholang.RholangExpressionConstructor;
+import io.f1r3fly.f1r3drive.blockchain.wallet.RevWalletInfo;
+import io.f1r3fly.f1r3drive.errors.F1r3DriveError;
+import io.f1r3fly.f1r3drive.errors.NoDataByPath;
+import io.f1r3fly.f1r3drive.filesystem.cache.CacheConfig;
+import io.f1r3fly.f1r3drive.filesystem.cache.ContentCache;
+import io.f1r3fly.f1r3drive.filesystem.common.File;
+import io.f1r3fly.f1r3drive.filesystem.common.Path;
+import io.f1r3fly.f1r3drive.filesystem.deployable.BlockchainDirectory;
+import io.f1r3fly.f1r3drive.filesystem.deployable.ChunkDownloader;
+import io.f1r3fly.f1r3drive.filesystem.deployable.ChunkPrefetcher;
+import io.f1r3fly.f1r3drive.filesystem.deployable.ChunkSealer;
+import io.f1r3fly.f1r3drive.filesystem.deployable.FetchedDirectory;
+import io.f1r3fly.f1r3drive.filesystem.deployable.SealConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import rhoapi.RhoTypes;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for WalletTreeFetcher.
+ */
+class WalletTreeFetcherTest {
+
+    private static final String REV_ADDRESS = "111127RX5ZgiAdRaQy4AWy57RdvAAckdELReEBxzvWYVvdnR32PiHA";
+    private static final String WALLET_PATH = "/" + REV_ADDRESS;
+    private static final String MANIFEST_CHANNEL = RholangExpressionConstructor.manifestChannel(REV_ADDRESS);
+    private static final Duration DEADLINE = Duration.ofSeconds(7);
+
+    @TempDir
+    java.nio.file.Path cacheDirectory;
+
+    @Mock
+    private F1r3flyBlockchainClient blockchainClient;
+
+    @Mock
+    private DeployDispatcher deployDispatcher;
+
+    private BlockchainContext blockchainContext;
+    private FetchedDirectory root;
+    private WalletTreeFetcher fetcher;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+
+        FetchConfig fetchConfig = FetchConfig.builder().concurrency(4).requestDeadline(DEADLINE).build();
+        blockchainContext = new BlockchainContext(new RevWalletInfo(REV_ADDRESS, null), deployDispatcher,
+            new ContentCache(CacheConfig.builder().directory(cacheDirectory).build()),
+            new ChunkSealer(SealConfig.defaultConfig()), new ChunkPrefetcher(fetchConfig), new ChunkDownloader(fetchConfig));
+
+        // published from its own channel, children still being read
+        root = new FetchedDirectory(blockchainContext, WALLET_PATH, null, 100L);
+        fetcher = new WalletTreeFetcher(blockchainClient, fetchConfig);
+
+        // a wallet mounted before manifests were deployed
+        when(blockchainClient.findDataByName(anyString(), any())).thenThrow(new NoDataByPath("manifest"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        fetcher.shutdown();
+    }
+
+    private void givenChannel(String path, RhoTypes.Expr data) {
+        when(blockchainClient.findMetadataByName(eq(path), any())).thenReturn(data);
+    }
+
+    private void givenManifest(RhoTypes.KeyValuePair... entries) {
+        doReturn(List.of(par(map(entries)))).when(blockchainClient).findDataByName(eq(MANIFEST_CHANNEL), any());
+    }
+
+    private static Set<String> names(Set<Path> paths) {
+        return paths.stream().map(Path::getName).collect(Collectors.toSet());
+    }
+
+    @Test
+    void shouldReadChildrenOfDirectoryAtOnce() throws Exception {
+        // Given: each child answers only once all of them are requested
+        givenChannel(WALLET_PATH, dirData(100, "a", "b", "c"));
+        CountDownLatch requested = new CountDownLatch(3);
+        for (String child : List.of("a", "b", "c")) {
+            when(blockchainClient.findMetadataByName(eq(WALLET_PATH + "/" + child), any())).thenAnswer(invocation -> {
+                requested.countDown();
+                if (!requested.await(5, TimeUnit.SECONDS)) {
+                    throw new F1r3DriveError("Deadline exceeded while finding metadata by name " + child);
+                }
+                return dirData(100);
+            });
+        }
+
+        // When
+        fetcher.fetchTree(blockchainContext, root).get(10, TimeUnit.SECONDS);
+
+        // Then
+        assertEquals(Set.of("a", "b", "c"), names(root.getChildren()));
+        verify(blockchainClient).findMetadataByName(WALLET_PATH, DEADLINE);
+        for (Path child : root.getChildren()) {
+            assertTrue(((BlockchainDirectory) child).isLoaded());
+        }
+    }
+
+    @Test
+    void shouldSkipChildWithNothingStored() throws Exception {
+        // Given
+        givenChannel(WALLET_PATH, dirData(100, "docs", "lost"));
+        givenChannel(WALLET_PATH + "/docs", dirData(100, "a.txt"));
+        givenChannel(WALLET_PATH + "/docs/a.txt", fileData(100, 10));
+        when(blockchainClient.findMetadataByName(eq(WALLET_PATH + "/lost"), any()))
+            .thenThrow(new NoDataByPath(WALLET_PATH + "/lost"));
+
+        // When
+        fetcher.fetchTree(blockchainContext, root).get(10, TimeUnit.SECONDS);
+
+        // Then
+        assertEquals(Set.of("docs"), names(root.getChildren()));
+        BlockchainDirectory docs = (BlockchainDirectory) root.getChildren().iterator().next();
+        assertEquals(Set.of("a.txt"), names(docs.getChildren()));
+        assertEquals(10, ((File) docs.getChildren().iterator().next()).getSize());
+    }
+
+    @Test
+    void shouldFailDirectoryWhoseChildExceedsDeadline() {
+        // Given
+        givenChannel(WALLET_PATH, dirData(100, "fast", "slow"));
+        givenChannel(WALLET_PATH + "/fast", dirData(100));
+        when(blockchainClient.findMetadataByName(eq(WALLET_PATH + "/slow"), any()))
+            .thenThrow(new F1r3DriveError("Deadline exceeded while finding metadata by name " + WALLET_PATH + "/slow"));
+
+        // When
+        ExecutionException failure = assertThrows(ExecutionException.class,
+            () -> fetcher.fetchTree(blockchainContext, root).get(10, TimeUnit.SECONDS));
+
+        // Then: reported to whoever waits on the directory, and no manifest is built from a partial tree
+        assertNotNull(failure.getCause());
+        assertThrows(F1r3DriveError.class, root::getChildren);
+        assertFalse(root.isLoaded());
+        verify(deployDispatcher, never()).enqueueDeploy(any());
+    }
+
+    @Test
+    void shouldBuildTreeFromManifestInOneRead() throws Exception {
+        // Given
+        givenManifest(
+            keyValue(WALLET_PATH, par(dirData(100, "docs", "a.txt"))),
+            keyValue(WALLET_PATH + "/a.txt", par(fileData(100, 10))),
+            keyValue(WALLET_PATH + "/docs", par(dirData(100, "b.txt"))),
+            keyValue(WALLET_PATH + "/docs/b.txt", par(fileData(100, 20))));
+
+        // When
+        fetcher.fetchTree(blockchainContext, root).get(10, TimeUnit.SECONDS);
+
+        // Then: the whole tree, without reading a single path, and changes from now on update the manifest
+        assertEquals(Set.of("docs", "a.txt"), names(root.getChildren()));
+        BlockchainDirectory docs = (BlockchainDirectory) root.getChildren().stream()
+            .filter(child -> child.getName().equals("docs")).findFirst().orElseThrow();
+        assertEquals(Set.of("b.txt"), names(docs.getChildren()));
+        assertEquals(20, ((File) docs.getChildren().iterator().next()).getSize());
+        verify(blockchainClient).findDataByName(MANIFEST_CHANNEL, DEADLINE);
+        verify(blockchainClient, never()).findMetadataByName(anyString(), any());
+        assertTrue(blockchainContext.isManifestAvailable());
+        verify(deployDispatcher, never()).enqueueDeploy(any());
+    }
+
+    @Test
+    void shouldReadEveryPathAndDeployManifestIfThereIsNone() throws Exception {
+        // Given
+        givenChannel(WALLET_PATH, dirData(100, "docs"));
+        givenChannel(WALLET_PATH + "/docs", dirData(100, "b.txt"));
+        givenChannel(WALLET_PATH + "/docs/b.txt", fileData(100, 20));
+
+        // When
+        fetcher.fetchTree(blockchainContext, root).get(10, TimeUnit.SECONDS);
+
+        // Then: a manifest of the tree is deployed for the next mount
+        assertEquals(Set.of("docs"), names(root.getChildren()));
+        verify(blockchainClient).findMetadataByName(WALLET_PATH + "/docs/b.txt", DEADLINE);
+        ArgumentCaptor<DeployDispatcher.Deployment> deployment = ArgumentCaptor.forClass(DeployDispatcher.Deployment.class);
+        verify(deployDispatcher).enqueueDeploy(deployment.capture());
+        String manifest = deployment.getValue().rhoOrMettaExpression();
+        assertTrue(manifest.contains(MANIFEST_CHANNEL));
+        for (String path : List.of(WALLET_PATH, WALLET_PATH + "/docs", WALLET_PATH + "/docs/b.txt")) {
+            assertTrue(manifest.contains("\"" + path + "\""), path);
+        }
+        assertTrue(blockchainContext.isManifestAvailable());
+    }
+
+    @Test
+    void shouldReadEveryPathOfWalletMissingFromManifest() throws Exception {
+        // Given: a manifest without an entry for the wallet root
+        givenManifest(keyValue(WALLET_PATH + "/other", par(dirData(100))));
+        givenChannel(WALLET_PATH, dirData(100, "docs"));
+        givenChannel(WALLET_PATH + "/docs", dirData(100));
+
+        // When
+        fetcher.fetchTree(blockchainContext, root).get(10, TimeUnit.SECONDS);
+
+        // Then: read path by path, and the manifest there is left as it is
+        assertEquals(Set.of("docs"), names(root.getChildren()));
+        verify(blockchainClient).findMetadataByName(WALLET_PATH + "/docs", DEADLINE);
+        verify(deployDispatcher, never()).enqueueDeploy(any());
+    }
+
+    private static RhoTypes.Expr dirData(long lastUpdated, String... children) {
+        RhoTypes.EList.Builder names = RhoTypes.EList.newBuilder();
+        for (String child : children) {
+            names.addPs(string(child));
+        }
+        return map(
+            keyValue("type", string("d")),
+            keyValue("children", par(RhoTypes.Expr.newBuilder().setEListBody(names).build())),
+            keyValue("lastUpdated", integer(lastUpdated)));
+    }
+
+    private static RhoTypes.Expr fileData(long lastUpdated, long size) {
+        return map(
+            keyValue("type", string("f")),
+            keyValue("otherChunks", par(RhoTypes.Expr.newBuilder().setEMapBody(RhoTypes.EMap.newBuilder()).build())),
+            keyValue("size", integer(size)),
+            keyValue("lastUpdated", integer(lastUpdated)));
+    }
+
+    private static RhoTypes.Expr map(RhoTypes.KeyValuePair... keyValues) {
+        return RhoTypes.Expr.newBuilder()
+            .setEMapBody(RhoTypes.EMap.newBuilder().addAllKvs(List.of(keyValues)))
+            .build();
+    }
+
+    private static RhoTypes.KeyValuePair keyValue(String key, RhoTypes.Par value) {
+        return RhoTypes.KeyValuePair.newBuilder()
+            .setKey(string(key))
+            .setValue(value)
+            .build();
+    }
+
+    private static RhoTypes.Par string(String value) {
+        return par(RhoTypes.Expr.newBuilder().setGString(value).build());
+    }
+
+    private static RhoTypes.Par integer(long value) {
+        return par(RhoTypes.Expr.newBuilder().setGInt(value).build());
+    }
+
+    private static RhoTypes.Par par(RhoTypes.Expr expr) {
+        return RhoTypes.Par.newBuilder().addExprs(expr).build();
+    }
+}